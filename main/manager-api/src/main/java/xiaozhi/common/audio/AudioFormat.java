@@ -0,0 +1,70 @@
+package xiaozhi.common.audio;
+
+/**
+ * Audio container formats served for playback, recognised from their leading bytes.
+ */
+public enum AudioFormat {
+    WAV("audio/wav", "wav"),
+    OGG("audio/ogg", "ogg"),
+    MP3("audio/mpeg", "mp3"),
+    FLAC("audio/flac", "flac"),
+    UNKNOWN("application/octet-stream", "bin");
+
+    private final String contentType;
+    private final String extension;
+
+    AudioFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * The format of an encoded clip, or {@link #UNKNOWN}.
+     */
+    public static AudioFormat detect(byte[] data) {
+        if (startsWith(data, "RIFF") && data.length >= 12 && data[8] == 'W' && data[9] == 'A' && data[10] == 'V'
+                && data[11] == 'E') {
+            return WAV;
+        } else if (startsWith(data, "OggS")) {
+            return OGG;
+        } else if (startsWith(data, "fLaC")) {
+            return FLAC;
+        } else if (startsWith(data, "ID3") || (data.length >= 2 && (data[0] & 0xff) == 0xff
+                && (data[1] & 0xe0) == 0xe0)) {
+            return MP3;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * The format stored under a file extension, or {@link #UNKNOWN}.
+     */
+    public static AudioFormat ofExtension(String extension) {
+        for (AudioFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(extension)) {
+                return format;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] data, String magic) {
+        if (data == null || data.length < magic.length()) {
+            return false;
+        }
+        for (int i = 0; i < magic.length(); i++) {
+            if (data[i] != magic.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package xiaozhi.common.audio;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.redis.RedisUtils;
+
+/**
+ * Serves stored audio clips for playback through the {@link AudioPlaybackCache}.
+ * <p>
+ * Responses are file resources with an ETag, so Spring MVC answers {@code Range} requests
+ * with 206 partial content and {@code If-None-Match} with 304, letting browsers seek and
+ * reuse what they have already downloaded.
+ */
+@Slf4j
+public class AudioPlayback {
+
+    private final AudioPlaybackCache cache;
+    private final RedisUtils redisUtils;
+    private final long playLinkWindowSeconds;
+
+    public AudioPlayback(AudioPlaybackCache cache, RedisUtils redisUtils, long playLinkWindowSeconds) {
+        this.cache = cache;
+        this.redisUtils = redisUtils;
+        this.playLinkWindowSeconds = playLinkWindowSeconds;
+    }
+
+    /**
+     * Resolve a play link token. Instead of being deleted on first use, the token is cut down
+     * to the play-link window, because a player fetches the same URL again for every range.
+     *
+     * @return the stored value, or null for an unknown or expired token
+     */
+    public String claimToken(String tokenKey) {
+        Object value = redisUtils.get(tokenKey);
+        if (value == null) {
+            return null;
+        }
+        Long ttl = redisUtils.getExpire(tokenKey);
+        if (ttl == null || ttl < 0 || ttl > playLinkWindowSeconds) {
+            redisUtils.expire(tokenKey, playLinkWindowSeconds);
+        }
+        return value.toString();
+    }
+
+    /**
+     * The playback response for a clip, or 404 when the loader finds no audio.
+     *
+     * @param sourceKey stable key of the stored audio, such as "chat:" + audioId
+     * @param fileName  download name without extension
+     * @param loader    loads the stored bytes on a cache miss
+     */
+    public ResponseEntity<Resource> play(String sourceKey, String fileName, Supplier<byte[]> loader) {
+        AudioPlaybackCache.Clip clip;
+        try {
+            clip = cache.get(sourceKey, loader);
+        } catch (IOException e) {
+            log.error("Failed to prepare audio {} for playback", sourceKey, e);
+            return ResponseEntity.internalServerError().build();
+        }
+        if (clip == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(clip.format().getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                        .filename(fileName + "." + clip.format().getExtension()).build().toString())
+                .eTag(clip.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(new FileSystemResource(clip.file()));
+    }
+
+    /**
+     * Forget the cached clip of audio that has been replaced.
+     */
+    public void evict(String sourceKey) {
+        cache.evict(sourceKey);
+    }
+}
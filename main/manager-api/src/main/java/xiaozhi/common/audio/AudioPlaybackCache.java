@@ -0,0 +1,232 @@
+package xiaozhi.common.audio;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transcoded audio clips kept as files on local disk, evicted least recently played first once
+ * their total size exceeds the limit.
+ * <p>
+ * A clip is stored under a hash of its source key and the transcoder id, with an extension
+ * naming its format, so the index is rebuilt from the directory after a restart. Source keys
+ * must change, or {@link #evict(String)} must be called, when the stored audio behind them
+ * changes.
+ */
+@Slf4j
+public class AudioPlaybackCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * A cached clip ready to be served.
+     */
+    public record Clip(Path file, AudioFormat format, long length, String etag) {
+    }
+
+    private record Entry(Path file, AudioFormat format, long length) {
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AudioTranscoder transcoder;
+    /**
+     * Clips by file name, in access order
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Object> inFlight = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    public AudioPlaybackCache(Path directory, long maxBytes, AudioTranscoder transcoder) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.transcoder = transcoder;
+        load();
+    }
+
+    /**
+     * The playback clip for a source key, transcoded from the loader's bytes on a miss.
+     * Concurrent misses for one key transcode once. Returns null when the loader has no audio.
+     */
+    public Clip get(String sourceKey, Supplier<byte[]> loader) throws IOException {
+        String name = name(sourceKey);
+        Clip clip = lookup(name);
+        if (clip != null) {
+            return clip;
+        }
+        Object lock = inFlight.computeIfAbsent(name, k -> new Object());
+        try {
+            synchronized (lock) {
+                clip = lookup(name);
+                if (clip != null) {
+                    return clip;
+                }
+                byte[] source = loader.get();
+                if (source == null || source.length == 0) {
+                    return null;
+                }
+                return store(name, source);
+            }
+        } finally {
+            inFlight.remove(name, lock);
+        }
+    }
+
+    /**
+     * Drop the clip of a source key, for audio that has been replaced.
+     */
+    public void evict(String sourceKey) {
+        String name = name(sourceKey);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(name);
+            if (entry != null) {
+                totalBytes -= entry.length();
+            }
+        }
+        if (entry != null) {
+            delete(entry.file());
+        }
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public String transcoderId() {
+        return transcoder.id();
+    }
+
+    private Clip lookup(String name) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(name);
+        }
+        if (entry == null) {
+            return null;
+        }
+        try {
+            // The modification time carries the recency order across restarts
+            Files.setLastModifiedTime(entry.file(), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Removed behind our back: forget it and transcode again
+            synchronized (this) {
+                if (entries.remove(name, entry)) {
+                    totalBytes -= entry.length();
+                }
+            }
+            return null;
+        }
+        return clip(name, entry);
+    }
+
+    private Clip store(String name, byte[] source) throws IOException {
+        AudioFormat format = transcoder.outputFormat(source);
+        Path temp = Files.createTempFile(directory, name, TEMP_SUFFIX);
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                transcoder.transcode(source, out);
+            }
+            Path file = directory.resolve(name + "." + format.getExtension());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Entry entry = new Entry(file, format, Files.size(file));
+            add(name, entry);
+            log.debug("Cached {} clip {}: {} bytes from {}", transcoder.id(), name, entry.length(), source.length);
+            return clip(name, entry);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void add(String name, Entry entry) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(name, entry);
+            if (previous != null) {
+                totalBytes -= previous.length();
+            }
+            totalBytes += entry.length();
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            // Always keep the clip just added, even when it alone exceeds the limit
+            while (totalBytes > maxBytes && entries.size() > 1 && eldest.hasNext()) {
+                Entry victim = eldest.next().getValue();
+                eldest.remove();
+                totalBytes -= victim.length();
+                evicted.add(victim.file());
+            }
+        }
+        evicted.forEach(AudioPlaybackCache::delete);
+    }
+
+    /**
+     * Index the clips left by a previous run, oldest first, and drop unfinished ones.
+     */
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    delete(file);
+                } else if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(AudioPlaybackCache::lastModified));
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            int dot = fileName.lastIndexOf('.');
+            if (dot <= 0) {
+                continue;
+            }
+            AudioFormat format = AudioFormat.ofExtension(fileName.substring(dot + 1));
+            add(fileName.substring(0, dot), new Entry(file, format, Files.size(file)));
+        }
+        log.info("Audio playback cache at {}: {} clips, {} bytes", directory, size(), totalBytes());
+    }
+
+    private Clip clip(String name, Entry entry) {
+        return new Clip(entry.file(), entry.format(), entry.length(), "\"" + name.substring(0, 32) + "\"");
+    }
+
+    private String name(String sourceKey) {
+        return SecureUtil.sha256(transcoder.id() + "\n" + sourceKey);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete cached clip {}", file, e);
+        }
+    }
+}
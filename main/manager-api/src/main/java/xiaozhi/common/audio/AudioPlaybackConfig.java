@@ -0,0 +1,39 @@
+package xiaozhi.common.audio;
+
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import xiaozhi.common.redis.RedisUtils;
+
+/**
+ * Audio playback configuration: the transcoder chosen by {@code audio.playback.transcoder},
+ * unless another {@link AudioTranscoder} bean is defined, and its disk cache
+ */
+@Configuration
+@EnableConfigurationProperties(AudioPlaybackProperties.class)
+public class AudioPlaybackConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AudioTranscoder audioTranscoder(AudioPlaybackProperties properties) {
+        return switch (properties.getTranscoder()) {
+            case "passthrough" -> new PassthroughAudioTranscoder();
+            case "ffmpeg" -> new FfmpegAudioTranscoder(properties.getFfmpegPath(), properties.getBitrate(),
+                    properties.getTranscodeTimeout().toMillis());
+            default -> throw new IllegalStateException(
+                    "Unknown audio.playback.transcoder: " + properties.getTranscoder());
+        };
+    }
+
+    @Bean
+    public AudioPlayback audioPlayback(AudioPlaybackProperties properties, AudioTranscoder audioTranscoder,
+            RedisUtils redisUtils) throws IOException {
+        AudioPlaybackCache cache = new AudioPlaybackCache(properties.getCacheDir(),
+                properties.getCacheMaxSize().toBytes(), audioTranscoder);
+        return new AudioPlayback(cache, redisUtils, properties.getPlayLinkWindow().toSeconds());
+    }
+}
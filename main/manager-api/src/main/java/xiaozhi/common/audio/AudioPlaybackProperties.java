@@ -0,0 +1,45 @@
+package xiaozhi.common.audio;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+/**
+ * Playback of stored audio clips: transcoding and the local disk cache
+ */
+@Data
+@ConfigurationProperties(prefix = "audio.playback")
+public class AudioPlaybackProperties {
+    /**
+     * Transcoder for served clips: passthrough or ffmpeg
+     */
+    private String transcoder = "passthrough";
+    /**
+     * ffmpeg executable used by the ffmpeg transcoder
+     */
+    private String ffmpegPath = "ffmpeg";
+    /**
+     * Opus bitrate used by the ffmpeg transcoder
+     */
+    private String bitrate = "24k";
+    /**
+     * Longest a single transcode may run
+     */
+    private Duration transcodeTimeout = Duration.ofSeconds(30);
+    /**
+     * Directory holding transcoded clips
+     */
+    private Path cacheDir = Path.of(System.getProperty("java.io.tmpdir"), "xiaozhi-audio-cache");
+    /**
+     * Total size of cached clips; the least recently played are removed beyond it
+     */
+    private DataSize cacheMaxSize = DataSize.ofMegabytes(256);
+    /**
+     * How long a play link keeps working after its first use, so players can issue range requests
+     */
+    private Duration playLinkWindow = Duration.ofMinutes(10);
+}
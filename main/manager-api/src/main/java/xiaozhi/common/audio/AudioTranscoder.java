@@ -0,0 +1,29 @@
+package xiaozhi.common.audio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Converts stored audio clips into the format served for playback.
+ * <p>
+ * Implementations must be deterministic for a given input, since their output is cached on
+ * disk under the clip's key and {@link #id()}.
+ */
+public interface AudioTranscoder {
+
+    /**
+     * Identifies the transcoder and its settings in cache keys, so a configuration change
+     * never serves output of the previous one.
+     */
+    String id();
+
+    /**
+     * The format {@link #transcode} produces for this clip.
+     */
+    AudioFormat outputFormat(byte[] source);
+
+    /**
+     * Write the playback form of a clip.
+     */
+    void transcode(byte[] source, OutputStream target) throws IOException;
+}
@@ -0,0 +1,25 @@
+package xiaozhi.common.audio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serves clips as they are stored, labelled with the format found in their header.
+ */
+public class PassthroughAudioTranscoder implements AudioTranscoder {
+
+    @Override
+    public String id() {
+        return "passthrough";
+    }
+
+    @Override
+    public AudioFormat outputFormat(byte[] source) {
+        return AudioFormat.detect(source);
+    }
+
+    @Override
+    public void transcode(byte[] source, OutputStream target) throws IOException {
+        target.write(source);
+    }
+}
@@ -106,6 +106,11 @@ public interface Constant {
      */
     String SERVER_MQTT_GATEWAY = "server.mqtt_gateway";
 
+    /**
+     * mqtt gateway 管理接口地址
+     */
+    String SERVER_MQTT_MANAGER_API = "server.mqtt_manager_api";
+
     /**
      * ota地址
      */
@@ -151,6 +156,16 @@ public interface Constant {
      */
     String SYSTEM_WEB_MENU = "system-web.menu";
 
+    /**
+     * 下发给设备的记忆token上限
+     */
+    String MEMORY_TOKEN_BUDGET = "memory.token_budget";
+
+    /**
+     * 未设置保留策略的智能体聊天记录保留天数，0为永久保留
+     */
+    String CHAT_RETENTION_DEFAULT_MAX_AGE_DAYS = "chat.retention.default_max_age_days";
+
     /**
      * 无记忆
      */
@@ -260,4 +260,29 @@ public interface ErrorCode {
     // 替换词相关错误码
     int CORRECT_WORD_FILE_NAME_EXISTS = 10203; // 文件名已存在
     int FILE_SIZE_OVER_LIMIT = 10204; // 文件大小超过限制
+
+    // 设备批量导入相关错误码
+    int DEVICE_IMPORT_EMPTY = 10205; // 导入内容为空
+    int DEVICE_IMPORT_TOO_MANY = 10206; // 单次导入设备数量超过上限
+
+    // 聊天总结任务相关错误码
+    int CHAT_SUMMARY_QUEUE_FULL = 10207; // 总结任务队列已满
+
+    // 登录防护相关错误码
+    int CRYPTO_BUSY = 10208; // 服务繁忙，请稍后再试
+    int LOGIN_TOO_FREQUENT = 10209; // 尝试过于频繁，请稍后再试
+
+    // 聊天记录搜索相关错误码
+    int CHAT_SEARCH_DISABLED = 10210; // 聊天记录搜索未启用
+    int CHAT_SEARCH_FAILED = 10217; // 聊天记录搜索失败
+
+    // 用量统计相关错误码
+    int USAGE_RANGE_INVALID = 10211; // 用量统计日期范围无效
+
+    // 设备批量导入行结果
+    int DEVICE_IMPORT_MAC_EMPTY = 10212; // MAC地址为空
+    int DEVICE_IMPORT_AGENT_EMPTY = 10213; // 智能体ID为空
+    int DEVICE_IMPORT_MAC_REPEATED = 10214; // MAC地址在导入内容中重复
+    int DEVICE_IMPORT_MAC_EXISTS = 10215; // MAC地址已存在
+    int DEVICE_IMPORT_FAILED = 10216; // 设备保存失败
 }
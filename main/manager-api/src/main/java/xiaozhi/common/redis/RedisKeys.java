@@ -62,6 +62,34 @@ public class RedisKeys {
         return "agent:device:count:" + id;
     }
 
+    /**
+     * Get agent configuration version key
+     */
+    public static String getAgentConfigVersionKey(String id) {
+        return "agent:config:version:" + id;
+    }
+
+    /**
+     * Get agent configuration cache key for a configuration version
+     */
+    public static String getAgentConfigKey(String id, Object version) {
+        return "agent:config:" + id + ":" + version;
+    }
+
+    /**
+     * Get agent correct-word dictionary generation key
+     */
+    public static String getCorrectWordDictGenerationKey(String agentId) {
+        return "correctword:dict:generation:" + agentId;
+    }
+
+    /**
+     * Get agent correct-word dictionary cache key for a generation
+     */
+    public static String getCorrectWordDictKey(String agentId, Object generation) {
+        return "correctword:dict:" + agentId + ":" + generation;
+    }
+
     /**
      * Get agent last connection time cache key
      */
@@ -189,10 +217,31 @@ public class RedisKeys {
     }
 
     /**
-     * 设备通讯录缓存Key
+     * 旧版全量设备通讯录缓存Key，已不再写入，启动时清理
      */
     public static String getAddressBookKey() {
         return "device:address_book:all";
     }
 
+    /**
+     * 设备通讯录代数Key，设备的通讯录每次变更后递增
+     */
+    public static String getAddressBookGenerationKey(String macAddress) {
+        return "device:address_book:generation:" + macAddress;
+    }
+
+    /**
+     * Lock held by the instance running chat history retention.
+     */
+    public static String getChatRetentionLockKey() {
+        return "agent:chat:retention:lock";
+    }
+
+    /**
+     * Marks a chat session as counted in the usage rollup of a day.
+     */
+    public static String getUsageSessionKey(String day, String agentId, String sessionId) {
+        return "agent:usage:session:" + day + ":" + agentId + ":" + sessionId;
+    }
+
 }
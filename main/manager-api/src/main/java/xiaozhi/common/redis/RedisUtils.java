@@ -74,6 +74,15 @@ public class RedisUtils {
         set(key, value, DEFAULT_EXPIRE);
     }
 
+    /**
+     * Set the value only when the key does not exist yet, unit of expire: seconds
+     *
+     * @return whether the value was set
+     */
+    public boolean setIfAbsent(String key, Object value, long expire) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, expire, TimeUnit.SECONDS));
+    }
+
     public Object get(String key, long expire) {
         Object value = redisTemplate.opsForValue().get(key);
         if (expire != NOT_EXPIRE) {
@@ -94,6 +103,21 @@ public class RedisUtils {
         redisTemplate.delete(keys);
     }
 
+    /**
+     * Delete the key only while it still holds the given value, e.g. to release a lock taken
+     * with {@link #setIfAbsent} without removing one that has since expired and been taken by
+     * someone else
+     *
+     * @return whether the key was deleted
+     */
+    public boolean deleteIfEquals(String key, Object value) {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptText(resourceUtils.loadString("lua/deleteIfEquals.lua"));
+        redisScript.setResultType(Long.class);
+        Long deleted = redisTemplate.execute(redisScript, Collections.singletonList(key), value);
+        return deleted != null && deleted > 0;
+    }
+
     public Object hGet(String key, String field) {
         return redisTemplate.opsForHash().get(key, field);
     }
@@ -131,6 +155,13 @@ public class RedisUtils {
         redisTemplate.expire(key, expire, TimeUnit.SECONDS);
     }
 
+    /**
+     * Remaining time to live in seconds, -1 without expiration and -2 for a missing key
+     */
+    public Long getExpire(String key) {
+        return redisTemplate.getExpire(key, TimeUnit.SECONDS);
+    }
+
     public void hDel(String key, Object... fields) {
         redisTemplate.opsForHash().delete(key, fields);
     }
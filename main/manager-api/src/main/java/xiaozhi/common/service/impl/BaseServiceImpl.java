@@ -3,9 +3,12 @@ package xiaozhi.common.service.impl;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.apache.ibatis.binding.MapperMethod;
 import org.apache.ibatis.logging.Log;
@@ -15,6 +18,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.enums.SqlMethod;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
@@ -37,6 +41,11 @@ import xiaozhi.common.utils.ConvertUtils;
  * Website: https://www.renren.io
  */
 public abstract class BaseServiceImpl<M extends BaseMapper<T>, T> implements BaseService<T> {
+    /**
+     * Keys per IN list in the grouped loaders; an admin page fits in one query.
+     */
+    private static final int GROUPED_QUERY_CHUNK = 1000;
+
     @Autowired
     protected M baseDao;
     protected Log log = LogFactory.getLog(getClass());
@@ -127,6 +136,102 @@ public abstract class BaseServiceImpl<M extends BaseMapper<T>, T> implements Bas
         }
     }
 
+    /**
+     * Count rows per key with one grouped query, for example devices per user on a page of
+     * users. Keys without rows are absent from the result. Keys are matched by their string
+     * form, so the column's JDBC type does not have to match the key type.
+     *
+     * @param column key column of this service's table
+     * @param keys   keys to count; nulls and duplicates are ignored
+     */
+    protected <K> Map<K, Long> countGroupedBy(String column, Collection<K> keys) {
+        Map<String, K> wanted = keysByString(keys);
+        Map<K, Long> counts = new HashMap<>(wanted.size() * 2);
+        if (wanted.isEmpty()) {
+            return counts;
+        }
+        for (List<K> chunk : chunks(wanted.values())) {
+            List<Map<String, Object>> rows = baseDao.selectMaps(new QueryWrapper<T>()
+                    .select(column, "COUNT(*) AS group_count")
+                    .in(column, chunk)
+                    .groupBy(column));
+            for (Map<String, Object> row : rows) {
+                K key = wanted.get(String.valueOf(columnValue(row, column)));
+                Object count = columnValue(row, "group_count");
+                if (key != null && count instanceof Number number) {
+                    counts.put(key, number.longValue());
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Load the entities for a set of keys with one IN query and index them by key, for
+     * example the users behind a page of devices.
+     *
+     * @param column  key column of this service's table
+     * @param keys    keys to load; nulls and duplicates are ignored
+     * @param keyOf   reads the key back from a loaded entity
+     * @param columns columns to select, all when empty; must include the key column
+     */
+    protected <K> Map<K, T> selectGroupedBy(String column, Collection<K> keys, Function<T, K> keyOf,
+            String... columns) {
+        Map<String, K> wanted = keysByString(keys);
+        Map<K, T> entities = new HashMap<>(wanted.size() * 2);
+        if (wanted.isEmpty()) {
+            return entities;
+        }
+        for (List<K> chunk : chunks(wanted.values())) {
+            QueryWrapper<T> wrapper = new QueryWrapper<T>().in(column, chunk);
+            if (columns.length > 0) {
+                wrapper.select(columns);
+            }
+            for (T entity : baseDao.selectList(wrapper)) {
+                entities.put(keyOf.apply(entity), entity);
+            }
+        }
+        return entities;
+    }
+
+    private static <K> Map<String, K> keysByString(Collection<K> keys) {
+        Map<String, K> wanted = new LinkedHashMap<>();
+        if (keys != null) {
+            for (K key : keys) {
+                if (key != null) {
+                    wanted.putIfAbsent(key.toString(), key);
+                }
+            }
+        }
+        return wanted;
+    }
+
+    private static <K> List<List<K>> chunks(Collection<K> keys) {
+        List<K> all = new ArrayList<>(keys);
+        List<List<K>> chunks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += GROUPED_QUERY_CHUNK) {
+            chunks.add(all.subList(from, Math.min(all.size(), from + GROUPED_QUERY_CHUNK)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Column labels come back in the database's case (upper case on H2), so fall back to a
+     * case-insensitive match.
+     */
+    private static Object columnValue(Map<String, Object> row, String column) {
+        Object value = row.get(column);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(column)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
     /**
      * <p>
      * Determine if database operation is successful
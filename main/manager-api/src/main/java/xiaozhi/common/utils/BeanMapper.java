@@ -0,0 +1,139 @@
+package xiaozhi.common.utils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Property copier for one source/target class pair, built once and reused.
+ * <p>
+ * Copies the same properties as {@link BeanUtils#copyProperties(Object, Object)}: every
+ * target setter with a source getter of the same name and an assignable type, nulls
+ * included. The property matching and type checks run once, when the mapper is built; each
+ * copy afterwards is a fixed list of method-handle calls, and the target is created through
+ * a cached constructor handle instead of reflection.
+ * <p>
+ * Keep mappers in static fields, or obtain them through {@link #of(Class, Class)}, which
+ * caches them per class pair.
+ */
+public final class BeanMapper<S, T> {
+
+    private static final Map<Class<?>, Map<Class<?>, BeanMapper<?, ?>>> MAPPERS = new ConcurrentHashMap<>();
+    private static final MethodType NEW_INSTANCE = MethodType.methodType(Object.class);
+    private static final MethodType COPY = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<T> target;
+    private final MethodHandle constructor;
+    private final MethodHandle[] properties;
+
+    private BeanMapper(Class<S> source, Class<T> target) {
+        this.target = target;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            this.constructor = lookup.unreflectConstructor(ReflectionUtils.accessibleConstructor(target))
+                    .asType(NEW_INSTANCE);
+            List<MethodHandle> copies = new ArrayList<>();
+            for (PropertyDescriptor targetProperty : BeanUtils.getPropertyDescriptors(target)) {
+                Method writeMethod = targetProperty.getWriteMethod();
+                if (writeMethod == null) {
+                    continue;
+                }
+                PropertyDescriptor sourceProperty = BeanUtils.getPropertyDescriptor(source, targetProperty.getName());
+                Method readMethod = sourceProperty == null ? null : sourceProperty.getReadMethod();
+                if (readMethod == null || !isAssignable(readMethod, writeMethod)) {
+                    continue;
+                }
+                readMethod.trySetAccessible();
+                writeMethod.trySetAccessible();
+                // (target, source) -> target.setX(source.getX())
+                MethodHandle setter = lookup.unreflect(writeMethod);
+                MethodHandle getter = lookup.unreflect(readMethod)
+                        .asType(MethodType.methodType(writeMethod.getParameterTypes()[0], Object.class));
+                copies.add(MethodHandles.filterArguments(setter, 1, getter).asType(COPY));
+            }
+            this.properties = copies.toArray(new MethodHandle[0]);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(
+                    "Cannot map " + source.getName() + " to " + target.getName(), e);
+        }
+    }
+
+    /**
+     * The mapper for a class pair, built on first use.
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, T> BeanMapper<S, T> of(Class<S> source, Class<T> target) {
+        return (BeanMapper<S, T>) MAPPERS.computeIfAbsent(source, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(target, k -> new BeanMapper<>(source, target));
+    }
+
+    /**
+     * A new target filled from the source, or null for a null source.
+     */
+    public T map(S source) {
+        if (source == null) {
+            return null;
+        }
+        T result;
+        try {
+            result = target.cast(constructor.invokeExact());
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create " + target.getName(), e);
+        }
+        copy(source, result);
+        return result;
+    }
+
+    /**
+     * One target per source, in order; null for a null list.
+     */
+    public List<T> mapList(Collection<? extends S> sources) {
+        if (sources == null) {
+            return null;
+        }
+        List<T> results = new ArrayList<>(sources.size());
+        for (S source : sources) {
+            results.add(map(source));
+        }
+        return results;
+    }
+
+    /**
+     * Copy the matching properties of the source onto an existing target.
+     */
+    public void copy(S source, T destination) {
+        try {
+            for (MethodHandle property : properties) {
+                property.invokeExact((Object) destination, (Object) source);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot copy to " + target.getName(), e);
+        }
+    }
+
+    /**
+     * The check {@link BeanUtils#copyProperties(Object, Object)} applies, generics included.
+     */
+    private static boolean isAssignable(Method readMethod, Method writeMethod) {
+        ResolvableType sourceType = ResolvableType.forMethodReturnType(readMethod);
+        ResolvableType targetType = ResolvableType.forMethodParameter(writeMethod, 0);
+        if (sourceType.hasUnresolvableGenerics() || targetType.hasUnresolvableGenerics()) {
+            return ClassUtils.isAssignable(writeMethod.getParameterTypes()[0], readMethod.getReturnType());
+        }
+        return targetType.isAssignableFrom(sourceType);
+    }
+}
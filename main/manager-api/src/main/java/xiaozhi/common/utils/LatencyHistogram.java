@@ -0,0 +1,100 @@
+package xiaozhi.common.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed millisecond buckets.
+ * <p>
+ * Recording is a couple of {@link LongAdder} increments, so it can sit on hot paths.
+ * Percentiles are estimated from the buckets and reported as the upper bound of the
+ * bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bucket upper bounds in milliseconds; the last bucket is open-ended.
+     */
+    private static final long[] BOUNDS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Point-in-time view of the histogram.
+     *
+     * @param count     recorded samples, failed ones included
+     * @param failures  samples recorded as failed
+     * @param buckets   samples per bucket, keyed by "le_&lt;ms&gt;" and "gt_&lt;ms&gt;" for the open bucket
+     */
+    public record Snapshot(long count, long failures, long averageMillis, long p50Millis, long p95Millis,
+            long p99Millis, long maxMillis, Map<String, Long> buckets) {
+    }
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record one sample measured from {@code startNanos} ({@link System#nanoTime()}) until now.
+     */
+    public void recordSince(long startNanos, boolean failed) {
+        record((System.nanoTime() - startNanos) / 1_000_000, failed);
+    }
+
+    public void record(long millis, boolean failed) {
+        buckets[bucketOf(millis)].increment();
+        count.increment();
+        totalMillis.add(millis);
+        maxMillis.accumulate(millis);
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        Map<String, Long> named = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+            named.put(i < BOUNDS.length ? "le_" + BOUNDS[i] : "gt_" + BOUNDS[BOUNDS.length - 1], counts[i]);
+        }
+        long max = maxMillis.get();
+        return new Snapshot(total, failures.sum(), total == 0 ? 0 : totalMillis.sum() / total,
+                percentile(counts, total, 0.50, max), percentile(counts, total, 0.95, max),
+                percentile(counts, total, 0.99, max), max, named);
+    }
+
+    private static int bucketOf(long millis) {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (millis <= BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS.length;
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], max) : max;
+            }
+        }
+        return max;
+    }
+}
@@ -34,6 +34,13 @@ public class SM2Utils {
      */
     public static final String KEY_PRIVATE_KEY = "privateKey";
 
+    /**
+     * SM2 curve and domain parameters, built once.
+     */
+    private static final X9ECParameters SM2_EC_PARAMETERS = GMNamedCurves.getByName("sm2p256v1");
+    private static final ECDomainParameters DOMAIN_PARAMETERS = new ECDomainParameters(
+            SM2_EC_PARAMETERS.getCurve(), SM2_EC_PARAMETERS.getG(), SM2_EC_PARAMETERS.getN());
+
     static {
         Security.addProvider(new BouncyCastleProvider());
     }
@@ -47,14 +54,10 @@ public class SM2Utils {
      */
     public static String encrypt(String publicKey, String data) {
         try {
-            // Load SM2 curve parameters.
-            X9ECParameters sm2ECParameters = GMNamedCurves.getByName("sm2p256v1");
-            // Build ECC domain parameters.
-            ECDomainParameters domainParameters = new ECDomainParameters(sm2ECParameters.getCurve(), sm2ECParameters.getG(), sm2ECParameters.getN());
             // Extract the public-key point.
-            ECPoint pukPoint = sm2ECParameters.getCurve().decodePoint(Hex.decode(publicKey));
+            ECPoint pukPoint = SM2_EC_PARAMETERS.getCurve().decodePoint(Hex.decode(publicKey));
             // 02 or 03 indicates a compressed key, while 04 indicates an uncompressed key.
-            ECPublicKeyParameters publicKeyParameters = new ECPublicKeyParameters(pukPoint, domainParameters);
+            ECPublicKeyParameters publicKeyParameters = new ECPublicKeyParameters(pukPoint, DOMAIN_PARAMETERS);
 
             SM2Engine sm2Engine = new SM2Engine(SM2Engine.Mode.C1C3C2);
             // Initialize SM2 in encryption mode.
@@ -76,22 +79,37 @@ public class SM2Utils {
      * @return plaintext
      */
     public static String decrypt(String privateKey, String cipherData) {
+        return decrypt(privateKeyParameters(privateKey), cipherData);
+    }
+
+    /**
+     * Parse a hexadecimal private key once so it can be reused across decryptions.
+     *
+     * @param privateKey hexadecimal private key
+     * @return private-key parameters on the SM2 curve
+     */
+    public static ECPrivateKeyParameters privateKeyParameters(String privateKey) {
+        return new ECPrivateKeyParameters(new BigInteger(privateKey, 16), DOMAIN_PARAMETERS);
+    }
+
+    /**
+     * Decrypt ciphertext with already parsed SM2 key parameters.
+     *
+     * @param privateKey private-key parameters from {@link #privateKeyParameters(String)}
+     * @param cipherData hexadecimal ciphertext
+     * @return plaintext
+     */
+    public static String decrypt(ECPrivateKeyParameters privateKey, String cipherData) {
         try {
             // Bouncy Castle expects ciphertext to start with 04, so prepend it when needed.
             if (!cipherData.startsWith("04")) {
                 cipherData = "04" + cipherData;
             }
             byte[] cipherDataByte = Hex.decode(cipherData);
-            BigInteger privateKeyD = new BigInteger(privateKey, 16);
-            // Load SM2 curve parameters.
-            X9ECParameters sm2ECParameters = GMNamedCurves.getByName("sm2p256v1");
-            // Build domain parameters.
-            ECDomainParameters domainParameters = new ECDomainParameters(sm2ECParameters.getCurve(), sm2ECParameters.getG(), sm2ECParameters.getN());
-            ECPrivateKeyParameters privateKeyParameters = new ECPrivateKeyParameters(privateKeyD, domainParameters);
 
             SM2Engine sm2Engine = new SM2Engine(SM2Engine.Mode.C1C3C2);
             // Initialize SM2 in decryption mode.
-            sm2Engine.init(false, privateKeyParameters);
+            sm2Engine.init(false, privateKey);
 
             byte[] arrayOfBytes = sm2Engine.processBlock(cipherDataByte, 0, cipherDataByte.length);
             return new String(arrayOfBytes, StandardCharsets.UTF_8);
@@ -1,9 +1,12 @@
 package xiaozhi.common.utils;
 
 import org.apache.commons.lang3.StringUtils;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
+import xiaozhi.modules.security.guard.CryptoExecutor;
 import xiaozhi.modules.security.service.CaptchaService;
 import xiaozhi.modules.sys.service.SysParamsService;
 
@@ -18,29 +21,50 @@ public class Sm2DecryptUtil {
      */
     private static final int CAPTCHA_LENGTH = 5;
 
+    /**
+     * How long the parsed private key is used before sys params are checked for a new one.
+     */
+    private static final long KEY_TTL_MILLIS = 5 * 60_000;
+
+    private static volatile CachedKey cachedKey;
+
+    private record CachedKey(String hex, ECPrivateKeyParameters parameters, long loadedAt) {
+    }
+
     /**
      * Decrypt SM2-encrypted content, extract the captcha, and validate it.
+     * <p>
+     * The private key is parsed once and reused. When decryption fails the key is read
+     * again, so a rotated key pair is picked up on the first request that uses it.
      *
      * @param encryptedPassword SM2-encrypted password string
      * @param captchaId         captcha ID
      * @param captchaService    captcha service
      * @param sysParamsService  system-parameter service
+     * @param cryptoExecutor    bounded pool the decryption runs on
      * @return decrypted actual password
      */
     public static String decryptAndValidateCaptcha(String encryptedPassword, String captchaId,
-            CaptchaService captchaService, SysParamsService sysParamsService) {
-        // Load the SM2 private key.
-        String privateKeyStr = sysParamsService.getValue(Constant.SM2_PRIVATE_KEY, true);
-        if (StringUtils.isBlank(privateKeyStr)) {
-            throw new RenException(ErrorCode.SM2_KEY_NOT_CONFIGURED);
-        }
-
+            CaptchaService captchaService, SysParamsService sysParamsService, CryptoExecutor cryptoExecutor) {
         // Decrypt the password with the SM2 private key.
         String decryptedContent;
+        CachedKey key = currentKey(sysParamsService, false);
         try {
-            decryptedContent = SM2Utils.decrypt(privateKeyStr, encryptedPassword);
+            decryptedContent = decrypt(key, encryptedPassword, cryptoExecutor);
+        } catch (RenException e) {
+            throw e;
         } catch (Exception e) {
-            throw new RenException(ErrorCode.SM2_DECRYPT_ERROR);
+            CachedKey reloaded = currentKey(sysParamsService, true);
+            if (reloaded.hex().equals(key.hex())) {
+                throw new RenException(ErrorCode.SM2_DECRYPT_ERROR);
+            }
+            try {
+                decryptedContent = decrypt(reloaded, encryptedPassword, cryptoExecutor);
+            } catch (RenException retryError) {
+                throw retryError;
+            } catch (Exception retryError) {
+                throw new RenException(ErrorCode.SM2_DECRYPT_ERROR);
+            }
         }
 
         // Split captcha and password: the first 5 characters are the captcha and the rest is the password.
@@ -60,4 +84,35 @@ public class Sm2DecryptUtil {
             throw new RenException(ErrorCode.SM2_DECRYPT_ERROR);
         }
     }
+
+    private static String decrypt(CachedKey key, String encryptedPassword, CryptoExecutor cryptoExecutor) {
+        return cryptoExecutor.call(() -> SM2Utils.decrypt(key.parameters(), encryptedPassword));
+    }
+
+    /**
+     * The parsed private key, read from sys params when missing, expired or when reload is set.
+     * The key is only parsed again when its value actually changed.
+     */
+    private static CachedKey currentKey(SysParamsService sysParamsService, boolean reload) {
+        CachedKey key = cachedKey;
+        long now = System.currentTimeMillis();
+        if (!reload && key != null && now - key.loadedAt() < KEY_TTL_MILLIS) {
+            return key;
+        }
+        String privateKeyStr = sysParamsService.getValue(Constant.SM2_PRIVATE_KEY, true);
+        if (StringUtils.isBlank(privateKeyStr)) {
+            throw new RenException(ErrorCode.SM2_KEY_NOT_CONFIGURED);
+        }
+        if (key != null && key.hex().equals(privateKeyStr)) {
+            key = new CachedKey(privateKeyStr, key.parameters(), now);
+        } else {
+            try {
+                key = new CachedKey(privateKeyStr, SM2Utils.privateKeyParameters(privateKeyStr), now);
+            } catch (NumberFormatException e) {
+                throw new RenException(ErrorCode.SM2_KEY_NOT_CONFIGURED);
+            }
+        }
+        cachedKey = key;
+        return key;
+    }
 }
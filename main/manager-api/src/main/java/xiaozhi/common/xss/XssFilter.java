@@ -43,7 +43,21 @@ public class XssFilter implements Filter {
             return;
         }
 
-        chain.doFilter(new XssHttpServletRequestWrapper(httpServletRequest), response);
+        chain.doFilter(new XssHttpServletRequestWrapper(httpServletRequest, !isLargeBody(httpServletRequest)),
+                response);
+    }
+
+    /**
+     * Bodies on large-body routes above the threshold, or of unknown length, are passed
+     * through; parameters and headers are still filtered.
+     */
+    private boolean isLargeBody(HttpServletRequest request) {
+        long length = request.getContentLengthLong();
+        if (length >= 0 && length <= properties.getLargeBodyThreshold().toBytes()) {
+            return false;
+        }
+        return properties.getLargeBodyUrls().stream()
+                .anyMatch(url -> pathMatcher.match(url, request.getServletPath()));
     }
 
     private boolean shouldNotFilter(HttpServletRequest request) {
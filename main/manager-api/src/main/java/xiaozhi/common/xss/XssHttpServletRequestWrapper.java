@@ -1,17 +1,14 @@
 package xiaozhi.common.xss;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 
-import cn.hutool.core.io.IoUtil;
-import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletRequestWrapper;
@@ -23,47 +20,40 @@ import jakarta.servlet.http.HttpServletRequestWrapper;
  */
 public class XssHttpServletRequestWrapper extends HttpServletRequestWrapper {
 
+    private final boolean filterBody;
+
     public XssHttpServletRequestWrapper(HttpServletRequest request) {
+        this(request, true);
+    }
+
+    /**
+     * @param filterBody false to pass the JSON body through untouched (large-body routes)
+     */
+    public XssHttpServletRequestWrapper(HttpServletRequest request, boolean filterBody) {
         super(request);
+        this.filterBody = filterBody;
     }
 
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        // Non-json type, return directly
-        if (!MediaType.APPLICATION_JSON_VALUE.equalsIgnoreCase(super.getHeader(HttpHeaders.CONTENT_TYPE))) {
-            return super.getInputStream();
-        }
-
-        // If empty, return directly
-        String json = IoUtil.readUtf8(super.getInputStream());
-        if (StringUtils.isBlank(json)) {
+        // Non-json type or exempted body, return directly
+        if (!filterBody || !isJson(super.getHeader(HttpHeaders.CONTENT_TYPE))) {
             return super.getInputStream();
         }
 
-        // XSS filtering
-        json = xssEncode(json);
-        final ByteArrayInputStream bis = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
-        return new ServletInputStream() {
-            @Override
-            public boolean isFinished() {
-                return true;
-            }
-
-            @Override
-            public boolean isReady() {
-                return true;
-            }
-
-            @Override
-            public void setReadListener(ReadListener readListener) {
-
-            }
+        // XSS filtering while the body is read
+        return new XssJsonInputStream(super.getInputStream());
+    }
 
-            @Override
-            public int read() {
-                return bis.read();
-            }
-        };
+    private static boolean isJson(String contentType) {
+        if (StringUtils.isBlank(contentType)) {
+            return false;
+        }
+        try {
+            return MediaType.APPLICATION_JSON.equalsTypeAndSubtype(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
     }
 
     @Override
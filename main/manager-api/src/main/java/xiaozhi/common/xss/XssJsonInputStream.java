@@ -0,0 +1,168 @@
+package xiaozhi.common.xss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+
+/**
+ * JSON request body that is XSS-filtered token by token while it is read.
+ * <p>
+ * The source is parsed with a streaming parser and written back through a generator into a
+ * small window that the caller drains, so the body is never held as a whole. Field names and
+ * string values that contain markup characters go through {@link XssUtils#filter}; everything
+ * else, including long Base64 strings, is copied from the parser's buffer without creating a
+ * String. A single string value is still held in full while it is copied, which is why very
+ * large bodies are exempted by {@link XssProperties#getLargeBodyUrls()}.
+ */
+public class XssJsonInputStream extends ServletInputStream {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final JsonGenerator generator;
+    private final Window window = new Window();
+    private int position;
+    private boolean exhausted;
+
+    public XssJsonInputStream(InputStream source) throws IOException {
+        this.parser = JSON_FACTORY.createParser(source);
+        this.generator = JSON_FACTORY.createGenerator(window);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return window.bytes()[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, window.size() - position);
+        System.arraycopy(window.bytes(), position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return window.size() - position;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return exhausted && position >= window.size();
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setReadListener(ReadListener readListener) {
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        exhausted = true;
+        parser.close();
+    }
+
+    /**
+     * Make sure unread output is available, translating more tokens when the window is drained.
+     */
+    private boolean fill() throws IOException {
+        while (position >= window.size()) {
+            if (exhausted) {
+                return false;
+            }
+            window.reset();
+            position = 0;
+            translate();
+        }
+        return true;
+    }
+
+    /**
+     * Translate tokens until the generator has pushed output into the window or the input ends.
+     * The generator flushes on its own once its internal buffer fills up.
+     */
+    private void translate() throws IOException {
+        while (window.size() == 0) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                generator.flush();
+                exhausted = true;
+                parser.close();
+                return;
+            }
+            switch (token) {
+                case FIELD_NAME -> {
+                    String name = parser.currentName();
+                    generator.writeFieldName(needsFilter(name) ? XssUtils.filter(name) : name);
+                }
+                case VALUE_STRING -> writeString();
+                default -> generator.copyCurrentEventExact(parser);
+            }
+        }
+    }
+
+    private void writeString() throws IOException {
+        char[] text = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (needsFilter(text, offset, length)) {
+            generator.writeString(XssUtils.filter(new String(text, offset, length)));
+        } else {
+            generator.writeString(text, offset, length);
+        }
+    }
+
+    private static boolean needsFilter(String value) {
+        return needsFilter(value.toCharArray(), 0, value.length());
+    }
+
+    /**
+     * Only text with markup characters can be changed by the filter.
+     */
+    private static boolean needsFilter(char[] text, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = text[i];
+            if (c == '<' || c == '>' || c == '&') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Output window whose backing array can be read in place.
+     */
+    private static final class Window extends ByteArrayOutputStream {
+
+        Window() {
+            super(8192);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
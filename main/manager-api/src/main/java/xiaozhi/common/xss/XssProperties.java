@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import lombok.Data;
 
@@ -23,8 +24,20 @@ public class XssProperties {
      * Excluded URL list
      */
     private List<String> excludeUrls = Collections.emptyList();
+    /**
+     * URLs whose JSON body is not filtered once it exceeds the threshold, such as audio uploads
+     */
+    private List<String> largeBodyUrls = Collections.emptyList();
+    /**
+     * Body size above which large-body URLs skip body filtering
+     */
+    private DataSize largeBodyThreshold = DataSize.ofKilobytes(256);
 
     public List<String> getExcludeUrls() {
-        return excludeUrls;
+        return excludeUrls == null ? Collections.emptyList() : excludeUrls;
+    }
+
+    public List<String> getLargeBodyUrls() {
+        return largeBodyUrls == null ? Collections.emptyList() : largeBodyUrls;
     }
 }
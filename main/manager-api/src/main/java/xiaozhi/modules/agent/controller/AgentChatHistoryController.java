@@ -12,12 +12,17 @@ import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -37,9 +42,14 @@ import xiaozhi.common.utils.Result;
 import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
 import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
 import xiaozhi.modules.agent.dto.AgentChatSessionDTO;
+import xiaozhi.modules.agent.dto.AgentRetentionPolicyDTO;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
+import xiaozhi.modules.agent.service.AgentChatRetentionService;
+import xiaozhi.modules.agent.service.AgentChatSearchService;
 import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.biz.AgentChatHistoryBizService;
+import xiaozhi.modules.agent.vo.AgentChatSearchHitVO;
+import xiaozhi.modules.agent.vo.ChatSearchStatsVO;
 import xiaozhi.modules.security.user.SecurityUser;
 
 @Tag(name = "Agent Chat History Management")
@@ -49,6 +59,8 @@ import xiaozhi.modules.security.user.SecurityUser;
 public class AgentChatHistoryController {
     private final AgentChatHistoryBizService agentChatHistoryBizService;
     private final AgentChatHistoryService agentChatHistoryService;
+    private final AgentChatRetentionService agentChatRetentionService;
+    private final AgentChatSearchService agentChatSearchService;
     private final AgentService agentService;
     private final RedisUtils redisUtils;
 
@@ -66,6 +78,23 @@ public class AgentChatHistoryController {
         return new Result<Boolean>().ok(result);
     }
 
+    /**
+     * XiaoZhi service chat report request, multipart variant
+     * <p>
+     * The metadata travels as form fields and the audio as a raw binary part named {@code audio},
+     * which is streamed into storage instead of being Base64-decoded in memory.
+     *
+     * @param request Report metadata form fields
+     * @param audio   Raw audio part, optional
+     */
+    @Operation(summary = "XiaoZhi service chat report request (multipart)")
+    @PostMapping(value = "/report", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Result<Boolean> reportMultipart(@Valid AgentChatHistoryReportDTO request,
+            @RequestParam(value = "audio", required = false) MultipartFile audio) {
+        Boolean result = agentChatHistoryBizService.report(request, audio);
+        return new Result<Boolean>().ok(result);
+    }
+
     /**
      * Get a download link for chat history.
      *
@@ -190,6 +219,103 @@ public class AgentChatHistoryController {
         }
     }
 
+    /**
+     * Get the chat history retention policy of an agent.
+     *
+     * @param agentId agent ID
+     * @return the agent's own policy, or null when it follows the system default
+     */
+    @Operation(summary = "Get chat-history retention policy")
+    @RequiresPermissions("sys:role:normal")
+    @GetMapping("/retention/{agentId}")
+    public Result<AgentRetentionPolicyDTO> getRetentionPolicy(@PathVariable("agentId") String agentId) {
+        checkPermission(agentId);
+        return new Result<AgentRetentionPolicyDTO>().ok(agentChatRetentionService.getPolicy(agentId));
+    }
+
+    /**
+     * Save the chat history retention policy of an agent.
+     *
+     * @param agentId agent ID
+     * @param dto     policy; empty limits keep everything
+     */
+    @Operation(summary = "Save chat-history retention policy")
+    @RequiresPermissions("sys:role:normal")
+    @PutMapping("/retention/{agentId}")
+    public Result<Void> saveRetentionPolicy(@PathVariable("agentId") String agentId,
+            @Valid @RequestBody AgentRetentionPolicyDTO dto) {
+        checkPermission(agentId);
+        agentChatRetentionService.savePolicy(agentId, dto);
+        return new Result<>();
+    }
+
+    /**
+     * Remove the agent's own retention policy, returning it to the system default.
+     *
+     * @param agentId agent ID
+     */
+    @Operation(summary = "Reset chat-history retention policy")
+    @RequiresPermissions("sys:role:normal")
+    @DeleteMapping("/retention/{agentId}")
+    public Result<Void> deleteRetentionPolicy(@PathVariable("agentId") String agentId) {
+        checkPermission(agentId);
+        agentChatRetentionService.deletePolicy(agentId);
+        return new Result<>();
+    }
+
+    /**
+     * Search the chat history text of an agent.
+     *
+     * @param agentId   agent ID
+     * @param query     words to find; quotes match a phrase and a leading minus excludes
+     * @param startTime inclusive lower bound of the creation time in epoch milliseconds
+     * @param endTime   exclusive upper bound of the creation time in epoch milliseconds
+     * @param limit     hits to return, capped by chat.search.max-results
+     * @return hits, best first, with HTML-escaped snippets highlighting the matches
+     */
+    @Operation(summary = "Search chat history")
+    @RequiresPermissions("sys:role:normal")
+    @GetMapping("/search/{agentId}")
+    public Result<List<AgentChatSearchHitVO>> search(@PathVariable("agentId") String agentId,
+            @RequestParam("query") String query,
+            @RequestParam(value = "startTime", required = false) Long startTime,
+            @RequestParam(value = "endTime", required = false) Long endTime,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        checkPermission(agentId);
+        return new Result<List<AgentChatSearchHitVO>>()
+                .ok(agentChatSearchService.search(agentId, query, startTime, endTime, limit));
+    }
+
+    /**
+     * Rebuild the chat search index of this node from the database, in the background.
+     *
+     * @param agentId agent ID, omitted for every agent
+     * @return false when a rebuild is already running
+     */
+    @Operation(summary = "Rebuild chat history search index")
+    @RequiresPermissions("sys:role:superAdmin")
+    @PostMapping("/search/rebuild")
+    public Result<Boolean> rebuildSearchIndex(@RequestParam(value = "agentId", required = false) String agentId) {
+        return new Result<Boolean>().ok(agentChatSearchService.rebuild(StringUtils.trimToNull(agentId)));
+    }
+
+    /**
+     * Chat search index size, rebuild progress and query latency of this node.
+     */
+    @Operation(summary = "Chat history search statistics")
+    @RequiresPermissions("sys:role:superAdmin")
+    @GetMapping("/search/stats")
+    public Result<ChatSearchStatsVO> getSearchStats() {
+        return new Result<ChatSearchStatsVO>().ok(agentChatSearchService.getStats());
+    }
+
+    private void checkPermission(String agentId) {
+        UserDetail user = SecurityUser.getUser();
+        if (!agentService.checkAgentPermission(agentId, user.getId())) {
+            throw new RenException(ErrorCode.CHAT_HISTORY_NO_PERMISSION);
+        }
+    }
+
     /**
      * Download chat history for the specified sessions.
      *
@@ -6,8 +6,7 @@ import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,6 +26,7 @@ import io.swagger.v3.oas.annotations.Parameters;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import xiaozhi.common.audio.AudioPlayback;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.redis.RedisKeys;
@@ -47,7 +47,8 @@ import xiaozhi.modules.agent.entity.AgentTagEntity;
 import xiaozhi.modules.agent.service.AgentTagService;
 import xiaozhi.modules.agent.service.AgentChatAudioService;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
-import xiaozhi.modules.agent.service.AgentChatSummaryService;
+import xiaozhi.modules.agent.service.AgentChatSummaryJobService;
+import xiaozhi.modules.agent.service.AgentMemoryService;
 import xiaozhi.modules.agent.service.AgentContextProviderService;
 import xiaozhi.modules.agent.service.AgentPluginMappingService;
 import xiaozhi.modules.agent.service.AgentService;
@@ -55,6 +56,7 @@ import xiaozhi.modules.agent.service.AgentTemplateService;
 import xiaozhi.modules.correctword.service.CorrectWordFileService;
 import xiaozhi.modules.agent.vo.AgentChatHistoryUserVO;
 import xiaozhi.modules.agent.vo.AgentInfoVO;
+import xiaozhi.modules.agent.vo.ChatSummaryJobStatsVO;
 import xiaozhi.modules.device.entity.DeviceEntity;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.security.user.SecurityUser;
@@ -71,10 +73,12 @@ public class AgentController {
     private final AgentChatAudioService agentChatAudioService;
     private final AgentPluginMappingService agentPluginMappingService;
     private final AgentContextProviderService agentContextProviderService;
-    private final AgentChatSummaryService agentChatSummaryService;
+    private final AgentChatSummaryJobService agentChatSummaryJobService;
+    private final AgentMemoryService agentMemoryService;
     private final RedisUtils redisUtils;
     private final AgentTagService agentTagService;
     private final CorrectWordFileService correctWordFileService;
+    private final AudioPlayback audioPlayback;
 
     @GetMapping("/list")
     @Operation(summary = "获取用户智能体列表")
@@ -134,31 +138,25 @@ public class AgentController {
     @PostMapping("/chat-summary/{sessionId}/save")
     @Operation(summary = "根据会话ID生成聊天记录总结并保存（异步执行）")
     public Result<Void> generateAndSaveChatSummary(@PathVariable String sessionId) {
-        try {
-            // 异步执行总结生成任务，立即返回成功响应
-            new Thread(() -> {
-                try {
-                    agentChatSummaryService.generateAndSaveChatSummary(sessionId);
-                    System.out.println("异步执行会话 " + sessionId + " 的聊天记录总结完成");
-                } catch (Exception e) {
-                    System.err.println("异步执行会话 " + sessionId + " 的聊天记录总结失败: " + e.getMessage());
-                }
-            }).start();
-
-            // 立即返回成功响应，不等待总结生成完成
-            return new Result<Void>().ok(null);
-        } catch (Exception e) {
-            return new Result<Void>().error("启动异步总结生成任务失败: " + e.getMessage());
-        }
+        // 进入总结任务队列后立即返回，同一会话重复提交会被合并
+        agentChatSummaryJobService.submitSummary(sessionId);
+        return new Result<Void>().ok(null);
     }
 
     @PostMapping("/chat-title/{sessionId}/generate")
-    @Operation(summary = "根据会话ID生成聊天标题")
+    @Operation(summary = "根据会话ID生成聊天标题（异步执行）")
     public Result<Void> generateAndSaveChatTitle(@PathVariable String sessionId) {
-        agentChatSummaryService.generateAndSaveChatTitle(sessionId);
+        agentChatSummaryJobService.submitTitle(sessionId);
         return new Result<Void>().ok(null);
     }
 
+    @GetMapping("/chat-summary/jobs/stats")
+    @Operation(summary = "聊天总结/标题任务队列状态")
+    @RequiresPermissions("sys:role:superAdmin")
+    public Result<ChatSummaryJobStatsVO> getChatSummaryJobStats() {
+        return new Result<ChatSummaryJobStatsVO>().ok(agentChatSummaryJobService.getStats());
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "更新智能体")
     @RequiresPermissions("sys:role:normal")
@@ -181,6 +179,8 @@ public class AgentController {
         agentContextProviderService.deleteByAgentId(id);
         // 删除关联的替换词文件关联记录
         correctWordFileService.deleteMappingsByAgentId(id);
+        // 删除结构化记忆
+        agentMemoryService.deleteByAgentId(id);
         // 再删除智能体
         agentService.deleteById(id);
         return new Result<>();
@@ -272,22 +272,13 @@ public class AgentController {
 
     @GetMapping("/play/{uuid}")
     @Operation(summary = "播放音频")
-    public ResponseEntity<byte[]> playAudio(@PathVariable("uuid") String uuid) {
+    public ResponseEntity<Resource> playAudio(@PathVariable("uuid") String uuid) {
 
-        String audioId = (String) redisUtils.get(RedisKeys.getAgentAudioIdKey(uuid));
+        String audioId = audioPlayback.claimToken(RedisKeys.getAgentAudioIdKey(uuid));
         if (StringUtils.isBlank(audioId)) {
             return ResponseEntity.notFound().build();
         }
-
-        byte[] audioData = agentChatAudioService.getAudio(audioId);
-        if (audioData == null) {
-            return ResponseEntity.notFound().build();
-        }
-        redisUtils.delete(RedisKeys.getAgentAudioIdKey(uuid));
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"play.wav\"")
-                .body(audioData);
+        return audioPlayback.play("chat:" + audioId, "play", () -> agentChatAudioService.getAudio(audioId));
     }
 
     @PostMapping("/tag")
@@ -26,7 +26,7 @@ import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.page.PageData;
-import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.common.utils.BeanMapper;
 import xiaozhi.common.utils.Result;
 import xiaozhi.common.utils.ResultUtils;
 import xiaozhi.modules.agent.entity.AgentTemplateEntity;
@@ -38,7 +38,10 @@ import xiaozhi.modules.agent.vo.AgentTemplateVO;
 @RestController
 @RequestMapping("/agent/template")
 public class AgentTemplateController {
-    
+
+    private static final BeanMapper<AgentTemplateEntity, AgentTemplateVO> TEMPLATE_MAPPER = BeanMapper
+            .of(AgentTemplateEntity.class, AgentTemplateVO.class);
+
     private final AgentTemplateService agentTemplateService;
     
     @GetMapping("/page")
@@ -68,8 +71,8 @@ public class AgentTemplateController {
         // Execute paginated query
         IPage<AgentTemplateEntity> pageResult = agentTemplateService.page(pageInfo, wrapper);
         
-        // Use ConvertUtils to convert to VO list
-        List<AgentTemplateVO> voList = ConvertUtils.sourceToTarget(pageResult.getRecords(), AgentTemplateVO.class);
+        // Convert to VO list
+        List<AgentTemplateVO> voList = TEMPLATE_MAPPER.mapList(pageResult.getRecords());
 
         // Fix: Use constructor to create PageData object instead of no-arg constructor + setter
         PageData<AgentTemplateVO> pageData = new PageData<>(voList, pageResult.getTotal());
@@ -86,8 +89,8 @@ public class AgentTemplateController {
             return ResultUtils.error("Template does not exist");
         }
         
-        // Use ConvertUtils to convert to VO
-        AgentTemplateVO vo = ConvertUtils.sourceToTarget(template, AgentTemplateVO.class);
+        // Convert to VO
+        AgentTemplateVO vo = TEMPLATE_MAPPER.map(template);
         
         return ResultUtils.success(vo);
     }
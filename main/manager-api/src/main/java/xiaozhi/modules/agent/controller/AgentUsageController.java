@@ -0,0 +1,127 @@
+package xiaozhi.modules.agent.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.user.UserDetail;
+import xiaozhi.common.utils.Result;
+import xiaozhi.modules.agent.service.AgentService;
+import xiaozhi.modules.agent.service.AgentUsageService;
+import xiaozhi.modules.agent.vo.AgentUsageDailyVO;
+import xiaozhi.modules.agent.vo.AgentUsageDeviceVO;
+import xiaozhi.modules.agent.vo.UsageBackfillStatusVO;
+import xiaozhi.modules.agent.vo.UsageSummaryVO;
+import xiaozhi.modules.security.user.SecurityUser;
+
+@Tag(name = "Agent Usage Analytics")
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/agent/usage")
+public class AgentUsageController {
+    private final AgentUsageService agentUsageService;
+    private final AgentService agentService;
+
+    /**
+     * Usage of an agent per day.
+     *
+     * @param agentId    agent ID
+     * @param startDate  first day, yyyy-MM-dd
+     * @param endDate    last day, inclusive
+     * @param macAddress one device only, omitted for all
+     * @return one entry per day, zeros on days without usage
+     */
+    @Operation(summary = "Agent usage per day")
+    @RequiresPermissions("sys:role:normal")
+    @GetMapping("/{agentId}/daily")
+    public Result<List<AgentUsageDailyVO>> getDaily(@PathVariable("agentId") String agentId,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(value = "macAddress", required = false) String macAddress) {
+        checkPermission(agentId);
+        return new Result<List<AgentUsageDailyVO>>()
+                .ok(agentUsageService.getDaily(agentId, macAddress, startDate, endDate));
+    }
+
+    /**
+     * Usage of an agent per device over a range of days.
+     *
+     * @param agentId   agent ID
+     * @param startDate first day, yyyy-MM-dd
+     * @param endDate   last day, inclusive
+     * @return devices with usage, busiest first
+     */
+    @Operation(summary = "Agent usage per device")
+    @RequiresPermissions("sys:role:normal")
+    @GetMapping("/{agentId}/devices")
+    public Result<List<AgentUsageDeviceVO>> getDevices(@PathVariable("agentId") String agentId,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        checkPermission(agentId);
+        return new Result<List<AgentUsageDeviceVO>>().ok(agentUsageService.getDevices(agentId, startDate, endDate));
+    }
+
+    /**
+     * Usage of all agents per day.
+     *
+     * @param startDate first day, yyyy-MM-dd
+     * @param endDate   last day, inclusive
+     * @return one entry per day, zeros on days without usage
+     */
+    @Operation(summary = "Usage of all agents per day")
+    @RequiresPermissions("sys:role:superAdmin")
+    @GetMapping("/summary")
+    public Result<List<UsageSummaryVO>> getSummary(
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return new Result<List<UsageSummaryVO>>().ok(agentUsageService.getSummary(startDate, endDate));
+    }
+
+    /**
+     * Recount past days from the chat history, in the background.
+     *
+     * @param startDate first day, yyyy-MM-dd
+     * @param endDate   last day, inclusive; defaults to and is capped at yesterday
+     * @param overwrite recount days that already have rollups too
+     * @return false when a backfill is already running
+     */
+    @Operation(summary = "Backfill usage rollups from chat history")
+    @RequiresPermissions("sys:role:superAdmin")
+    @PostMapping("/backfill")
+    public Result<Boolean> backfill(
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite) {
+        return new Result<Boolean>().ok(agentUsageService.backfill(startDate, endDate, overwrite));
+    }
+
+    /**
+     * Progress of the current or last backfill on this node.
+     */
+    @Operation(summary = "Usage backfill progress")
+    @RequiresPermissions("sys:role:superAdmin")
+    @GetMapping("/backfill")
+    public Result<UsageBackfillStatusVO> getBackfillStatus() {
+        return new Result<UsageBackfillStatusVO>().ok(agentUsageService.getBackfillStatus());
+    }
+
+    private void checkPermission(String agentId) {
+        UserDetail user = SecurityUser.getUser();
+        if (!agentService.checkAgentPermission(agentId, user.getId())) {
+            throw new RenException(ErrorCode.NO_PERMISSION);
+        }
+    }
+}
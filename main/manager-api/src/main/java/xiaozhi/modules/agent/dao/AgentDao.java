@@ -6,6 +6,7 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import xiaozhi.common.dao.BaseDao;
 import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.agent.vo.AgentConfigVO;
 import xiaozhi.modules.agent.vo.AgentInfoVO;
 
 @Mapper
@@ -36,4 +37,11 @@ public interface AgentDao extends BaseDao<AgentEntity> {
      * @param agentId Agent ID
      */
     AgentInfoVO selectAgentInfoById(@Param("agentId") String agentId);
+
+    /**
+     * Query the agent configuration projection by ID
+     *
+     * @param agentId Agent ID
+     */
+    AgentConfigVO selectAgentConfigById(@Param("agentId") String agentId);
 }
@@ -0,0 +1,12 @@
+package xiaozhi.modules.agent.dao;
+
+import org.apache.ibatis.annotations.Mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import xiaozhi.modules.agent.entity.AgentMemoryEntity;
+
+@Mapper
+public interface AgentMemoryDao extends BaseMapper<AgentMemoryEntity> {
+
+}
@@ -0,0 +1,12 @@
+package xiaozhi.modules.agent.dao;
+
+import org.apache.ibatis.annotations.Mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import xiaozhi.modules.agent.entity.AgentRetentionPolicyEntity;
+
+@Mapper
+public interface AgentRetentionPolicyDao extends BaseMapper<AgentRetentionPolicyEntity> {
+
+}
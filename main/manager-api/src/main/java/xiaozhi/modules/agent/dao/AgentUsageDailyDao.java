@@ -0,0 +1,61 @@
+package xiaozhi.modules.agent.dao;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import xiaozhi.modules.agent.entity.AgentUsageDailyEntity;
+import xiaozhi.modules.agent.vo.AgentUsageDailyVO;
+import xiaozhi.modules.agent.vo.AgentUsageDeviceVO;
+import xiaozhi.modules.agent.vo.UsageSummaryVO;
+
+/**
+ * Daily usage rollups. The table has a composite key, so rows are written with upserts
+ * rather than through {@code BaseMapper}.
+ */
+@Mapper
+public interface AgentUsageDailyDao {
+
+    /**
+     * Write rollup rows, creating missing ones.
+     *
+     * @param rows    rows to write
+     * @param replace true to overwrite the chat counters of existing rows, keeping their
+     *                check-ins; false to add every counter to them
+     */
+    int upsert(@Param("rows") List<AgentUsageDailyEntity> rows, @Param("replace") boolean replace);
+
+    /**
+     * Rollup rows already written for a day.
+     */
+    int countDay(@Param("day") LocalDate day);
+
+    /**
+     * Count one day of chat history per agent and device, without check-ins or the day itself.
+     *
+     * @param day  the day
+     * @param next the day after, the exclusive upper bound
+     */
+    List<AgentUsageDailyEntity> selectHistoryTotals(@Param("day") LocalDate day, @Param("next") LocalDate next);
+
+    /**
+     * Totals of an agent per day, only days with usage.
+     *
+     * @param macAddress one device only, null for all
+     */
+    List<AgentUsageDailyVO> selectDaily(@Param("agentId") String agentId, @Param("macAddress") String macAddress,
+            @Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    /**
+     * Totals of an agent per device over a range, busiest device first.
+     */
+    List<AgentUsageDeviceVO> selectDevices(@Param("agentId") String agentId, @Param("start") LocalDate start,
+            @Param("end") LocalDate end);
+
+    /**
+     * Totals of every agent per day, only days with usage.
+     */
+    List<UsageSummaryVO> selectSummary(@Param("start") LocalDate start, @Param("end") LocalDate end);
+}
@@ -1,6 +1,10 @@
 package xiaozhi.modules.agent.dao;
 
+import java.io.InputStream;
+
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
@@ -15,4 +19,18 @@ import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
  */
 @Mapper
 public interface AiAgentChatAudioDao extends BaseMapper<AgentChatAudioEntity> {
+
+    /**
+     * Insert audio read from a stream, bound to the statement as a blob stream
+     * <p>
+     * MySQL Connector/J still buffers the stream into the packet when client-side prepared
+     * statements are used (the default); it is only sent in chunks with {@code useServerPrepStmts=true}.
+     *
+     * @param id    Audio ID
+     * @param audio Audio opus data
+     * @return Affected rows
+     */
+    @Insert("INSERT INTO ai_agent_chat_audio (id, audio) VALUES (#{id},"
+            + " #{audio,typeHandler=org.apache.ibatis.type.BlobInputStreamTypeHandler})")
+    int insertStream(@Param("id") String id, @Param("audio") InputStream audio);
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package xiaozhi.modules.agent.dao;
 
+import java.util.Date;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Mapper;
@@ -7,6 +8,7 @@ import org.apache.ibatis.annotations.Param;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
 import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
 
 /**
@@ -34,12 +36,74 @@ public interface AiAgentChatHistoryDao extends BaseMapper<AgentChatHistoryEntity
     void deleteAudioIdByAgentId(String agentId);
 
     /**
-     * Get all audio IDs by agent ID.
+     * Keyset scan: the next messages of an agent after a given ID, in ID order.
+     *
+     * @param agentId   agent ID, null for all agents
+     * @param afterId   last ID of the previous chunk, 0 to start
+     * @param maxId     highest ID to return, null for no bound
+     * @param before    only messages created before this time, null for all
+     * @param audioOnly only messages that still have audio
+     * @param limit     chunk size
+     * @return messages without the update time
+     */
+    List<AgentChatHistoryEntity> selectChunk(@Param("agentId") String agentId, @Param("afterId") long afterId,
+            @Param("maxId") Long maxId, @Param("before") Date before, @Param("audioOnly") boolean audioOnly,
+            @Param("limit") int limit);
+
+    /**
+     * Highest message ID of an agent created before a time.
      *
      * @param agentId agent ID
-     * @return audio ID list
+     * @param before  creation time bound
+     * @return ID, or null when there is none
+     */
+    Long selectMaxIdBefore(@Param("agentId") String agentId, @Param("before") Date before);
+
+    /**
+     * Earliest start among the newest sessions of an agent, ranked by their last message.
+     * Every message before it belongs to an older session.
+     *
+     * @param agentId agent ID
+     * @param keep    number of newest sessions
+     * @return first message time, or null when the agent has no messages
+     */
+    Date selectKeptSessionsStart(@Param("agentId") String agentId, @Param("keep") int keep);
+
+    /**
+     * Messages with audio created in a time range, across agents, in ID order. The range lets
+     * MySQL read only the matching monthly partitions.
+     *
+     * @param from    inclusive lower bound
+     * @param to      exclusive upper bound
+     * @param afterId last ID of the previous chunk, 0 to start
+     * @param limit   chunk size
+     * @return messages with only the ID and audio ID
+     */
+    List<AgentChatHistoryEntity> selectAudioInRange(@Param("from") Date from, @Param("to") Date to,
+            @Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * Delete messages in batch.
+     *
+     * @param ids    message ID list
+     * @param before upper bound of their creation time, so only older partitions are probed
+     */
+    int deleteChunk(@Param("ids") List<Long> ids, @Param("before") Date before);
+
+    /**
+     * Detach audio from messages in batch.
+     *
+     * @param ids    message ID list
+     * @param before upper bound of their creation time, so only older partitions are probed
+     */
+    int clearAudioIdByIds(@Param("ids") List<Long> ids, @Param("before") Date before);
+
+    /**
+     * Load audio records in batch, with their data.
+     *
+     * @param audioIds audio ID list
      */
-    List<String> getAudioIdsByAgentId(String agentId);
+    List<AgentChatAudioEntity> selectAudioByIds(@Param("audioIds") List<String> audioIds);
 
     /**
      * Delete audio records in batch.
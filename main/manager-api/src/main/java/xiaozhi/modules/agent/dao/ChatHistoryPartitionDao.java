@@ -0,0 +1,39 @@
+package xiaozhi.modules.agent.dao;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * Partition DDL of the chat history table; MySQL only.
+ */
+@Mapper
+public interface ChatHistoryPartitionDao {
+
+    /**
+     * Partitions of the chat history table in range order; empty when it is not partitioned.
+     */
+    @Select("SELECT PARTITION_NAME FROM information_schema.PARTITIONS"
+            + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'ai_agent_chat_history'"
+            + " AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION")
+    List<String> selectPartitionNames();
+
+    /**
+     * Split new partitions off p_future.
+     *
+     * @param definitions partition definitions ending with p_future, built by ChatHistoryPartitions
+     */
+    @Update("ALTER TABLE ai_agent_chat_history REORGANIZE PARTITION p_future INTO (${definitions})")
+    void reorganizeFuture(@Param("definitions") String definitions);
+
+    /**
+     * Drop a partition and every row in it.
+     *
+     * @param name partition name, checked by the caller
+     */
+    @Update("ALTER TABLE ai_agent_chat_history DROP PARTITION ${name}")
+    void dropPartition(@Param("name") String name);
+}
@@ -0,0 +1,29 @@
+package xiaozhi.modules.agent.dto;
+
+import java.io.Serializable;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+@Data
+@Schema(description = "Agent chat history retention policy")
+public class AgentRetentionPolicyDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Schema(description = "Days messages are kept, empty keeps them")
+    @Min(value = 1, message = "Max age must be at least 1 day")
+    private Integer maxAgeDays;
+
+    @Schema(description = "Newest sessions kept, empty keeps all")
+    @Min(value = 1, message = "Max sessions must be at least 1")
+    private Integer maxSessions;
+
+    @Schema(description = "Days audio is kept, empty keeps it as long as the text")
+    @Min(value = 1, message = "Audio max age must be at least 1 day")
+    private Integer audioMaxAgeDays;
+
+    @Schema(description = "Archive removed messages and audio before deleting them")
+    private Boolean archive;
+}
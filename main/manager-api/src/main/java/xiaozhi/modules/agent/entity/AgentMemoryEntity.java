@@ -0,0 +1,63 @@
+package xiaozhi.modules.agent.entity;
+
+import java.util.Date;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One remembered fact, or a compacted segment of several facts, of an agent.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@TableName(value = "ai_agent_memory")
+public class AgentMemoryEntity {
+
+    @TableId(type = IdType.ASSIGN_UUID)
+    private String id;
+
+    @TableField(value = "agent_id")
+    private String agentId;
+
+    /**
+     * Device the fact was learned from; null for agent-wide memory
+     */
+    @TableField(value = "device_id")
+    private String deviceId;
+
+    @TableField(value = "session_id")
+    private String sessionId;
+
+    @TableField(value = "content")
+    private String content;
+
+    /**
+     * 1 (trivial) to 5 (essential)
+     */
+    @TableField(value = "importance")
+    private Integer importance;
+
+    @TableField(value = "token_count")
+    private Integer tokenCount;
+
+    /**
+     * 1 when the entry was produced by compaction
+     */
+    @TableField(value = "compacted")
+    private Integer compacted;
+
+    @TableField(value = "created_at")
+    private Date createdAt;
+
+    @TableField(value = "updated_at")
+    private Date updatedAt;
+}
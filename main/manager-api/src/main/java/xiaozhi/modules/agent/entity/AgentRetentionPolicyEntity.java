@@ -0,0 +1,54 @@
+package xiaozhi.modules.agent.entity;
+
+import java.util.Date;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How long the chat history of an agent is kept.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@TableName(value = "ai_agent_retention_policy")
+public class AgentRetentionPolicyEntity {
+
+    @TableId(type = IdType.INPUT)
+    private String agentId;
+
+    /**
+     * Messages older than this many days are removed; null keeps them
+     */
+    @TableField(value = "max_age_days")
+    private Integer maxAgeDays;
+
+    /**
+     * Only the newest sessions are kept; null keeps all
+     */
+    @TableField(value = "max_sessions")
+    private Integer maxSessions;
+
+    /**
+     * Audio older than this many days is removed while its text is kept; null keeps it with the text
+     */
+    @TableField(value = "audio_max_age_days")
+    private Integer audioMaxAgeDays;
+
+    /**
+     * 1 when removed messages are archived before deletion
+     */
+    @TableField(value = "archive")
+    private Integer archive;
+
+    @TableField(value = "updated_at")
+    private Date updatedAt;
+}
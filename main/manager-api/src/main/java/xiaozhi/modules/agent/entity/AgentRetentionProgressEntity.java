@@ -0,0 +1,75 @@
+package xiaozhi.modules.agent.entity;
+
+import java.util.Date;
+
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Position of the retention run of an agent, saved after every chunk so an interrupted run
+ * resumes with the same bounds.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@TableName(value = "ai_agent_retention_progress")
+public class AgentRetentionProgressEntity {
+
+    public static final String PHASE_TEXT = "text";
+    public static final String PHASE_AUDIO = "audio";
+    public static final String PHASE_DONE = "done";
+
+    @TableId(type = IdType.INPUT)
+    private String agentId;
+
+    /**
+     * text, audio or done
+     */
+    @TableField(value = "phase")
+    private String phase;
+
+    /**
+     * Last chat history ID processed in the current phase
+     */
+    @TableField(value = "cursor_id")
+    private Long cursorId;
+
+    /**
+     * Highest chat history ID the run may touch; messages reported during the run are left alone
+     */
+    @TableField(value = "max_id")
+    private Long maxId;
+
+    @TableField(value = "text_cutoff")
+    private Date textCutoff;
+
+    @TableField(value = "audio_cutoff")
+    private Date audioCutoff;
+
+    @TableField(value = "archive_file")
+    private String archiveFile;
+
+    @TableField(value = "rows_deleted")
+    private Long rowsDeleted;
+
+    @TableField(value = "audio_deleted")
+    private Long audioDeleted;
+
+    @TableField(value = "started_at")
+    private Date startedAt;
+
+    /**
+     * Null while the run is in progress
+     */
+    @TableField(value = "finished_at", updateStrategy = FieldStrategy.ALWAYS)
+    private Date finishedAt;
+}
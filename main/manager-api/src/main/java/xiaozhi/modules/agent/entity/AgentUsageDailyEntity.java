@@ -0,0 +1,50 @@
+package xiaozhi.modules.agent.entity;
+
+import java.time.LocalDate;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Usage of one device with one agent on one day.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@TableName(value = "ai_agent_usage_daily")
+public class AgentUsageDailyEntity {
+
+    private String agentId;
+
+    private LocalDate statDate;
+
+    /**
+     * Device MAC address, empty when unknown
+     */
+    private String macAddress;
+
+    /**
+     * Chat messages reported
+     */
+    private Long messages;
+
+    /**
+     * Chat sessions started
+     */
+    private Long sessions;
+
+    /**
+     * Audio stored with the messages, in bytes
+     */
+    private Long audioBytes;
+
+    /**
+     * OTA check-ins of the device
+     */
+    private Long checkIns;
+}
@@ -0,0 +1,33 @@
+package xiaozhi.modules.agent.event;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Published when chat messages are deleted, naming them in the narrowest way the deleting code
+ * knows: by IDs, by session, by agent, or by creation time range. Fields that do not apply are null.
+ *
+ * @param agentId   agent whose messages, or session, were deleted
+ * @param sessionId session whose messages were deleted
+ * @param ids       IDs of the deleted messages
+ * @param from      inclusive lower bound of the creation time of deleted messages of every agent
+ * @param to        exclusive upper bound of that range
+ */
+public record ChatHistoryDeletedEvent(String agentId, String sessionId, List<Long> ids, Date from, Date to) {
+
+    public static ChatHistoryDeletedEvent ofAgent(String agentId) {
+        return new ChatHistoryDeletedEvent(agentId, null, null, null, null);
+    }
+
+    public static ChatHistoryDeletedEvent ofSession(String agentId, String sessionId) {
+        return new ChatHistoryDeletedEvent(agentId, sessionId, null, null, null);
+    }
+
+    public static ChatHistoryDeletedEvent ofIds(List<Long> ids) {
+        return new ChatHistoryDeletedEvent(null, null, ids, null, null);
+    }
+
+    public static ChatHistoryDeletedEvent ofRange(Date from, Date to) {
+        return new ChatHistoryDeletedEvent(null, null, null, from, to);
+    }
+}
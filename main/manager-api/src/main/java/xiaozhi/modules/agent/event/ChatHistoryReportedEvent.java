@@ -0,0 +1,13 @@
+package xiaozhi.modules.agent.event;
+
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+
+/**
+ * Published when a device reports a chat message and it has been saved, so derived views such
+ * as the search index and the usage rollups can follow the chat history without reading it back.
+ *
+ * @param message    the saved message, with its ID
+ * @param audioBytes size of the audio stored with the message, 0 without audio
+ */
+public record ChatHistoryReportedEvent(AgentChatHistoryEntity message, long audioBytes) {
+}
@@ -0,0 +1,143 @@
+package xiaozhi.modules.agent.mcp;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.sys.utils.WebSocketClientManager;
+
+/**
+ * Pool of persistent MCP sessions, one per endpoint URL.
+ * <p>
+ * The first call to an endpoint pays the connect and initialize handshake; later calls
+ * reuse the open session and, while it is fresh, its cached tools list. Sessions that
+ * have been idle longer than the idle timeout are closed by a background sweep.
+ */
+@Slf4j
+@Component
+public class McpClientPool {
+
+    private static final long CONNECT_TIMEOUT_MILLIS = 8_000;
+    private static final long REQUEST_TIMEOUT_MILLIS = 10_000;
+    private static final long TOOLS_TTL_MILLIS = 60_000;
+    private static final long IDLE_TIMEOUT_MILLIS = 5 * 60_000;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final StandardWebSocketClient webSocketClient = WebSocketClientManager.sharedClient();
+    private final Map<String, CompletableFuture<McpSession>> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "mcp-pool-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long idleTimeoutMillis;
+
+    public McpClientPool() {
+        this(IDLE_TIMEOUT_MILLIS);
+    }
+
+    McpClientPool(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        long sweepInterval = Math.max(1_000, idleTimeoutMillis / 2);
+        sweeper.scheduleWithFixedDelay(this::evictIdle, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tools advertised by an MCP endpoint, as returned in {@code tools/list}.
+     */
+    public List<Map<String, Object>> listTools(String url) throws Exception {
+        try {
+            return session(url).listTools().get(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // A broken session must not be handed out again.
+            discard(url);
+            throw e;
+        }
+    }
+
+    /**
+     * Number of sessions currently held, open or still connecting.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    private McpSession session(String url) throws Exception {
+        CompletableFuture<McpSession> future = sessions.computeIfAbsent(url, this::connect);
+        McpSession session = future.get(CONNECT_TIMEOUT_MILLIS + REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (session.isOpen()) {
+            return session;
+        }
+        sessions.remove(url, future);
+        return sessions.computeIfAbsent(url, this::connect)
+                .get(CONNECT_TIMEOUT_MILLIS + REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<McpSession> connect(String url) {
+        McpSession mcpSession = new McpSession(url, TOOLS_TTL_MILLIS);
+        CompletableFuture<McpSession> connected = webSocketClient
+                .execute(mcpSession, new WebSocketHttpHeaders(), URI.create(url))
+                .orTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                // The handshake is chained on the response, so no thread waits for the server
+                .thenCompose((WebSocketSession raw) -> {
+                    mcpSession.attach(raw, BUFFER_SIZE);
+                    return mcpSession.initialize(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                            .handle((ignored, error) -> {
+                                if (error != null) {
+                                    mcpSession.close();
+                                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                                    throw new IllegalStateException("MCP initialize failed: " + cause.getMessage(),
+                                            cause);
+                                }
+                                log.info("MCP session opened: {}", maskToken(url));
+                                return mcpSession;
+                            });
+                });
+        // Forget the session as soon as the server closes it.
+        mcpSession.closeFuture().thenRun(() -> sessions.remove(url, connected));
+        return connected;
+    }
+
+    private void discard(String url) {
+        CompletableFuture<McpSession> future = sessions.remove(url);
+        if (future != null) {
+            future.thenAccept(McpSession::close);
+        }
+    }
+
+    void evictIdle() {
+        long now = System.currentTimeMillis();
+        sessions.forEach((url, future) -> {
+            McpSession session = future.getNow(null);
+            if (session != null && now - session.getLastUsedAt() > idleTimeoutMillis
+                    && sessions.remove(url, future)) {
+                log.info("Closing idle MCP session: {}", maskToken(url));
+                session.close();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        sessions.keySet().forEach(this::discard);
+    }
+
+    private static String maskToken(String url) {
+        int index = url.indexOf("token=");
+        return index < 0 ? url : url.substring(0, index) + "token=***";
+    }
+}
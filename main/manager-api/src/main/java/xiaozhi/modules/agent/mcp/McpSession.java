@@ -0,0 +1,204 @@
+package xiaozhi.modules.agent.mcp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.utils.JsonRpcTwo;
+import xiaozhi.common.utils.JsonUtils;
+
+/**
+ * One long-lived WebSocket session to an MCP endpoint.
+ * <p>
+ * JSON-RPC requests are multiplexed over the session: each request gets its own id and
+ * the response is routed back to the matching future, so callers never share a queue.
+ * The tools/list result is cached until the server sends
+ * {@code notifications/tools/list_changed} or the cache ages out.
+ */
+@Slf4j
+class McpSession extends TextWebSocketHandler {
+
+    static final String TOOLS_LIST_CHANGED = "notifications/tools/list_changed";
+
+    private final String url;
+    private final long toolsTtlMillis;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Map<String, Object>>> pending = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+    private volatile WebSocketSession session;
+    private volatile CompletableFuture<List<Map<String, Object>>> tools;
+    private volatile long toolsLoadedAt;
+    private volatile long lastUsedAt = System.currentTimeMillis();
+
+    McpSession(String url, long toolsTtlMillis) {
+        this.url = url;
+        this.toolsTtlMillis = toolsTtlMillis;
+    }
+
+    void attach(WebSocketSession raw, int bufferSize) {
+        raw.setTextMessageSizeLimit(bufferSize);
+        // The decorator serialises concurrent sends, which a raw session does not allow.
+        this.session = new ConcurrentWebSocketSessionDecorator(raw, 10_000, bufferSize);
+    }
+
+    /**
+     * Run the initialize / notifications/initialized handshake once per session.
+     * Completes when the server has answered; nothing blocks while it waits.
+     */
+    CompletableFuture<Void> initialize(long timeout, TimeUnit unit) {
+        Map<String, Object> params = Map.of(
+                "protocolVersion", "2024-11-05",
+                "capabilities", Map.of(
+                        "roots", Map.of("listChanged", false),
+                        "sampling", Map.of()),
+                "clientInfo", Map.of(
+                        "name", "xz-mcp-broker",
+                        "version", "0.0.1"));
+        return request("initialize", params).orTimeout(timeout, unit).thenAccept(result -> {
+            try {
+                send("{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Tools advertised by the endpoint, served from cache while it is fresh.
+     * Concurrent callers during a refresh share the same in-flight request.
+     */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<List<Map<String, Object>>> listTools() {
+        touch();
+        CompletableFuture<List<Map<String, Object>>> current = tools;
+        if (current != null && !current.isCompletedExceptionally()
+                && (!current.isDone() || System.currentTimeMillis() - toolsLoadedAt < toolsTtlMillis)) {
+            return current;
+        }
+        synchronized (this) {
+            if (tools != current) {
+                return tools;
+            }
+            CompletableFuture<List<Map<String, Object>>> loading = request("tools/list", null).thenApply(result -> {
+                toolsLoadedAt = System.currentTimeMillis();
+                Object list = result.get("tools");
+                return list instanceof List ? (List<Map<String, Object>>) list : List.<Map<String, Object>>of();
+            });
+            tools = loading;
+            return loading;
+        }
+    }
+
+    /**
+     * Send a JSON-RPC request and complete with its {@code result} object.
+     */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Map<String, Object>> request(String method, Object params) {
+        touch();
+        int id = nextId.incrementAndGet();
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        pending.put(id, future);
+        future.whenComplete((result, error) -> pending.remove(id));
+        try {
+            send(JsonUtils.toJsonString(new JsonRpcTwo(method, params, id)));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future.thenApply(response -> {
+            if (response.containsKey("error")) {
+                throw new IllegalStateException("MCP " + method + " failed: " + response.get("error"));
+            }
+            Object result = response.get("result");
+            return result instanceof Map ? (Map<String, Object>) result : Map.<String, Object>of();
+        });
+    }
+
+    boolean isOpen() {
+        return session != null && session.isOpen() && !closed.isDone();
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    CompletableFuture<Void> closeFuture() {
+        return closed;
+    }
+
+    void close() {
+        try {
+            if (session != null && session.isOpen()) {
+                session.close(CloseStatus.NORMAL);
+            }
+        } catch (IOException ignored) {
+        }
+        failPending(new IOException("MCP session closed"));
+    }
+
+    private void send(String text) throws IOException {
+        session.sendMessage(new TextMessage(text));
+    }
+
+    private void touch() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    private void failPending(Throwable cause) {
+        closed.complete(null);
+        pending.values().forEach(future -> future.completeExceptionally(cause));
+        pending.clear();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Map<String, Object> json;
+        try {
+            json = JsonUtils.parseObject(message.getPayload(), Map.class);
+        } catch (Exception e) {
+            log.warn("Ignoring unparseable MCP message from {}: {}", url, message.getPayload());
+            return;
+        }
+        if (json == null) {
+            return;
+        }
+        Object id = json.get("id");
+        if (id instanceof Number number && (json.containsKey("result") || json.containsKey("error"))) {
+            CompletableFuture<Map<String, Object>> future = pending.get(number.intValue());
+            if (future != null) {
+                future.complete(json);
+            }
+        } else if (TOOLS_LIST_CHANGED.equals(json.get("method"))) {
+            log.info("MCP tools changed on {}, dropping cached tools list", url);
+            tools = null;
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.warn("MCP session transport error on {}: {}", url, exception.getMessage());
+        failPending(exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        failPending(new IOException("MCP session closed: " + status));
+    }
+}
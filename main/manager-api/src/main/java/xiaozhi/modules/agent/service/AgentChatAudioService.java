@@ -1,5 +1,7 @@
 package xiaozhi.modules.agent.service;
 
+import java.io.InputStream;
+
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
@@ -20,6 +22,15 @@ public interface AgentChatAudioService extends IService<AgentChatAudioEntity> {
      */
     String saveAudio(byte[] audioData);
 
+    /**
+     * Save audio data read from a stream, without decoding it into an array first; the JDBC driver
+     * may still buffer it, see {@link xiaozhi.modules.agent.dao.AiAgentChatAudioDao#insertStream}
+     *
+     * @param audioData Audio data stream, not closed by this method
+     * @return Audio ID
+     */
+    String saveAudio(InputStream audioData);
+
     /**
      * Get audio data
      *
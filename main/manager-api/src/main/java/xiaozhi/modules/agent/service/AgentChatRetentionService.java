@@ -0,0 +1,57 @@
+package xiaozhi.modules.agent.service;
+
+import xiaozhi.modules.agent.dto.AgentRetentionPolicyDTO;
+import xiaozhi.modules.agent.entity.AgentRetentionPolicyEntity;
+import xiaozhi.modules.agent.entity.AgentRetentionProgressEntity;
+
+/**
+ * Chat history retention: per-agent policies and the chunked runs that enforce them
+ */
+public interface AgentChatRetentionService {
+
+    /**
+     * Get the retention policy of an agent
+     *
+     * @param agentId Agent ID
+     * @return Own policy, or null when the agent follows the system default
+     */
+    AgentRetentionPolicyDTO getPolicy(String agentId);
+
+    /**
+     * Save the retention policy of an agent; a policy without limits keeps everything
+     *
+     * @param agentId Agent ID
+     * @param dto     Policy
+     */
+    void savePolicy(String agentId, AgentRetentionPolicyDTO dto);
+
+    /**
+     * Remove the agent's own policy so it follows the system default again
+     *
+     * @param agentId Agent ID
+     */
+    void deletePolicy(String agentId);
+
+    /**
+     * Enforce the retention of one agent, resuming an interrupted run first
+     *
+     * @param agentId Agent ID
+     * @param policy  Policy in effect, from {@link #getEffectivePolicy(String)}; null only resumes
+     * @return State of the run, or null when there was nothing to remove
+     */
+    AgentRetentionProgressEntity runAgent(String agentId, AgentRetentionPolicyEntity policy);
+
+    /**
+     * Get the policy in effect for an agent: its own, else the system default
+     *
+     * @param agentId Agent ID
+     * @return Policy, or null when the agent's history is kept forever
+     */
+    AgentRetentionPolicyEntity getEffectivePolicy(String agentId);
+
+    /**
+     * Enforce retention for every agent with a policy in effect. Only one run is active across
+     * the cluster at a time; a call made while another run is active returns immediately.
+     */
+    void runAll();
+}
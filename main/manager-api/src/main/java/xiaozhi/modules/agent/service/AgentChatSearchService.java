@@ -0,0 +1,45 @@
+package xiaozhi.modules.agent.service;
+
+import java.util.List;
+
+import xiaozhi.modules.agent.vo.AgentChatSearchHitVO;
+import xiaozhi.modules.agent.vo.ChatSearchStatsVO;
+
+/**
+ * Full-text search over chat message text, served from an index on local disk that follows
+ * reports and deletes as they happen
+ */
+public interface AgentChatSearchService {
+
+    /**
+     * Search the messages of an agent
+     *
+     * @param agentId   Agent ID
+     * @param query     Words to find; quotes match a phrase and a leading minus excludes
+     * @param startTime Inclusive lower bound of the creation time in epoch milliseconds, null for none
+     * @param endTime   Exclusive upper bound of the creation time in epoch milliseconds, null for none
+     * @param limit     Hits to return, null or above the configured maximum for the maximum
+     * @return Hits, best first, with highlighted snippets
+     */
+    List<AgentChatSearchHitVO> search(String agentId, String query, Long startTime, Long endTime, Integer limit);
+
+    /**
+     * Re-index chat history from the database in the background
+     *
+     * @param agentId Agent ID, null for every agent
+     * @return false when a rebuild is already running
+     */
+    boolean rebuild(String agentId);
+
+    /**
+     * Make indexed changes durable
+     */
+    void commit();
+
+    /**
+     * Get index and query latency statistics
+     *
+     * @return Statistics since startup
+     */
+    ChatSearchStatsVO getStats();
+}
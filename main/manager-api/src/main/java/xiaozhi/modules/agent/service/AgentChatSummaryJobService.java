@@ -0,0 +1,31 @@
+package xiaozhi.modules.agent.service;
+
+import xiaozhi.modules.agent.vo.ChatSummaryJobStatsVO;
+
+/**
+ * Background queue for chat summary and title generation.
+ */
+public interface AgentChatSummaryJobService {
+
+    /**
+     * Queue summary generation for a session. Summaries of one agent run one at a time,
+     * so each one builds on the memory saved by the previous one.
+     *
+     * @param sessionId session ID
+     * @return false when an identical job is already queued or running
+     */
+    boolean submitSummary(String sessionId);
+
+    /**
+     * Queue title generation for a session.
+     *
+     * @param sessionId session ID
+     * @return false when an identical job is already queued or running
+     */
+    boolean submitTitle(String sessionId);
+
+    /**
+     * Queue counters and per-model load.
+     */
+    ChatSummaryJobStatsVO getStats();
+}
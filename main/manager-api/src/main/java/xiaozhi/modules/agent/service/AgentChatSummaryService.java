@@ -1,23 +1,55 @@
 package xiaozhi.modules.agent.service;
 
+import java.util.List;
+
 /**
  * Agent chat-summary service interface.
  */
 public interface AgentChatSummaryService {
 
     /**
-     * Generate a chat summary by session ID and save it to agent memory.
+     * Generate a chat summary by session ID and save it to agent memory. Failures worth
+     * retrying, such as an LLM reply that cannot be parsed, are thrown rather than reported
+     * as {@code false}.
      *
      * @param sessionId session ID
-     * @return save result
+     * @return true when the session was handled, false when it has no device to summarise for
      */
     boolean generateAndSaveChatSummary(String sessionId);
 
     /**
-     * Generate and save a chat title by session ID.
+     * Summarize several sessions of one agent with one LLM call per device and append the
+     * facts each call yields to that device's memory. Only the most recent messages that fit
+     * the prompt budget are included. Failures worth retrying are thrown.
+     *
+     * @param agentId    agent ID
+     * @param sessionIds sessions in the order they ended
+     * @return true when the sessions were handled
+     */
+    boolean generateAndSaveBatchSummary(String agentId, List<String> sessionIds);
+
+    /**
+     * Generate and save a chat title by session ID. Failures worth retrying, such as an
+     * LLM call that returned nothing, are thrown rather than reported as {@code false}.
      *
      * @param sessionId session ID
-     * @return whether generation succeeded
+     * @return true when a title was saved, false when the session has nothing to title
      */
     boolean generateAndSaveChatTitle(String sessionId);
+
+    /**
+     * Resolve the agent that owns a session.
+     *
+     * @param sessionId session ID
+     * @return agent ID, or null when the session has no history
+     */
+    String getAgentIdBySessionId(String sessionId);
+
+    /**
+     * Resolve the LLM model used for an agent's summaries and titles.
+     *
+     * @param agentId agent ID
+     * @return model ID, or null when the default LLM service is used
+     */
+    String getSummaryModelId(String agentId);
 }
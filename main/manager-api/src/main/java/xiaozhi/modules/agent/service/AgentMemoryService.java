@@ -0,0 +1,56 @@
+package xiaozhi.modules.agent.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+import xiaozhi.modules.agent.support.MemoryFact;
+
+/**
+ * Structured long-term memory of agents: facts with importance and timestamps, appended
+ * after each summarized session and compacted in the background.
+ */
+public interface AgentMemoryService {
+
+    /**
+     * Append facts learned in a session.
+     *
+     * @param deviceId device the session ran on, null for agent-wide facts
+     * @return number of facts stored
+     */
+    int appendFacts(String agentId, String deviceId, String sessionId, List<MemoryFact> facts);
+
+    /**
+     * Render memory for a device as one fact per line, picking the most important and
+     * recent facts that fit the token budget. Only the device's own facts and agent-wide
+     * facts are considered; a null device gets the agent-wide facts alone.
+     *
+     * @return rendered memory, or null when the agent has no stored memory
+     */
+    String renderMemory(String agentId, String deviceId, int tokenBudget);
+
+    /**
+     * Replace an agent's memory with a single text, e.g. one edited by hand. Blank text
+     * clears the memory.
+     */
+    void replaceMemory(String agentId, String text);
+
+    /**
+     * Delete all memory of an agent.
+     */
+    void deleteByAgentId(String agentId);
+
+    /**
+     * Agents with a device, or agent-wide memory, whose stored facts exceed the compaction threshold.
+     */
+    List<String> getAgentsToCompact();
+
+    /**
+     * Merge the least valuable facts of an agent into fewer, condensed ones. Each device's
+     * facts, and the agent-wide facts, are merged separately and keep their scope.
+     *
+     * @param condenser turns the facts to merge, one {@code importance|fact} per line, into
+     *                  condensed facts; returns null when it fails
+     * @return number of facts merged away
+     */
+    int compact(String agentId, Function<String, List<MemoryFact>> condenser);
+}
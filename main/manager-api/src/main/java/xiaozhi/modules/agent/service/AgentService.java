@@ -9,6 +9,7 @@ import xiaozhi.modules.agent.dto.AgentCreateDTO;
 import xiaozhi.modules.agent.dto.AgentDTO;
 import xiaozhi.modules.agent.dto.AgentUpdateDTO;
 import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.agent.vo.AgentConfigVO;
 import xiaozhi.modules.agent.vo.AgentInfoVO;
 
 /**
@@ -35,6 +36,22 @@ public interface AgentService extends BaseService<AgentEntity> {
      */
     AgentInfoVO getAgentById(String id);
 
+    /**
+     * Get the configuration projection of an agent, served from cache until the agent is
+     * updated or deleted.
+     *
+     * @param id agent ID
+     * @return agent configuration
+     */
+    AgentConfigVO getAgentConfigById(String id);
+
+    /**
+     * Invalidate the cached configuration of an agent once the current transaction commits.
+     *
+     * @param id agent ID
+     */
+    void evictAgentConfig(String id);
+
     /**
      * Insert an agent.
      *
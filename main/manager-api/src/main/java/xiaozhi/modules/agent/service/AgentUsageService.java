@@ -0,0 +1,69 @@
+package xiaozhi.modules.agent.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import xiaozhi.modules.agent.vo.AgentUsageDailyVO;
+import xiaozhi.modules.agent.vo.AgentUsageDeviceVO;
+import xiaozhi.modules.agent.vo.UsageBackfillStatusVO;
+import xiaozhi.modules.agent.vo.UsageSummaryVO;
+
+/**
+ * Usage analytics: counters per agent, device and day, kept in memory from reports and
+ * check-ins and flushed to daily rollups that dashboards read
+ */
+public interface AgentUsageService {
+
+    /**
+     * Write the counters kept in memory to the rollups
+     */
+    void flush();
+
+    /**
+     * Get the usage of an agent per day; days without usage are included as zeros
+     *
+     * @param agentId    Agent ID
+     * @param macAddress One device only, null for all
+     * @param startDate  First day
+     * @param endDate    Last day, inclusive
+     * @return One entry per day of the range
+     */
+    List<AgentUsageDailyVO> getDaily(String agentId, String macAddress, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Get the usage of an agent per device over a range
+     *
+     * @param agentId   Agent ID
+     * @param startDate First day
+     * @param endDate   Last day, inclusive
+     * @return Devices with usage, busiest first
+     */
+    List<AgentUsageDeviceVO> getDevices(String agentId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Get the usage of all agents per day; days without usage are included as zeros
+     *
+     * @param startDate First day
+     * @param endDate   Last day, inclusive
+     * @return One entry per day of the range
+     */
+    List<UsageSummaryVO> getSummary(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Recount past days from the chat history in the background, one day at a time
+     *
+     * @param startDate First day
+     * @param endDate   Last day, inclusive; clamped to yesterday
+     * @param overwrite true to recount days that already have rollups too, replacing the chat counters of
+     *                  the devices found in the history; rows of devices whose history is gone are kept
+     * @return false when a backfill is already running
+     */
+    boolean backfill(LocalDate startDate, LocalDate endDate, boolean overwrite);
+
+    /**
+     * Get the progress of the current or last backfill
+     *
+     * @return Backfill progress and the counters waiting to be flushed
+     */
+    UsageBackfillStatusVO getBackfillStatus();
+}
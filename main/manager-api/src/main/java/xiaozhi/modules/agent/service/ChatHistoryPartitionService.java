@@ -0,0 +1,29 @@
+package xiaozhi.modules.agent.service;
+
+import java.util.List;
+
+/**
+ * Monthly partitions of the chat history table; every operation is a no-op when the table is
+ * not partitioned, as on databases other than MySQL
+ */
+public interface ChatHistoryPartitionService {
+
+    /**
+     * Get the partitions of the chat history table
+     *
+     * @return Partition names in range order, empty when the table is not partitioned
+     */
+    List<String> getPartitionNames();
+
+    /**
+     * Create the partitions of the coming months and drop the expired ones
+     */
+    void maintain();
+
+    /**
+     * Drop a whole monthly partition after deleting the audio of its messages
+     *
+     * @param partitionName Monthly partition name, such as p202505
+     */
+    void dropPartition(String partitionName);
+}
@@ -1,5 +1,7 @@
 package xiaozhi.modules.agent.service.biz;
 
+import org.springframework.web.multipart.MultipartFile;
+
 import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
 
 /**
@@ -19,4 +21,13 @@ public interface AgentChatHistoryBizService {
      * @return Upload result, true means success, false means failure
      */
     Boolean report(AgentChatHistoryReportDTO agentChatHistoryReportDTO);
+
+    /**
+     * Chat report method with the audio as a binary part
+     *
+     * @param agentChatHistoryReportDTO Report metadata, its audioBase64 is ignored
+     * @param audio                     Raw audio part, streamed to storage; may be null
+     * @return Upload result, true means success, false means failure
+     */
+    Boolean report(AgentChatHistoryReportDTO agentChatHistoryReportDTO, MultipartFile audio);
 }
@@ -1,11 +1,15 @@
 package xiaozhi.modules.agent.service.biz.impl;
 
+import java.io.InputStream;
 import java.util.Base64;
 import java.util.Date;
 import java.util.Objects;
+import java.util.function.Supplier;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +19,7 @@ import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
 import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
 import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.agent.event.ChatHistoryReportedEvent;
 import xiaozhi.modules.agent.service.AgentChatAudioService;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
 import xiaozhi.modules.agent.service.AgentChatSummaryService;
@@ -40,6 +45,14 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
     private final AgentChatSummaryService agentChatSummaryService;
     private final RedisUtils redisUtils;
     private final DeviceService deviceService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Audio stored for a report, or none
+     */
+    private record SavedAudio(String id, long bytes) {
+        static final SavedAudio NONE = new SavedAudio(null, 0);
+    }
 
     /**
      * Process a chat-history report, including audio upload and related metadata persistence.
@@ -50,6 +63,24 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Boolean report(AgentChatHistoryReportDTO report) {
+        return report(report, () -> saveChatAudio(report));
+    }
+
+    /**
+     * Process a chat-history report whose audio arrives as a binary part, streamed to storage
+     * without Base64 decoding.
+     *
+     * @param report chat-history report metadata
+     * @param audio  raw audio part, may be null
+     * @return upload result, true for success and false for failure
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Boolean report(AgentChatHistoryReportDTO report, MultipartFile audio) {
+        return report(report, () -> saveChatAudio(audio));
+    }
+
+    private Boolean report(AgentChatHistoryReportDTO report, Supplier<SavedAudio> audioSaver) {
         String macAddress = report.getMacAddress();
         Byte chatType = report.getChatType();
         Long reportTimeMillis = null != report.getReportTime() ? report.getReportTime()
@@ -67,10 +98,9 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
         String agentId = agentEntity.getId();
 
         if (Objects.equals(chatHistoryConf, Constant.ChatHistoryConfEnum.RECORD_TEXT.getCode())) {
-            saveChatText(report, agentId, macAddress, null, reportTimeMillis);
+            saveChatText(report, agentId, macAddress, SavedAudio.NONE, reportTimeMillis);
         } else if (Objects.equals(chatHistoryConf, Constant.ChatHistoryConfEnum.RECORD_TEXT_AUDIO.getCode())) {
-            String audioId = saveChatAudio(report);
-            saveChatText(report, agentId, macAddress, audioId, reportTimeMillis);
+            saveChatText(report, agentId, macAddress, audioSaver.get(), reportTimeMillis);
         }
 
         // Update the last conversation timestamp for the agent/device pair.
@@ -90,26 +120,41 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
     /**
      * Decode Base64 audio data and persist it in ai_agent_chat_audio.
      */
-    private String saveChatAudio(AgentChatHistoryReportDTO report) {
-        String audioId = null;
-
+    private SavedAudio saveChatAudio(AgentChatHistoryReportDTO report) {
         if (report.getAudioBase64() != null && !report.getAudioBase64().isEmpty()) {
             try {
                 byte[] audioData = Base64.getDecoder().decode(report.getAudioBase64());
-                audioId = agentChatAudioService.saveAudio(audioData);
+                String audioId = agentChatAudioService.saveAudio(audioData);
                 log.info("Audio data saved successfully, audioId={}", audioId);
+                return new SavedAudio(audioId, audioData.length);
             } catch (Exception e) {
                 log.error("Failed to save audio data", e);
-                return null;
             }
         }
-        return audioId;
+        return SavedAudio.NONE;
+    }
+
+    /**
+     * Stream the raw audio part into ai_agent_chat_audio.
+     */
+    private SavedAudio saveChatAudio(MultipartFile audio) {
+        if (audio == null || audio.isEmpty()) {
+            return SavedAudio.NONE;
+        }
+        try (InputStream audioData = audio.getInputStream()) {
+            String audioId = agentChatAudioService.saveAudio(audioData);
+            log.info("Audio data saved successfully, audioId={}, size={}", audioId, audio.getSize());
+            return new SavedAudio(audioId, audio.getSize());
+        } catch (Exception e) {
+            log.error("Failed to save audio data", e);
+            return SavedAudio.NONE;
+        }
     }
 
     /**
      * Build and persist the reported chat record.
      */
-    private void saveChatText(AgentChatHistoryReportDTO report, String agentId, String macAddress, String audioId,
+    private void saveChatText(AgentChatHistoryReportDTO report, String agentId, String macAddress, SavedAudio audio,
             Long reportTime) {
         // Build the chat-history entity.
         AgentChatHistoryEntity entity = AgentChatHistoryEntity.builder()
@@ -118,13 +163,14 @@ public class AgentChatHistoryBizServiceImpl implements AgentChatHistoryBizServic
                 .sessionId(report.getSessionId())
                 .chatType(report.getChatType())
                 .content(report.getContent())
-                .audioId(audioId)
+                .audioId(audio.id())
                 .createdAt(new Date(reportTime))
                 // NOTE(haotian): createAt matters most here, and leaving updateAt unset makes reporting delay easier to see.
                 .build();
 
         // Persist the chat-history record.
         agentChatHistoryService.save(entity);
+        eventPublisher.publishEvent(new ChatHistoryReportedEvent(entity, audio.bytes()));
 
         log.info("Chat-history reporting succeeded for device {} and agent {}", macAddress, agentId);
     }
@@ -1,7 +1,10 @@
 package xiaozhi.modules.agent.service.impl;
 
+import java.io.InputStream;
+
 import org.springframework.stereotype.Service;
 
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 
 import xiaozhi.modules.agent.dao.AiAgentChatAudioDao;
@@ -26,6 +29,13 @@ public class AgentChatAudioServiceImpl extends ServiceImpl<AiAgentChatAudioDao,
         return entity.getId();
     }
 
+    @Override
+    public String saveAudio(InputStream audioData) {
+        String id = IdWorker.get32UUID();
+        baseMapper.insertStream(id, audioData);
+        return id;
+    }
+
     @Override
     public byte[] getAudio(String audioId) {
         AgentChatAudioEntity entity = getById(audioId);
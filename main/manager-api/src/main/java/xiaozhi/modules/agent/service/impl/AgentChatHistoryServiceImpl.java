@@ -1,12 +1,14 @@
 package xiaozhi.modules.agent.service.impl;
 
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import cn.hutool.core.collection.ListUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,14 +20,14 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.page.PageData;
-import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.common.utils.BeanMapper;
 import xiaozhi.common.utils.JsonUtils;
-import xiaozhi.common.utils.ToolUtil;
 import xiaozhi.modules.agent.Enums.AgentChatHistoryType;
 import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
 import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
 import xiaozhi.modules.agent.dto.AgentChatSessionDTO;
 import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.event.ChatHistoryDeletedEvent;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
 import xiaozhi.modules.agent.service.AgentChatTitleService;
 import xiaozhi.modules.agent.vo.AgentChatHistoryUserVO;
@@ -42,7 +44,20 @@ import xiaozhi.modules.agent.vo.AgentChatHistoryUserVO;
 public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryDao, AgentChatHistoryEntity>
         implements AgentChatHistoryService {
 
+    private static final BeanMapper<AgentChatHistoryEntity, AgentChatHistoryDTO> HISTORY_MAPPER = BeanMapper
+            .of(AgentChatHistoryEntity.class, AgentChatHistoryDTO.class);
+    private static final BeanMapper<AgentChatHistoryEntity, AgentChatHistoryUserVO> USER_HISTORY_MAPPER = BeanMapper
+            .of(AgentChatHistoryEntity.class, AgentChatHistoryUserVO.class);
+
+    private static final int AUDIO_DELETE_CHUNK = 1000;
+    private static final int RECENT_LIMIT = 50;
+    /**
+     * Windows searched for recent records before the whole history, in days
+     */
+    private static final int[] RECENT_WINDOW_DAYS = { 31, 183 };
+
     private final AgentChatTitleService agentChatTitleService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public PageData<AgentChatSessionDTO> getSessionListByAgentId(Map<String, Object> params) {
@@ -85,28 +100,31 @@ public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryD
         List<AgentChatHistoryEntity> historyList = list(wrapper);
 
         // Convert to DTOs.
-        return ConvertUtils.sourceToTarget(historyList, AgentChatHistoryDTO.class);
+        return HISTORY_MAPPER.mapList(historyList);
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void deleteByAgentId(String agentId, Boolean deleteAudio, Boolean deleteText) {
         if (deleteAudio) {
-            // Delete audio in batches to avoid timeouts.
-            List<String> audioIds = baseMapper.getAudioIdsByAgentId(agentId);
-            if (ToolUtil.isNotEmpty(audioIds)) {
-                // Delete 1000 rows per batch.
-                List<List<String>> batch = ListUtil.split(audioIds, 1000);
-                batch.forEach(dataList -> {
-                    baseMapper.deleteAudioByIds(dataList);
-                });
-            }
+            // Walk the agent's messages in ID order and delete audio one chunk at a time,
+            // so only a chunk of IDs is held in memory.
+            long afterId = 0;
+            List<AgentChatHistoryEntity> chunk;
+            do {
+                chunk = baseMapper.selectChunk(agentId, afterId, null, null, true, AUDIO_DELETE_CHUNK);
+                if (!chunk.isEmpty()) {
+                    baseMapper.deleteAudioByIds(chunk.stream().map(AgentChatHistoryEntity::getAudioId).toList());
+                    afterId = chunk.get(chunk.size() - 1).getId();
+                }
+            } while (chunk.size() == AUDIO_DELETE_CHUNK);
         }
         if (deleteAudio && !deleteText) {
             baseMapper.deleteAudioIdByAgentId(agentId);
         }
         if (deleteText) {
             baseMapper.deleteHistoryByAgentId(agentId);
+            eventPublisher.publishEvent(ChatHistoryDeletedEvent.ofAgent(agentId));
         }
     }
 
@@ -117,10 +135,34 @@ public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryD
         wrapper.eq(AgentChatHistoryEntity::getAgentId, agentId)
                 .eq(AgentChatHistoryEntity::getSessionId, sessionId);
         baseMapper.delete(wrapper);
+        eventPublisher.publishEvent(ChatHistoryDeletedEvent.ofSession(agentId, sessionId));
     }
 
     @Override
     public List<AgentChatHistoryUserVO> getRecentlyFiftyByAgentId(String agentId) {
+        // Look in the most recent months first, so a partitioned table only reads their partitions,
+        // and widen the window only when it holds fewer than 50 records.
+        List<AgentChatHistoryEntity> records = List.of();
+        for (int i = 0; i <= RECENT_WINDOW_DAYS.length; i++) {
+            Date since = i < RECENT_WINDOW_DAYS.length
+                    ? new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RECENT_WINDOW_DAYS[i]))
+                    : null;
+            records = selectRecentUserAudio(agentId, since);
+            if (records.size() == RECENT_LIMIT) {
+                break;
+            }
+        }
+        return records.stream().map(item -> {
+            AgentChatHistoryUserVO vo = USER_HISTORY_MAPPER.map(item);
+            // Normalize content so only the chat text is returned.
+            if (vo != null && vo.getContent() != null) {
+                vo.setContent(extractContentFromString(vo.getContent()));
+            }
+            return vo;
+        }).toList();
+    }
+
+    private List<AgentChatHistoryEntity> selectRecentUserAudio(String agentId, Date since) {
         // Build query conditions without sorting by created_at.
         // In practice a larger primary key means a later creation time, which is cheaper to paginate.
         LambdaQueryWrapper<AgentChatHistoryEntity> wrapper = new LambdaQueryWrapper<>();
@@ -128,20 +170,13 @@ public class AgentChatHistoryServiceImpl extends ServiceImpl<AiAgentChatHistoryD
                 .eq(AgentChatHistoryEntity::getAgentId, agentId)
                 .eq(AgentChatHistoryEntity::getChatType, AgentChatHistoryType.USER.getValue())
                 .isNotNull(AgentChatHistoryEntity::getAudioId)
+                .ge(since != null, AgentChatHistoryEntity::getCreatedAt, since)
                 // Use descending ID order because it aligns with creation time and is index-friendly.
                 .orderByDesc(AgentChatHistoryEntity::getId);
 
         // Query the most recent 50 records.
-        Page<AgentChatHistoryEntity> pageParam = new Page<>(0, 50);
-        IPage<AgentChatHistoryEntity> result = this.baseMapper.selectPage(pageParam, wrapper);
-        return result.getRecords().stream().map(item -> {
-            AgentChatHistoryUserVO vo = ConvertUtils.sourceToTarget(item, AgentChatHistoryUserVO.class);
-            // Normalize content so only the chat text is returned.
-            if (vo != null && vo.getContent() != null) {
-                vo.setContent(extractContentFromString(vo.getContent()));
-            }
-            return vo;
-        }).toList();
+        Page<AgentChatHistoryEntity> pageParam = new Page<>(0, RECENT_LIMIT);
+        return this.baseMapper.selectPage(pageParam, wrapper).getRecords();
     }
 
     /**
@@ -0,0 +1,358 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.util.concurrent.RateLimiter;
+
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.agent.dao.AgentDao;
+import xiaozhi.modules.agent.dao.AgentRetentionPolicyDao;
+import xiaozhi.modules.agent.dao.AgentRetentionProgressDao;
+import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
+import xiaozhi.modules.agent.dto.AgentRetentionPolicyDTO;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.agent.entity.AgentRetentionPolicyEntity;
+import xiaozhi.modules.agent.entity.AgentRetentionProgressEntity;
+import xiaozhi.modules.agent.event.ChatHistoryDeletedEvent;
+import xiaozhi.modules.agent.service.AgentChatRetentionService;
+import xiaozhi.modules.agent.support.ChatArchiveWriter;
+import xiaozhi.modules.agent.support.ChatRetentionProperties;
+import xiaozhi.modules.sys.service.SysParamsService;
+
+/**
+ * Enforces chat history retention in bounded chunks.
+ * <p>
+ * A run fixes its cutoffs and the highest message ID it may touch when it starts and records
+ * them, with a keyset cursor, in {@code ai_agent_retention_progress} after every chunk, so an
+ * interrupted run resumes exactly where it stopped. Each chunk is one short transaction: its
+ * messages and their audio are archived when the policy asks for it, then the audio and the
+ * rows are deleted. Audio older than the audio cutoff is removed in a second phase that keeps
+ * the text, and is archived the same way first.
+ * A shared rate limiter caps the rows removed per second to leave room for live traffic.
+ */
+@Slf4j
+@Service
+public class AgentChatRetentionServiceImpl implements AgentChatRetentionService {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long LOCK_SECONDS = TimeUnit.HOURS.toSeconds(6);
+
+    private final AiAgentChatHistoryDao chatHistoryDao;
+    private final AgentRetentionPolicyDao policyDao;
+    private final AgentRetentionProgressDao progressDao;
+    private final AgentDao agentDao;
+    private final SysParamsService sysParamsService;
+    private final RedisUtils redisUtils;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChatArchiveWriter archiveWriter;
+    private final int chunkSize;
+    private final RateLimiter rateLimiter;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public AgentChatRetentionServiceImpl(AiAgentChatHistoryDao chatHistoryDao, AgentRetentionPolicyDao policyDao,
+            AgentRetentionProgressDao progressDao, AgentDao agentDao, SysParamsService sysParamsService,
+            RedisUtils redisUtils, TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+            ChatRetentionProperties properties) {
+        this.chatHistoryDao = chatHistoryDao;
+        this.policyDao = policyDao;
+        this.progressDao = progressDao;
+        this.agentDao = agentDao;
+        this.sysParamsService = sysParamsService;
+        this.redisUtils = redisUtils;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.archiveWriter = new ChatArchiveWriter(properties.getArchiveDir());
+        this.chunkSize = properties.getChunkSize();
+        this.rateLimiter = RateLimiter.create(properties.getRowsPerSecond());
+    }
+
+    @Override
+    public AgentRetentionPolicyDTO getPolicy(String agentId) {
+        AgentRetentionPolicyEntity entity = policyDao.selectById(agentId);
+        if (entity == null) {
+            return null;
+        }
+        AgentRetentionPolicyDTO dto = new AgentRetentionPolicyDTO();
+        dto.setMaxAgeDays(entity.getMaxAgeDays());
+        dto.setMaxSessions(entity.getMaxSessions());
+        dto.setAudioMaxAgeDays(entity.getAudioMaxAgeDays());
+        dto.setArchive(Objects.equals(entity.getArchive(), 1));
+        return dto;
+    }
+
+    @Override
+    public void savePolicy(String agentId, AgentRetentionPolicyDTO dto) {
+        AgentRetentionPolicyEntity entity = AgentRetentionPolicyEntity.builder()
+                .agentId(agentId)
+                .maxAgeDays(dto.getMaxAgeDays())
+                .maxSessions(dto.getMaxSessions())
+                .audioMaxAgeDays(dto.getAudioMaxAgeDays())
+                .archive(Boolean.TRUE.equals(dto.getArchive()) ? 1 : 0)
+                .updatedAt(new Date())
+                .build();
+        // Limits are cleared by saving them empty, so the whole row is replaced
+        policyDao.deleteById(agentId);
+        policyDao.insert(entity);
+    }
+
+    @Override
+    public void deletePolicy(String agentId) {
+        policyDao.deleteById(agentId);
+    }
+
+    @Override
+    public AgentRetentionPolicyEntity getEffectivePolicy(String agentId) {
+        AgentRetentionPolicyEntity policy = policyDao.selectById(agentId);
+        if (policy != null) {
+            return policy;
+        }
+        int days = defaultMaxAgeDays();
+        return days > 0 ? AgentRetentionPolicyEntity.builder().agentId(agentId).maxAgeDays(days).archive(0).build()
+                : null;
+    }
+
+    @Override
+    public void runAll() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        String lockKey = RedisKeys.getChatRetentionLockKey();
+        // A run that outlives the lock must not release the one another node has taken since
+        String lockToken = UUID.randomUUID().toString();
+        try {
+            if (!redisUtils.setIfAbsent(lockKey, lockToken, LOCK_SECONDS)) {
+                log.info("Chat retention is already running on another node");
+                return;
+            }
+            try {
+                for (String agentId : agentsWithPolicy()) {
+                    try {
+                        AgentRetentionProgressEntity progress = runAgent(agentId, getEffectivePolicy(agentId));
+                        if (progress != null) {
+                            log.info("Chat retention for agent {}: {} messages and {} audio clips removed", agentId,
+                                    progress.getRowsDeleted(), progress.getAudioDeleted());
+                        }
+                    } catch (Exception e) {
+                        log.error("Chat retention failed for agent {}, it resumes on the next run", agentId, e);
+                    }
+                }
+            } finally {
+                redisUtils.deleteIfEquals(lockKey, lockToken);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Override
+    public AgentRetentionProgressEntity runAgent(String agentId, AgentRetentionPolicyEntity policy) {
+        AgentRetentionProgressEntity progress = progressDao.selectById(agentId);
+        if (progress == null || progress.getFinishedAt() != null) {
+            AgentRetentionProgressEntity started = policy == null ? null : start(agentId, policy, new Date());
+            if (started == null) {
+                return null;
+            }
+            if (progress == null) {
+                progressDao.insert(started);
+            } else {
+                progressDao.updateById(started);
+            }
+            progress = started;
+        } else {
+            log.info("Resuming chat retention for agent {} in phase {} after ID {}", agentId, progress.getPhase(),
+                    progress.getCursorId());
+        }
+        if (AgentRetentionProgressEntity.PHASE_TEXT.equals(progress.getPhase())) {
+            removeMessages(progress);
+            progress.setPhase(progress.getAudioCutoff() == null ? AgentRetentionProgressEntity.PHASE_DONE
+                    : AgentRetentionProgressEntity.PHASE_AUDIO);
+            progress.setCursorId(0L);
+            progressDao.updateById(progress);
+        }
+        if (AgentRetentionProgressEntity.PHASE_AUDIO.equals(progress.getPhase())) {
+            removeAudio(progress);
+            progress.setPhase(AgentRetentionProgressEntity.PHASE_DONE);
+        }
+        progress.setFinishedAt(new Date());
+        progressDao.updateById(progress);
+        return progress;
+    }
+
+    /**
+     * Fix the bounds of a new run, or return null when the policy removes nothing.
+     */
+    private AgentRetentionProgressEntity start(String agentId, AgentRetentionPolicyEntity policy, Date now) {
+        Date textCutoff = daysBefore(now, policy.getMaxAgeDays());
+        if (policy.getMaxSessions() != null && policy.getMaxSessions() > 0) {
+            textCutoff = later(textCutoff, chatHistoryDao.selectKeptSessionsStart(agentId, policy.getMaxSessions()));
+        }
+        Date audioCutoff = daysBefore(now, policy.getAudioMaxAgeDays());
+        if (audioCutoff != null && textCutoff != null && !audioCutoff.after(textCutoff)) {
+            // Removing the messages already removes their audio
+            audioCutoff = null;
+        }
+        Date bound = later(textCutoff, audioCutoff);
+        Long maxId = bound == null ? null : chatHistoryDao.selectMaxIdBefore(agentId, bound);
+        if (maxId == null) {
+            return null;
+        }
+        String archiveFile = Objects.equals(policy.getArchive(), 1)
+                ? ChatArchiveWriter.fileName(agentId, new SimpleDateFormat("yyyyMMddHHmmss").format(now))
+                : null;
+        return AgentRetentionProgressEntity.builder()
+                .agentId(agentId)
+                .phase(textCutoff != null ? AgentRetentionProgressEntity.PHASE_TEXT
+                        : AgentRetentionProgressEntity.PHASE_AUDIO)
+                .cursorId(0L)
+                .maxId(maxId)
+                .textCutoff(textCutoff)
+                .audioCutoff(audioCutoff)
+                .archiveFile(archiveFile)
+                .rowsDeleted(0L)
+                .audioDeleted(0L)
+                .startedAt(now)
+                .build();
+    }
+
+    private void removeMessages(AgentRetentionProgressEntity progress) {
+        List<AgentChatHistoryEntity> chunk;
+        do {
+            chunk = chatHistoryDao.selectChunk(progress.getAgentId(), progress.getCursorId(), progress.getMaxId(),
+                    progress.getTextCutoff(), false, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            rateLimiter.acquire(chunk.size());
+            archive(progress, chunk, true);
+            List<AgentChatHistoryEntity> messages = chunk;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> audioIds = audioIds(messages);
+                if (!audioIds.isEmpty()) {
+                    chatHistoryDao.deleteAudioByIds(audioIds);
+                }
+                List<Long> ids = messages.stream().map(AgentChatHistoryEntity::getId).toList();
+                chatHistoryDao.deleteChunk(ids, progress.getTextCutoff());
+                eventPublisher.publishEvent(ChatHistoryDeletedEvent.ofIds(ids));
+                advance(progress, messages, messages.size(), audioIds.size());
+            });
+        } while (chunk.size() == chunkSize);
+    }
+
+    private void removeAudio(AgentRetentionProgressEntity progress) {
+        List<AgentChatHistoryEntity> chunk;
+        do {
+            chunk = chatHistoryDao.selectChunk(progress.getAgentId(), progress.getCursorId(), progress.getMaxId(),
+                    progress.getAudioCutoff(), true, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            rateLimiter.acquire(chunk.size());
+            archive(progress, chunk, false);
+            List<AgentChatHistoryEntity> messages = chunk;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> audioIds = audioIds(messages);
+                chatHistoryDao.deleteAudioByIds(audioIds);
+                chatHistoryDao.clearAudioIdByIds(messages.stream().map(AgentChatHistoryEntity::getId).toList(),
+                        progress.getAudioCutoff());
+                advance(progress, messages, 0, audioIds.size());
+            });
+        } while (chunk.size() == chunkSize);
+    }
+
+    /**
+     * Archive a chunk before it is deleted when the run keeps an archive: its messages when they
+     * are removed, and their audio in either phase.
+     * <p>
+     * Written before the delete commits, so a chunk is archived at least once.
+     */
+    private void archive(AgentRetentionProgressEntity progress, List<AgentChatHistoryEntity> chunk, boolean messages) {
+        if (progress.getArchiveFile() == null) {
+            return;
+        }
+        try {
+            if (messages) {
+                archiveWriter.append(progress.getArchiveFile(), chunk);
+            }
+            List<String> audioIds = audioIds(chunk);
+            if (!audioIds.isEmpty()) {
+                archiveWriter.writeAudio(progress.getArchiveFile(), chatHistoryDao.selectAudioByIds(audioIds));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive chat history of " + progress.getAgentId(), e);
+        }
+    }
+
+    /**
+     * Move the cursor past a chunk; runs inside the chunk's transaction.
+     */
+    private void advance(AgentRetentionProgressEntity progress, List<AgentChatHistoryEntity> chunk, int rows,
+            int audio) {
+        progress.setCursorId(chunk.get(chunk.size() - 1).getId());
+        progress.setRowsDeleted(progress.getRowsDeleted() + rows);
+        progress.setAudioDeleted(progress.getAudioDeleted() + audio);
+        progressDao.updateById(progress);
+    }
+
+    private Set<String> agentsWithPolicy() {
+        Set<String> agentIds = new LinkedHashSet<>();
+        policyDao.selectList(null).forEach(policy -> agentIds.add(policy.getAgentId()));
+        // Interrupted runs resume even if their policy has since been removed
+        progressDao.selectList(new QueryWrapper<AgentRetentionProgressEntity>().isNull("finished_at"))
+                .forEach(progress -> agentIds.add(progress.getAgentId()));
+        if (defaultMaxAgeDays() > 0) {
+            agentDao.selectObjs(new QueryWrapper<AgentEntity>().select("id"))
+                    .forEach(id -> agentIds.add(String.valueOf(id)));
+        }
+        return agentIds;
+    }
+
+    private int defaultMaxAgeDays() {
+        String value = sysParamsService.getValue(Constant.CHAT_RETENTION_DEFAULT_MAX_AGE_DAYS, true);
+        if (StringUtils.isBlank(value)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", Constant.CHAT_RETENTION_DEFAULT_MAX_AGE_DAYS, value);
+            return 0;
+        }
+    }
+
+    private static List<String> audioIds(List<AgentChatHistoryEntity> chunk) {
+        return chunk.stream().map(AgentChatHistoryEntity::getAudioId).filter(StringUtils::isNotBlank).distinct()
+                .toList();
+    }
+
+    private static Date daysBefore(Date now, Integer days) {
+        return days == null || days <= 0 ? null : new Date(now.getTime() - days * DAY_MILLIS);
+    }
+
+    private static Date later(Date a, Date b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.after(b) ? a : b;
+    }
+}
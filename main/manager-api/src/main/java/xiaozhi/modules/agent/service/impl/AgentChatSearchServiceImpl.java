@@ -0,0 +1,242 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.LatencyHistogram;
+import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.event.ChatHistoryDeletedEvent;
+import xiaozhi.modules.agent.event.ChatHistoryReportedEvent;
+import xiaozhi.modules.agent.service.AgentChatSearchService;
+import xiaozhi.modules.agent.support.ChatSearchIndex;
+import xiaozhi.modules.agent.support.ChatSearchProperties;
+import xiaozhi.modules.agent.vo.AgentChatSearchHitVO;
+import xiaozhi.modules.agent.vo.ChatSearchStatsVO;
+
+@Slf4j
+@Service
+public class AgentChatSearchServiceImpl implements AgentChatSearchService {
+
+    private final AiAgentChatHistoryDao chatHistoryDao;
+    private final ChatSearchProperties properties;
+    /**
+     * Runs rebuilds on their own thread so a full reindex never holds the shared task pool
+     */
+    private final Executor rebuildExecutor;
+    /**
+     * Null when search is disabled or the index could not be opened
+     */
+    private final ChatSearchIndex index;
+    private final LatencyHistogram queryLatency = new LatencyHistogram();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong rebuildIndexed = new AtomicLong();
+    private final LongAdder indexFailures = new LongAdder();
+
+    @Autowired
+    public AgentChatSearchServiceImpl(AiAgentChatHistoryDao chatHistoryDao, ChatSearchProperties properties) {
+        this(chatHistoryDao, properties, Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "chat-search-rebuild");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    AgentChatSearchServiceImpl(AiAgentChatHistoryDao chatHistoryDao, ChatSearchProperties properties,
+            Executor rebuildExecutor) {
+        this.chatHistoryDao = chatHistoryDao;
+        this.properties = properties;
+        this.rebuildExecutor = rebuildExecutor;
+        this.index = properties.isEnabled() ? open(properties) : null;
+    }
+
+    private static ChatSearchIndex open(ChatSearchProperties properties) {
+        try {
+            return new ChatSearchIndex(properties.getIndexDir(), properties.getSnippetLength());
+        } catch (IOException e) {
+            // Search is an extra: the chat history itself keeps working without it
+            log.error("Failed to open chat search index at {}, search disabled", properties.getIndexDir(), e);
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (rebuildExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                log.error("Failed to close chat search index", e);
+            }
+        }
+    }
+
+    /**
+     * Index a reported message once its transaction has committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReported(ChatHistoryReportedEvent event) {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.add(event.message());
+        } catch (IOException | RuntimeException e) {
+            indexFailures.increment();
+            log.error("Failed to index chat message {}", event.message().getId(), e);
+        }
+    }
+
+    /**
+     * Remove deleted messages once their transaction has committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(ChatHistoryDeletedEvent event) {
+        if (index == null) {
+            return;
+        }
+        try {
+            if (event.ids() != null) {
+                index.deleteIds(event.ids());
+            } else if (event.sessionId() != null) {
+                index.deleteSession(event.agentId(), event.sessionId());
+            } else if (event.agentId() != null) {
+                index.deleteAgent(event.agentId());
+            } else if (event.from() != null && event.to() != null) {
+                index.deleteRange(event.from().getTime(), event.to().getTime());
+            }
+        } catch (IOException | RuntimeException e) {
+            indexFailures.increment();
+            log.error("Failed to remove deleted chat messages from the search index: {}", event, e);
+        }
+    }
+
+    @Override
+    public List<AgentChatSearchHitVO> search(String agentId, String query, Long startTime, Long endTime,
+            Integer limit) {
+        if (index == null) {
+            throw new RenException(ErrorCode.CHAT_SEARCH_DISABLED);
+        }
+        int max = properties.getMaxResults();
+        int size = limit == null || limit <= 0 ? max : Math.min(limit, max);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<AgentChatSearchHitVO> hits = index.search(agentId, query, startTime, endTime, size).stream()
+                    .map(AgentChatSearchServiceImpl::toVO).toList();
+            failed = false;
+            return hits;
+        } catch (IOException e) {
+            throw new RenException(ErrorCode.CHAT_SEARCH_FAILED, e);
+        } finally {
+            queryLatency.recordSince(start, failed);
+        }
+    }
+
+    @Override
+    public boolean rebuild(String agentId) {
+        if (index == null) {
+            throw new RenException(ErrorCode.CHAT_SEARCH_DISABLED);
+        }
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildIndexed.set(0);
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    reindex(agentId);
+                } catch (Exception e) {
+                    log.error("Chat search index rebuild failed", e);
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            rebuilding.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Drop the indexed messages in scope and read them back from the database in ID order.
+     * Reports arriving meanwhile are indexed as usual; indexing a message twice replaces it.
+     */
+    void reindex(String agentId) throws IOException {
+        long start = System.currentTimeMillis();
+        if (agentId == null) {
+            index.deleteAll();
+        } else {
+            index.deleteAgent(agentId);
+        }
+        int chunkSize = properties.getRebuildChunkSize();
+        long afterId = 0;
+        List<AgentChatHistoryEntity> chunk;
+        do {
+            chunk = chatHistoryDao.selectChunk(agentId, afterId, null, null, false, chunkSize);
+            if (!chunk.isEmpty()) {
+                index.addAll(chunk);
+                afterId = chunk.get(chunk.size() - 1).getId();
+                rebuildIndexed.addAndGet(chunk.size());
+            }
+        } while (chunk.size() == chunkSize);
+        index.commit();
+        log.info("Rebuilt chat search index for {}: {} messages in {} ms", agentId == null ? "all agents" : agentId,
+                rebuildIndexed.get(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void commit() {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.commit();
+        } catch (IOException e) {
+            log.error("Failed to commit chat search index", e);
+        }
+    }
+
+    @Override
+    public ChatSearchStatsVO getStats() {
+        ChatSearchStatsVO stats = new ChatSearchStatsVO();
+        stats.setEnabled(index != null);
+        stats.setDocuments(index == null ? 0 : index.size());
+        stats.setRebuilding(rebuilding.get());
+        stats.setRebuildIndexed(rebuildIndexed.get());
+        stats.setIndexFailures(indexFailures.sum());
+        stats.setQueryLatency(queryLatency.snapshot());
+        return stats;
+    }
+
+    private static AgentChatSearchHitVO toVO(ChatSearchIndex.Hit hit) {
+        AgentChatSearchHitVO vo = new AgentChatSearchHitVO();
+        vo.setId(hit.id());
+        vo.setSessionId(hit.sessionId());
+        vo.setMacAddress(hit.macAddress());
+        vo.setChatType(hit.chatType());
+        vo.setCreatedAt(new Date(hit.createdAt()));
+        vo.setScore(hit.score());
+        vo.setSnippet(hit.snippet());
+        return vo;
+    }
+}
@@ -0,0 +1,356 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.modules.agent.service.AgentChatSummaryJobService;
+import xiaozhi.modules.agent.service.AgentChatSummaryService;
+import xiaozhi.modules.agent.vo.ChatSummaryJobStatsVO;
+
+/**
+ * Summary and title jobs run on virtual threads, bounded in three ways: a capacity on
+ * accepted jobs, one job per session at a time, and a fixed number of concurrent calls
+ * per LLM model. Summaries of the same agent go through a per-agent lane and run one
+ * after another, so each reads the memory the previous one saved instead of racing on
+ * {@code summaryMemory}. Failed jobs are retried with exponential backoff, except summaries
+ * and titles the service declined: those sessions have nothing to summarise or title, so a
+ * retry would only repeat the same answer.
+ * <p>
+ * A lane is drained a batch window after its first summary arrives, and the sessions that
+ * collected by then are merged into one LLM call and one memory update, so chatty devices
+ * do not cost an LLM call and an agent update per session.
+ */
+@Slf4j
+@Service
+public class AgentChatSummaryJobServiceImpl implements AgentChatSummaryJobService {
+
+    private static final int DEFAULT_CAPACITY = 10_000;
+    private static final int DEFAULT_MODEL_CONCURRENCY = 4;
+    private static final long DEFAULT_BACKOFF_MILLIS = 2_000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BATCH_WINDOW_MILLIS = 30_000;
+    private static final int DEFAULT_MAX_BATCH_SESSIONS = 20;
+    /**
+     * Semaphore key for agents that use the default LLM service.
+     */
+    private static final String DEFAULT_MODEL = "default";
+
+    private final AgentChatSummaryService agentChatSummaryService;
+    private final int capacity;
+    private final int modelConcurrency;
+    private final long backoffMillis;
+    private final long batchWindowMillis;
+    private final int maxBatchSessions;
+
+    private final ExecutorService workers = Executors
+            .newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-summary-", 0).factory());
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "chat-summary-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Set<String> activeKeys = ConcurrentHashMap.newKeySet();
+    private final Map<String, Semaphore> modelPermits = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> runningByModel = new ConcurrentHashMap<>();
+    // agentId -> waiting summaries; an entry exists exactly while a drainer owns the lane
+    private final Map<String, Deque<Job>> agentLanes = new HashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedSessions = new LongAdder();
+    private final LongAdder finishedRuns = new LongAdder();
+    private final LongAdder totalRunMillis = new LongAdder();
+
+    @Autowired
+    public AgentChatSummaryJobServiceImpl(AgentChatSummaryService agentChatSummaryService) {
+        this(agentChatSummaryService, DEFAULT_CAPACITY, DEFAULT_MODEL_CONCURRENCY, DEFAULT_BACKOFF_MILLIS,
+                DEFAULT_BATCH_WINDOW_MILLIS, DEFAULT_MAX_BATCH_SESSIONS);
+    }
+
+    /**
+     * Without batching: every summary runs on its own as soon as its lane is free.
+     */
+    AgentChatSummaryJobServiceImpl(AgentChatSummaryService agentChatSummaryService, int capacity,
+            int modelConcurrency, long backoffMillis) {
+        this(agentChatSummaryService, capacity, modelConcurrency, backoffMillis, 0, 1);
+    }
+
+    AgentChatSummaryJobServiceImpl(AgentChatSummaryService agentChatSummaryService, int capacity,
+            int modelConcurrency, long backoffMillis, long batchWindowMillis, int maxBatchSessions) {
+        this.agentChatSummaryService = agentChatSummaryService;
+        this.capacity = capacity;
+        this.modelConcurrency = modelConcurrency;
+        this.backoffMillis = backoffMillis;
+        this.batchWindowMillis = batchWindowMillis;
+        this.maxBatchSessions = Math.max(1, maxBatchSessions);
+    }
+
+    @Override
+    public boolean submitSummary(String sessionId) {
+        return submit(JobType.SUMMARY, sessionId);
+    }
+
+    @Override
+    public boolean submitTitle(String sessionId) {
+        return submit(JobType.TITLE, sessionId);
+    }
+
+    @Override
+    public ChatSummaryJobStatsVO getStats() {
+        ChatSummaryJobStatsVO stats = new ChatSummaryJobStatsVO();
+        int runningNow = running.get();
+        stats.setRunning(runningNow);
+        stats.setQueued(Math.max(0, pending.get() - runningNow));
+        stats.setCapacity(capacity);
+        stats.setSubmitted(submitted.sum());
+        stats.setDeduplicated(deduplicated.sum());
+        stats.setRejected(rejected.sum());
+        stats.setSucceeded(succeeded.sum());
+        stats.setFailed(failed.sum());
+        stats.setSkipped(skipped.sum());
+        stats.setRetried(retried.sum());
+        stats.setBatches(batches.sum());
+        stats.setBatchedSessions(batchedSessions.sum());
+        long runs = finishedRuns.sum();
+        stats.setAverageMillis(runs == 0 ? 0 : totalRunMillis.sum() / runs);
+        synchronized (agentLanes) {
+            stats.setAgentsWaiting(agentLanes.size());
+        }
+        Map<String, Integer> byModel = new TreeMap<>();
+        runningByModel.forEach((model, count) -> byModel.put(model, count.get()));
+        stats.setRunningByModel(byModel);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private boolean submit(JobType type, String sessionId) {
+        if (StringUtils.isBlank(sessionId)) {
+            return false;
+        }
+        Job job = new Job(type, sessionId, null, null, 1);
+        if (!activeKeys.add(job.key())) {
+            deduplicated.increment();
+            return false;
+        }
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            activeKeys.remove(job.key());
+            rejected.increment();
+            log.warn("Chat summary queue is full ({}), rejecting {} for session {}", capacity, type, sessionId);
+            throw new RenException(ErrorCode.CHAT_SUMMARY_QUEUE_FULL);
+        }
+        submitted.increment();
+        dispatch(job);
+        return true;
+    }
+
+    private void dispatch(Job job) {
+        workers.execute(() -> {
+            // The agent lookup is a query, so it runs here rather than on the request thread
+            Job resolved = job.agentId() != null ? job
+                    : job.withAgentId(StringUtils.defaultString(
+                            agentChatSummaryService.getAgentIdBySessionId(job.sessionId())));
+            if (resolved.type() == JobType.SUMMARY && !resolved.agentId().isEmpty()) {
+                enqueueForAgent(resolved);
+            } else {
+                run(resolved);
+            }
+        });
+    }
+
+    private void enqueueForAgent(Job job) {
+        boolean ownsLane;
+        synchronized (agentLanes) {
+            Deque<Job> lane = agentLanes.get(job.agentId());
+            ownsLane = lane == null;
+            if (ownsLane) {
+                lane = new ArrayDeque<>();
+                agentLanes.put(job.agentId(), lane);
+            }
+            lane.add(job);
+        }
+        if (!ownsLane) {
+            return;
+        }
+        if (batchWindowMillis > 0 && !scheduler.isShutdown()) {
+            // Let more sessions of this agent collect before the first LLM call
+            scheduler.schedule(() -> workers.execute(() -> drain(job.agentId())), batchWindowMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            drain(job.agentId());
+        }
+    }
+
+    private void drain(String agentId) {
+        while (true) {
+            List<Job> batch = new ArrayList<>();
+            synchronized (agentLanes) {
+                Deque<Job> lane = agentLanes.get(agentId);
+                while (batch.size() < maxBatchSessions && !lane.isEmpty()) {
+                    batch.add(lane.poll());
+                }
+                if (batch.isEmpty()) {
+                    agentLanes.remove(agentId);
+                    return;
+                }
+            }
+            if (batch.size() == 1) {
+                run(batch.get(0));
+            } else {
+                runBatch(agentId, batch);
+            }
+        }
+    }
+
+    private void runBatch(String agentId, List<Job> batch) {
+        List<String> sessionIds = batch.stream().map(Job::sessionId).toList();
+        // One model lookup for the whole batch, kept on the jobs for their retries
+        String modelKey = batch.get(0).model() != null ? batch.get(0).model() : modelKey(agentId);
+        Outcome outcome = execute(modelKey, () -> agentChatSummaryService.generateAndSaveBatchSummary(agentId,
+                sessionIds), "batch of " + sessionIds.size() + " summaries for agent " + agentId);
+        batches.increment();
+        batchedSessions.add(batch.size());
+        // The sessions of a failed batch retry one by one and may be batched again
+        batch.forEach(job -> complete(job.withModel(modelKey), outcome));
+    }
+
+    private void run(Job job) {
+        Job resolved = job.model() != null ? job : job.withModel(modelKey(job.agentId()));
+        Outcome outcome = execute(resolved.model(), () -> job.type() == JobType.SUMMARY
+                ? agentChatSummaryService.generateAndSaveChatSummary(job.sessionId())
+                : agentChatSummaryService.generateAndSaveChatTitle(job.sessionId()),
+                job.type() + " job for session " + job.sessionId());
+        complete(resolved, outcome);
+    }
+
+    private String modelKey(String agentId) {
+        String model = agentId.isEmpty() ? null : agentChatSummaryService.getSummaryModelId(agentId);
+        return StringUtils.defaultIfBlank(model, DEFAULT_MODEL);
+    }
+
+    /**
+     * Run one LLM-bound call under the per-model concurrency limit.
+     */
+    private Outcome execute(String modelKey, Callable<Boolean> call, String description) {
+        Semaphore permits = modelPermits.computeIfAbsent(modelKey, k -> new Semaphore(modelConcurrency));
+        AtomicInteger modelRunning = runningByModel.computeIfAbsent(modelKey, k -> new AtomicInteger());
+
+        Outcome outcome = Outcome.FAILED;
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+            running.incrementAndGet();
+            modelRunning.incrementAndGet();
+            try {
+                outcome = Boolean.TRUE.equals(call.call()) ? Outcome.SUCCEEDED : Outcome.DECLINED;
+            } finally {
+                modelRunning.decrementAndGet();
+                running.decrementAndGet();
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("{} failed: {}", description, e.getMessage());
+        }
+        finishedRuns.increment();
+        totalRunMillis.add((System.nanoTime() - start) / 1_000_000);
+        return outcome;
+    }
+
+    private void complete(Job job, Outcome outcome) {
+        if (outcome == Outcome.SUCCEEDED) {
+            finish(job, true);
+        } else if (outcome == Outcome.DECLINED) {
+            activeKeys.remove(job.key());
+            pending.decrementAndGet();
+            skipped.increment();
+            log.info("{} job for session {} was declined, not retrying", job.type(), job.sessionId());
+        } else if (job.attempt() < MAX_ATTEMPTS && !scheduler.isShutdown()) {
+            long delay = backoffMillis << (job.attempt() - 1);
+            retried.increment();
+            log.info("{} job for session {} failed on attempt {}, retrying in {} ms", job.type(), job.sessionId(),
+                    job.attempt(), delay);
+            scheduler.schedule(() -> dispatch(job.nextAttempt()), delay, TimeUnit.MILLISECONDS);
+        } else {
+            finish(job, false);
+        }
+    }
+
+    private void finish(Job job, boolean success) {
+        activeKeys.remove(job.key());
+        pending.decrementAndGet();
+        if (success) {
+            succeeded.increment();
+        } else {
+            failed.increment();
+            log.warn("{} job for session {} gave up after {} attempts", job.type(), job.sessionId(), job.attempt());
+        }
+    }
+
+    private enum JobType {
+        SUMMARY, TITLE
+    }
+
+    /**
+     * How a call ended: the service returned true, returned false, or threw.
+     */
+    private enum Outcome {
+        SUCCEEDED, DECLINED, FAILED
+    }
+
+    private record Job(JobType type, String sessionId, String agentId, String model, int attempt) {
+        String key() {
+            return type + ":" + sessionId;
+        }
+
+        Job withAgentId(String agentId) {
+            return new Job(type, sessionId, agentId, model, attempt);
+        }
+
+        Job withModel(String model) {
+            return new Job(type, sessionId, agentId, model, attempt);
+        }
+
+        Job nextAttempt() {
+            return new Job(type, sessionId, agentId, model, attempt + 1);
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package xiaozhi.modules.agent.service.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -16,15 +16,16 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import lombok.RequiredArgsConstructor;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
-import xiaozhi.modules.agent.dto.AgentChatSummaryDTO;
 import xiaozhi.modules.agent.dto.AgentMemoryDTO;
-import xiaozhi.modules.agent.dto.AgentUpdateDTO;
 import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
 import xiaozhi.modules.agent.service.AgentChatSummaryService;
 import xiaozhi.modules.agent.service.AgentChatTitleService;
+import xiaozhi.modules.agent.service.AgentMemoryService;
 import xiaozhi.modules.agent.service.AgentService;
-import xiaozhi.modules.agent.vo.AgentInfoVO;
+import xiaozhi.modules.agent.support.ChatMessageExtractor;
+import xiaozhi.modules.agent.support.MemoryFact;
+import xiaozhi.modules.agent.vo.AgentConfigVO;
 import xiaozhi.modules.device.entity.DeviceEntity;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.llm.service.LLMService;
@@ -47,481 +48,329 @@ public class AgentChatSummaryServiceImpl implements AgentChatSummaryService {
     private final DeviceService deviceService;
     private final LLMService llmService;
     private final ModelConfigService modelConfigService;
-
-    // Summary rules and limits.
-    private static final int MAX_SUMMARY_LENGTH = 1800; // Maximum summary length.
-    private static final Pattern JSON_PATTERN = Pattern.compile("\\{.*?\\}", Pattern.DOTALL);
-    private static final Pattern DEVICE_CONTROL_PATTERN = Pattern.compile("device control|device operation|control device|device status",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern WEATHER_PATTERN = Pattern.compile("weather|temperature|humidity|rain|forecast", Pattern.CASE_INSENSITIVE);
-    private static final Pattern DATE_PATTERN = Pattern.compile("date|time|day of week|month|year", Pattern.CASE_INSENSITIVE);
-    private static final String SERVICE_UNAVAILABLE = "Service temporarily unavailable";
-    private static final String SUMMARY_GENERATION_FAILED = "Summary generation failed";
-
-    private AgentChatSummaryDTO generateChatSummary(String sessionId) {
-        try {
-            System.out.println("Starting chat summary generation for session " + sessionId);
-
-            // 1. Load chat history by sessionId.
-            List<AgentChatHistoryDTO> chatHistory = getChatHistoryBySessionId(sessionId);
-            if (chatHistory == null || chatHistory.isEmpty()) {
-                return new AgentChatSummaryDTO(sessionId, "No chat history was found for this session");
-            }
-
-            // 2. Resolve the agent information.
-            String agentId = getAgentIdFromSession(sessionId, chatHistory);
-            if (StringUtils.isBlank(agentId)) {
-                return new AgentChatSummaryDTO(sessionId, "Unable to determine the agent information");
-            }
-
-            // 3. Extract meaningful conversation content.
-            List<String> meaningfulMessages = extractMeaningfulMessages(chatHistory);
-            if (meaningfulMessages.isEmpty()) {
-                return new AgentChatSummaryDTO(sessionId, "There is no meaningful conversation content to summarize");
-            }
-
-            // 4. Generate the summary. Length enforcement happens downstream.
-            String summary = generateSummaryFromMessages(meaningfulMessages, agentId);
-
-            log.info("Generated a chat summary for session {} with length {} characters", sessionId, summary.length());
-            return new AgentChatSummaryDTO(sessionId, agentId, summary);
-
-        } catch (Exception e) {
-            log.error("Failed to generate a chat summary for session {}: {}", sessionId, e.getMessage());
-            return new AgentChatSummaryDTO(sessionId, "An error occurred while generating the summary: " + e.getMessage());
-        }
-    }
+    private final AgentMemoryService agentMemoryService;
+
+    // Token budgets for the conversation part of summary and title prompts.
+    private static final int CONVERSATION_TOKEN_BUDGET = 4000;
+    private static final int TITLE_TOKEN_BUDGET = 1000;
+    // Known memory passed to the extraction prompt so facts are not stored twice.
+    private static final int KNOWN_MEMORY_TOKEN_BUDGET = 800;
+    private static final String MEMORY_EXTRACTION_PROMPT = "You maintain the long-term memory of a voice assistant."
+            + " From the conversation below, extract new facts about the user that will help in future"
+            + " conversations.\n"
+            + "Rules:\n"
+            + "1. One fact per line, written as importance|fact, where importance goes from 1 (trivial) to 5"
+            + " (essential).\n"
+            + "2. Skip facts already in the known memory, device control, weather, dates, times and small talk.\n"
+            + "3. Keep each fact short and write it in the language of the conversation.\n"
+            + "4. If there is nothing new, reply with NONE only.\n\n"
+            + "Known memory:\n{known_memory}\n\n"
+            + "Conversation:\n{conversation}";
 
     @Override
     public boolean generateAndSaveChatSummary(String sessionId) {
-        try {
-            DeviceEntity device = getDeviceBySessionId(sessionId);
-            if (device == null) {
-                log.info("No device was found for session {}", sessionId);
-                return false;
-            }
-
-            String agentId = device.getAgentId();
-            String memModelId = agentService.getAgentById(agentId).getMemModelId();
-
-            if (memModelId == null || memModelId.equals(Constant.MEMORY_MEM_REPORT_ONLY)) {
-                log.info("Session {} uses report-only chat history mode; skipping memory summarization", sessionId);
-                return true;
-            }
+        DeviceEntity device = getDeviceBySessionId(sessionId);
+        if (device == null) {
+            log.info("No device was found for session {}", sessionId);
+            return false;
+        }
 
-            boolean shouldSummarizeMemory = !memModelId.equals(Constant.MEMORY_NO_MEM)
-                    && !memModelId.equals(Constant.MEMORY_MEM0AI)
-                    && !memModelId.equals(Constant.MEMORY_POWERMEM);
-
-            if (shouldSummarizeMemory) {
-                AgentChatSummaryDTO summaryDTO = generateChatSummary(sessionId);
-                if (summaryDTO.isSuccess()) {
-                    agentService.updateAgentById(agentId, new AgentUpdateDTO() {
-                        {
-                            setSummaryMemory(summaryDTO.getSummary());
-                        }
-                    });
-                    log.info("Saved chat summary for session {} to agent {}", sessionId, agentId);
-                } else {
-                    log.info("Summary generation failed: {}", summaryDTO.getErrorMessage());
-                }
-            } else {
-                log.info("Session {} uses {} mode; skipping memory summarization", sessionId, memModelId);
-            }
+        String agentId = device.getAgentId();
+        AgentConfigVO agentInfo = agentService.getAgentConfigById(agentId);
+        if (!summarizesMemory(agentInfo)) {
+            log.info("Session {} uses {} mode; skipping memory summarization", sessionId,
+                    agentInfo == null ? null : agentInfo.getMemModelId());
+            return true;
+        }
 
+        List<AgentChatHistoryDTO> chatHistory = getChatHistoryBySessionId(sessionId);
+        List<String> meaningfulMessages = chatHistory == null ? List.of()
+                : ChatMessageExtractor.extract(chatHistory, CONVERSATION_TOKEN_BUDGET, true);
+        if (meaningfulMessages.isEmpty()) {
+            log.info("No meaningful content in session {}; memory left unchanged", sessionId);
             return true;
+        }
 
-        } catch (Exception e) {
-            log.error("Failed to save the chat summary for session {}: {}", sessionId, e.getMessage());
-            return false;
+        StringBuilder conversation = new StringBuilder();
+        for (int i = 0; i < meaningfulMessages.size(); i++) {
+            conversation.append("Message ").append(i + 1).append(": ").append(meaningfulMessages.get(i))
+                    .append("\n");
         }
+        memorize(agentInfo, device.getId(), sessionId, conversation.toString());
+        return true;
     }
 
     @Override
-    public boolean generateAndSaveChatTitle(String sessionId) {
-        try {
-            // Resolve agentId automatically.
-            String agentId = findAgentIdBySessionId(sessionId);
-            if (StringUtils.isBlank(agentId)) {
-                log.warn("Unable to resolve agent information for session {}; skipping title generation", sessionId);
-                return false;
-            }
-
-            List<AgentChatHistoryDTO> chatHistory = getChatHistoryBySessionId(sessionId);
-            if (chatHistory == null || chatHistory.isEmpty()) {
-                return false;
-            }
-
-            List<String> meaningfulMessages = extractMeaningfulMessages(chatHistory);
-            if (meaningfulMessages.isEmpty()) {
-                return false;
-            }
-
-            StringBuilder conversation = new StringBuilder();
-            for (int i = 0; i < meaningfulMessages.size(); i++) {
-                conversation.append("Message ").append(i + 1).append(": ").append(meaningfulMessages.get(i)).append("\n");
-            }
-
-            String slmModelId = getSlmModelId(agentId);
-            String title = llmService.generateTitle(conversation.toString(), slmModelId);
-
-            if (StringUtils.isNotBlank(title)) {
-                agentChatTitleService.saveOrUpdateTitle(sessionId, title);
-                log.info("Saved title for session {}: {}", sessionId, title);
-                return true;
-            }
-            return false;
-        } catch (Exception e) {
-            log.error("Error while generating title for session {}: {}", sessionId, e.getMessage());
-            return false;
+    public boolean generateAndSaveBatchSummary(String agentId, List<String> sessionIds) {
+        AgentConfigVO agentInfo = agentService.getAgentConfigById(agentId);
+        if (agentInfo == null) {
+            log.info("Agent {} no longer exists; skipping batched summary of {} sessions", agentId,
+                    sessionIds.size());
+            return true;
         }
-    }
 
-    private String getSlmModelId(String agentId) {
-        try {
-            if (StringUtils.isBlank(agentId)) {
-                return null;
-            }
+        if (!summarizesMemory(agentInfo)) {
+            log.info("Agent {} uses {} mode; skipping memory summarization", agentId, agentInfo.getMemModelId());
+            return true;
+        }
 
-            AgentInfoVO agentInfo = agentService.getAgentById(agentId);
-            if (agentInfo == null) {
-                return null;
+        // Facts belong to the device they were learned on, so the sessions are summarised per device
+        Map<String, DeviceEntity> devicesByMac = new HashMap<>();
+        Map<String, List<List<String>>> sessionsByDevice = new LinkedHashMap<>();
+        Map<String, String> lastSessionByDevice = new HashMap<>();
+        for (String sessionId : sessionIds) {
+            List<AgentChatHistoryDTO> chatHistory = agentChatHistoryService.getChatHistoryBySessionId(agentId,
+                    sessionId);
+            if (chatHistory == null || chatHistory.isEmpty()) {
+                continue;
             }
-
-            String slmModelId = agentInfo.getSlmModelId();
-            if (StringUtils.isNotBlank(slmModelId)) {
-                log.info("Agent {} uses SLM model: {}", agentId, slmModelId);
-                return slmModelId;
+            String macAddress = chatHistory.get(0).getMacAddress();
+            DeviceEntity device = StringUtils.isBlank(macAddress) ? null
+                    : devicesByMac.computeIfAbsent(macAddress, deviceService::getDeviceByMacAddress);
+            if (device == null) {
+                log.info("No device was found for session {}", sessionId);
+                continue;
             }
-
-            ModelConfigEntity defaultLlmConfig = getDefaultLLMConfig();
-            if (defaultLlmConfig != null) {
-                log.info("Agent {} uses default LLM model: {}", agentId, defaultLlmConfig.getId());
-                return defaultLlmConfig.getId();
+            List<String> meaningfulMessages = ChatMessageExtractor.extract(chatHistory,
+                    CONVERSATION_TOKEN_BUDGET, true);
+            if (!meaningfulMessages.isEmpty()) {
+                sessionsByDevice.computeIfAbsent(device.getId(), k -> new ArrayList<>()).add(meaningfulMessages);
+                lastSessionByDevice.put(device.getId(), sessionId);
             }
-
-            String llmModelId = agentInfo.getLlmModelId();
-            log.info("Agent {} uses LLM model as final fallback: {}", agentId, llmModelId);
-            return llmModelId;
-        } catch (Exception e) {
-            log.error("Failed to get agent SLM model ID, agentId: {}, error: {}", agentId, e.getMessage());
-            return null;
         }
-    }
-
-    private ModelConfigEntity getDefaultLLMConfig() {
-        try {
-            List<ModelConfigEntity> llmConfigs = modelConfigService.getEnabledModelsByType("LLM");
-            if (llmConfigs == null || llmConfigs.isEmpty()) {
-                return null;
-            }
-
-            for (ModelConfigEntity config : llmConfigs) {
-                if (config.getIsDefault() != null && config.getIsDefault() == 1) {
-                    return config;
-                }
-            }
-
-            return llmConfigs.get(0);
-        } catch (Exception e) {
-            log.error("Failed to get default LLM config: {}", e.getMessage());
-            return null;
+        if (sessionsByDevice.isEmpty()) {
+            log.info("No meaningful content in {} sessions of agent {}; memory left unchanged", sessionIds.size(),
+                    agentId);
+            return true;
         }
-    }
 
-    /**
-     * Load chat history by session ID.
-     */
-    private List<AgentChatHistoryDTO> getChatHistoryBySessionId(String sessionId) {
-        try {
-            // The existing interface requires agentId, so resolve the related agent first.
-            String agentId = findAgentIdBySessionId(sessionId);
-            if (StringUtils.isBlank(agentId)) {
-                return null;
-            }
-            return agentChatHistoryService.getChatHistoryBySessionId(agentId, sessionId);
-        } catch (Exception e) {
-            log.error("Failed to load chat history for session {}: {}", sessionId, e.getMessage());
-            return null;
+        for (Map.Entry<String, List<List<String>>> device : sessionsByDevice.entrySet()) {
+            String conversation = buildBatchConversation(device.getValue(), CONVERSATION_TOKEN_BUDGET);
+            memorize(agentInfo, device.getKey(), lastSessionByDevice.get(device.getKey()), conversation);
         }
+        return true;
     }
 
     /**
-     * Find the agent ID linked to a session ID.
+     * Extract new facts from a conversation and append them to the agent's memory. The
+     * memory the device already gets is passed along so only new facts come back.
+     * A reply that cannot be parsed is thrown so the job is retried.
      */
-    private String findAgentIdBySessionId(String sessionId) {
-        try {
-            // Use the first record in the session to resolve the agent ID.
-            QueryWrapper<AgentChatHistoryEntity> wrapper = new QueryWrapper<>();
-            wrapper.select("agent_id")
-                    .eq("session_id", sessionId)
-                    .last("LIMIT 1");
+    private void memorize(AgentConfigVO agentInfo, String deviceId, String sessionId, String conversation) {
+        String agentId = agentInfo.getId();
+        String knownMemory = agentMemoryService.renderMemory(agentId, deviceId, KNOWN_MEMORY_TOKEN_BUDGET);
+        if (knownMemory == null && StringUtils.isNotBlank(agentInfo.getSummaryMemory())) {
+            // First structured summary of an agent: carry the old free-text memory over
+            agentMemoryService.replaceMemory(agentId, agentInfo.getSummaryMemory());
+            knownMemory = agentMemoryService.renderMemory(agentId, deviceId, KNOWN_MEMORY_TOKEN_BUDGET);
+        }
 
-            AgentChatHistoryEntity entity = agentChatHistoryService.getOne(wrapper);
-            return entity != null ? entity.getAgentId() : null;
-        } catch (Exception e) {
-            log.error("Failed to find the agent ID for session {}: {}", sessionId, e.getMessage());
-            return null;
+        String prompt = MEMORY_EXTRACTION_PROMPT.replace("{known_memory}",
+                StringUtils.defaultIfBlank(knownMemory, MemoryFact.NONE));
+        String reply = llmService.generateSummary(conversation, prompt, getSlmModelId(agentInfo));
+        List<MemoryFact> facts = MemoryFact.parse(reply);
+        if (facts == null) {
+            // The LLM service logs the cause and returns null or an error text; let the caller retry
+            throw new IllegalStateException("Unusable memory extraction reply for agent " + agentId + ": " + reply);
         }
+        int stored = agentMemoryService.appendFacts(agentId, deviceId, sessionId, facts);
+        log.info("Stored {} new memory facts for agent {} from session {}", stored, agentId, sessionId);
     }
 
-    /**
-     * Get the agent ID for the session.
-     */
-    private String getAgentIdFromSession(String sessionId, List<AgentChatHistoryDTO> chatHistory) {
-        // Resolve the agent ID directly from the database.
-        return findAgentIdBySessionId(sessionId);
+    private static boolean summarizesMemory(AgentConfigVO agentInfo) {
+        if (agentInfo == null) {
+            return false;
+        }
+        String memModelId = agentInfo.getMemModelId();
+        return memModelId != null
+                && !memModelId.equals(Constant.MEMORY_MEM_REPORT_ONLY)
+                && !memModelId.equals(Constant.MEMORY_NO_MEM)
+                && !memModelId.equals(Constant.MEMORY_MEM0AI)
+                && !memModelId.equals(Constant.MEMORY_POWERMEM);
     }
 
     /**
-     * Extract meaningful conversation content from user messages only.
+     * Join the messages of several sessions into one conversation, keeping the most recent
+     * messages that fit into the token budget.
      */
-    private List<String> extractMeaningfulMessages(List<AgentChatHistoryDTO> chatHistory) {
-        List<String> meaningfulMessages = new ArrayList<>();
-
-        for (AgentChatHistoryDTO message : chatHistory) {
-            // Only process user messages (chatType = 1).
-            if (message.getChatType() != null && message.getChatType() == 1) {
-                String content = extractContentFromMessage(message);
-                if (isMeaningfulMessage(content)) {
-                    meaningfulMessages.add(content);
+    static String buildBatchConversation(List<List<String>> sessions, int tokenBudget) {
+        // Walk backwards from the newest message until the budget is spent.
+        int firstSession = sessions.size();
+        int firstMessage = 0;
+        int tokens = 0;
+        outer: for (int s = sessions.size() - 1; s >= 0; s--) {
+            List<String> messages = sessions.get(s);
+            for (int m = messages.size() - 1; m >= 0; m--) {
+                tokens += ChatMessageExtractor.estimateTokens(messages.get(m));
+                if (tokens > tokenBudget && (s < sessions.size() - 1 || m < messages.size() - 1)) {
+                    break outer;
                 }
+                firstSession = s;
+                firstMessage = m;
             }
         }
 
-        return meaningfulMessages;
-    }
-
-    /**
-     * Extract content from a message, including JSON payloads.
-     */
-    private String extractContentFromMessage(AgentChatHistoryDTO message) {
-        String content = message.getContent();
-        if (StringUtils.isBlank(content)) {
-            return "";
-        }
-
-        // Handle JSON-formatted content in a way that stays aligned with ChatHistoryDialog.vue.
-        Matcher matcher = JSON_PATTERN.matcher(content);
-        if (matcher.find()) {
-            String jsonContent = matcher.group();
-            // Simplified extraction: pull text content from the JSON body.
-            return extractTextFromJson(jsonContent);
-        }
-
-        return content;
-    }
-
-    /**
-     * Extract text content from JSON.
-     */
-    private String extractTextFromJson(String jsonContent) {
-        // Simplified extraction: read the content field.
-        Pattern contentPattern = Pattern.compile("\"content\"\s*:\s*\"([^\"]*)\"");
-        Matcher matcher = contentPattern.matcher(jsonContent);
-        if (matcher.find()) {
-            return matcher.group(1);
+        StringBuilder conversation = new StringBuilder();
+        for (int s = firstSession; s < sessions.size(); s++) {
+            List<String> messages = sessions.get(s);
+            conversation.append("Session ").append(s + 1).append(":\n");
+            for (int m = s == firstSession ? firstMessage : 0; m < messages.size(); m++) {
+                conversation.append("Message ").append(m + 1).append(": ").append(messages.get(m)).append("\n");
+            }
         }
-        return jsonContent;
+        return conversation.toString();
     }
 
-    /**
-     * Determine whether a message is meaningful for summarization.
-     */
-    private boolean isMeaningfulMessage(String content) {
-        if (StringUtils.isBlank(content)) {
+    @Override
+    public boolean generateAndSaveChatTitle(String sessionId) {
+        // Resolve agentId automatically.
+        String agentId = findAgentIdBySessionId(sessionId);
+        if (StringUtils.isBlank(agentId)) {
+            log.warn("Unable to resolve agent information for session {}; skipping title generation", sessionId);
             return false;
         }
 
-        // Exclude device-control instructions.
-        if (DEVICE_CONTROL_PATTERN.matcher(content).find()) {
+        List<AgentChatHistoryDTO> chatHistory = getChatHistoryBySessionId(sessionId);
+        if (chatHistory == null || chatHistory.isEmpty()) {
             return false;
         }
 
-        // Exclude weather, date, and similar low-value content.
-        if (WEATHER_PATTERN.matcher(content).find() || DATE_PATTERN.matcher(content).find()) {
+        List<String> meaningfulMessages = ChatMessageExtractor.extract(chatHistory, TITLE_TOKEN_BUDGET, false);
+        if (meaningfulMessages.isEmpty()) {
             return false;
         }
 
-        // Exclude overly short messages.
-        return content.length() >= 5;
-    }
-
-    /**
-     * Generate a summary from the extracted messages.
-     */
-    private String generateSummaryFromMessages(List<String> messages, String agentId) {
-        if (messages.isEmpty()) {
-            return "This conversation did not contain enough important information to summarize.";
-        }
-
-        // Build the full conversation body.
         StringBuilder conversation = new StringBuilder();
-        for (int i = 0; i < messages.size(); i++) {
-            conversation.append("Message ").append(i + 1).append(": ").append(messages.get(i)).append("\n");
+        for (int i = 0; i < meaningfulMessages.size(); i++) {
+            conversation.append("Message ").append(i + 1).append(": ").append(meaningfulMessages.get(i)).append("\n");
         }
 
-        try {
-            // Load current summary memory for the agent.
-            String historyMemory = getCurrentAgentMemory(agentId);
-
-            // Call the LLM service and pass agentId so the correct model configuration is used.
-            String summary = callJavaLLMForSummaryWithHistory(conversation.toString(), historyMemory, agentId);
+        String slmModelId = getSlmModelId(agentId);
+        String title = llmService.generateTitle(conversation.toString(), slmModelId);
+        if (StringUtils.isBlank(title)) {
+            // The LLM service logs the cause and returns null; let the caller retry
+            throw new IllegalStateException("The LLM service returned no title for session " + sessionId);
+        }
+        agentChatTitleService.saveOrUpdateTitle(sessionId, title);
+        log.info("Saved title for session {}: {}", sessionId, title);
+        return true;
+    }
 
-            // Apply the maximum summary length rule.
-            if (summary.length() > MAX_SUMMARY_LENGTH) {
-                summary = summary.substring(0, MAX_SUMMARY_LENGTH) + "...";
-            }
+    @Override
+    public String getAgentIdBySessionId(String sessionId) {
+        return findAgentIdBySessionId(sessionId);
+    }
 
-            return summary;
-        } catch (Exception e) {
-            log.error("Java-side LLM summary generation failed: {}", e.getMessage());
-            throw new RuntimeException("The LLM service is unavailable, so the chat summary could not be generated");
-        }
+    @Override
+    public String getSummaryModelId(String agentId) {
+        return getSlmModelId(agentId);
     }
 
-    /**
-     * Load the current summary memory for the agent.
-     */
-    private String getCurrentAgentMemory(String agentId) {
+    private String getSlmModelId(String agentId) {
         try {
             if (StringUtils.isBlank(agentId)) {
                 return null;
             }
-
-            // Load agent information.
-            AgentInfoVO agentInfo = agentService.getAgentById(agentId);
-            if (agentInfo == null) {
-                return null;
-            }
-
-            // Return the current summary memory for the agent.
-            return agentInfo.getSummaryMemory();
+            return getSlmModelId(agentService.getAgentConfigById(agentId));
         } catch (Exception e) {
-            log.error("Failed to load agent history memory, agentId={}, error={}", agentId, e.getMessage());
+            log.error("Failed to get agent SLM model ID, agentId: {}, error: {}", agentId, e.getMessage());
             return null;
         }
     }
 
-    /**
-     * Call the Java-side LLM service to generate a summary with history merging support.
-     */
-    private String callJavaLLMForSummaryWithHistory(String conversation, String historyMemory, String agentId) {
-        try {
-            String modelId = getSlmModelId(agentId);
-
-            if (StringUtils.isBlank(modelId)) {
-                log.info("No SLM model found; using default LLM service");
-                return llmService.generateSummaryWithHistory(conversation, historyMemory, null, null);
-            }
-
-            String summary = llmService.generateSummaryWithHistory(conversation, historyMemory, null, modelId);
-
-            if (StringUtils.isNotBlank(summary)
-                    && !summary.equals(SERVICE_UNAVAILABLE)
-                    && !summary.equals(SUMMARY_GENERATION_FAILED)) {
-                return summary;
-            }
+    private String getSlmModelId(AgentConfigVO agentInfo) {
+        if (agentInfo == null) {
+            return null;
+        }
+        String agentId = agentInfo.getId();
 
-            throw new RuntimeException("The Java-side LLM service returned an invalid response: " + summary);
+        String slmModelId = agentInfo.getSlmModelId();
+        if (StringUtils.isNotBlank(slmModelId)) {
+            log.info("Agent {} uses SLM model: {}", agentId, slmModelId);
+            return slmModelId;
+        }
 
-        } catch (Exception e) {
-            log.error("Java-side LLM summary call failed, agentId={}, error={}", agentId, e.getMessage());
-            throw e;
+        ModelConfigEntity defaultLlmConfig = getDefaultLLMConfig();
+        if (defaultLlmConfig != null) {
+            log.info("Agent {} uses default LLM model: {}", agentId, defaultLlmConfig.getId());
+            return defaultLlmConfig.getId();
         }
+
+        String llmModelId = agentInfo.getLlmModelId();
+        log.info("Agent {} uses LLM model as final fallback: {}", agentId, llmModelId);
+        return llmModelId;
     }
 
-    /**
-     * Call the Java-side LLM service to generate a summary.
-     */
-    private String callJavaLLMForSummary(String conversation, String agentId) {
+    private ModelConfigEntity getDefaultLLMConfig() {
         try {
-            String modelId = getSlmModelId(agentId);
-
-            if (StringUtils.isBlank(modelId)) {
-                log.info("No SLM model found; using default LLM service");
-                return llmService.generateSummary(conversation);
+            List<ModelConfigEntity> llmConfigs = modelConfigService.getEnabledModelsByType("LLM");
+            if (llmConfigs == null || llmConfigs.isEmpty()) {
+                return null;
             }
 
-            String summary = llmService.generateSummaryWithModel(conversation, modelId);
-
-            if (StringUtils.isNotBlank(summary)
-                    && !summary.equals(SERVICE_UNAVAILABLE)
-                    && !summary.equals(SUMMARY_GENERATION_FAILED)) {
-                return summary;
+            for (ModelConfigEntity config : llmConfigs) {
+                if (config.getIsDefault() != null && config.getIsDefault() == 1) {
+                    return config;
+                }
             }
 
-            throw new RuntimeException("The Java-side LLM service returned an invalid response: " + summary);
-
+            return llmConfigs.get(0);
         } catch (Exception e) {
-            log.error("Java-side LLM summary call failed, agentId={}, error={}", agentId, e.getMessage());
-            throw e;
+            log.error("Failed to get default LLM config: {}", e.getMessage());
+            return null;
         }
     }
 
     /**
-     * Return the LLM model ID used for memory summarization.
+     * Load chat history by session ID.
      */
-    private String getMemorySummaryModelId(String agentId) {
+    private List<AgentChatHistoryDTO> getChatHistoryBySessionId(String sessionId) {
         try {
+            // The existing interface requires agentId, so resolve the related agent first.
+            String agentId = findAgentIdBySessionId(sessionId);
             if (StringUtils.isBlank(agentId)) {
                 return null;
             }
-
-            // Load agent information.
-            AgentInfoVO agentInfo = agentService.getAgentById(agentId);
-            if (agentInfo == null) {
-                return null;
-            }
-
-            // Read the agent's memory model ID.
-            String memModelId = agentInfo.getMemModelId();
-            if (StringUtils.isBlank(memModelId)) {
-                return null;
-            }
-
-            // Load the memory model configuration.
-            ModelConfigEntity memModelConfig = modelConfigService.getModelByIdFromCache(memModelId);
-            if (memModelConfig == null || memModelConfig.getConfigJson() == null) {
-                return null;
-            }
-
-            // Extract the linked LLM model ID from the memory model configuration.
-            Map<String, Object> configMap = memModelConfig.getConfigJson();
-            String llmModelId = (String) configMap.get("llm");
-
-            if (StringUtils.isBlank(llmModelId)) {
-                // Fall back to the agent's default LLM model when the memory model does not specify one.
-                return agentInfo.getLlmModelId();
-            }
-
-            return llmModelId;
+            return agentChatHistoryService.getChatHistoryBySessionId(agentId, sessionId);
         } catch (Exception e) {
-            log.error("Failed to load the memory-summary LLM model ID, agentId={}, error={}",
-                    agentId, e.getMessage());
+            log.error("Failed to load chat history for session {}: {}", sessionId, e.getMessage());
             return null;
         }
     }
 
     /**
-     * Load device information by session ID.
+     * Find the agent ID linked to a session ID.
      */
-    private DeviceEntity getDeviceBySessionId(String sessionId) {
+    private String findAgentIdBySessionId(String sessionId) {
         try {
-            // Use the first session record to resolve the MAC address.
+            // Use the first record in the session to resolve the agent ID.
             QueryWrapper<AgentChatHistoryEntity> wrapper = new QueryWrapper<>();
-            wrapper.select("mac_address")
+            wrapper.select("agent_id")
                     .eq("session_id", sessionId)
                     .last("LIMIT 1");
 
             AgentChatHistoryEntity entity = agentChatHistoryService.getOne(wrapper);
-            if (entity != null && StringUtils.isNotBlank(entity.getMacAddress())) {
-                return deviceService.getDeviceByMacAddress(entity.getMacAddress());
-            }
-            return null;
+            return entity != null ? entity.getAgentId() : null;
         } catch (Exception e) {
-            log.error("Failed to load device information for session {}: {}", sessionId, e.getMessage());
+            log.error("Failed to find the agent ID for session {}: {}", sessionId, e.getMessage());
             return null;
         }
     }
+
+    /**
+     * Load device information by session ID.
+     */
+    private DeviceEntity getDeviceBySessionId(String sessionId) {
+        // Use the first session record to resolve the MAC address; lookup errors are thrown so the job retries
+        QueryWrapper<AgentChatHistoryEntity> wrapper = new QueryWrapper<>();
+        wrapper.select("mac_address")
+                .eq("session_id", sessionId)
+                .last("LIMIT 1");
+
+        AgentChatHistoryEntity entity = agentChatHistoryService.getOne(wrapper);
+        if (entity != null && StringUtils.isNotBlank(entity.getMacAddress())) {
+            return deviceService.getDeviceByMacAddress(entity.getMacAddress());
+        }
+        return null;
+    }
 }
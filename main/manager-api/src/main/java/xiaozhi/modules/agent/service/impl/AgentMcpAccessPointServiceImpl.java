@@ -6,7 +6,6 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -17,17 +16,16 @@ import lombok.extern.slf4j.Slf4j;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.utils.AESUtils;
 import xiaozhi.common.utils.HashEncryptionUtil;
-import xiaozhi.common.utils.JsonUtils;
-import xiaozhi.modules.agent.Enums.XiaoZhiMcpJsonRpcJson;
+import xiaozhi.modules.agent.mcp.McpClientPool;
 import xiaozhi.modules.agent.service.AgentMcpAccessPointService;
 import xiaozhi.modules.sys.service.SysParamsService;
-import xiaozhi.modules.sys.utils.WebSocketClientManager;
 
 @AllArgsConstructor
 @Service
 @Slf4j
 public class AgentMcpAccessPointServiceImpl implements AgentMcpAccessPointService {
     private SysParamsService sysParamsService;
+    private McpClientPool mcpClientPool;
 
     @Override
     public String getAgentMcpAccessAddress(String id) {
@@ -61,111 +59,16 @@ public class AgentMcpAccessPointServiceImpl implements AgentMcpAccessPointServic
         wsUrl = wsUrl.replace("/mcp/", "/call/");
 
         try {
-            // Create WebSocket connection, increase timeout to 15 seconds
-            try (WebSocketClientManager client = WebSocketClientManager.build(
-                    new WebSocketClientManager.Builder()
-                            .uri(wsUrl)
-                            .bufferSize(1024 * 1024)
-                            .connectTimeout(8, TimeUnit.SECONDS)
-                            .maxSessionDuration(10, TimeUnit.SECONDS))) {
-
-                // Step 1: Send initialization message and wait for response
-                log.info("Sending MCP initialization message, Agent ID: {}", id);
-                client.sendText(XiaoZhiMcpJsonRpcJson.getInitializeJson());
-
-                // Wait for initialization response (id=1) - Remove fixed delay, change to response-driven
-                List<String> initResponses = client.listenerWithoutClose(response -> {
-                    try {
-                        Map<String, Object> jsonMap = JsonUtils.parseObject(response, Map.class);
-                        if (jsonMap != null && Integer.valueOf(1).equals(jsonMap.get("id"))) {
-                            // Check if there is a result field, indicating successful initialization
-                            return jsonMap.containsKey("result") && !jsonMap.containsKey("error");
-                        }
-                        return false;
-                    } catch (Exception e) {
-                        log.warn("Failed to parse initialization response: {}", response, e);
-                        return false;
-                    }
-                });
-
-                // Validate initialization response
-                boolean initSucceeded = false;
-                for (String response : initResponses) {
-                    try {
-                        Map<String, Object> jsonMap = JsonUtils.parseObject(response, Map.class);
-                        if (jsonMap != null && Integer.valueOf(1).equals(jsonMap.get("id"))) {
-                            if (jsonMap.containsKey("result")) {
-                                log.info("MCP initialization successful, Agent ID: {}", id);
-                                initSucceeded = true;
-                                break;
-                            } else if (jsonMap.containsKey("error")) {
-                                log.error("MCP initialization failed, Agent ID: {}, Error: {}", id, jsonMap.get("error"));
-                                return List.of();
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to process initialization response: {}", response, e);
-                    }
-                }
-
-                if (!initSucceeded) {
-                    log.error("No valid MCP initialization response received, Agent ID: {}", id);
-                    return List.of();
-                }
-
-                // Step 2: Send initialization complete notification - only send after receiving initialize response
-                log.info("Sending MCP initialization complete notification, Agent ID: {}", id);
-                client.sendText(XiaoZhiMcpJsonRpcJson.getNotificationsInitializedJson());
-                // Step 3: Send tools list request - send immediately, no additional delay needed
-                log.info("Sending MCP tools list request, Agent ID: {}", id);
-                client.sendText(XiaoZhiMcpJsonRpcJson.getToolsListJson());
-
-                // Wait for tools list response (id=2)
-                List<String> toolsResponses = client.listener(response -> {
-                    try {
-                        Map<String, Object> jsonMap = JsonUtils.parseObject(response, Map.class);
-                        return jsonMap != null && Integer.valueOf(2).equals(jsonMap.get("id"));
-                    } catch (Exception e) {
-                        log.warn("Failed to parse tools list response: {}", response, e);
-                        return false;
-                    }
-                });
-
-                // Process tools list response
-                for (String response : toolsResponses) {
-                    try {
-                        Map<String, Object> jsonMap = JsonUtils.parseObject(response, Map.class);
-                        if (jsonMap != null && Integer.valueOf(2).equals(jsonMap.get("id"))) {
-                            // Check if there is a result field
-                            Object resultObj = jsonMap.get("result");
-                            if (resultObj instanceof Map) {
-                                Map<String, Object> resultMap = (Map<String, Object>) resultObj;
-                                Object toolsObj = resultMap.get("tools");
-                                if (toolsObj instanceof List) {
-                                    List<Map<String, Object>> toolsList = (List<Map<String, Object>>) toolsObj;
-                                    // Extract tool name list
-                                    List<String> result = toolsList.stream()
-                                            .map(tool -> (String) tool.get("name"))
-                                            .filter(name -> name != null)
-                                            .sorted()
-                                            .collect(Collectors.toList());
-                                    log.info("Successfully obtained MCP tools list, Agent ID: {}, Tool count: {}", id, result.size());
-                                    return result;
-                                }
-                            } else if (jsonMap.containsKey("error")) {
-                                log.error("Failed to get tools list, Agent ID: {}, Error: {}", id, jsonMap.get("error"));
-                                return List.of();
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to process tools list response: {}", response, e);
-                    }
-                }
-
-                log.warn("No valid tools list response found, Agent ID: {}", id);
-                return List.of();
-
-            }
+            // Sessions are pooled per endpoint, so repeated lookups skip the connect and
+            // initialize handshake and reuse the cached tools list.
+            List<Map<String, Object>> tools = mcpClientPool.listTools(wsUrl);
+            List<String> result = tools.stream()
+                    .map(tool -> (String) tool.get("name"))
+                    .filter(name -> name != null)
+                    .sorted()
+                    .collect(Collectors.toList());
+            log.info("Successfully obtained MCP tools list, Agent ID: {}, Tool count: {}", id, result.size());
+            return result;
         } catch (Exception e) {
             log.error("Failed to get agent MCP tools list, Agent ID: {}, Error reason: {}", id, e.getMessage());
             return List.of();
@@ -0,0 +1,210 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.dao.AgentMemoryDao;
+import xiaozhi.modules.agent.entity.AgentMemoryEntity;
+import xiaozhi.modules.agent.service.AgentMemoryService;
+import xiaozhi.modules.agent.support.ChatMessageExtractor;
+import xiaozhi.modules.agent.support.MemoryFact;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AgentMemoryServiceImpl implements AgentMemoryService {
+
+    // Compaction starts above this many stored tokens per agent and device (or agent-wide)
+    // and keeps the best facts up to KEEP_TOKENS as they are.
+    static final int COMPACT_THRESHOLD_TOKENS = 3000;
+    static final int KEEP_TOKENS = 1500;
+    private static final int DEFAULT_IMPORTANCE = 3;
+    private static final int MAX_CONTENT_LENGTH = 1000;
+    private static final double RECENCY_HALF_LIFE_DAYS = 30;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final AgentMemoryDao agentMemoryDao;
+
+    @Override
+    public int appendFacts(String agentId, String deviceId, String sessionId, List<MemoryFact> facts) {
+        Date now = new Date();
+        int stored = 0;
+        for (MemoryFact fact : facts) {
+            if (StringUtils.isBlank(fact.content())) {
+                continue;
+            }
+            agentMemoryDao.insert(entry(agentId, deviceId, sessionId, fact, 0, now));
+            stored++;
+        }
+        return stored;
+    }
+
+    @Override
+    public String renderMemory(String agentId, String deviceId, int tokenBudget) {
+        // Facts learned on another device never reach this one; agent-wide facts reach every device
+        QueryWrapper<AgentMemoryEntity> query = columns().eq("agent_id", agentId);
+        if (deviceId == null) {
+            query.isNull("device_id");
+        } else {
+            query.and(scope -> scope.isNull("device_id").or().eq("device_id", deviceId));
+        }
+        List<AgentMemoryEntity> entries = agentMemoryDao.selectList(query);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        entries.sort(Comparator.comparingDouble((AgentMemoryEntity e) -> score(e, now)).reversed());
+
+        // Greedy by score; a fact that does not fit is skipped so smaller ones can still go in
+        List<AgentMemoryEntity> selected = new ArrayList<>();
+        int tokens = 0;
+        for (AgentMemoryEntity entry : entries) {
+            int cost = entry.getTokenCount() + 1;
+            if (tokens + cost <= tokenBudget) {
+                selected.add(entry);
+                tokens += cost;
+            }
+        }
+        selected.sort(Comparator.comparing(AgentMemoryEntity::getCreatedAt,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        StringBuilder memory = new StringBuilder();
+        for (AgentMemoryEntity entry : selected) {
+            memory.append("- ").append(entry.getContent()).append('\n');
+        }
+        return memory.toString();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void replaceMemory(String agentId, String text) {
+        deleteByAgentId(agentId);
+        if (StringUtils.isNotBlank(text)) {
+            agentMemoryDao.insert(entry(agentId, null, null, new MemoryFact(DEFAULT_IMPORTANCE, text), 1,
+                    new Date()));
+        }
+    }
+
+    @Override
+    public void deleteByAgentId(String agentId) {
+        agentMemoryDao.delete(new QueryWrapper<AgentMemoryEntity>().eq("agent_id", agentId));
+    }
+
+    @Override
+    public List<String> getAgentsToCompact() {
+        return agentMemoryDao.selectObjs(new QueryWrapper<AgentMemoryEntity>()
+                .select("agent_id")
+                .groupBy("agent_id", "device_id")
+                .having("SUM(token_count) > {0}", COMPACT_THRESHOLD_TOKENS))
+                .stream().map(Object::toString).distinct().toList();
+    }
+
+    @Override
+    public int compact(String agentId, Function<String, List<MemoryFact>> condenser) {
+        // Each device, and the agent-wide facts, are compacted on their own so that merging
+        // never turns one device's facts into facts another device can see
+        Map<String, List<AgentMemoryEntity>> scopes = new LinkedHashMap<>();
+        for (AgentMemoryEntity entry : agentMemoryDao.selectList(columns().eq("agent_id", agentId))) {
+            scopes.computeIfAbsent(Objects.toString(entry.getDeviceId(), ""), k -> new ArrayList<>()).add(entry);
+        }
+        int merged = 0;
+        for (List<AgentMemoryEntity> entries : scopes.values()) {
+            merged += compactScope(agentId, entries.get(0).getDeviceId(), entries, condenser);
+        }
+        return merged;
+    }
+
+    private int compactScope(String agentId, String deviceId, List<AgentMemoryEntity> entries,
+            Function<String, List<MemoryFact>> condenser) {
+        int total = entries.stream().mapToInt(AgentMemoryEntity::getTokenCount).sum();
+        if (total <= COMPACT_THRESHOLD_TOKENS) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        entries.sort(Comparator.comparingDouble((AgentMemoryEntity e) -> score(e, now)).reversed());
+        List<AgentMemoryEntity> merged = new ArrayList<>();
+        int kept = 0;
+        for (AgentMemoryEntity entry : entries) {
+            if (kept + entry.getTokenCount() <= KEEP_TOKENS) {
+                kept += entry.getTokenCount();
+            } else {
+                merged.add(entry);
+            }
+        }
+        if (merged.size() < 2) {
+            return 0;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (AgentMemoryEntity entry : merged) {
+            text.append(entry.getImportance()).append('|').append(entry.getContent()).append('\n');
+        }
+        List<MemoryFact> condensed = condenser.apply(text.toString());
+        if (condensed == null || condensed.isEmpty()) {
+            log.warn("Memory compaction for agent {} failed; {} facts left as they are", agentId, merged.size());
+            return 0;
+        }
+
+        // Condensed facts keep the scope's device, and the newest timestamp so their recency is not reset
+        Date newest = merged.stream().map(AgentMemoryEntity::getCreatedAt).filter(Objects::nonNull)
+                .max(Comparator.naturalOrder()).orElseGet(Date::new);
+        // No transaction around the LLM call: condensed facts go in before the merged ones are
+        // removed, so an interruption leaves duplicates for the next pass rather than a loss
+        for (MemoryFact fact : condensed) {
+            if (StringUtils.isNotBlank(fact.content())) {
+                agentMemoryDao.insert(entry(agentId, deviceId, null, fact, 1, newest));
+            }
+        }
+        agentMemoryDao.deleteBatchIds(merged.stream().map(AgentMemoryEntity::getId).toList());
+        log.info("Compacted {} memory facts of agent {} (device {}) into {}", merged.size(), agentId, deviceId,
+                condensed.size());
+        return merged.size();
+    }
+
+    private static QueryWrapper<AgentMemoryEntity> columns() {
+        return new QueryWrapper<AgentMemoryEntity>()
+                .select("id", "device_id", "content", "importance", "token_count", "created_at");
+    }
+
+    /**
+     * Importance dominates; recency halves every 30 days.
+     */
+    private static double score(AgentMemoryEntity entry, long now) {
+        double ageDays = entry.getCreatedAt() == null ? 0
+                : Math.max(0, now - entry.getCreatedAt().getTime()) / (double) DAY_MILLIS;
+        return entry.getImportance() + Math.pow(0.5, ageDays / RECENCY_HALF_LIFE_DAYS);
+    }
+
+    private static AgentMemoryEntity entry(String agentId, String deviceId, String sessionId, MemoryFact fact,
+            int compacted, Date createdAt) {
+        String content = fact.content().strip();
+        if (content.length() > MAX_CONTENT_LENGTH) {
+            content = content.substring(0, MAX_CONTENT_LENGTH);
+        }
+        return AgentMemoryEntity.builder()
+                .agentId(agentId)
+                .deviceId(deviceId)
+                .sessionId(sessionId)
+                .content(content)
+                .importance(Math.min(5, Math.max(1, fact.importance())))
+                .tokenCount(ChatMessageExtractor.estimateTokens(content))
+                .compacted(compacted)
+                .createdAt(createdAt)
+                .updatedAt(new Date())
+                .build();
+    }
+}
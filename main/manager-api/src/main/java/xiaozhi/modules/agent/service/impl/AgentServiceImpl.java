@@ -1,8 +1,10 @@
 package xiaozhi.modules.agent.service.impl;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -13,6 +15,8 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
@@ -27,7 +31,7 @@ import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.user.UserDetail;
-import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.common.utils.BeanMapper;
 import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.common.utils.ToolUtil;
 import xiaozhi.modules.agent.dao.AgentDao;
@@ -43,10 +47,12 @@ import xiaozhi.modules.agent.entity.AgentTagEntity;
 import xiaozhi.modules.agent.entity.AgentTemplateEntity;
 import xiaozhi.modules.agent.service.AgentChatHistoryService;
 import xiaozhi.modules.agent.service.AgentContextProviderService;
+import xiaozhi.modules.agent.service.AgentMemoryService;
 import xiaozhi.modules.agent.service.AgentPluginMappingService;
 import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.AgentTagService;
 import xiaozhi.modules.agent.service.AgentTemplateService;
+import xiaozhi.modules.agent.vo.AgentConfigVO;
 import xiaozhi.modules.agent.vo.AgentInfoVO;
 import xiaozhi.modules.correctword.service.CorrectWordFileService;
 import xiaozhi.modules.device.entity.DeviceEntity;
@@ -63,6 +69,10 @@ import xiaozhi.modules.timbre.service.TimbreService;
 @Service
 @AllArgsConstructor
 public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> implements AgentService {
+
+    private static final BeanMapper<AgentCreateDTO, AgentEntity> CREATE_MAPPER = BeanMapper.of(AgentCreateDTO.class,
+            AgentEntity.class);
+
     private final AgentDao agentDao;
     private final AgentTagDao agentTagDao;
     private final TimbreService timbreModelService;
@@ -76,6 +86,7 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
     private final AgentContextProviderService agentContextProviderService;
     private final AgentTagService agentTagService;
     private final CorrectWordFileService correctWordFileService;
+    private final AgentMemoryService agentMemoryService;
 
     @Override
     public PageData<AgentEntity> adminAgentList(Map<String, Object> params) {
@@ -110,10 +121,61 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
         List<String> correctWordFileIds = correctWordFileService.getAgentCorrectWordFileIds(id);
         agent.setCorrectWordFileIds(correctWordFileIds);
 
-        // 无需额外查询插件列表，已通过SQL查询出来
+        // 插件列表单独一次查询，参数信息按JSON对象返回
+        List<AgentPluginMapping> mappings = agentPluginMappingService.list(
+                new QueryWrapper<AgentPluginMapping>().eq("agent_id", id));
+        List<Map<String, Object>> functions = new ArrayList<>(mappings.size());
+        for (AgentPluginMapping mapping : mappings) {
+            Map<String, Object> function = new LinkedHashMap<>();
+            function.put("id", mapping.getId());
+            function.put("agentId", mapping.getAgentId());
+            function.put("pluginId", mapping.getPluginId());
+            function.put("paramInfo", StringUtils.isBlank(mapping.getParamInfo()) ? null
+                    : JsonUtils.parseObject(mapping.getParamInfo(), Object.class));
+            functions.add(function);
+        }
+        agent.setFunctions(functions);
         return agent;
     }
 
+    @Override
+    public AgentConfigVO getAgentConfigById(String id) {
+        // 缓存键带上配置版本号，更新后旧版本的缓存不会再被读到
+        Object version = redisUtils.get(RedisKeys.getAgentConfigVersionKey(id));
+        String cacheKey = RedisKeys.getAgentConfigKey(id, version == null ? 0 : version);
+        AgentConfigVO config = (AgentConfigVO) redisUtils.get(cacheKey);
+        if (config == null) {
+            config = agentDao.selectAgentConfigById(id);
+            if (config == null) {
+                throw new RenException(ErrorCode.AGENT_NOT_FOUND);
+            }
+            redisUtils.set(cacheKey, config, RedisUtils.HOUR_ONE_EXPIRE);
+        }
+        return config;
+    }
+
+    @Override
+    public void evictAgentConfig(String id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 提交后再升级版本，避免并发读取把未提交前的旧数据缓存到新版本下
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    redisUtils.increment(RedisKeys.getAgentConfigVersionKey(id));
+                }
+            });
+        } else {
+            redisUtils.increment(RedisKeys.getAgentConfigVersionKey(id));
+        }
+    }
+
+    @Override
+    public boolean deleteById(Serializable id) {
+        boolean deleted = super.deleteById(id);
+        evictAgentConfig(id.toString());
+        return deleted;
+    }
+
     @Override
     public boolean insert(AgentEntity entity) {
         // 如果ID为空，自动生成一个UUID作为ID
@@ -136,9 +198,11 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
 
     @Override
     public void deleteAgentByUserId(Long userId) {
+        List<Object> agentIds = baseDao.selectObjs(new QueryWrapper<AgentEntity>().select("id").eq("user_id", userId));
         UpdateWrapper<AgentEntity> wrapper = new UpdateWrapper<>();
         wrapper.eq("user_id", userId);
         baseDao.delete(wrapper);
+        agentIds.forEach(agentId -> evictAgentConfig(agentId.toString()));
     }
 
     @Override
@@ -258,7 +322,7 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
             return false;
         }
         // 获取智能体信息
-        AgentEntity agent = getAgentById(agentId);
+        AgentConfigVO agent = getAgentConfigById(agentId);
         if (agent == null) {
             return false;
         }
@@ -277,7 +341,7 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
     @Transactional(rollbackFor = Exception.class)
     public void updateAgentById(String agentId, AgentUpdateDTO dto) {
         // 先查询现有实体
-        AgentEntity existingEntity = this.getAgentById(agentId);
+        AgentEntity existingEntity = baseDao.selectById(agentId);
         if (existingEntity == null) {
             throw new RenException(ErrorCode.AGENT_NOT_FOUND);
         }
@@ -332,6 +396,11 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
             existingEntity.setSystemPrompt(dto.getSystemPrompt());
         }
         if (dto.getSummaryMemory() != null) {
+            // An edited memory text replaces the structured memory; forms that send the
+            // unchanged text back leave it alone
+            if (!dto.getSummaryMemory().equals(existingEntity.getSummaryMemory())) {
+                agentMemoryService.replaceMemory(existingEntity.getId(), dto.getSummaryMemory());
+            }
             existingEntity.setSummaryMemory(dto.getSummaryMemory());
         }
         if (dto.getChatHistoryConf() != null) {
@@ -411,10 +480,12 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
         if (existingEntity.getMemModelId() != null && existingEntity.getMemModelId().equals(Constant.MEMORY_NO_MEM)) {
             agentChatHistoryService.deleteByAgentId(existingEntity.getId(), true, true);
             existingEntity.setSummaryMemory("");
+            agentMemoryService.deleteByAgentId(existingEntity.getId());
             // 删除记忆
         } else if (existingEntity.getMemModelId() != null
                 && existingEntity.getMemModelId().equals(Constant.MEMORY_MEM_REPORT_ONLY)) {
             existingEntity.setSummaryMemory("");
+            agentMemoryService.deleteByAgentId(existingEntity.getId());
         }
 
         // 更新上下文源配置
@@ -435,6 +506,7 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
             throw new RenException(ErrorCode.LLM_INTENT_PARAMS_MISMATCH);
         }
         this.updateById(existingEntity);
+        evictAgentConfig(agentId);
     }
 
     /**
@@ -462,7 +534,7 @@ public class AgentServiceImpl extends BaseServiceImpl<AgentDao, AgentEntity> imp
     @Transactional(rollbackFor = Exception.class)
     public String createAgent(AgentCreateDTO dto) {
         // 转换为实体
-        AgentEntity entity = ConvertUtils.sourceToTarget(dto, AgentEntity.class);
+        AgentEntity entity = CREATE_MAPPER.map(dto);
 
         // 获取默认模板
         AgentTemplateEntity template = agentTemplateService.getDefaultTemplate();
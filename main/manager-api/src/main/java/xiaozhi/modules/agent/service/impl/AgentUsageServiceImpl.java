@@ -0,0 +1,259 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.agent.dao.AgentUsageDailyDao;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentUsageDailyEntity;
+import xiaozhi.modules.agent.event.ChatHistoryReportedEvent;
+import xiaozhi.modules.agent.service.AgentUsageService;
+import xiaozhi.modules.agent.support.UsageCounters;
+import xiaozhi.modules.agent.support.UsageProperties;
+import xiaozhi.modules.agent.vo.AgentUsageDailyVO;
+import xiaozhi.modules.agent.vo.AgentUsageDeviceVO;
+import xiaozhi.modules.agent.vo.UsageBackfillStatusVO;
+import xiaozhi.modules.agent.vo.UsageSummaryVO;
+import xiaozhi.modules.device.event.DeviceCheckedInEvent;
+
+@Slf4j
+@Service
+public class AgentUsageServiceImpl implements AgentUsageService {
+
+    private static final int WRITE_BATCH = 500;
+    /**
+     * Longest range one backfill may cover, ten years
+     */
+    private static final int BACKFILL_MAX_DAYS = 3660;
+    /**
+     * Session markers outlive the day they count, for reports that arrive late
+     */
+    private static final long SESSION_MARK_EXPIRE = 2 * RedisUtils.DEFAULT_EXPIRE;
+
+    private final AgentUsageDailyDao usageDao;
+    private final RedisUtils redisUtils;
+    private final UsageProperties properties;
+    private final Executor taskExecutor;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final UsageCounters counters = new UsageCounters();
+    /**
+     * Sessions this node has already counted, per day, so Redis is only asked about new ones
+     */
+    private final Map<LocalDate, Set<String>> countedSessions = new ConcurrentHashMap<>();
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+    private volatile UsageBackfillStatusVO backfillStatus = new UsageBackfillStatusVO();
+
+    public AgentUsageServiceImpl(AgentUsageDailyDao usageDao, RedisUtils redisUtils, UsageProperties properties,
+            @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.usageDao = usageDao;
+        this.redisUtils = redisUtils;
+        this.properties = properties;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Count a reported message once its transaction has committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReported(ChatHistoryReportedEvent event) {
+        AgentChatHistoryEntity message = event.message();
+        if (!properties.isEnabled() || message.getAgentId() == null) {
+            return;
+        }
+        LocalDate day = message.getCreatedAt() == null ? LocalDate.now(zone)
+                : LocalDate.ofInstant(message.getCreatedAt().toInstant(), zone);
+        long sessions = isNewSession(day, message.getAgentId(), message.getSessionId()) ? 1 : 0;
+        String macAddress = StringUtils.defaultString(message.getMacAddress());
+        counters.add(new UsageCounters.Key(message.getAgentId(), day, macAddress),
+                new UsageCounters.Counts(1, sessions, event.audioBytes(), 0));
+    }
+
+    @EventListener
+    public void onCheckedIn(DeviceCheckedInEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        counters.add(new UsageCounters.Key(event.agentId(), LocalDate.now(zone), event.macAddress()),
+                new UsageCounters.Counts(0, 0, 0, 1));
+    }
+
+    /**
+     * A session counts on the first day a message of it is seen, across nodes. Without Redis
+     * each node counts it once.
+     */
+    private boolean isNewSession(LocalDate day, String agentId, String sessionId) {
+        if (StringUtils.isBlank(sessionId)) {
+            return false;
+        }
+        Set<String> counted = countedSessions.computeIfAbsent(day, d -> ConcurrentHashMap.newKeySet());
+        if (!counted.add(agentId + ":" + sessionId)) {
+            return false;
+        }
+        try {
+            return redisUtils.setIfAbsent(RedisKeys.getUsageSessionKey(day.toString(), agentId, sessionId), 1,
+                    SESSION_MARK_EXPIRE);
+        } catch (Exception e) {
+            log.debug("Could not mark usage session {} in Redis, counting it locally", sessionId, e);
+            return true;
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public synchronized void flush() {
+        LocalDate yesterday = LocalDate.now(zone).minusDays(1);
+        countedSessions.keySet().removeIf(day -> day.isBefore(yesterday));
+
+        Map<UsageCounters.Key, UsageCounters.Counts> drained = counters.drain();
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<UsageCounters.Key, UsageCounters.Counts>> entries = new ArrayList<>(drained.entrySet());
+        for (int from = 0; from < entries.size(); from += WRITE_BATCH) {
+            List<Map.Entry<UsageCounters.Key, UsageCounters.Counts>> batch = entries.subList(from,
+                    Math.min(from + WRITE_BATCH, entries.size()));
+            try {
+                usageDao.upsert(batch.stream().map(AgentUsageServiceImpl::toEntity).toList(), false);
+            } catch (RuntimeException e) {
+                // Keep what was not written for the next flush
+                counters.restore(entries.subList(from, entries.size()).stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+                log.error("Failed to flush usage counters, {} kept for the next attempt", entries.size() - from, e);
+                return;
+            }
+        }
+        log.debug("Flushed {} usage counters", entries.size());
+    }
+
+    @Override
+    public List<AgentUsageDailyVO> getDaily(String agentId, String macAddress, LocalDate startDate,
+            LocalDate endDate) {
+        checkRange(startDate, endDate, properties.getMaxRangeDays());
+        Map<LocalDate, AgentUsageDailyVO> byDay = usageDao
+                .selectDaily(agentId, StringUtils.trimToNull(macAddress), startDate, endDate).stream()
+                .collect(Collectors.toMap(AgentUsageDailyVO::getStatDate, Function.identity()));
+        return startDate.datesUntil(endDate.plusDays(1)).map(day -> byDay.computeIfAbsent(day, d -> {
+            AgentUsageDailyVO empty = new AgentUsageDailyVO();
+            empty.setStatDate(d);
+            return empty;
+        })).toList();
+    }
+
+    @Override
+    public List<AgentUsageDeviceVO> getDevices(String agentId, LocalDate startDate, LocalDate endDate) {
+        checkRange(startDate, endDate, properties.getMaxRangeDays());
+        return usageDao.selectDevices(agentId, startDate, endDate);
+    }
+
+    @Override
+    public List<UsageSummaryVO> getSummary(LocalDate startDate, LocalDate endDate) {
+        checkRange(startDate, endDate, properties.getMaxRangeDays());
+        Map<LocalDate, UsageSummaryVO> byDay = usageDao.selectSummary(startDate, endDate).stream()
+                .collect(Collectors.toMap(UsageSummaryVO::getStatDate, Function.identity()));
+        return startDate.datesUntil(endDate.plusDays(1)).map(day -> byDay.computeIfAbsent(day, d -> {
+            UsageSummaryVO empty = new UsageSummaryVO();
+            empty.setStatDate(d);
+            return empty;
+        })).toList();
+    }
+
+    @Override
+    public boolean backfill(LocalDate startDate, LocalDate endDate, boolean overwrite) {
+        // Today is still being counted live; a recount would be overtaken by the next flush
+        LocalDate yesterday = LocalDate.now(zone).minusDays(1);
+        LocalDate last = endDate == null || endDate.isAfter(yesterday) ? yesterday : endDate;
+        checkRange(startDate, last, BACKFILL_MAX_DAYS);
+        if (!backfilling.compareAndSet(false, true)) {
+            return false;
+        }
+        UsageBackfillStatusVO status = new UsageBackfillStatusVO();
+        status.setRunning(true);
+        status.setStartDate(startDate);
+        status.setEndDate(last);
+        backfillStatus = status;
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    backfillDays(status, overwrite);
+                } catch (Exception e) {
+                    log.error("Usage backfill failed after {}", status.getLastDate(), e);
+                } finally {
+                    status.setRunning(false);
+                    backfilling.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            status.setRunning(false);
+            backfilling.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    private void backfillDays(UsageBackfillStatusVO status, boolean overwrite) {
+        long start = System.currentTimeMillis();
+        for (LocalDate day = status.getStartDate(); !day.isAfter(status.getEndDate()); day = day.plusDays(1)) {
+            if (!overwrite && usageDao.countDay(day) > 0) {
+                status.setDaysSkipped(status.getDaysSkipped() + 1);
+            } else {
+                List<AgentUsageDailyEntity> rows = usageDao.selectHistoryTotals(day, day.plusDays(1));
+                for (AgentUsageDailyEntity row : rows) {
+                    row.setStatDate(day);
+                }
+                for (int from = 0; from < rows.size(); from += WRITE_BATCH) {
+                    usageDao.upsert(rows.subList(from, Math.min(from + WRITE_BATCH, rows.size())), true);
+                }
+                status.setDaysFilled(status.getDaysFilled() + 1);
+                status.setRowsWritten(status.getRowsWritten() + rows.size());
+            }
+            status.setLastDate(day);
+        }
+        log.info("Usage backfill from {} to {} done in {} ms: {} days recounted, {} skipped, {} rows",
+                status.getStartDate(), status.getEndDate(), System.currentTimeMillis() - start,
+                status.getDaysFilled(), status.getDaysSkipped(), status.getRowsWritten());
+    }
+
+    @Override
+    public UsageBackfillStatusVO getBackfillStatus() {
+        UsageBackfillStatusVO status = backfillStatus;
+        status.setPendingCounters(counters.size());
+        return status;
+    }
+
+    private static void checkRange(LocalDate startDate, LocalDate endDate, int maxDays) {
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)
+                || ChronoUnit.DAYS.between(startDate, endDate) >= maxDays) {
+            throw new RenException(ErrorCode.USAGE_RANGE_INVALID, String.valueOf(maxDays));
+        }
+    }
+
+    private static AgentUsageDailyEntity toEntity(Map.Entry<UsageCounters.Key, UsageCounters.Counts> entry) {
+        UsageCounters.Key key = entry.getKey();
+        UsageCounters.Counts counts = entry.getValue();
+        return AgentUsageDailyEntity.builder().agentId(key.agentId()).statDate(key.day())
+                .macAddress(key.macAddress()).messages(counts.messages()).sessions(counts.sessions())
+                .audioBytes(counts.audioBytes()).checkIns(counts.checkIns()).build();
+    }
+}
@@ -28,7 +28,7 @@ import lombok.extern.slf4j.Slf4j;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
-import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.common.utils.BeanMapper;
 import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.modules.agent.dao.AgentVoicePrintDao;
 import xiaozhi.modules.agent.dto.AgentVoicePrintSaveDTO;
@@ -48,6 +48,14 @@ import xiaozhi.modules.sys.service.SysParamsService;
 @Slf4j
 public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao, AgentVoicePrintEntity>
         implements AgentVoicePrintService {
+
+    private static final BeanMapper<AgentVoicePrintSaveDTO, AgentVoicePrintEntity> SAVE_MAPPER = BeanMapper
+            .of(AgentVoicePrintSaveDTO.class, AgentVoicePrintEntity.class);
+    private static final BeanMapper<AgentVoicePrintUpdateDTO, AgentVoicePrintEntity> UPDATE_MAPPER = BeanMapper
+            .of(AgentVoicePrintUpdateDTO.class, AgentVoicePrintEntity.class);
+    private static final BeanMapper<AgentVoicePrintEntity, AgentVoicePrintVO> VO_MAPPER = BeanMapper
+            .of(AgentVoicePrintEntity.class, AgentVoicePrintVO.class);
+
     private final AgentChatAudioService agentChatAudioService;
     private final RestTemplate restTemplate;
     private final SysParamsService sysParamsService;
@@ -81,7 +89,7 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
             String existingUserName = existingVoicePrint != null ? existingVoicePrint.getSourceName() : "Unknown user";
             throw new RenException(ErrorCode.VOICEPRINT_ALREADY_REGISTERED, existingUserName);
         }
-        AgentVoicePrintEntity entity = ConvertUtils.sourceToTarget(dto, AgentVoicePrintEntity.class);
+        AgentVoicePrintEntity entity = SAVE_MAPPER.map(dto);
         // Start transaction
         return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
             try {
@@ -148,7 +156,7 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
                 .eq(AgentVoicePrintEntity::getCreator, userId));
         return list.stream().map(entity -> {
             // Iterate and convert to AgentVoicePrintVO type
-            return ConvertUtils.sourceToTarget(entity, AgentVoicePrintVO.class);
+            return VO_MAPPER.map(entity);
         }).toList();
 
     }
@@ -189,7 +197,7 @@ public class AgentVoicePrintServiceImpl extends ServiceImpl<AgentVoicePrintDao,
         // Start transaction
         return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
             try {
-                AgentVoicePrintEntity entity = ConvertUtils.sourceToTarget(dto, AgentVoicePrintEntity.class);
+                AgentVoicePrintEntity entity = UPDATE_MAPPER.map(dto);
                 int row = baseMapper.updateById(entity);
                 if (row != 1) {
                     status.setRollbackOnly(); // Mark transaction rollback
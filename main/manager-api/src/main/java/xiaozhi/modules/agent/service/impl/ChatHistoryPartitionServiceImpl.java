@@ -0,0 +1,91 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
+import xiaozhi.modules.agent.dao.ChatHistoryPartitionDao;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.event.ChatHistoryDeletedEvent;
+import xiaozhi.modules.agent.service.ChatHistoryPartitionService;
+import xiaozhi.modules.agent.support.ChatHistoryPartitions;
+import xiaozhi.modules.agent.support.ChatPartitionProperties;
+
+@Slf4j
+@Service
+@AllArgsConstructor
+public class ChatHistoryPartitionServiceImpl implements ChatHistoryPartitionService {
+
+    private static final int AUDIO_DELETE_CHUNK = 1000;
+
+    private final ChatHistoryPartitionDao partitionDao;
+    private final AiAgentChatHistoryDao chatHistoryDao;
+    private final ChatPartitionProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public List<String> getPartitionNames() {
+        try {
+            return partitionDao.selectPartitionNames();
+        } catch (DataAccessException e) {
+            // No information_schema.PARTITIONS: not MySQL, so never partitioned
+            return List.of();
+        }
+    }
+
+    @Override
+    public void maintain() {
+        List<String> partitions = getPartitionNames();
+        if (!partitions.contains(ChatHistoryPartitions.FUTURE)) {
+            log.debug("Chat history table is not partitioned, skipping maintenance");
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        List<YearMonth> missing = ChatHistoryPartitions.missing(partitions, current, properties.getMonthsAhead());
+        if (!missing.isEmpty()) {
+            partitionDao.reorganizeFuture(ChatHistoryPartitions.definitions(missing));
+            log.info("Added chat history partitions {} to {}", ChatHistoryPartitions.name(missing.get(0)),
+                    ChatHistoryPartitions.name(missing.get(missing.size() - 1)));
+        }
+        if (properties.getDropAfterMonths() > 0) {
+            for (String partition : ChatHistoryPartitions.expired(partitions, current,
+                    properties.getDropAfterMonths())) {
+                dropPartition(partition);
+            }
+        }
+    }
+
+    @Override
+    public void dropPartition(String partitionName) {
+        YearMonth month = ChatHistoryPartitions.month(partitionName);
+        if (month == null) {
+            throw new IllegalArgumentException("Not a monthly chat history partition: " + partitionName);
+        }
+        // Audio lives in its own table, so it goes first; a failure leaves the partition for the next run
+        ZoneId zone = ZoneId.systemDefault();
+        Date from = Date.from(month.atDay(1).atStartOfDay(zone).toInstant());
+        Date to = Date.from(month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant());
+        long audioDeleted = 0;
+        long afterId = 0;
+        List<AgentChatHistoryEntity> chunk;
+        do {
+            chunk = chatHistoryDao.selectAudioInRange(from, to, afterId, AUDIO_DELETE_CHUNK);
+            if (!chunk.isEmpty()) {
+                chatHistoryDao.deleteAudioByIds(chunk.stream().map(AgentChatHistoryEntity::getAudioId).toList());
+                afterId = chunk.get(chunk.size() - 1).getId();
+                audioDeleted += chunk.size();
+            }
+        } while (chunk.size() == AUDIO_DELETE_CHUNK);
+        partitionDao.dropPartition(ChatHistoryPartitions.name(month));
+        eventPublisher.publishEvent(ChatHistoryDeletedEvent.ofRange(from, to));
+        log.info("Dropped chat history partition {} and {} audio clips", partitionName, audioDeleted);
+    }
+}
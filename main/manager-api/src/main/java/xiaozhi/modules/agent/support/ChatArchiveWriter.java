@@ -0,0 +1,109 @@
+package xiaozhi.modules.agent.support;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import xiaozhi.modules.agent.entity.AgentChatAudioEntity;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+
+/**
+ * Appends removed chat messages to gzip-compressed NDJSON files, one JSON object per line.
+ * <p>
+ * Every chunk is written as its own gzip member. Concatenated members form a valid gzip
+ * stream, so a file stays readable with {@code zcat} or {@link java.util.zip.GZIPInputStream}
+ * after any number of appends, and a crash can only lose the chunk being written. A chunk
+ * whose deletion is rolled back is archived again by the retried run, so readers should
+ * de-duplicate by {@code id}.
+ * <p>
+ * The audio of archived messages is kept next to the NDJSON file, one {@code <audioId>.opus}
+ * file per clip in the run's {@link #audioDirectory audio directory}, so every {@code audioId}
+ * in the archive still resolves. A clip archived twice simply overwrites itself.
+ */
+public class ChatArchiveWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final String ARCHIVE_SUFFIX = ".ndjson.gz";
+
+    private final Path directory;
+
+    public ChatArchiveWriter(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The archive file of a run, relative to the archive directory.
+     */
+    public static String fileName(String agentId, String runDate) {
+        return agentId + "/chat-history-" + runDate + ARCHIVE_SUFFIX;
+    }
+
+    /**
+     * The directory holding the audio of a run, relative to the archive directory.
+     */
+    public static String audioDirectory(String fileName) {
+        return fileName.substring(0, fileName.length() - ARCHIVE_SUFFIX.length()) + "-audio";
+    }
+
+    public Path resolve(String fileName) {
+        return directory.resolve(fileName);
+    }
+
+    /**
+     * Append messages to an archive file, creating it and its directory when needed.
+     */
+    public void append(String fileName, List<AgentChatHistoryEntity> messages) throws IOException {
+        Path file = resolve(fileName);
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)), 8192);
+                JsonGenerator json = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            json.setRootValueSeparator(null);
+            for (AgentChatHistoryEntity message : messages) {
+                json.writeStartObject();
+                json.writeNumberField("id", message.getId());
+                json.writeStringField("agentId", message.getAgentId());
+                json.writeStringField("sessionId", message.getSessionId());
+                json.writeStringField("macAddress", message.getMacAddress());
+                if (message.getChatType() == null) {
+                    json.writeNullField("chatType");
+                } else {
+                    json.writeNumberField("chatType", message.getChatType().intValue());
+                }
+                json.writeStringField("content", message.getContent());
+                json.writeStringField("audioId", message.getAudioId());
+                if (message.getCreatedAt() == null) {
+                    json.writeNullField("createdAt");
+                } else {
+                    json.writeNumberField("createdAt", message.getCreatedAt().getTime());
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * Write audio clips into the audio directory of an archive file, creating it when needed.
+     */
+    public void writeAudio(String fileName, List<AgentChatAudioEntity> clips) throws IOException {
+        Path audioDirectory = resolve(audioDirectory(fileName));
+        Files.createDirectories(audioDirectory);
+        for (AgentChatAudioEntity clip : clips) {
+            Path file = audioDirectory.resolve(clip.getId() + ".opus").normalize();
+            if (!audioDirectory.equals(file.getParent())) {
+                throw new IOException("Invalid audio ID: " + clip.getId());
+            }
+            Files.write(file, clip.getAudio() == null ? new byte[0] : clip.getAudio());
+        }
+    }
+}
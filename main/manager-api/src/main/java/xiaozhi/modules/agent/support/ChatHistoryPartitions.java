@@ -0,0 +1,82 @@
+package xiaozhi.modules.agent.support;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Naming and planning of the monthly chat history partitions.
+ * <p>
+ * A monthly partition is named {@code pYYYYMM} after the month of its rows and bounded by the
+ * first day of the next month. {@link #FUTURE} catches everything past the last month and is
+ * kept empty by splitting upcoming months off it ahead of time.
+ */
+public final class ChatHistoryPartitions {
+
+    public static final String FUTURE = "p_future";
+
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private ChatHistoryPartitions() {
+    }
+
+    /**
+     * The month of a monthly partition, or null for any other partition.
+     */
+    public static YearMonth month(String partitionName) {
+        if (partitionName == null || partitionName.length() != 7) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partitionName, NAME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static String name(YearMonth month) {
+        return NAME.format(month);
+    }
+
+    /**
+     * Months to split off {@link #FUTURE}: those after the last monthly partition, through
+     * {@code monthsAhead} months after the current one.
+     */
+    public static List<YearMonth> missing(List<String> partitionNames, YearMonth current, int monthsAhead) {
+        YearMonth last = partitionNames.stream().map(ChatHistoryPartitions::month).filter(m -> m != null)
+                .max(YearMonth::compareTo).orElse(null);
+        YearMonth next = last == null ? current : last.plusMonths(1);
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = next; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    /**
+     * Monthly partitions whose rows are all at least {@code keepMonths} months old, oldest first.
+     */
+    public static List<String> expired(List<String> partitionNames, YearMonth current, int keepMonths) {
+        return partitionNames.stream()
+                .filter(name -> {
+                    YearMonth month = month(name);
+                    return month != null && !month.plusMonths(keepMonths + 1L).isAfter(current);
+                })
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Partition definitions for months followed by {@link #FUTURE}, for
+     * {@code REORGANIZE PARTITION p_future INTO (...)}.
+     */
+    public static String definitions(List<YearMonth> months) {
+        return months.stream()
+                .map(month -> "PARTITION " + name(month) + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1)
+                        + "')")
+                .collect(Collectors.joining(", ", "", ", PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE)"));
+    }
+}
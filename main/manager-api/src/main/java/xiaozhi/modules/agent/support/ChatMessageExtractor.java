@@ -0,0 +1,144 @@
+package xiaozhi.modules.agent.support;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
+
+/**
+ * Picks the user messages of a chat session that are worth summarizing.
+ * <p>
+ * Each message is handled in one pass: JSON payloads are read with a streaming parser up to
+ * their {@code content} field, noise (device control, weather, dates) is dropped with a
+ * precompiled keyword automaton, and collection stops as soon as the token budget is spent.
+ */
+public final class ChatMessageExtractor {
+
+    private static final byte CHAT_TYPE_USER = 1;
+    private static final int MIN_MESSAGE_LENGTH = 5;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final KeywordMatcher NOISE = KeywordMatcher.of(
+            // Device control
+            "device control", "device operation", "control device", "device status",
+            // Weather
+            "weather", "temperature", "humidity", "rain", "forecast",
+            // Dates and times
+            "date", "time", "day of week", "month", "year");
+
+    private ChatMessageExtractor() {
+    }
+
+    /**
+     * Meaningful user messages, in chat order, that fit into the token budget.
+     *
+     * @param newestFirst keep the newest messages when the budget runs out, otherwise the oldest
+     */
+    public static List<String> extract(List<AgentChatHistoryDTO> chatHistory, int tokenBudget, boolean newestFirst) {
+        List<String> messages = new ArrayList<>();
+        int tokens = 0;
+        int size = chatHistory.size();
+        for (int i = 0; i < size; i++) {
+            AgentChatHistoryDTO message = chatHistory.get(newestFirst ? size - 1 - i : i);
+            if (message.getChatType() == null || message.getChatType() != CHAT_TYPE_USER) {
+                continue;
+            }
+            String content = extractContent(message.getContent());
+            if (!isMeaningful(content)) {
+                continue;
+            }
+            tokens += estimateTokens(content);
+            // The first message is always kept, however long
+            if (tokens > tokenBudget && !messages.isEmpty()) {
+                break;
+            }
+            messages.add(content);
+        }
+        if (newestFirst) {
+            Collections.reverse(messages);
+        }
+        return messages;
+    }
+
+    /**
+     * Text of a message. For JSON payloads this is the {@code content} field, or the first
+     * {@code {...}} block when there is no such field.
+     */
+    public static String extractContent(String content) {
+        if (content == null || content.isBlank()) {
+            return "";
+        }
+        int start = content.indexOf('{');
+        if (start < 0) {
+            return content;
+        }
+        int end = content.indexOf('}', start);
+        if (end < 0) {
+            return content;
+        }
+        String field = readContentField(content, start);
+        return field != null ? field : content.substring(start, end + 1);
+    }
+
+    /**
+     * Whether a message carries information worth remembering.
+     */
+    public static boolean isMeaningful(String content) {
+        return content != null && content.length() >= MIN_MESSAGE_LENGTH && !content.isBlank()
+                && !NOISE.find(content);
+    }
+
+    /**
+     * Rough token count: one token per CJK character, one per four other characters.
+     */
+    public static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // Skip the script lookup for ASCII, which is most of the text
+            if (c >= 0x80 && Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private static String readContentField(String content, int start) {
+        // StringReader reads the string in place instead of copying it
+        try (Reader reader = new StringReader(content)) {
+            reader.skip(start);
+            return readContentField(JSON_FACTORY.createParser(reader));
+        } catch (IOException e) {
+            // Not valid JSON; fall back to the raw block
+            return null;
+        }
+    }
+
+    private static String readContentField(JsonParser parser) throws IOException {
+        try (parser) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && "content".equals(parser.currentName())) {
+                    return parser.nextToken() == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                if (token == JsonToken.END_OBJECT && parser.getParsingContext().inRoot()) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package xiaozhi.modules.agent.support;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Maintenance of the monthly partitions of the chat history table on MySQL
+ */
+@Data
+@ConfigurationProperties(prefix = "chat.partition")
+public class ChatPartitionProperties {
+    /**
+     * Whether the scheduled maintenance is enabled
+     */
+    private boolean enabled = true;
+    /**
+     * Monthly partitions created ahead of the current month
+     */
+    private int monthsAhead = 3;
+    /**
+     * Months after which a whole monthly partition is dropped with its audio, regardless of agent
+     * retention policies; 0 never drops
+     */
+    private int dropAfterMonths = 0;
+}
@@ -0,0 +1,32 @@
+package xiaozhi.modules.agent.support;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Scheduled chat history retention: when it runs, how hard it may push the database and
+ * where removed messages are archived
+ */
+@Data
+@ConfigurationProperties(prefix = "chat.retention")
+public class ChatRetentionProperties {
+    /**
+     * Whether the scheduled run is enabled
+     */
+    private boolean enabled = true;
+    /**
+     * Messages deleted or archived per transaction
+     */
+    private int chunkSize = 500;
+    /**
+     * Upper bound on messages removed per second across all agents
+     */
+    private double rowsPerSecond = 2000;
+    /**
+     * Directory holding the gzip-compressed NDJSON archives and their audio, one subdirectory per agent
+     */
+    private Path archiveDir = Path.of(System.getProperty("java.io.tmpdir"), "xiaozhi-chat-archive");
+}
@@ -0,0 +1,251 @@
+package xiaozhi.modules.agent.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.LengthGoalBreakIterator;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+
+/**
+ * Embedded Lucene index of chat message text on local disk, one document per message.
+ * <p>
+ * Writes go to an in-memory buffer and become searchable on the next search, through a
+ * near-real-time reader; {@link #commit()} makes them durable. A message is keyed by its ID, so
+ * indexing it again replaces it. Snippets are HTML-escaped with matches wrapped in
+ * {@code <em>}, so they can be shown as they are.
+ */
+public class ChatSearchIndex implements Closeable {
+
+    private static final String ID = "id";
+    private static final String AGENT = "agentId";
+    private static final String SESSION = "sessionId";
+    private static final String DEVICE = "macAddress";
+    private static final String TYPE = "chatType";
+    private static final String TIME = "createdAt";
+    private static final String CONTENT = "content";
+
+    /**
+     * Stored text with offsets in the postings, which lets the highlighter skip re-analysis
+     */
+    private static final FieldType CONTENT_TYPE = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        CONTENT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        CONTENT_TYPE.freeze();
+    }
+
+    /**
+     * A matching message.
+     *
+     * @param createdAt creation time in epoch milliseconds
+     * @param snippet   best passage of the text, HTML-escaped, matches in {@code <em>}
+     */
+    public record Hit(long id, String sessionId, String macAddress, int chatType, long createdAt, float score,
+            String snippet) {
+    }
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final int snippetLength;
+
+    /**
+     * Open the index in a directory, creating it when missing.
+     *
+     * @param snippetLength target length of the snippet returned per hit, in characters
+     */
+    public ChatSearchIndex(Path path, int snippetLength) throws IOException {
+        Files.createDirectories(path);
+        this.directory = FSDirectory.open(path);
+        this.writer = new IndexWriter(directory,
+                new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+        this.snippetLength = snippetLength;
+    }
+
+    public void add(AgentChatHistoryEntity message) throws IOException {
+        writer.updateDocument(idTerm(message.getId()), document(message));
+    }
+
+    public void addAll(Collection<AgentChatHistoryEntity> messages) throws IOException {
+        for (AgentChatHistoryEntity message : messages) {
+            add(message);
+        }
+    }
+
+    public void deleteIds(Collection<Long> ids) throws IOException {
+        writer.deleteDocuments(ids.stream().map(ChatSearchIndex::idTerm).toArray(Term[]::new));
+    }
+
+    public void deleteAgent(String agentId) throws IOException {
+        writer.deleteDocuments(new Term(AGENT, agentId));
+    }
+
+    public void deleteSession(String agentId, String sessionId) throws IOException {
+        writer.deleteDocuments(new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(AGENT, agentId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(SESSION, sessionId)), BooleanClause.Occur.FILTER)
+                .build());
+    }
+
+    /**
+     * Delete the messages of every agent created in [fromMillis, toMillis).
+     */
+    public void deleteRange(long fromMillis, long toMillis) throws IOException {
+        writer.deleteDocuments(LongPoint.newRangeQuery(TIME, fromMillis, toMillis - 1));
+    }
+
+    public void deleteAll() throws IOException {
+        writer.deleteAll();
+    }
+
+    /**
+     * Make buffered changes durable; does nothing when there are none.
+     */
+    public void commit() throws IOException {
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+    }
+
+    /**
+     * Messages indexed, including those not yet committed.
+     */
+    public int size() {
+        return writer.getDocStats().numDocs;
+    }
+
+    /**
+     * Search the messages of one agent, best matches first and newer first among equals.
+     * <p>
+     * The query uses the simple syntax: words must all match, {@code "quotes"} match a phrase,
+     * {@code -word} excludes, {@code |} means or and {@code *} ends a prefix.
+     *
+     * @param fromMillis inclusive lower bound of the creation time, null for none
+     * @param toMillis   exclusive upper bound of the creation time, null for none
+     */
+    public List<Hit> search(String agentId, String text, Long fromMillis, Long toMillis, int limit)
+            throws IOException {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, CONTENT) {
+            @Override
+            protected Query newDefaultQuery(String term) {
+                // A run without spaces, such as CJK text split into characters, matches as a phrase
+                return createPhraseQuery(CONTENT, term);
+            }
+        };
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query textQuery = parser.parse(text == null ? "" : text);
+        if (textQuery == null || textQuery instanceof MatchNoDocsQuery) {
+            return List.of();
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(AGENT, agentId)), BooleanClause.Occur.FILTER)
+                .add(LongPoint.newRangeQuery(TIME, fromMillis == null ? Long.MIN_VALUE : fromMillis,
+                        toMillis == null ? Long.MAX_VALUE : toMillis - 1), BooleanClause.Occur.FILTER)
+                .add(textQuery, BooleanClause.Occur.MUST)
+                .build();
+
+        searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs top = searcher.search(query, limit,
+                    new Sort(SortField.FIELD_SCORE, new SortField(TIME, SortField.Type.LONG, true)), true);
+            if (top.scoreDocs.length == 0) {
+                return List.of();
+            }
+            UnifiedHighlighter highlighter = UnifiedHighlighter.builder(searcher, analyzer)
+                    .withFormatter(new DefaultPassageFormatter("<em>", "</em>", "… ", true))
+                    // Passages of about the snippet length, cut at word boundaries, match in the first third
+                    .withBreakIterator(() -> LengthGoalBreakIterator.createClosestToLength(
+                            BreakIterator.getWordInstance(Locale.ROOT), snippetLength, 0.3f))
+                    .build();
+            String[] snippets = highlighter.highlight(CONTENT, query, top, 1);
+            StoredFields stored = searcher.storedFields();
+            List<Hit> hits = new ArrayList<>(top.scoreDocs.length);
+            for (int i = 0; i < top.scoreDocs.length; i++) {
+                Document document = stored.document(top.scoreDocs[i].doc);
+                hits.add(new Hit(document.getField(ID).numericValue().longValue(), document.get(SESSION),
+                        document.get(DEVICE), document.getField(TYPE).numericValue().intValue(),
+                        document.getField(TIME).numericValue().longValue(), top.scoreDocs[i].score,
+                        snippets[i]));
+            }
+            return hits;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            searcherManager.close();
+            // Commits pending changes
+            writer.close();
+        } finally {
+            directory.close();
+        }
+    }
+
+    private static Document document(AgentChatHistoryEntity message) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(message.getId()), Field.Store.NO));
+        document.add(new StoredField(ID, message.getId()));
+        document.add(new StringField(AGENT, nullToEmpty(message.getAgentId()), Field.Store.NO));
+        document.add(new StringField(SESSION, nullToEmpty(message.getSessionId()), Field.Store.YES));
+        document.add(new StoredField(DEVICE, nullToEmpty(message.getMacAddress())));
+        document.add(new StoredField(TYPE, message.getChatType() == null ? 0 : message.getChatType()));
+        long createdAt = message.getCreatedAt() == null ? 0 : message.getCreatedAt().getTime();
+        document.add(new LongPoint(TIME, createdAt));
+        document.add(new NumericDocValuesField(TIME, createdAt));
+        document.add(new StoredField(TIME, createdAt));
+        document.add(new Field(CONTENT, ChatMessageExtractor.extractContent(message.getContent()), CONTENT_TYPE));
+        return document;
+    }
+
+    private static Term idTerm(Long id) {
+        return new Term(ID, String.valueOf(id));
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,35 @@
+package xiaozhi.modules.agent.support;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Full-text search over chat history: where the local index lives and how results are shaped
+ */
+@Data
+@ConfigurationProperties(prefix = "chat.search")
+public class ChatSearchProperties {
+    /**
+     * Whether messages are indexed and search is served
+     */
+    private boolean enabled = true;
+    /**
+     * Directory holding the Lucene index, on local disk
+     */
+    private Path indexDir = Path.of(System.getProperty("java.io.tmpdir"), "xiaozhi-chat-index");
+    /**
+     * Target snippet length per hit, in characters
+     */
+    private int snippetLength = 160;
+    /**
+     * Upper bound on hits returned by one search
+     */
+    private int maxResults = 50;
+    /**
+     * Messages read from the database per chunk while rebuilding
+     */
+    private int rebuildChunkSize = 1000;
+}
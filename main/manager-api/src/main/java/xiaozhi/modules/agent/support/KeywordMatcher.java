@@ -0,0 +1,105 @@
+package xiaozhi.modules.agent.support;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Aho-Corasick automaton over ASCII-case-insensitive keywords.
+ * <p>
+ * Built once; {@link #find(CharSequence)} then tells in a single left-to-right pass, without
+ * allocating, whether any keyword occurs in the text. Non-ASCII characters match only
+ * themselves and simply reset the automaton, like {@code Pattern.CASE_INSENSITIVE}.
+ */
+public final class KeywordMatcher {
+
+    private static final int ALPHABET = 128;
+
+    // goto[state][c] after failure links are folded in; -1 never remains once built
+    private final int[][] transitions;
+    private final boolean[] terminal;
+
+    private KeywordMatcher(int[][] transitions, boolean[] terminal) {
+        this.transitions = transitions;
+        this.terminal = terminal;
+    }
+
+    public static KeywordMatcher of(String... keywords) {
+        int maxStates = 1;
+        for (String keyword : keywords) {
+            maxStates += keyword.length();
+        }
+        int[][] transitions = new int[maxStates][];
+        boolean[] terminal = new boolean[maxStates];
+        transitions[0] = newRow();
+        int states = 1;
+
+        for (String keyword : keywords) {
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int c = lower(keyword.charAt(i));
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Keywords must be ASCII: " + keyword);
+                }
+                if (transitions[state][c] < 0) {
+                    transitions[states] = newRow();
+                    transitions[state][c] = states++;
+                }
+                state = transitions[state][c];
+            }
+            terminal[state] = true;
+        }
+
+        // Breadth-first: resolve missing edges through failure links
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = transitions[0][c];
+            if (next < 0) {
+                transitions[0][c] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            terminal[state] |= terminal[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = transitions[state][c];
+                if (next < 0) {
+                    transitions[state][c] = transitions[fail[state]][c];
+                } else {
+                    fail[next] = transitions[fail[state]][c];
+                    queue.add(next);
+                }
+            }
+        }
+        return new KeywordMatcher(Arrays.copyOf(transitions, states), Arrays.copyOf(terminal, states));
+    }
+
+    /**
+     * Whether any keyword occurs in the text.
+     */
+    public boolean find(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int c = lower(text.charAt(i));
+            state = c < ALPHABET ? transitions[state][c] : 0;
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int lower(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
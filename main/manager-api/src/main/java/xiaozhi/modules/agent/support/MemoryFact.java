@@ -0,0 +1,50 @@
+package xiaozhi.modules.agent.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A fact to remember, as produced by the memory extraction and compaction prompts.
+ *
+ * @param importance 1 (trivial) to 5 (essential)
+ * @param content    the fact
+ */
+public record MemoryFact(int importance, String content) {
+
+    /**
+     * Reply meaning "nothing new to remember".
+     */
+    public static final String NONE = "NONE";
+
+    private static final Pattern LINE = Pattern.compile("^\\s*(?:[-*]\\s*)?([1-5])\\s*\\|\\s*(.+?)\\s*$");
+    private static final int MAX_CONTENT_LENGTH = 1000;
+
+    /**
+     * Parse an LLM reply with one {@code importance|fact} per line.
+     *
+     * @return the facts, empty for {@link #NONE}, or null when the reply has neither
+     *         (typically an error message instead of an answer)
+     */
+    public static List<MemoryFact> parse(String reply) {
+        if (reply == null) {
+            return null;
+        }
+        List<MemoryFact> facts = new ArrayList<>();
+        for (String line : reply.split("\\R")) {
+            Matcher matcher = LINE.matcher(line);
+            if (matcher.matches()) {
+                String content = matcher.group(2);
+                if (content.length() > MAX_CONTENT_LENGTH) {
+                    content = content.substring(0, MAX_CONTENT_LENGTH);
+                }
+                facts.add(new MemoryFact(Integer.parseInt(matcher.group(1)), content));
+            }
+        }
+        if (facts.isEmpty() && !NONE.equalsIgnoreCase(reply.strip())) {
+            return null;
+        }
+        return facts;
+    }
+}
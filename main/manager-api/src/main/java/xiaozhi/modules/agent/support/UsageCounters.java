@@ -0,0 +1,60 @@
+package xiaozhi.modules.agent.support;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Usage counted in memory since the last flush, per agent, day and device.
+ * <p>
+ * Each key is updated and removed atomically, so a count lands either in the batch being
+ * drained or in the next one, never in neither.
+ */
+public class UsageCounters {
+
+    public record Key(String agentId, LocalDate day, String macAddress) {
+    }
+
+    public record Counts(long messages, long sessions, long audioBytes, long checkIns) {
+
+        public Counts plus(Counts other) {
+            return new Counts(messages + other.messages, sessions + other.sessions,
+                    audioBytes + other.audioBytes, checkIns + other.checkIns);
+        }
+    }
+
+    private final ConcurrentHashMap<Key, Counts> pending = new ConcurrentHashMap<>();
+
+    public void add(Key key, Counts counts) {
+        pending.merge(key, counts, Counts::plus);
+    }
+
+    /**
+     * Remove and return everything counted so far.
+     */
+    public Map<Key, Counts> drain() {
+        Map<Key, Counts> drained = new HashMap<>();
+        for (Key key : pending.keySet()) {
+            Counts counts = pending.remove(key);
+            if (counts != null) {
+                drained.put(key, counts);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Put back counts that could not be written, adding to whatever arrived meanwhile.
+     */
+    public void restore(Map<Key, Counts> counts) {
+        counts.forEach(this::add);
+    }
+
+    /**
+     * Agent, day and device combinations waiting to be written.
+     */
+    public int size() {
+        return pending.size();
+    }
+}
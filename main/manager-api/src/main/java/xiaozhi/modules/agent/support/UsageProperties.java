@@ -0,0 +1,21 @@
+package xiaozhi.modules.agent.support;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Usage rollups: whether counters are kept and how long a dashboard range may be
+ */
+@Data
+@ConfigurationProperties(prefix = "usage")
+public class UsageProperties {
+    /**
+     * Whether reports and check-ins are counted
+     */
+    private boolean enabled = true;
+    /**
+     * Longest range one dashboard query may cover, in days
+     */
+    private int maxRangeDays = 366;
+}
@@ -0,0 +1,41 @@
+package xiaozhi.modules.agent.task;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.service.ChatHistoryPartitionService;
+import xiaozhi.modules.agent.support.ChatPartitionProperties;
+
+/**
+ * Scheduled task that maintains the monthly chat history partitions.
+ *
+ * Creates the partitions of the coming months before rows arrive for them, and drops whole
+ * months past the configured age. Does nothing unless the table is partitioned.
+ */
+@Component
+@AllArgsConstructor
+@Slf4j
+@EnableConfigurationProperties(ChatPartitionProperties.class)
+public class AgentChatPartitionTask {
+
+    private final ChatHistoryPartitionService chatHistoryPartitionService;
+    private final ChatPartitionProperties properties;
+
+    /**
+     * Maintain partitions on the configured schedule, 03:00 every day by default.
+     */
+    @Scheduled(cron = "${chat.partition.cron:0 0 3 * * ?}")
+    public void maintainPartitions() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            chatHistoryPartitionService.maintain();
+        } catch (Exception e) {
+            log.error("Chat history partition maintenance failed", e);
+        }
+    }
+}
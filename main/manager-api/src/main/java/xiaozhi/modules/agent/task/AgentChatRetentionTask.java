@@ -0,0 +1,41 @@
+package xiaozhi.modules.agent.task;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.service.AgentChatRetentionService;
+import xiaozhi.modules.agent.support.ChatRetentionProperties;
+
+/**
+ * Scheduled task that enforces chat history retention.
+ *
+ * Runs off-peak by default; agents are processed in bounded, rate-limited chunks, and a run
+ * that is cut short resumes where it stopped on the next schedule.
+ */
+@Component
+@AllArgsConstructor
+@Slf4j
+@EnableConfigurationProperties(ChatRetentionProperties.class)
+public class AgentChatRetentionTask {
+
+    private final AgentChatRetentionService agentChatRetentionService;
+    private final ChatRetentionProperties properties;
+
+    /**
+     * Run retention on the configured schedule, 03:30 every day by default.
+     */
+    @Scheduled(cron = "${chat.retention.cron:0 30 3 * * ?}")
+    public void enforceRetention() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            agentChatRetentionService.runAll();
+        } catch (Exception e) {
+            log.error("Chat retention task failed", e);
+        }
+    }
+}
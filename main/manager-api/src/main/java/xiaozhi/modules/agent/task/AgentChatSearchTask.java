@@ -0,0 +1,31 @@
+package xiaozhi.modules.agent.task;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import xiaozhi.modules.agent.service.AgentChatSearchService;
+import xiaozhi.modules.agent.support.ChatSearchProperties;
+
+/**
+ * Scheduled task that commits the chat search index.
+ *
+ * Reports are searchable as soon as they are indexed; committing only bounds what a crash can
+ * lose, which a rebuild then restores from the database.
+ */
+@Component
+@AllArgsConstructor
+@EnableConfigurationProperties(ChatSearchProperties.class)
+public class AgentChatSearchTask {
+
+    private final AgentChatSearchService agentChatSearchService;
+
+    /**
+     * Commit on the configured interval, every 10 seconds by default.
+     */
+    @Scheduled(fixedDelayString = "${chat.search.commit-interval:PT10S}")
+    public void commitIndex() {
+        agentChatSearchService.commit();
+    }
+}
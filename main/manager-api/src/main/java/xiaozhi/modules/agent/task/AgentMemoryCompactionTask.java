@@ -0,0 +1,61 @@
+package xiaozhi.modules.agent.task;
+
+import java.util.List;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.service.AgentChatSummaryService;
+import xiaozhi.modules.agent.service.AgentMemoryService;
+import xiaozhi.modules.agent.support.MemoryFact;
+import xiaozhi.modules.llm.service.LLMService;
+
+/**
+ * Scheduled task that compacts agent memory.
+ *
+ * Agents whose stored facts exceed the compaction threshold get their lowest-value facts
+ * condensed by the agent's summary model, keeping the memory store bounded.
+ */
+@Component
+@AllArgsConstructor
+@Slf4j
+public class AgentMemoryCompactionTask {
+
+    private static final String COMPACTION_PROMPT = "You maintain the long-term memory of a voice assistant."
+            + " Condense the facts below into fewer, shorter facts without losing anything important.\n"
+            + "Rules:\n"
+            + "1. Each input line is importance|fact; answer in the same format, one fact per line.\n"
+            + "2. Merge duplicates and facts about the same topic; when facts conflict, keep the later one.\n"
+            + "3. Keep the highest importance of the facts you merge.\n"
+            + "4. Write in the language of the facts.\n\n"
+            + "Facts:\n{conversation}";
+
+    private final AgentMemoryService agentMemoryService;
+    private final AgentChatSummaryService agentChatSummaryService;
+    private final LLMService llmService;
+
+    /**
+     * Run compaction every 10 minutes.
+     */
+    @Scheduled(fixedDelay = 600000, initialDelay = 120000)
+    public void compactMemory() {
+        List<String> agentIds;
+        try {
+            agentIds = agentMemoryService.getAgentsToCompact();
+        } catch (Exception e) {
+            log.error("Memory compaction task failed to list agents", e);
+            return;
+        }
+        for (String agentId : agentIds) {
+            try {
+                String modelId = agentChatSummaryService.getSummaryModelId(agentId);
+                agentMemoryService.compact(agentId,
+                        facts -> MemoryFact.parse(llmService.generateSummary(facts, COMPACTION_PROMPT, modelId)));
+            } catch (Exception e) {
+                log.error("Memory compaction failed for agent {}", agentId, e);
+            }
+        }
+    }
+}
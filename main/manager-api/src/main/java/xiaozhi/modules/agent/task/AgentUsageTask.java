@@ -0,0 +1,37 @@
+package xiaozhi.modules.agent.task;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.agent.service.AgentUsageService;
+import xiaozhi.modules.agent.support.UsageProperties;
+
+/**
+ * Scheduled task that writes the usage counters kept in memory to the daily rollups.
+ *
+ * Dashboards lag live usage by at most one interval; counters that fail to write are kept for
+ * the next run.
+ */
+@Component
+@AllArgsConstructor
+@Slf4j
+@EnableConfigurationProperties(UsageProperties.class)
+public class AgentUsageTask {
+
+    private final AgentUsageService agentUsageService;
+
+    /**
+     * Flush on the configured interval, every minute by default.
+     */
+    @Scheduled(fixedDelayString = "${usage.flush-interval:PT1M}")
+    public void flushUsage() {
+        try {
+            agentUsageService.flush();
+        } catch (Exception e) {
+            log.error("Usage counter flush failed", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package xiaozhi.modules.agent.vo;
+
+import java.util.Date;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Chat history search hit
+ */
+@Data
+public class AgentChatSearchHitVO {
+
+    @Schema(description = "Message ID")
+    private Long id;
+
+    @Schema(description = "Session ID")
+    private String sessionId;
+
+    @Schema(description = "Device MAC address")
+    private String macAddress;
+
+    @Schema(description = "Message type, 1 user and 2 agent")
+    private Integer chatType;
+
+    @Schema(description = "Creation time")
+    private Date createdAt;
+
+    @Schema(description = "Relevance score")
+    private Float score;
+
+    @Schema(description = "Best passage of the message, HTML-escaped, with matches wrapped in <em>")
+    private String snippet;
+}
@@ -0,0 +1,54 @@
+package xiaozhi.modules.agent.vo;
+
+import lombok.Data;
+
+/**
+ * Agent configuration projection
+ * Only the ai_agent columns needed on the device config, summary and permission paths;
+ * plugins, context providers and correct-word files are loaded separately where needed
+ */
+@Data
+public class AgentConfigVO {
+
+    private String id;
+
+    private Long userId;
+
+    private String agentName;
+
+    private String asrModelId;
+
+    private String vadModelId;
+
+    private String llmModelId;
+
+    private String slmModelId;
+
+    private String vllmModelId;
+
+    private String ttsModelId;
+
+    private String ttsVoiceId;
+
+    private String ttsLanguage;
+
+    private Integer ttsVolume;
+
+    private Integer ttsRate;
+
+    private Integer ttsPitch;
+
+    private String memModelId;
+
+    private String intentModelId;
+
+    private Integer chatHistoryConf;
+
+    private String systemPrompt;
+
+    private String summaryMemory;
+
+    private String langCode;
+
+    private String language;
+}
@@ -1,15 +1,13 @@
 package xiaozhi.modules.agent.vo;
 
-import com.baomidou.mybatisplus.annotation.TableField;
-import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import xiaozhi.modules.agent.dto.ContextProviderDTO;
 import xiaozhi.modules.agent.entity.AgentEntity;
-import xiaozhi.modules.agent.entity.AgentPluginMapping;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Agent information response body VO
@@ -20,8 +18,7 @@ import java.util.List;
 public class AgentInfoVO extends AgentEntity
 {
     @Schema(description = "Plugin list ID")
-    @TableField(typeHandler = JacksonTypeHandler.class)
-    private List<AgentPluginMapping> functions;
+    private List<Map<String, Object>> functions;
 
     @Schema(description = "Context-provider configuration")
     private List<ContextProviderDTO> contextProviders;
@@ -0,0 +1,29 @@
+package xiaozhi.modules.agent.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Usage of one device of an agent over a range of days
+ */
+@Data
+public class AgentUsageDeviceVO {
+
+    @Schema(description = "Device MAC address")
+    private String macAddress;
+
+    @Schema(description = "Chat messages reported")
+    private long messages;
+
+    @Schema(description = "Chat sessions started")
+    private long sessions;
+
+    @Schema(description = "Audio stored with the messages, in bytes")
+    private long audioBytes;
+
+    @Schema(description = "OTA check-ins")
+    private long checkIns;
+
+    @Schema(description = "Days the device chatted or checked in")
+    private long activeDays;
+}
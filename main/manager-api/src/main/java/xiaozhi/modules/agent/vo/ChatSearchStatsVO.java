@@ -0,0 +1,30 @@
+package xiaozhi.modules.agent.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import xiaozhi.common.utils.LatencyHistogram;
+
+/**
+ * Chat history search index status
+ */
+@Data
+public class ChatSearchStatsVO {
+
+    @Schema(description = "Whether search is enabled and the index is open")
+    private boolean enabled;
+
+    @Schema(description = "Messages in the index")
+    private int documents;
+
+    @Schema(description = "Whether a rebuild is running")
+    private boolean rebuilding;
+
+    @Schema(description = "Messages indexed by the current or last rebuild")
+    private long rebuildIndexed;
+
+    @Schema(description = "Index updates that failed since startup")
+    private long indexFailures;
+
+    @Schema(description = "Search latency since startup")
+    private LatencyHistogram.Snapshot queryLatency;
+}
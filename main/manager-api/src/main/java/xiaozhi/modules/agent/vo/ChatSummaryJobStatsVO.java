@@ -0,0 +1,58 @@
+package xiaozhi.modules.agent.vo;
+
+import java.util.Map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Chat summary / title job queue status
+ */
+@Data
+public class ChatSummaryJobStatsVO {
+
+    @Schema(description = "Jobs waiting, including scheduled retries")
+    private int queued;
+
+    @Schema(description = "Jobs currently calling the LLM")
+    private int running;
+
+    @Schema(description = "Queue capacity")
+    private int capacity;
+
+    @Schema(description = "Jobs accepted since startup")
+    private long submitted;
+
+    @Schema(description = "Submissions dropped because the same session was already queued")
+    private long deduplicated;
+
+    @Schema(description = "Submissions rejected because the queue was full")
+    private long rejected;
+
+    @Schema(description = "Jobs that finished successfully")
+    private long succeeded;
+
+    @Schema(description = "Jobs that failed after all attempts")
+    private long failed;
+
+    @Schema(description = "Jobs dropped without retry because the session had nothing to summarise or title")
+    private long skipped;
+
+    @Schema(description = "Retry attempts scheduled")
+    private long retried;
+
+    @Schema(description = "Batched summaries run, each covering several sessions of one agent")
+    private long batches;
+
+    @Schema(description = "Sessions summarized as part of a batch")
+    private long batchedSessions;
+
+    @Schema(description = "Average job duration (ms)")
+    private long averageMillis;
+
+    @Schema(description = "Agents with summaries waiting")
+    private int agentsWaiting;
+
+    @Schema(description = "Running jobs per LLM model")
+    private Map<String, Integer> runningByModel;
+}
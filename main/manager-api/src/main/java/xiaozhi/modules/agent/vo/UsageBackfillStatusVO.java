@@ -0,0 +1,37 @@
+package xiaozhi.modules.agent.vo;
+
+import java.time.LocalDate;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Progress of the current or last usage backfill
+ */
+@Data
+public class UsageBackfillStatusVO {
+
+    @Schema(description = "Whether a backfill is running")
+    private boolean running;
+
+    @Schema(description = "First day of the range")
+    private LocalDate startDate;
+
+    @Schema(description = "Last day of the range")
+    private LocalDate endDate;
+
+    @Schema(description = "Last day processed")
+    private LocalDate lastDate;
+
+    @Schema(description = "Days recounted from the chat history")
+    private long daysFilled;
+
+    @Schema(description = "Days skipped because they already had rollups")
+    private long daysSkipped;
+
+    @Schema(description = "Rollup rows written")
+    private long rowsWritten;
+
+    @Schema(description = "Counters waiting to be flushed on this node")
+    private int pendingCounters;
+}
@@ -0,0 +1,34 @@
+package xiaozhi.modules.agent.vo;
+
+import java.time.LocalDate;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Usage of all agents on one day
+ */
+@Data
+public class UsageSummaryVO {
+
+    @Schema(description = "Day")
+    private LocalDate statDate;
+
+    @Schema(description = "Chat messages reported")
+    private long messages;
+
+    @Schema(description = "Chat sessions started")
+    private long sessions;
+
+    @Schema(description = "Audio stored with the messages, in bytes")
+    private long audioBytes;
+
+    @Schema(description = "OTA check-ins")
+    private long checkIns;
+
+    @Schema(description = "Agents with usage")
+    private long activeAgents;
+
+    @Schema(description = "Devices that chatted or checked in")
+    private long activeDevices;
+}
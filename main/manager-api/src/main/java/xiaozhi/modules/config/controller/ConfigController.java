@@ -1,9 +1,11 @@
 package xiaozhi.modules.config.controller;
 
-import java.util.List;
-
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -16,6 +18,7 @@ import xiaozhi.common.validator.ValidatorUtils;
 import xiaozhi.modules.config.dto.AgentModelsDTO;
 import xiaozhi.modules.config.dto.CorrectWordsDTO;
 import xiaozhi.modules.config.service.ConfigService;
+import xiaozhi.modules.correctword.vo.CorrectWordDictionaryVO;
 
 /**
  * xiaozhi-server configuration retrieval
@@ -47,9 +50,15 @@ public class ConfigController {
 
     @PostMapping("correct-words")
     @Operation(summary = "获取智能体替换词")
-    public Result<Object> getCorrectWords(@Valid @RequestBody CorrectWordsDTO dto) {
+    public ResponseEntity<Result<Object>> getCorrectWords(@Valid @RequestBody CorrectWordsDTO dto,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         ValidatorUtils.validateEntity(dto);
-        List<String> list = configService.getCorrectWords(dto.getMacAddress());
-        return new Result<Object>().ok(list);
+        CorrectWordDictionaryVO dictionary = configService.getCorrectWords(dto.getMacAddress());
+        // 字典未变化时返回304，调用方沿用本地副本
+        String etag = "\"" + dictionary.getVersion() + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(new Result<Object>().ok(dictionary.getWords()));
     }
 }
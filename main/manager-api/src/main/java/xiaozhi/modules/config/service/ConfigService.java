@@ -1,8 +1,9 @@
 package xiaozhi.modules.config.service;
 
-import java.util.List;
 import java.util.Map;
 
+import xiaozhi.modules.correctword.vo.CorrectWordDictionaryVO;
+
 public interface ConfigService {
     /**
      * 获取服务器配置
@@ -25,7 +26,7 @@ public interface ConfigService {
      * 获取智能体替换词
      *
      * @param macAddress 设备MAC地址
-     * @return 替换词列表，格式如 ["模板1|模板01", "模板2|模板02"]
+     * @return 替换词字典，words格式如 ["模板1|模板01", "模板2|模板02"]，version为内容哈希
      */
-    List<String> getCorrectWords(String macAddress);
+    CorrectWordDictionaryVO getCorrectWords(String macAddress);
 }
\ No newline at end of file
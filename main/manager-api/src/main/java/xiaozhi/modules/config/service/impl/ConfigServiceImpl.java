@@ -1,12 +1,10 @@
 package xiaozhi.modules.config.service.impl;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
@@ -23,18 +21,19 @@ import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.modules.agent.dao.AgentVoicePrintDao;
 import xiaozhi.modules.agent.entity.AgentContextProviderEntity;
-import xiaozhi.modules.agent.entity.AgentEntity;
 import xiaozhi.modules.agent.entity.AgentPluginMapping;
 import xiaozhi.modules.agent.entity.AgentTemplateEntity;
 import xiaozhi.modules.agent.entity.AgentVoicePrintEntity;
 import xiaozhi.modules.agent.service.AgentContextProviderService;
 import xiaozhi.modules.agent.service.AgentMcpAccessPointService;
+import xiaozhi.modules.agent.service.AgentMemoryService;
 import xiaozhi.modules.agent.service.AgentPluginMappingService;
 import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.agent.service.AgentTemplateService;
 import xiaozhi.modules.correctword.service.CorrectWordFileService;
+import xiaozhi.modules.agent.vo.AgentConfigVO;
 import xiaozhi.modules.agent.vo.AgentVoicePrintVO;
-import xiaozhi.modules.correctword.vo.CorrectWordSimpleVO;
+import xiaozhi.modules.correctword.vo.CorrectWordDictionaryVO;
 import xiaozhi.modules.config.service.ConfigService;
 import xiaozhi.modules.device.entity.DeviceEntity;
 import xiaozhi.modules.device.service.DeviceService;
@@ -50,6 +49,9 @@ import xiaozhi.modules.voiceclone.service.VoiceCloneService;
 @Service
 @AllArgsConstructor
 public class ConfigServiceImpl implements ConfigService {
+    private static final int DEFAULT_MEMORY_TOKEN_BUDGET = 600;
+    private static final CorrectWordDictionaryVO EMPTY_CORRECT_WORDS = CorrectWordDictionaryVO.of(List.of());
+
     private final SysParamsService sysParamsService;
     private final DeviceService deviceService;
     private final ModelConfigService modelConfigService;
@@ -63,6 +65,7 @@ public class ConfigServiceImpl implements ConfigService {
     private final VoiceCloneService cloneVoiceService;
     private final AgentVoicePrintDao agentVoicePrintDao;
     private final CorrectWordFileService correctWordFileService;
+    private final AgentMemoryService agentMemoryService;
 
     @Override
     public Object getConfig(Boolean isCache) {
@@ -137,7 +140,7 @@ public class ConfigServiceImpl implements ConfigService {
         }
 
         // Load the agent configuration.
-        AgentEntity agent = agentService.getAgentById(device.getAgentId());
+        AgentConfigVO agent = agentService.getAgentConfigById(device.getAgentId());
         if (agent == null) {
             throw new RenException(ErrorCode.AGENT_NOT_FOUND);
         }
@@ -182,13 +185,15 @@ public class ConfigServiceImpl implements ConfigService {
         }
         result.put("chat_history_conf", chatHistoryConf);
         // Skip returning models already instantiated by the client.
+        String vadModelId = agent.getVadModelId();
         String alreadySelectedVadModelId = selectedModule.get("VAD");
-        if (alreadySelectedVadModelId != null && alreadySelectedVadModelId.equals(agent.getVadModelId())) {
-            agent.setVadModelId(null);
+        if (alreadySelectedVadModelId != null && alreadySelectedVadModelId.equals(vadModelId)) {
+            vadModelId = null;
         }
+        String asrModelId = agent.getAsrModelId();
         String alreadySelectedAsrModelId = selectedModule.get("ASR");
-        if (alreadySelectedAsrModelId != null && alreadySelectedAsrModelId.equals(agent.getAsrModelId())) {
-            agent.setAsrModelId(null);
+        if (alreadySelectedAsrModelId != null && alreadySelectedAsrModelId.equals(asrModelId)) {
+            asrModelId = null;
         }
 
         // Add function-call parameter metadata.
@@ -224,7 +229,7 @@ public class ConfigServiceImpl implements ConfigService {
         buildModuleConfig(
                 agent.getAgentName(),
                 agent.getSystemPrompt(),
-                agent.getSummaryMemory(),
+                renderMemory(agent, device),
                 voice,
                 referenceAudio,
                 referenceText,
@@ -232,8 +237,8 @@ public class ConfigServiceImpl implements ConfigService {
                 agent.getTtsVolume(),
                 agent.getTtsRate(),
                 agent.getTtsPitch(),
-                agent.getVadModelId(),
-                agent.getAsrModelId(),
+                vadModelId,
+                asrModelId,
                 agent.getLlmModelId(),
                 agent.getVllmModelId(),
                 agent.getSlmModelId(),
@@ -248,15 +253,12 @@ public class ConfigServiceImpl implements ConfigService {
     }
 
     @Override
-    public List<String> getCorrectWords(String macAddress) {
+    public CorrectWordDictionaryVO getCorrectWords(String macAddress) {
         DeviceEntity device = deviceService.getDeviceByMacAddress(macAddress);
         if (device == null) {
-            return Collections.emptyList();
+            return EMPTY_CORRECT_WORDS;
         }
-        List<CorrectWordSimpleVO> items = correctWordFileService.getAllItemsByAgentId(device.getAgentId());
-        return items.stream()
-                .map(item -> item.getSourceWord() + "|" + item.getTargetWord())
-                .collect(Collectors.toList());
+        return correctWordFileService.getAgentDictionary(device.getAgentId());
     }
 
     /**
@@ -548,4 +550,22 @@ public class ConfigServiceImpl implements ConfigService {
         result.put("prompt", prompt);
         result.put("summaryMemory", summaryMemory);
     }
+
+    /**
+     * Memory handed to the device: the highest-value facts of the structured memory that
+     * fit the configured token budget, or the legacy summary text while the store is empty.
+     */
+    private String renderMemory(AgentConfigVO agent, DeviceEntity device) {
+        int tokenBudget = DEFAULT_MEMORY_TOKEN_BUDGET;
+        String budgetStr = sysParamsService.getValue(Constant.MEMORY_TOKEN_BUDGET, true);
+        if (StringUtils.isNotBlank(budgetStr) && !"null".equals(budgetStr)) {
+            try {
+                tokenBudget = Integer.parseInt(budgetStr.trim());
+            } catch (NumberFormatException e) {
+                // Keep the default budget.
+            }
+        }
+        String rendered = agentMemoryService.renderMemory(agent.getId(), device.getId(), tokenBudget);
+        return rendered != null ? rendered : agent.getSummaryMemory();
+    }
 }
@@ -1,10 +1,13 @@
 package xiaozhi.modules.correctword.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -18,6 +21,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -26,6 +31,8 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import xiaozhi.common.constant.Constant;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.utils.Result;
 import xiaozhi.modules.correctword.dto.CorrectWordFileCreateDTO;
@@ -56,6 +63,38 @@ public class CorrectWordController {
         return new Result<>();
     }
 
+    @PostMapping(value = "/file/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "上传替换词文件（流式导入，不限1MB）")
+    @RequiresPermissions("sys:role:normal")
+    public Result<CorrectWordFileVO> uploadFile(@RequestParam("file") MultipartFile file,
+            @RequestParam(value = "fileName", required = false) String fileName) throws IOException {
+        if (file.isEmpty()) {
+            throw new RenException(ErrorCode.UPLOAD_FILE_EMPTY);
+        }
+        fileName = StringUtils.defaultIfBlank(fileName, baseName(file.getOriginalFilename()));
+        if (StringUtils.isBlank(fileName)) {
+            throw new RenException(ErrorCode.RAG_FILE_NAME_NOT_NULL);
+        }
+        try (InputStream input = file.getInputStream()) {
+            CorrectWordFileVO vo = correctWordFileService.importFile(null, fileName, input);
+            return new Result<CorrectWordFileVO>().ok(vo);
+        }
+    }
+
+    @PutMapping(value = "/file/{fileId}/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "上传覆盖替换词文件（只写入变化的词条）")
+    @RequiresPermissions("sys:role:normal")
+    public Result<CorrectWordFileVO> uploadFile(@PathVariable String fileId, @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "fileName", required = false) String fileName) throws IOException {
+        if (file.isEmpty()) {
+            throw new RenException(ErrorCode.UPLOAD_FILE_EMPTY);
+        }
+        try (InputStream input = file.getInputStream()) {
+            CorrectWordFileVO vo = correctWordFileService.importFile(fileId, fileName, input);
+            return new Result<CorrectWordFileVO>().ok(vo);
+        }
+    }
+
     @GetMapping("/file/list")
     @Operation(summary = "分页获取当前用户替换词文件列表")
     @RequiresPermissions("sys:role:normal")
@@ -80,19 +119,19 @@ public class CorrectWordController {
     @GetMapping("/file/download/{fileId}")
     @Operation(summary = "下载替换词文件")
     @RequiresPermissions("sys:role:normal")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String fileId) {
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable String fileId) {
         CorrectWordFileVO vo = correctWordFileService.getFileContent(fileId);
-        if (vo == null || vo.getContent() == null || vo.getContent().isEmpty()) {
+        if (vo == null || (vo.getContent().isEmpty() && (vo.getWordCount() == null || vo.getWordCount() == 0))) {
             return ResponseEntity.notFound().build();
         }
-        byte[] bytes = String.join("\n", vo.getContent()).getBytes(StandardCharsets.UTF_8);
         String encodedFileName = URLEncoder.encode(vo.getFileName(), StandardCharsets.UTF_8).replace("+", "%20");
         String asciiFileName = vo.getFileName().replaceAll("[^\\x00-\\x7F]", "_");
+        StreamingResponseBody body = output -> correctWordFileService.writeFileContent(fileId, output);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION,
                         "attachment; filename=\"" + asciiFileName + "\"; filename*=UTF-8''" + encodedFileName)
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(bytes);
+                .body(body);
     }
 
     @DeleteMapping("/file/{fileId}")
@@ -113,4 +152,15 @@ public class CorrectWordController {
         correctWordFileService.batchDeleteFiles(fileIds);
         return new Result<>();
     }
+
+    /**
+     * 上传文件名去掉扩展名
+     */
+    private static String baseName(String originalFilename) {
+        if (originalFilename == null) {
+            return null;
+        }
+        int dot = originalFilename.lastIndexOf('.');
+        return dot > 0 ? originalFilename.substring(0, dot) : originalFilename;
+    }
 }
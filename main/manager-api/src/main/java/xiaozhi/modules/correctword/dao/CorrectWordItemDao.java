@@ -12,4 +12,20 @@ import xiaozhi.modules.correctword.entity.CorrectWordItemEntity;
 public interface CorrectWordItemDao extends BaseDao<CorrectWordItemEntity> {
 
     int batchInsert(@Param("list") List<CorrectWordItemEntity> items);
+
+    /**
+     * 查询多个文件的词条（仅文件ID、原词、替换词）
+     */
+    List<CorrectWordItemEntity> selectWordsByFileIds(@Param("fileIds") List<String> fileIds);
+
+    /**
+     * 按ID键集分页查询文件的词条（ID、原词、替换词），afterId为空时从头开始
+     */
+    List<CorrectWordItemEntity> selectItemsPage(@Param("fileId") String fileId, @Param("afterId") String afterId,
+            @Param("limit") int limit);
+
+    /**
+     * 按ID批量修改替换词
+     */
+    int batchUpdateTargets(@Param("list") List<CorrectWordItemEntity> items);
 }
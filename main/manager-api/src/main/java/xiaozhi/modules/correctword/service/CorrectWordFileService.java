@@ -1,12 +1,15 @@
 package xiaozhi.modules.correctword.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 import xiaozhi.common.page.PageData;
 import xiaozhi.modules.correctword.dto.CorrectWordFileCreateDTO;
+import xiaozhi.modules.correctword.vo.CorrectWordDictionaryVO;
 import xiaozhi.modules.correctword.vo.CorrectWordFileVO;
-import xiaozhi.modules.correctword.vo.CorrectWordSimpleVO;
 
 public interface CorrectWordFileService {
 
@@ -19,13 +22,23 @@ public interface CorrectWordFileService {
     CorrectWordFileVO createFile(CorrectWordFileCreateDTO dto);
 
     /**
-     * 修改替换词文件（全量替换词条）
+     * 修改替换词文件，只写入与现有词条相比新增、修改和删除的词条
      *
      * @param fileId 文件ID
      * @param dto    修改参数
      */
     void updateFile(String fileId, CorrectWordFileCreateDTO dto);
 
+    /**
+     * 流式导入上传的替换词文件（UTF-8，每行：原词|替换词），不受1MB限制，原始内容不落库
+     *
+     * @param fileId   要覆盖的文件ID，为空时新建文件
+     * @param fileName 文件名，覆盖已有文件时为空则沿用原文件名
+     * @param input    上传内容
+     * @return 文件VO，fileId对应的文件不存在时返回null
+     */
+    CorrectWordFileVO importFile(String fileId, String fileName, InputStream input) throws IOException;
+
     /**
      * 获取当前用户的替换词文件列表
      *
@@ -49,6 +62,14 @@ public interface CorrectWordFileService {
      */
     CorrectWordFileVO getFileContent(String fileId);
 
+    /**
+     * 写出文件内容（用于下载），上传导入的文件由词条逐行生成
+     *
+     * @param fileId 文件ID
+     * @param output 输出流
+     */
+    void writeFileContent(String fileId, OutputStream output) throws IOException;
+
     /**
      * 删除替换词文件及其所有词条和关联记录
      *
@@ -64,12 +85,12 @@ public interface CorrectWordFileService {
     void deleteMappingsByAgentId(String agentId);
 
     /**
-     * 获取智能体的所有替换词条（精简版，供设备端使用）
+     * 获取智能体编译后的替换词字典（供设备端使用），文件或关联变更前一直走缓存
      *
      * @param agentId 智能体ID
-     * @return 替换词列表
+     * @return 替换词字典
      */
-    List<CorrectWordSimpleVO> getAllItemsByAgentId(String agentId);
+    CorrectWordDictionaryVO getAgentDictionary(String agentId);
 
     /**
      * 获取智能体关联的替换词文件ID列表
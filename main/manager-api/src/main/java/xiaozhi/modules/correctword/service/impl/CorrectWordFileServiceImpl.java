@@ -1,24 +1,41 @@
 package xiaozhi.modules.correctword.service.impl;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import lombok.AllArgsConstructor;
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
 import xiaozhi.common.page.PageData;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.BaseServiceImpl;
-import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.modules.agent.dao.AgentCorrectWordMappingDao;
 import xiaozhi.modules.correctword.dao.CorrectWordFileDao;
 import xiaozhi.modules.correctword.dao.CorrectWordItemDao;
@@ -27,8 +44,9 @@ import xiaozhi.modules.agent.entity.AgentCorrectWordMappingEntity;
 import xiaozhi.modules.correctword.entity.CorrectWordFileEntity;
 import xiaozhi.modules.correctword.entity.CorrectWordItemEntity;
 import xiaozhi.modules.correctword.service.CorrectWordFileService;
+import xiaozhi.modules.correctword.support.CorrectWordImporter;
+import xiaozhi.modules.correctword.vo.CorrectWordDictionaryVO;
 import xiaozhi.modules.correctword.vo.CorrectWordFileVO;
-import xiaozhi.modules.correctword.vo.CorrectWordSimpleVO;
 import xiaozhi.modules.security.user.SecurityUser;
 
 @Service
@@ -39,43 +57,38 @@ public class CorrectWordFileServiceImpl extends BaseServiceImpl<CorrectWordFileD
     private final CorrectWordFileDao correctWordFileDao;
     private final CorrectWordItemDao correctWordItemDao;
     private final AgentCorrectWordMappingDao agentCorrectWordMappingDao;
+    private final RedisUtils redisUtils;
+    private final Cache<String, CachedDictionary> localDictionaries = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    private record CachedDictionary(Object generation, CorrectWordDictionaryVO dictionary) {
+    }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public CorrectWordFileVO createFile(CorrectWordFileCreateDTO dto) {
-        // 校验文件大小不能超过1MB
+        // 校验文件大小不能超过1MB（内容要存入文件记录，更大的文件请走上传接口）
         if (dto.getFileSize() != null && dto.getFileSize() > 1024 * 1024) {
             throw new RenException(ErrorCode.FILE_SIZE_OVER_LIMIT);
         }
-
-        // 校验文件名是否重复
-        Long userId = SecurityUser.getUserId();
-        LambdaQueryWrapper<CorrectWordFileEntity> nameWrapper = new LambdaQueryWrapper<>();
-        nameWrapper.eq(CorrectWordFileEntity::getCreator, userId)
-                .eq(CorrectWordFileEntity::getFileName, dto.getFileName());
-        if (correctWordFileDao.selectCount(nameWrapper) > 0) {
-            throw new RenException(ErrorCode.CORRECT_WORD_FILE_NAME_EXISTS);
-        }
-
-        List<CorrectWordItemEntity> items = parseContent(dto.getContent());
+        checkFileName(dto.getFileName(), null);
 
         // 保存文件记录
         CorrectWordFileEntity fileEntity = new CorrectWordFileEntity();
         fileEntity.setFileName(dto.getFileName());
-        fileEntity.setWordCount(items.size());
+        fileEntity.setWordCount(0);
         fileEntity.setContent(String.join("\n", dto.getContent()));
         fileEntity.setCreator(SecurityUser.getUserId());
         fileEntity.setCreatedAt(new Date());
         correctWordFileDao.insert(fileEntity);
 
-        // 设置fileId并批量保存词条
-        String fileId = fileEntity.getId();
-        for (CorrectWordItemEntity item : items) {
-            item.setFileId(fileId);
-        }
-        if (!items.isEmpty()) {
-            correctWordItemDao.batchInsert(items);
-        }
+        // 批量保存词条
+        CorrectWordImporter.Summary summary = new CorrectWordImporter(correctWordItemDao, fileEntity.getId())
+                .importLines(dto.getContent());
+        fileEntity.setWordCount(summary.wordCount());
+        correctWordFileDao.updateById(fileEntity);
 
         return toVO(fileEntity);
     }
@@ -87,38 +100,59 @@ public class CorrectWordFileServiceImpl extends BaseServiceImpl<CorrectWordFileD
         if (fileEntity == null) {
             return;
         }
+        checkFileName(dto.getFileName(), fileId);
 
-        // 校验文件名是否重复（排除自身）
-        Long userId = SecurityUser.getUserId();
-        LambdaQueryWrapper<CorrectWordFileEntity> nameWrapper = new LambdaQueryWrapper<>();
-        nameWrapper.eq(CorrectWordFileEntity::getCreator, userId)
-                .eq(CorrectWordFileEntity::getFileName, dto.getFileName())
-                .ne(CorrectWordFileEntity::getId, fileId);
-        if (correctWordFileDao.selectCount(nameWrapper) > 0) {
-            throw new RenException("文件名已存在：" + dto.getFileName());
-        }
-
-        // 先删除旧词条
-        LambdaQueryWrapper<CorrectWordItemEntity> deleteWrapper = new LambdaQueryWrapper<>();
-        deleteWrapper.eq(CorrectWordItemEntity::getFileId, fileId);
-        correctWordItemDao.delete(deleteWrapper);
-
-        // 解析新词条并批量保存
-        List<CorrectWordItemEntity> items = parseContent(dto.getContent());
-        if (!items.isEmpty()) {
-            for (CorrectWordItemEntity item : items) {
-                item.setFileId(fileId);
-            }
-            correctWordItemDao.batchInsert(items);
-        }
+        // 与现有词条比对，只写入新增、修改和删除的词条
+        CorrectWordImporter.Summary summary = new CorrectWordImporter(correctWordItemDao, fileId)
+                .importLines(dto.getContent());
 
         // 更新文件记录
         fileEntity.setFileName(dto.getFileName());
-        fileEntity.setWordCount(items.size());
+        fileEntity.setWordCount(summary.wordCount());
         fileEntity.setContent(String.join("\n", dto.getContent()));
         fileEntity.setUpdater(SecurityUser.getUserId());
         fileEntity.setUpdatedAt(new Date());
         correctWordFileDao.updateById(fileEntity);
+        evictDictionaries(agentCorrectWordMappingDao.selectAgentIdsByFileId(fileId));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public CorrectWordFileVO importFile(String fileId, String fileName, InputStream input) throws IOException {
+        CorrectWordFileEntity fileEntity;
+        if (fileId == null) {
+            checkFileName(fileName, null);
+            fileEntity = new CorrectWordFileEntity();
+            fileEntity.setFileName(fileName);
+            fileEntity.setWordCount(0);
+            fileEntity.setCreator(SecurityUser.getUserId());
+            fileEntity.setCreatedAt(new Date());
+            correctWordFileDao.insert(fileEntity);
+        } else {
+            fileEntity = correctWordFileDao.selectById(fileId);
+            if (fileEntity == null) {
+                return null;
+            }
+            fileName = StringUtils.defaultIfBlank(fileName, fileEntity.getFileName());
+            checkFileName(fileName, fileId);
+        }
+
+        // 逐行读取上传内容并与现有词条比对，内容本身不落库，下载时由词条生成
+        CorrectWordImporter.Summary summary = new CorrectWordImporter(correctWordItemDao, fileEntity.getId())
+                .importFrom(input);
+        fileEntity.setFileName(fileName);
+        fileEntity.setWordCount(summary.wordCount());
+        fileEntity.setContent(null);
+        fileEntity.setUpdater(SecurityUser.getUserId());
+        fileEntity.setUpdatedAt(new Date());
+        LambdaUpdateWrapper<CorrectWordFileEntity> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(CorrectWordFileEntity::getId, fileEntity.getId())
+                .set(CorrectWordFileEntity::getContent, null);
+        correctWordFileDao.update(fileEntity, updateWrapper);
+        if (fileId != null) {
+            evictDictionaries(agentCorrectWordMappingDao.selectAgentIdsByFileId(fileId));
+        }
+        return toVO(fileEntity);
     }
 
     @Override
@@ -149,6 +183,37 @@ public class CorrectWordFileServiceImpl extends BaseServiceImpl<CorrectWordFileD
         return toVO(entity);
     }
 
+    @Override
+    public void writeFileContent(String fileId, OutputStream output) throws IOException {
+        CorrectWordFileEntity entity = correctWordFileDao.selectById(fileId);
+        if (entity == null) {
+            return;
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        if (entity.getContent() != null) {
+            writer.write(entity.getContent());
+        } else {
+            // 上传的文件不保存原始内容，按ID分页读出词条逐行写出
+            String afterId = null;
+            boolean first = true;
+            List<CorrectWordItemEntity> page;
+            do {
+                page = correctWordItemDao.selectItemsPage(fileId, afterId, CorrectWordImporter.BATCH_SIZE);
+                for (CorrectWordItemEntity item : page) {
+                    if (!first) {
+                        writer.write('\n');
+                    }
+                    writer.write(item.getSourceWord());
+                    writer.write('|');
+                    writer.write(item.getTargetWord());
+                    first = false;
+                    afterId = item.getId();
+                }
+            } while (page.size() == CorrectWordImporter.BATCH_SIZE);
+        }
+        writer.flush();
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void deleteFile(String fileId) {
@@ -156,6 +221,7 @@ public class CorrectWordFileServiceImpl extends BaseServiceImpl<CorrectWordFileD
             return;
         }
         // 先删除关联表记录
+        evictDictionaries(agentCorrectWordMappingDao.selectAgentIdsByFileId(fileId));
         agentCorrectWordMappingDao.deleteByFileId(fileId);
         // 删除词条
         LambdaQueryWrapper<CorrectWordItemEntity> wrapper = new LambdaQueryWrapper<>();
@@ -169,24 +235,73 @@ public class CorrectWordFileServiceImpl extends BaseServiceImpl<CorrectWordFileD
     @Transactional(rollbackFor = Exception.class)
     public void deleteMappingsByAgentId(String agentId) {
         agentCorrectWordMappingDao.deleteByAgentId(agentId);
+        evictDictionaries(List.of(agentId));
     }
 
     @Override
-    public List<CorrectWordSimpleVO> getAllItemsByAgentId(String agentId) {
-        // 通过关联表获取文件ID列表
-        List<AgentCorrectWordMappingEntity> mappings = agentCorrectWordMappingDao.selectByAgentId(agentId);
-        if (mappings == null || mappings.isEmpty()) {
-            return new ArrayList<>();
+    public CorrectWordDictionaryVO getAgentDictionary(String agentId) {
+        // 代数在文件或关联变更提交后递增；本地和Redis缓存都按代数校验，变更前编译的旧字典不会再被读到
+        Object generation = redisUtils.get(RedisKeys.getCorrectWordDictGenerationKey(agentId));
+        Object currentGeneration = generation == null ? 0 : generation;
+        CachedDictionary local = localDictionaries.getIfPresent(agentId);
+        if (local != null && local.generation().equals(currentGeneration)) {
+            return local.dictionary();
         }
-        List<String> fileIds = mappings.stream()
-                .map(AgentCorrectWordMappingEntity::getFileId)
-                .collect(Collectors.toList());
 
-        // 根据文件ID列表查询词条
-        LambdaQueryWrapper<CorrectWordItemEntity> wrapper = new LambdaQueryWrapper<>();
-        wrapper.in(CorrectWordItemEntity::getFileId, fileIds);
-        List<CorrectWordItemEntity> entities = correctWordItemDao.selectList(wrapper);
-        return ConvertUtils.sourceToTarget(entities, CorrectWordSimpleVO.class);
+        String cacheKey = RedisKeys.getCorrectWordDictKey(agentId, currentGeneration);
+        CorrectWordDictionaryVO dictionary = (CorrectWordDictionaryVO) redisUtils.get(cacheKey);
+        if (dictionary == null) {
+            List<String> fileIds = getAgentCorrectWordFileIds(agentId);
+            List<CorrectWordItemEntity> items = fileIds.isEmpty() ? List.of()
+                    : correctWordItemDao.selectWordsByFileIds(fileIds);
+            dictionary = compileDictionary(fileIds, items);
+            redisUtils.set(cacheKey, dictionary, RedisUtils.DEFAULT_EXPIRE);
+        }
+        localDictionaries.put(agentId, new CachedDictionary(currentGeneration, dictionary));
+        return dictionary;
+    }
+
+    /**
+     * 编译替换词字典：按关联文件顺序合并，同一原词以后出现的为准，再按原词排序，
+     * 内容相同的字典得到相同的版本号
+     */
+    static CorrectWordDictionaryVO compileDictionary(List<String> fileIds, List<CorrectWordItemEntity> items) {
+        Map<String, List<CorrectWordItemEntity>> itemsByFile = items.stream()
+                .collect(Collectors.groupingBy(CorrectWordItemEntity::getFileId));
+        Map<String, String> words = new TreeMap<>();
+        for (String fileId : fileIds) {
+            for (CorrectWordItemEntity item : itemsByFile.getOrDefault(fileId, List.of())) {
+                words.put(item.getSourceWord(), item.getTargetWord());
+            }
+        }
+        List<String> lines = new ArrayList<>(words.size());
+        words.forEach((source, target) -> lines.add(source + "|" + target));
+        return CorrectWordDictionaryVO.of(lines);
+    }
+
+    /**
+     * 事务提交后让智能体的字典缓存失效
+     */
+    private void evictDictionaries(Collection<String> agentIds) {
+        if (agentIds == null || agentIds.isEmpty()) {
+            return;
+        }
+        Runnable evict = () -> {
+            for (String agentId : agentIds) {
+                redisUtils.increment(RedisKeys.getCorrectWordDictGenerationKey(agentId));
+                localDictionaries.invalidate(agentId);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
     }
 
     @Override
@@ -205,6 +320,7 @@ public class CorrectWordFileServiceImpl extends BaseServiceImpl<CorrectWordFileD
     public void saveAgentCorrectWords(String agentId, List<String> fileIds) {
         // 先删除旧的关联记录
         agentCorrectWordMappingDao.deleteByAgentId(agentId);
+        evictDictionaries(List.of(agentId));
 
         if (fileIds == null || fileIds.isEmpty()) {
             return;
@@ -242,33 +358,16 @@ public class CorrectWordFileServiceImpl extends BaseServiceImpl<CorrectWordFileD
     }
 
     /**
-     * 解析替换词内容，每条格式：原词|替换词
+     * 校验当前用户下文件名是否重复，excludeId为修改时排除的文件自身
      */
-    private List<CorrectWordItemEntity> parseContent(List<String> lines) {
-        List<CorrectWordItemEntity> items = new ArrayList<>();
-        if (lines == null || lines.isEmpty()) {
-            return items;
-        }
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty()) {
-                continue;
-            }
-            int idx = line.indexOf('|');
-            if (idx <= 0 || idx >= line.length() - 1) {
-                continue;
-            }
-            String sourceWord = line.substring(0, idx).trim();
-            String targetWord = line.substring(idx + 1).trim();
-            if (sourceWord.isEmpty() || targetWord.isEmpty()) {
-                continue;
-            }
-            CorrectWordItemEntity item = new CorrectWordItemEntity();
-            item.setSourceWord(sourceWord);
-            item.setTargetWord(targetWord);
-            items.add(item);
+    private void checkFileName(String fileName, String excludeId) {
+        LambdaQueryWrapper<CorrectWordFileEntity> nameWrapper = new LambdaQueryWrapper<>();
+        nameWrapper.eq(CorrectWordFileEntity::getCreator, SecurityUser.getUserId())
+                .eq(CorrectWordFileEntity::getFileName, fileName)
+                .ne(excludeId != null, CorrectWordFileEntity::getId, excludeId);
+        if (correctWordFileDao.selectCount(nameWrapper) > 0) {
+            throw new RenException(ErrorCode.CORRECT_WORD_FILE_NAME_EXISTS);
         }
-        return items;
     }
 
     private CorrectWordFileVO toVO(CorrectWordFileEntity entity) {
@@ -0,0 +1,231 @@
+package xiaozhi.modules.correctword.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import xiaozhi.modules.correctword.dao.CorrectWordItemDao;
+import xiaozhi.modules.correctword.entity.CorrectWordItemEntity;
+
+/**
+ * Applies an uploaded correct-word list to the stored items of one file as a diff.
+ * <p>
+ * Lines are fed one at a time, so the upload itself is never held in memory; only the
+ * file's existing items are, keyed by source word. A new source word is inserted, a
+ * changed target is updated and a source word missing from the upload is deleted, each
+ * in multi-row statements of up to {@link #BATCH_SIZE} rows. Unchanged words are not
+ * touched. When a source word appears more than once, the last line wins.
+ */
+public class CorrectWordImporter {
+
+    public static final int BATCH_SIZE = 1000;
+    /**
+     * Column width of source_word and target_word.
+     */
+    static final int MAX_WORD_LENGTH = 128;
+    private static final char BOM = '\uFEFF';
+
+    private final CorrectWordItemDao itemDao;
+    private final String fileId;
+    private final Map<String, StoredWord> words = new HashMap<>();
+    private final Map<String, CorrectWordItemEntity> pendingInserts = new LinkedHashMap<>();
+    private final Map<String, CorrectWordItemEntity> pendingUpdates = new LinkedHashMap<>();
+    private final List<String> duplicateIds = new ArrayList<>();
+    private int inserted;
+    private int updated;
+    private int skipped;
+    private boolean finished;
+
+    private static final class StoredWord {
+        private final String id;
+        private String target;
+        private boolean seen;
+
+        private StoredWord(String id, String target, boolean seen) {
+            this.id = id;
+            this.target = target;
+            this.seen = seen;
+        }
+    }
+
+    /**
+     * Counts of one import.
+     *
+     * @param inserted  rows inserted
+     * @param updated   rows whose target word changed
+     * @param deleted   rows removed because their source word is no longer listed
+     * @param skipped   non-blank lines that are not a valid "source|target" pair
+     * @param wordCount items the file holds afterwards
+     */
+    public record Summary(int inserted, int updated, int deleted, int skipped, int wordCount) {
+    }
+
+    /**
+     * Load the file's existing items, in keyset pages so a large file is not read in one result.
+     */
+    public CorrectWordImporter(CorrectWordItemDao itemDao, String fileId) {
+        this.itemDao = itemDao;
+        this.fileId = fileId;
+        String afterId = null;
+        List<CorrectWordItemEntity> page;
+        do {
+            page = itemDao.selectItemsPage(fileId, afterId, BATCH_SIZE);
+            for (CorrectWordItemEntity item : page) {
+                StoredWord previous = words.put(item.getSourceWord(),
+                        new StoredWord(item.getId(), item.getTargetWord(), false));
+                if (previous != null) {
+                    // Rows written before the diff import may repeat a source word; keep the first
+                    words.put(item.getSourceWord(), previous);
+                    duplicateIds.add(item.getId());
+                }
+                afterId = item.getId();
+            }
+        } while (page.size() == BATCH_SIZE);
+    }
+
+    /**
+     * Read UTF-8 lines from the stream until it ends, then apply the remaining changes.
+     * The stream is not closed.
+     */
+    public Summary importFrom(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line != null && !line.isEmpty() && line.charAt(0) == BOM) {
+            line = line.substring(1);
+        }
+        while (line != null) {
+            accept(line);
+            line = reader.readLine();
+        }
+        return finish();
+    }
+
+    /**
+     * Apply all lines, then the remaining changes.
+     */
+    public Summary importLines(Iterable<String> lines) {
+        if (lines != null) {
+            for (String line : lines) {
+                accept(line);
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Feed one line in "source|target" form. Blank and malformed lines are ignored.
+     */
+    public void accept(String line) {
+        if (finished) {
+            throw new IllegalStateException("Import already finished");
+        }
+        if (line == null || line.isBlank()) {
+            return;
+        }
+        String[] pair = parseLine(line);
+        if (pair == null) {
+            skipped++;
+            return;
+        }
+        String source = pair[0];
+        String target = pair[1];
+        StoredWord stored = words.get(source);
+        if (stored == null) {
+            CorrectWordItemEntity item = new CorrectWordItemEntity();
+            item.setId(UUID.randomUUID().toString().replace("-", ""));
+            item.setFileId(fileId);
+            item.setSourceWord(source);
+            item.setTargetWord(target);
+            words.put(source, new StoredWord(item.getId(), target, true));
+            pendingInserts.put(source, item);
+            if (pendingInserts.size() >= BATCH_SIZE) {
+                flushInserts();
+            }
+            return;
+        }
+        stored.seen = true;
+        if (stored.target.equals(target)) {
+            return;
+        }
+        stored.target = target;
+        CorrectWordItemEntity pendingInsert = pendingInserts.get(source);
+        if (pendingInsert != null) {
+            pendingInsert.setTargetWord(target);
+            return;
+        }
+        CorrectWordItemEntity item = new CorrectWordItemEntity();
+        item.setId(stored.id);
+        item.setTargetWord(target);
+        pendingUpdates.put(stored.id, item);
+        if (pendingUpdates.size() >= BATCH_SIZE) {
+            flushUpdates();
+        }
+    }
+
+    /**
+     * Write the pending inserts and updates and delete the words that were not listed.
+     */
+    public Summary finish() {
+        if (finished) {
+            throw new IllegalStateException("Import already finished");
+        }
+        finished = true;
+        flushInserts();
+        flushUpdates();
+        List<String> unseen = new ArrayList<>(duplicateIds);
+        for (StoredWord word : words.values()) {
+            if (!word.seen) {
+                unseen.add(word.id);
+            }
+        }
+        for (int from = 0; from < unseen.size(); from += BATCH_SIZE) {
+            itemDao.deleteBatchIds(unseen.subList(from, Math.min(from + BATCH_SIZE, unseen.size())));
+        }
+        int deleted = unseen.size() - duplicateIds.size();
+        return new Summary(inserted, updated, deleted, skipped, words.size() - deleted);
+    }
+
+    private void flushInserts() {
+        if (pendingInserts.isEmpty()) {
+            return;
+        }
+        itemDao.batchInsert(new ArrayList<>(pendingInserts.values()));
+        inserted += pendingInserts.size();
+        pendingInserts.clear();
+    }
+
+    private void flushUpdates() {
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        itemDao.batchUpdateTargets(new ArrayList<>(pendingUpdates.values()));
+        updated += pendingUpdates.size();
+        pendingUpdates.clear();
+    }
+
+    /**
+     * Split a "source|target" line, or return null when either side is empty or too long.
+     */
+    static String[] parseLine(String line) {
+        String trimmed = line.trim();
+        int idx = trimmed.indexOf('|');
+        if (idx <= 0 || idx >= trimmed.length() - 1) {
+            return null;
+        }
+        String source = trimmed.substring(0, idx).trim();
+        String target = trimmed.substring(idx + 1).trim();
+        if (source.isEmpty() || target.isEmpty()
+                || source.length() > MAX_WORD_LENGTH || target.length() > MAX_WORD_LENGTH) {
+            return null;
+        }
+        return new String[] { source, target };
+    }
+}
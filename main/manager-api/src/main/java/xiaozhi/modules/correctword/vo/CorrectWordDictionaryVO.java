@@ -0,0 +1,29 @@
+package xiaozhi.modules.correctword.vo;
+
+import java.util.List;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "智能体替换词字典（设备端使用）")
+public class CorrectWordDictionaryVO {
+
+    @Schema(description = "字典内容哈希，用作ETag")
+    private String version;
+
+    @Schema(description = "去重后的替换词，格式：原词|替换词")
+    private List<String> words;
+
+    /**
+     * 由替换词列表生成字典，版本号取内容的SHA-256
+     */
+    public static CorrectWordDictionaryVO of(List<String> words) {
+        return new CorrectWordDictionaryVO(DigestUtil.sha256Hex(String.join("\n", words)).substring(0, 32), words);
+    }
+}
@@ -1,18 +1,22 @@
 package xiaozhi.modules.device.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
-import org.springframework.beans.BeanUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -21,9 +25,12 @@ import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.user.UserDetail;
+import xiaozhi.common.utils.BeanMapper;
+import xiaozhi.common.utils.LatencyHistogram;
 import xiaozhi.common.utils.Result;
 import xiaozhi.modules.device.dto.DeviceAddressBookAliasDTO;
 import xiaozhi.modules.device.dto.DeviceAddressBookPermissionDTO;
+import xiaozhi.modules.device.dto.DeviceBatchImportDTO;
 import xiaozhi.modules.device.dto.DeviceManualAddDTO;
 import xiaozhi.modules.device.dto.DeviceRegisterDTO;
 import xiaozhi.modules.device.dto.DeviceToolsCallReqDTO;
@@ -32,6 +39,8 @@ import xiaozhi.modules.device.dto.DeviceUpdateDTO;
 import xiaozhi.modules.device.entity.DeviceEntity;
 import xiaozhi.modules.device.service.DeviceAddressBookService;
 import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.support.MqttGatewayClient;
+import xiaozhi.modules.device.vo.DeviceBatchImportResultVO;
 import xiaozhi.modules.device.vo.UserShowDeviceListVO;
 import xiaozhi.modules.security.user.SecurityUser;
 import xiaozhi.modules.sys.service.SysParamsService;
@@ -40,17 +49,22 @@ import xiaozhi.modules.sys.service.SysParamsService;
 @RestController
 @RequestMapping("/device")
 public class DeviceController {
+    private static final BeanMapper<DeviceUpdateDTO, DeviceEntity> UPDATE_MAPPER = BeanMapper
+            .of(DeviceUpdateDTO.class, DeviceEntity.class);
+
     private final DeviceService deviceService;
     private final DeviceAddressBookService deviceAddressBookService;
     private final RedisUtils redisUtils;
     private final SysParamsService sysParamsService;
+    private final MqttGatewayClient mqttGatewayClient;
 
     public DeviceController(DeviceService deviceService, DeviceAddressBookService deviceAddressBookService,
-            RedisUtils redisUtils, SysParamsService sysParamsService) {
+            RedisUtils redisUtils, SysParamsService sysParamsService, MqttGatewayClient mqttGatewayClient) {
         this.deviceService = deviceService;
         this.deviceAddressBookService = deviceAddressBookService;
         this.redisUtils = redisUtils;
         this.sysParamsService = sysParamsService;
+        this.mqttGatewayClient = mqttGatewayClient;
     }
 
     @PostMapping("/bind/{agentId}/{deviceCode}")
@@ -123,7 +137,7 @@ public class DeviceController {
         if (!entity.getUserId().equals(user.getId())) {
             return new Result<Void>().error("设备不存在");
         }
-        BeanUtils.copyProperties(deviceUpdateDTO, entity);
+        UPDATE_MAPPER.copy(deviceUpdateDTO, entity);
         deviceService.updateById(entity);
         return new Result<Void>();
     }
@@ -137,6 +151,31 @@ public class DeviceController {
         return new Result<>();
     }
 
+    @PostMapping("/batch-import")
+    @Operation(summary = "批量导入设备")
+    @RequiresPermissions("sys:role:normal")
+    public Result<DeviceBatchImportResultVO> batchImportDevices(@RequestBody DeviceBatchImportDTO dto) {
+        UserDetail user = SecurityUser.getUser();
+        return new Result<DeviceBatchImportResultVO>().ok(deviceService.batchImportDevices(user.getId(), dto));
+    }
+
+    @PostMapping("/batch-import/csv")
+    @Operation(summary = "通过CSV批量导入设备")
+    @RequiresPermissions("sys:role:normal")
+    public Result<DeviceBatchImportResultVO> batchImportDevicesFromCsv(@RequestParam("file") MultipartFile file,
+            @RequestParam(value = "agentId", required = false) String agentId) {
+        if (file.isEmpty()) {
+            return new Result<DeviceBatchImportResultVO>().error(ErrorCode.DEVICE_IMPORT_EMPTY);
+        }
+        UserDetail user = SecurityUser.getUser();
+        try (InputStream csv = file.getInputStream()) {
+            return new Result<DeviceBatchImportResultVO>()
+                    .ok(deviceService.batchImportDevicesFromCsv(user.getId(), agentId, csv));
+        } catch (IOException e) {
+            return new Result<DeviceBatchImportResultVO>().error(ErrorCode.UPLOAD_FILE_ERROR);
+        }
+    }
+
     @PostMapping("/tools/list/{deviceId}")
     @Operation(summary = "获取设备工具列表")
     @RequiresPermissions("sys:role:normal")
@@ -202,8 +241,17 @@ public class DeviceController {
 
     @GetMapping("/call/forward")
     @Operation(summary = "转发呼叫请求到网关")
-    public Result<Map<String, Object>> forwardCallRequest(String callerMac, String targetMac, String callerNickname) {
-        Map<String, Object> result = deviceService.forwardCallRequest(callerMac, targetMac, callerNickname);
-        return new Result<Map<String, Object>>().ok(result);
+    public CompletableFuture<Result<Map<String, Object>>> forwardCallRequest(String callerMac, String targetMac,
+            String callerNickname) {
+        // 等待网关确认期间不占用请求线程
+        return deviceService.forwardCallRequestAsync(callerMac, targetMac, callerNickname)
+                .thenApply(result -> new Result<Map<String, Object>>().ok(result));
+    }
+
+    @GetMapping("/call/latency")
+    @Operation(summary = "获取呼叫转发到网关确认的耗时分布")
+    @RequiresPermissions("sys:role:superAdmin")
+    public Result<LatencyHistogram.Snapshot> getCallLatency() {
+        return new Result<LatencyHistogram.Snapshot>().ok(mqttGatewayClient.getCallLatency());
     }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package xiaozhi.modules.device.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "Bulk device import request")
+public class DeviceBatchImportDTO {
+
+    @Schema(description = "Default agent ID, used for rows that do not specify one")
+    private String agentId;
+
+    @Schema(description = "Devices to import")
+    private List<DeviceManualAddDTO> devices;
+}
@@ -0,0 +1,11 @@
+package xiaozhi.modules.device.event;
+
+/**
+ * Published when a bound device checks in through OTA, which it does every time it starts or
+ * reconnects.
+ *
+ * @param agentId    agent the device is bound to
+ * @param macAddress device MAC address
+ */
+public record DeviceCheckedInEvent(String agentId, String macAddress) {
+}
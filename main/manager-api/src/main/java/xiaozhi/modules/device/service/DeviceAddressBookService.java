@@ -12,11 +12,6 @@ public interface DeviceAddressBookService {
      */
     List<DeviceAddressBookEntity> getAddressBookList(String macAddress);
 
-    /**
-     * 获取所有设备的通讯录（全局缓存用）
-     */
-    Map<String, Map<String, String>> getAllAddressBooks();
-
     /**
      * 更新别名
      */
@@ -33,7 +28,7 @@ public interface DeviceAddressBookService {
     void saveOrUpdate(String macAddress, String targetMac, String alias, Boolean hasPermission);
 
     /**
-     * 刷新通讯录缓存
+     * 清空本实例的通讯录缓存，之后按设备重新加载
      */
     void refreshCache();
 
@@ -41,7 +36,7 @@ public interface DeviceAddressBookService {
      * 根据昵称查找目标设备信息
      * @param callerMac 主叫方MAC地址
      * @param nickname 被叫方昵称
-     * @return {targetMac: 目标MAC, callerNickname: 目标如何称呼主叫方}
+     * @return {targetMac: 目标MAC, callerNickname: 目标如何称呼主叫方, hasPermission: 是否有权限呼叫}，未找到时为null
      */
     Map<String, String> lookupByNickname(String callerMac, String nickname);
 }
\ No newline at end of file
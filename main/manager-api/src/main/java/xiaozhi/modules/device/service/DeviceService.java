@@ -1,16 +1,21 @@
 package xiaozhi.modules.device.service;
 
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.service.BaseService;
+import xiaozhi.modules.device.dto.DeviceBatchImportDTO;
 import xiaozhi.modules.device.dto.DeviceManualAddDTO;
 import xiaozhi.modules.device.dto.DevicePageUserDTO;
 import xiaozhi.modules.device.dto.DeviceReportReqDTO;
 import xiaozhi.modules.device.dto.DeviceReportRespDTO;
 import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.vo.DeviceBatchImportResultVO;
 import xiaozhi.modules.device.vo.UserShowDeviceListVO;
 
 public interface DeviceService extends BaseService<DeviceEntity> {
@@ -67,6 +72,14 @@ public interface DeviceService extends BaseService<DeviceEntity> {
      */
     Long selectCountByUserId(Long userId);
 
+    /**
+     * 一次分组查询获取多个用户的设备数量
+     *
+     * @param userIds 用户id集合
+     * @return 用户id到设备数量的映射，没有设备的用户不在其中
+     */
+    Map<Long, Long> selectCountByUserIds(Collection<Long> userIds);
+
     /**
      * 分页获取全部设备信息
      *
@@ -104,6 +117,31 @@ public interface DeviceService extends BaseService<DeviceEntity> {
      */
     void manualAddDevice(Long userId, DeviceManualAddDTO dto);
 
+    /**
+     * 批量导入设备
+     * <p>
+     * Rows are deduplicated against ai_device with one IN query per chunk and
+     * inserted with JDBC batches, one transaction per chunk.
+     *
+     * @param userId 用户ID
+     * @param dto    导入内容
+     * @return 每行的导入结果
+     */
+    DeviceBatchImportResultVO batchImportDevices(Long userId, DeviceBatchImportDTO dto);
+
+    /**
+     * 从CSV批量导入设备
+     * <p>
+     * The first line is a header naming the columns mac_address, board,
+     * agent_id and app_version (camelCase is accepted too).
+     *
+     * @param userId  用户ID
+     * @param agentId 默认智能体ID，CSV行未指定时使用
+     * @param csv     CSV内容
+     * @return 每行的导入结果
+     */
+    DeviceBatchImportResultVO batchImportDevicesFromCsv(Long userId, String agentId, InputStream csv);
+
     /**
      * 更新设备连接信息
      */
@@ -139,9 +177,9 @@ public interface DeviceService extends BaseService<DeviceEntity> {
     Object callDeviceTool(String deviceId, String toolName, Map<String, Object> arguments);
 
     /**
-     * 转发呼叫请求到网关
-     * @return 网关响应 {status, message}
+     * 异步转发呼叫请求到网关，网关确认后完成，失败时以 {status: error, message} 完成而不抛出
      */
-    Map<String, Object> forwardCallRequest(String callerMac, String targetMac, String callerNickname);
+    CompletableFuture<Map<String, Object>> forwardCallRequestAsync(String callerMac, String targetMac,
+            String callerNickname);
 
 }
\ No newline at end of file
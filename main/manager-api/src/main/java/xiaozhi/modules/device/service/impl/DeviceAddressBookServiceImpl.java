@@ -15,19 +15,28 @@ import xiaozhi.modules.device.dao.DeviceAddressBookDao;
 import xiaozhi.modules.device.entity.DeviceAddressBookEntity;
 import xiaozhi.modules.device.service.DeviceAddressBookService;
 import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.support.AddressBookGraph;
 
 @Service
 public class DeviceAddressBookServiceImpl implements DeviceAddressBookService {
 
+    /**
+     * 本实例内存中最多保留的设备通讯录数
+     */
+    private static final long MAX_CACHED_DEVICES = 100_000;
+
     private final DeviceAddressBookDao deviceAddressBookDao;
     private final RedisUtils redisUtils;
     private final DeviceService deviceService;
+    private final AddressBookGraph graph;
 
     public DeviceAddressBookServiceImpl(DeviceAddressBookDao deviceAddressBookDao, RedisUtils redisUtils,
             DeviceService deviceService) {
         this.deviceAddressBookDao = deviceAddressBookDao;
         this.redisUtils = redisUtils;
         this.deviceService = deviceService;
+        this.graph = new AddressBookGraph(deviceAddressBookDao::getAddressBookList, this::generation,
+                MAX_CACHED_DEVICES);
     }
 
     @Override
@@ -35,96 +44,37 @@ public class DeviceAddressBookServiceImpl implements DeviceAddressBookService {
         return deviceAddressBookDao.getAddressBookList(macAddress);
     }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public Map<String, Map<String, String>> getAllAddressBooks() {
-        Object cached = redisUtils.get(RedisKeys.getAddressBookKey());
-        if (cached != null) {
-            return (Map<String, Map<String, String>>) cached;
-        }
-        refreshCache();
-        return (Map<String, Map<String, String>>) redisUtils.get(RedisKeys.getAddressBookKey());
-    }
-
     @Override
     public Map<String, String> lookupByNickname(String callerMac, String nickname) {
-        Map<String, Map<String, String>> allBooks = getAllAddressBooks();
-        Map<String, String> callerBook = allBooks.get(callerMac.toLowerCase());
-        if (callerBook == null) {
-            return null;
-        }
-        // 从缓存获取 targetMac，格式: "mac|permission"
-        String targetMacWithPerm = callerBook.get(nickname);
-        if (targetMacWithPerm == null) {
-            return null;
-        }
-        // 解析 targetMac 和 permission
-        String[] parts = targetMacWithPerm.split("\\|");
-        String targetMac = parts[0];
-        boolean hasPermission = parts.length > 1 && "1".equals(parts[1]);
-
-        Map<String, String> targetBook = allBooks.get(targetMac.toLowerCase());
-        if (targetBook == null) {
+        AddressBookGraph.Match match = graph.lookup(callerMac, nickname);
+        if (match == null) {
             return null;
         }
-        // 检查双向关系：目标设备是否也添加了主叫方为联系人
-        String callerNickname = targetBook.get(callerMac.toLowerCase());
         Map<String, String> result = new HashMap<>();
-        result.put("targetMac", targetMac);
-        result.put("callerNickname", callerNickname);
-        result.put("hasPermission", hasPermission ? "true" : "false");
+        result.put("targetMac", match.targetMac());
+        // 目标设备如何称呼主叫方，目标未添加主叫方时为空
+        result.put("callerNickname", match.callerNickname());
+        result.put("hasPermission", match.hasPermission() ? "true" : "false");
         return result;
     }
 
     @Override
     public void refreshCache() {
-        Map<String, Map<String, String>> result = new HashMap<>();
-        List<DeviceAddressBookEntity> allRecords = deviceAddressBookDao.selectList(null);
-        Map<String, String> reverseMap = new HashMap<>();
-        Map<String, Boolean> permissionMap = new HashMap<>();
-        for (DeviceAddressBookEntity entity : allRecords) {
-            String macA = entity.getMacAddress().toLowerCase();
-            String macB = entity.getTargetMac().toLowerCase();
-            String alias = entity.getAlias();
-            Boolean hasPermission = entity.getHasPermission();
-            if (alias != null && !alias.isEmpty()) {
-                // 反向记录: (macB, macA) = B对A的称呼
-                reverseMap.put(macB + ":" + macA, alias);
-            }
-            // 记录 A 对 B 是否有权限呼叫
-            permissionMap.put(macA + ":" + macB, hasPermission != null && hasPermission);
-        }
-        for (DeviceAddressBookEntity entity : allRecords) {
-            String macA = entity.getMacAddress().toLowerCase();
-            String macB = entity.getTargetMac().toLowerCase();
-            String aliasAtoB = entity.getAlias();
-            result.computeIfAbsent(macA, k -> new HashMap<>());
-            result.computeIfAbsent(macB, k -> new HashMap<>());
-            if (aliasAtoB != null && !aliasAtoB.isEmpty()) {
-                // A对B的映射: nickname -> macB|permission
-                Boolean perm = entity.getHasPermission();
-                String permStr = (perm != null && perm) ? "1" : "0";
-                result.get(macA).put(aliasAtoB, macB + "|" + permStr);
-            }
-            // B对A的映射: macA -> nickname（查反向记录）
-            String aliasBtoA = reverseMap.get(macA + ":" + macB);
-            if (aliasBtoA != null && !aliasBtoA.isEmpty()) {
-                result.get(macB).put(macA, aliasBtoA);
-            }
-        }
-        redisUtils.set(RedisKeys.getAddressBookKey(), result);
+        graph.clear();
+        // 清理旧版本写入的全量通讯录缓存
+        redisUtils.delete(RedisKeys.getAddressBookKey());
     }
 
     @Override
     public void updateAlias(String macAddress, String targetMac, String alias) {
         deviceAddressBookDao.updateAlias(macAddress, targetMac, alias);
-        refreshCache();
+        applyChange(macAddress, targetMac);
     }
 
     @Override
     public void updatePermission(String macAddress, String targetMac, Boolean hasPermission) {
         deviceAddressBookDao.updatePermission(macAddress, targetMac, hasPermission);
-        refreshCache();
+        applyChange(macAddress, targetMac);
     }
 
     @Override
@@ -151,6 +101,27 @@ public class DeviceAddressBookServiceImpl implements DeviceAddressBookService {
                 deviceAddressBookDao.updatePermission(macAddress, targetMac, hasPermission);
             }
         }
-        refreshCache();
+        applyChange(macAddress, targetMac);
+    }
+
+    /**
+     * 递增本设备的通讯录代数，并把改动的这条记录直接应用到本实例的通讯录图，
+     * 其他实例发现代数变化后只重新加载这一台设备
+     */
+    private void applyChange(String macAddress, String targetMac) {
+        Long generation = redisUtils.increment(RedisKeys.getAddressBookGenerationKey(macAddress.toLowerCase()));
+        QueryWrapper<DeviceAddressBookEntity> wrapper = new QueryWrapper<>();
+        wrapper.eq("mac_address", macAddress).eq("target_mac", targetMac);
+        DeviceAddressBookEntity record = deviceAddressBookDao.selectOne(wrapper);
+        if (generation == null || record == null) {
+            graph.invalidate(macAddress);
+            return;
+        }
+        graph.apply(macAddress, generation, targetMac, record.getAlias(), Boolean.TRUE.equals(record.getHasPermission()));
+    }
+
+    private long generation(String macAddress) {
+        Object generation = redisUtils.get(RedisKeys.getAddressBookGenerationKey(macAddress));
+        return generation instanceof Number number ? number.longValue() : 0L;
     }
 }
\ No newline at end of file
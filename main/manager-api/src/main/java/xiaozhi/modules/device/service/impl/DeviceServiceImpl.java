@@ -1,19 +1,27 @@
 package xiaozhi.modules.device.service.impl;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import javax.crypto.Mac;
@@ -21,8 +29,13 @@ import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.aop.framework.AopContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
@@ -30,20 +43,16 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 
-import cn.hutool.core.date.DatePattern;
-import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.digest.DigestUtil;
-import cn.hutool.http.ContentType;
-import cn.hutool.http.Header;
-import cn.hutool.http.HttpRequest;
+import cn.hutool.core.text.csv.CsvReadConfig;
+import cn.hutool.core.text.csv.CsvUtil;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.exception.ErrorCode;
@@ -53,18 +62,24 @@ import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.user.UserDetail;
-import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.common.utils.BeanMapper;
 import xiaozhi.common.utils.DateUtils;
+import xiaozhi.common.utils.MessageUtils;
 import xiaozhi.common.utils.ToolUtil;
+import xiaozhi.modules.agent.service.AgentService;
 import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.dto.DeviceBatchImportDTO;
 import xiaozhi.modules.device.dto.DeviceManualAddDTO;
 import xiaozhi.modules.device.dto.DevicePageUserDTO;
 import xiaozhi.modules.device.dto.DeviceReportReqDTO;
 import xiaozhi.modules.device.dto.DeviceReportRespDTO;
 import xiaozhi.modules.device.entity.DeviceEntity;
 import xiaozhi.modules.device.entity.OtaEntity;
+import xiaozhi.modules.device.event.DeviceCheckedInEvent;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.device.service.OtaService;
+import xiaozhi.modules.device.support.MqttGatewayClient;
+import xiaozhi.modules.device.vo.DeviceBatchImportResultVO;
 import xiaozhi.modules.device.vo.UserShowDeviceListVO;
 import xiaozhi.modules.security.user.SecurityUser;
 import xiaozhi.modules.sys.service.SysParamsService;
@@ -72,14 +87,35 @@ import xiaozhi.modules.sys.service.SysUserUtilService;
 
 @Slf4j
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity> implements DeviceService {
 
+    private static final BeanMapper<DeviceEntity, UserShowDeviceListVO> DEVICE_MAPPER = BeanMapper
+            .of(DeviceEntity.class, UserShowDeviceListVO.class);
+    /**
+     * Rows deduplicated and inserted per transaction during bulk import.
+     */
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    /**
+     * Upper bound on rows accepted by a single bulk import request.
+     */
+    private static final int IMPORT_MAX_ROWS = 50000;
+
     private final DeviceDao deviceDao;
     private final SysUserUtilService sysUserUtilService;
     private final SysParamsService sysParamsService;
     private final RedisUtils redisUtils;
     private final OtaService otaService;
+    private final TransactionTemplate transactionTemplate;
+    private final MqttGatewayClient mqttGatewayClient;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Lazy because AgentServiceImpl depends on this service.
+     */
+    @Lazy
+    @Autowired
+    private AgentService agentService;
 
     @Async
     public void updateDeviceConnectionInfo(String agentId, String deviceId, String appVersion) {
@@ -159,41 +195,25 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
      */
     @Override
     public String getDeviceOnlineData(String agentId) {
-        // Read the MQTT gateway address from system parameters.
-        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
-        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+        if (mqttGatewayClient.getApiAddress() == null) {
             return "";
         }
-        // Build the full URL.
-        String url = StrUtil.format("http://{}/api/devices/status", mqttGatewayUrl);
 
         // Load the current user's device list.
         UserDetail user = SecurityUser.getUser();
         List<DeviceEntity> devices = getUserDevices(user.getId(), agentId);
 
-        // Build the deviceIds array.
+        // Build the MQTT client IDs.
         Set<String> deviceIds = devices.stream().map(o -> {
             String macAddress = Optional.ofNullable(o.getMacAddress()).orElse("unknown").replace(":", "_");
             String groupId = Optional.ofNullable(o.getBoard()).orElse("GID_default").replace(":", "_");
             return StrUtil.format("{}@@@{}@@@{}", groupId, macAddress, macAddress);
         }).collect(Collectors.toSet());
 
-        // Build request parameters.
-        Map<String, Set<String>> params = MapUtil
-                .builder(new HashMap<String, Set<String>>())
-                .put("clientIds", deviceIds).build();
-
         if (ToolUtil.isNotEmpty(deviceIds)) {
-            // Send the request.
-            String resultMessage = HttpRequest.post(url)
-                    .header(Header.CONTENT_TYPE, ContentType.JSON.getValue())
-                    .header(Header.AUTHORIZATION, "Bearer " + generateBearerToken())
-                    .body(JSONUtil.toJsonStr(params))
-                    .timeout(10000) // Timeout in milliseconds.
-                    .execute().body();
-            return resultMessage;
-        }
-        // Return the response body.
+            // Status is cached briefly and shared, so repeated console polls rarely reach the gateway.
+            return mqttGatewayClient.getDeviceStatus(deviceIds).toString();
+        }
         return "";
     }
 
@@ -282,6 +302,9 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
             // Invoke the async method through the Spring proxy.
             ((DeviceServiceImpl) AopContext.currentProxy()).updateDeviceConnectionInfo(deviceById.getAgentId(),
                     deviceById.getId(), appVersion);
+            if (StringUtils.isNotBlank(deviceById.getAgentId())) {
+                eventPublisher.publishEvent(new DeviceCheckedInEvent(deviceById.getAgentId(), macAddress));
+            }
         } else {
             // If the device does not exist yet, generate an activation code.
             DeviceReportRespDTO.Activation code = buildActivation(macAddress, deviceReport);
@@ -303,7 +326,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
     public List<UserShowDeviceListVO> getUserDeviceList(Long userId, String agentId) {
         List<DeviceEntity> devices = getUserDevices(userId, agentId);
         return devices.stream().map(device -> {
-            UserShowDeviceListVO vo = ConvertUtils.sourceToTarget(device, UserShowDeviceListVO.class);
+            UserShowDeviceListVO vo = DEVICE_MAPPER.map(device);
             vo.setDeviceType(device.getBoard());
             // 设置UTC时间戳供前端使用时区转换
             if (device.getLastConnectedAt() != null) {
@@ -345,6 +368,11 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         return baseDao.selectCount(wrapper);
     }
 
+    @Override
+    public Map<Long, Long> selectCountByUserIds(Collection<Long> userIds) {
+        return countGroupedBy("user_id", userIds);
+    }
+
     @Override
     public void deleteByAgentId(String agentId) {
         UpdateWrapper<DeviceEntity> wrapper = new UpdateWrapper<>();
@@ -363,13 +391,15 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
                 new QueryWrapper<DeviceEntity>()
                         // Filter by device keyword when provided.
                         .like(StringUtils.isNotBlank(dto.getKeywords()), "alias", dto.getKeywords()));
+        // Resolve the bound usernames for the whole page in one query.
+        Map<Long, String> usernames = sysUserUtilService.getUsernames(
+                page.getRecords().stream().map(DeviceEntity::getUserId).toList());
         // Transform the paged records to the response fields we need.
         List<UserShowDeviceListVO> list = page.getRecords().stream().map(device -> {
-            UserShowDeviceListVO vo = ConvertUtils.sourceToTarget(device, UserShowDeviceListVO.class);
+            UserShowDeviceListVO vo = DEVICE_MAPPER.map(device);
             // Convert the last update time to a short display string.
             vo.setRecentChatTime(DateUtils.getShortTime(device.getUpdateDate()));
-            sysUserUtilService.assignUsername(device.getUserId(),
-                    vo::setBindUserName);
+            vo.setBindUserName(usernames.get(device.getUserId()));
             vo.setDeviceType(device.getBoard());
             vo.setBoard(device.getBoard());
             // 设置UTC时间戳供前端使用时区转换
@@ -568,6 +598,198 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         redisUtils.delete(RedisKeys.getAgentDeviceCountById(dto.getAgentId()));
     }
 
+    @Override
+    public DeviceBatchImportResultVO batchImportDevices(Long userId, DeviceBatchImportDTO dto) {
+        List<DeviceManualAddDTO> devices = dto == null ? null : dto.getDevices();
+        if (devices == null || devices.isEmpty()) {
+            throw new RenException(ErrorCode.DEVICE_IMPORT_EMPTY);
+        }
+        if (devices.size() > IMPORT_MAX_ROWS) {
+            throw new RenException(ErrorCode.DEVICE_IMPORT_TOO_MANY, String.valueOf(IMPORT_MAX_ROWS));
+        }
+        // Every target agent must belong to the caller before any row is written.
+        Set<String> agentIds = new LinkedHashSet<>();
+        for (DeviceManualAddDTO device : devices) {
+            String agentId = device == null ? null
+                    : StringUtils.defaultIfBlank(StringUtils.trimToNull(device.getAgentId()), dto.getAgentId());
+            if (StringUtils.isNotBlank(agentId)) {
+                agentIds.add(agentId);
+            }
+        }
+        for (String agentId : agentIds) {
+            if (!agentService.checkAgentPermission(agentId, userId)) {
+                throw new RenException(ErrorCode.NO_PERMISSION);
+            }
+        }
+        long start = System.currentTimeMillis();
+        Date now = new Date();
+
+        List<DeviceBatchImportResultVO.Row> rows = new ArrayList<>(devices.size());
+        Set<String> seenMacs = new HashSet<>();
+        Set<String> touchedAgents = new LinkedHashSet<>();
+        List<DeviceEntity> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        List<DeviceBatchImportResultVO.Row> chunkRows = new ArrayList<>(IMPORT_CHUNK_SIZE);
+
+        for (int i = 0; i < devices.size(); i++) {
+            DeviceManualAddDTO device = devices.get(i);
+            String macAddress = device == null ? null : StringUtils.trimToNull(device.getMacAddress());
+            DeviceBatchImportResultVO.Row row = new DeviceBatchImportResultVO.Row(i + 1, macAddress);
+            rows.add(row);
+            if (macAddress == null) {
+                row.mark(DeviceBatchImportResultVO.STATUS_INVALID, MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_MAC_EMPTY));
+                continue;
+            }
+            String agentId = StringUtils.defaultIfBlank(StringUtils.trimToNull(device.getAgentId()), dto.getAgentId());
+            if (StringUtils.isBlank(agentId)) {
+                row.mark(DeviceBatchImportResultVO.STATUS_INVALID,
+                        MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_AGENT_EMPTY));
+                continue;
+            }
+            if (!seenMacs.add(macAddress)) {
+                row.mark(DeviceBatchImportResultVO.STATUS_DUPLICATE,
+                        MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_MAC_REPEATED));
+                continue;
+            }
+            chunk.add(buildImportedDevice(userId, agentId, device, macAddress, now));
+            chunkRows.add(row);
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                importChunk(chunk, chunkRows, touchedAgents);
+                chunk.clear();
+                chunkRows.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, chunkRows, touchedAgents);
+        }
+
+        // Invalidate each agent's cached device count once, not once per device.
+        if (!touchedAgents.isEmpty()) {
+            redisUtils.delete(touchedAgents.stream().map(RedisKeys::getAgentDeviceCountById).toList());
+        }
+
+        DeviceBatchImportResultVO result = new DeviceBatchImportResultVO();
+        result.setTotal(rows.size());
+        for (DeviceBatchImportResultVO.Row row : rows) {
+            switch (row.getStatus()) {
+                case DeviceBatchImportResultVO.STATUS_CREATED -> result.setCreated(result.getCreated() + 1);
+                case DeviceBatchImportResultVO.STATUS_DUPLICATE -> result.setDuplicates(result.getDuplicates() + 1);
+                default -> result.setFailed(result.getFailed() + 1);
+            }
+        }
+        result.setRows(rows);
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        log.info("Bulk device import by user {}: {} rows, {} created, {} duplicates, {} failed in {} ms", userId,
+                result.getTotal(), result.getCreated(), result.getDuplicates(), result.getFailed(),
+                result.getElapsedMillis());
+        return result;
+    }
+
+    @Override
+    public DeviceBatchImportResultVO batchImportDevicesFromCsv(Long userId, String agentId, InputStream csv) {
+        CsvReadConfig config = CsvReadConfig.defaultConfig();
+        config.setContainsHeader(true);
+        config.setSkipEmptyRows(true);
+        config.setTrimField(true);
+
+        List<DeviceManualAddDTO> devices = new ArrayList<>();
+        CsvUtil.getReader(config).read(new InputStreamReader(csv, StandardCharsets.UTF_8), csvRow -> {
+            // Accept both snake_case and camelCase headers, in any letter case.
+            Map<String, String> fields = new HashMap<>();
+            csvRow.getFieldMap().forEach((name, value) -> fields
+                    .put(name.replace("_", "").replace("\uFEFF", "").toLowerCase(Locale.ROOT), value));
+            DeviceManualAddDTO device = new DeviceManualAddDTO();
+            device.setMacAddress(fields.getOrDefault("macaddress", fields.get("mac")));
+            device.setBoard(fields.get("board"));
+            device.setAgentId(fields.get("agentid"));
+            device.setAppVersion(fields.get("appversion"));
+            devices.add(device);
+        });
+
+        DeviceBatchImportDTO dto = new DeviceBatchImportDTO();
+        dto.setAgentId(agentId);
+        dto.setDevices(devices);
+        return batchImportDevices(userId, dto);
+    }
+
+    private DeviceEntity buildImportedDevice(Long userId, String agentId, DeviceManualAddDTO device,
+            String macAddress, Date now) {
+        DeviceEntity entity = new DeviceEntity();
+        entity.setId(macAddress);
+        entity.setUserId(userId);
+        entity.setAgentId(agentId);
+        entity.setBoard(device.getBoard());
+        entity.setAppVersion(device.getAppVersion());
+        entity.setMacAddress(macAddress);
+        entity.setCreateDate(now);
+        entity.setUpdateDate(now);
+        entity.setLastConnectedAt(now);
+        entity.setCreator(userId);
+        entity.setUpdater(userId);
+        entity.setAutoUpdate(1);
+        return entity;
+    }
+
+    /**
+     * Deduplicate one chunk against ai_device and insert the remaining rows as a
+     * single JDBC batch inside one transaction.
+     */
+    private void importChunk(List<DeviceEntity> chunk, List<DeviceBatchImportResultVO.Row> chunkRows,
+            Set<String> touchedAgents) {
+        List<DeviceEntity> pending = new ArrayList<>(chunk.size());
+        List<DeviceBatchImportResultVO.Row> pendingRows = new ArrayList<>(chunk.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<String> existing = baseDao.selectList(new QueryWrapper<DeviceEntity>()
+                        .select("mac_address")
+                        .in("mac_address", chunk.stream().map(DeviceEntity::getMacAddress).toList()))
+                        .stream().map(DeviceEntity::getMacAddress).collect(Collectors.toSet());
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (existing.contains(chunk.get(i).getMacAddress())) {
+                        chunkRows.get(i).mark(DeviceBatchImportResultVO.STATUS_DUPLICATE,
+                                MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_MAC_EXISTS));
+                    } else {
+                        pending.add(chunk.get(i));
+                        pendingRows.add(chunkRows.get(i));
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    insertBatch(pending, IMPORT_CHUNK_SIZE);
+                }
+            });
+        } catch (Exception e) {
+            // A concurrent insert may have claimed one of the MACs after the dedupe query;
+            // fall back to row-by-row inserts so only the conflicting rows are reported as failed.
+            log.warn("Bulk device import chunk failed, retrying row by row", e);
+            if (pending.isEmpty()) {
+                chunkRows.stream().filter(row -> row.getStatus() == null)
+                        .forEach(row -> row.mark(DeviceBatchImportResultVO.STATUS_FAILED,
+                                MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_FAILED)));
+                return;
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                DeviceEntity entity = pending.get(i);
+                try {
+                    baseDao.insert(entity);
+                    pendingRows.get(i).mark(DeviceBatchImportResultVO.STATUS_CREATED, null);
+                    touchedAgents.add(entity.getAgentId());
+                } catch (DuplicateKeyException ex) {
+                    pendingRows.get(i).mark(DeviceBatchImportResultVO.STATUS_DUPLICATE,
+                            MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_MAC_EXISTS));
+                } catch (Exception ex) {
+                    // Database errors stay in the server log, the client only learns that the row failed
+                    log.error("Failed to import device {}", entity.getMacAddress(), ex);
+                    pendingRows.get(i).mark(DeviceBatchImportResultVO.STATUS_FAILED,
+                            MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_FAILED));
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            pendingRows.get(i).mark(DeviceBatchImportResultVO.STATUS_CREATED, null);
+            touchedAgents.add(pending.get(i).getAgentId());
+        }
+    }
+
     @Override
     public List<DeviceEntity> searchDevicesByMacAddress(String macAddress, Long userId) {
         QueryWrapper<DeviceEntity> wrapper = new QueryWrapper<>();
@@ -680,27 +902,9 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         return mqtt;
     }
 
-    /**
-     * Generate a bearer token.
-     */
-    private String generateBearerToken() {
-        try {
-            String dateStr = DateUtil.format(new Date(), DatePattern.NORM_DATE_PATTERN);
-            String signatureKey = sysParamsService.getValue(Constant.SERVER_MQTT_SECRET, false);
-            if (ToolUtil.isEmpty(signatureKey)) {
-                return null;
-            }
-            return DigestUtil.sha256Hex(dateStr + signatureKey);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
     @Override
     public Object getDeviceTools(String deviceId) {
-        // Read the MQTT gateway address from system parameters.
-        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
-        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+        if (mqttGatewayClient.getApiAddress() == null) {
             return null;
         }
 
@@ -721,8 +925,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         String groupId = Optional.ofNullable(device.getBoard()).orElse("GID_default").replace(":", "_");
         String clientId = StrUtil.format("{}@@@{}@@@{}", groupId, macAddress, macAddress);
 
-        // Build the full URL.
-        String url = StrUtil.format("http://{}/api/commands/{}", mqttGatewayUrl, clientId);
+        String path = StrUtil.format("/api/commands/{}", clientId);
 
         // Store every tool returned across pages.
         List<Object> allTools = new ArrayList<>();
@@ -755,12 +958,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
                     .build();
 
             // Send the request.
-            String resultMessage = HttpRequest.post(url)
-                    .header(Header.CONTENT_TYPE, ContentType.JSON.getValue())
-                    .header(Header.AUTHORIZATION, "Bearer " + generateBearerToken())
-                    .body(JSONUtil.toJsonStr(requestBody))
-                    .timeout(10000) // Timeout in milliseconds.
-                    .execute().body();
+            String resultMessage = mqttGatewayClient.post(path, requestBody);
 
             // Parse the response.
             if (StringUtils.isBlank(resultMessage)) {
@@ -804,9 +1002,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
 
     @Override
     public Object callDeviceTool(String deviceId, String toolName, Map<String, Object> arguments) {
-        // Read the MQTT gateway address from system parameters.
-        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
-        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+        if (mqttGatewayClient.getApiAddress() == null) {
             return null;
         }
 
@@ -827,8 +1023,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
         String groupId = Optional.ofNullable(device.getBoard()).orElse("GID_default").replace(":", "_");
         String clientId = StrUtil.format("{}@@@{}@@@{}", groupId, macAddress, macAddress);
 
-        // Build the full URL.
-        String url = StrUtil.format("http://{}/api/commands/{}", mqttGatewayUrl, clientId);
+        String path = StrUtil.format("/api/commands/{}", clientId);
 
         // Build the request body.
         Map<String, Object> params = MapUtil
@@ -852,12 +1047,7 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
                 .build();
 
         // Send the request.
-        String resultMessage = HttpRequest.post(url)
-                .header(Header.CONTENT_TYPE, ContentType.JSON.getValue())
-                .header(Header.AUTHORIZATION, "Bearer " + generateBearerToken())
-                .body(JSONUtil.toJsonStr(requestBody))
-                .timeout(10000) // Timeout in milliseconds.
-                .execute().body();
+        String resultMessage = mqttGatewayClient.post(path, requestBody);
 
         // Parse the response.
         if (StringUtils.isNotBlank(resultMessage)) {
@@ -895,68 +1085,38 @@ public class DeviceServiceImpl extends BaseServiceImpl<DeviceDao, DeviceEntity>
     }
 
     @Override
-    public Map<String, Object> forwardCallRequest(String callerMac, String targetMac, String callerNickname) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("status", "error");
-        result.put("message", "网关配置缺失");
-
-        // 从系统参数获取网关配置
-        String mqttGatewayUrl = sysParamsService.getValue("server.mqtt_manager_api", true);
-        String mqttSignatureKey = sysParamsService.getValue("server.mqtt_signature_key", true);
-
-        if (StringUtils.isBlank(mqttGatewayUrl) || "null".equals(mqttGatewayUrl)) {
+    public CompletableFuture<Map<String, Object>> forwardCallRequestAsync(String callerMac, String targetMac,
+            String callerNickname) {
+        if (mqttGatewayClient.getApiAddress() == null) {
             log.error("MQTT网关地址未配置");
-            result.put("message", "MQTT网关地址未配置");
-            return result;
+            return CompletableFuture.completedFuture(callForwardResult("error", "MQTT网关地址未配置"));
         }
-        if (StringUtils.isBlank(mqttSignatureKey) || "null".equals(mqttSignatureKey)) {
+        if (mqttGatewayClient.getBearerToken() == null) {
             log.error("MQTT签名密钥未配置");
-            result.put("message", "MQTT签名密钥未配置");
-            return result;
+            return CompletableFuture.completedFuture(callForwardResult("error", "MQTT签名密钥未配置"));
         }
+        return mqttGatewayClient.forwardCallAsync(callerMac, targetMac, callerNickname)
+                .handle((ack, error) -> {
+                    if (error != null) {
+                        log.error("转发呼叫请求失败: {}", rootMessage(error));
+                        return callForwardResult("error", "呼叫请求转发失败: " + rootMessage(error));
+                    }
+                    if (ack == null) {
+                        return callForwardResult("error", "网关配置缺失");
+                    }
+                    return callForwardResult(ack.status(), ack.message());
+                });
+    }
 
-        // 生成token: SHA256(date + secret)
-        String dateStr = new java.text.SimpleDateFormat("yyyy-MM-dd").format(new Date());
-        try {
-            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest((dateStr + mqttSignatureKey).getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            String token = hexString.toString();
-
-            // 构建请求体
-            Map<String, Object> body = new HashMap<>();
-            body.put("caller_mac", callerMac);
-            body.put("target_mac", targetMac);
-            body.put("caller_nickname", callerNickname);
-
-            // 发送请求并获取响应
-            String url = "http://" + mqttGatewayUrl + "/api/call/request";
-            String response = cn.hutool.http.HttpRequest.post(url)
-                    .header("Authorization", "Bearer " + token)
-                    .header("Content-Type", "application/json")
-                    .body(JSONUtil.toJsonStr(body))
-                    .timeout(5000)
-                    .execute()
-                    .body();
-
-            // 解析网关响应
-            if (StringUtils.isNotBlank(response)) {
-                Map<String, Object> gwResult = JSONUtil.parseObj(response);
-                result.put("status", gwResult.get("status"));
-                result.put("message", gwResult.get("message"));
-            }
-            return result;
-        } catch (Exception e) {
-            log.error("转发呼叫请求失败: {}", e.getMessage());
-            result.put("message", "呼叫请求转发失败: " + e.getMessage());
-            return result;
-        }
+    private static Map<String, Object> callForwardResult(Object status, Object message) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", status);
+        result.put("message", message);
+        return result;
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage();
     }
 }
@@ -0,0 +1,171 @@
+package xiaozhi.modules.device.support;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import xiaozhi.modules.device.entity.DeviceAddressBookEntity;
+
+/**
+ * In-memory contact graph used for call routing.
+ * <p>
+ * Each device is a node holding its outgoing contact edges twice: by alias, to resolve a
+ * spoken nickname, and by target MAC, so the reverse edge (how the callee names the caller)
+ * is a single hash lookup on the callee's node. A lookup therefore touches two nodes and
+ * never the rest of the graph.
+ * <p>
+ * Nodes are loaded per device on first use and carry the device's generation. The owner of
+ * the graph bumps a device's generation whenever its address book changes; a node whose
+ * generation no longer matches is reloaded, which keeps several instances consistent. Edits
+ * made on this instance are applied to the cached node directly instead of reloading it.
+ */
+public class AddressBookGraph {
+
+    private final Function<String, List<DeviceAddressBookEntity>> loader;
+    private final ToLongFunction<String> generations;
+    private final Cache<String, Node> nodes;
+
+    /**
+     * An outgoing edge: how a device names one of its contacts.
+     */
+    public record Contact(String targetMac, String alias, boolean hasPermission) {
+    }
+
+    /**
+     * Result of resolving a nickname.
+     *
+     * @param targetMac      callee MAC, lower case
+     * @param callerNickname how the callee names the caller, null when it has no such contact
+     * @param hasPermission  whether the caller may call the callee
+     */
+    public record Match(String targetMac, String callerNickname, boolean hasPermission) {
+    }
+
+    private record Node(long generation, Map<String, Contact> byAlias, Map<String, Contact> byTarget) {
+    }
+
+    /**
+     * @param loader         address-book rows owned by a device MAC, newest first
+     * @param generations    current generation of a device MAC
+     * @param maximumDevices devices kept in memory before the least recently used are dropped
+     */
+    public AddressBookGraph(Function<String, List<DeviceAddressBookEntity>> loader,
+            ToLongFunction<String> generations, long maximumDevices) {
+        this.loader = loader;
+        this.generations = generations;
+        this.nodes = CacheBuilder.newBuilder()
+                .maximumSize(maximumDevices)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    /**
+     * Resolve the contact a caller names by nickname, or null when it has none.
+     */
+    public Match lookup(String callerMac, String nickname) {
+        if (callerMac == null || nickname == null) {
+            return null;
+        }
+        String caller = callerMac.toLowerCase();
+        Contact contact = node(caller).byAlias().get(nickname);
+        if (contact == null) {
+            return null;
+        }
+        Contact reverse = node(contact.targetMac()).byTarget().get(caller);
+        String callerNickname = reverse == null || StringUtils.isEmpty(reverse.alias()) ? null : reverse.alias();
+        return new Match(contact.targetMac(), callerNickname, contact.hasPermission());
+    }
+
+    /**
+     * Apply one edge written on this instance. The cached node is updated in place only if
+     * it is exactly one generation behind; otherwise another edit raced this one and the
+     * node is dropped to be reloaded.
+     *
+     * @param generation the owner's generation after the write
+     */
+    public void apply(String ownerMac, long generation, String targetMac, String alias, boolean hasPermission) {
+        String owner = ownerMac.toLowerCase();
+        Node node = nodes.getIfPresent(owner);
+        if (node == null) {
+            return;
+        }
+        if (node.generation() != generation - 1) {
+            nodes.invalidate(owner);
+            return;
+        }
+        String target = targetMac.toLowerCase();
+        Map<String, Contact> byAlias = new HashMap<>(node.byAlias());
+        Map<String, Contact> byTarget = new HashMap<>(node.byTarget());
+        Contact previous = byTarget.get(target);
+        if (previous != null && previous.alias() != null && byAlias.get(previous.alias()) == previous) {
+            byAlias.remove(previous.alias());
+        }
+        Contact contact = new Contact(target, alias, hasPermission);
+        byTarget.put(target, contact);
+        if (StringUtils.isNotEmpty(alias)) {
+            byAlias.put(alias, contact);
+        }
+        nodes.put(owner, new Node(generation, Map.copyOf(byAlias), Map.copyOf(byTarget)));
+    }
+
+    /**
+     * Drop one device so its next lookup reloads it.
+     */
+    public void invalidate(String mac) {
+        nodes.invalidate(mac.toLowerCase());
+    }
+
+    /**
+     * Drop every device.
+     */
+    public void clear() {
+        nodes.invalidateAll();
+    }
+
+    /**
+     * Devices currently held in memory.
+     */
+    public long size() {
+        return nodes.size();
+    }
+
+    private Node node(String mac) {
+        long generation = generations.applyAsLong(mac);
+        Node node = nodes.getIfPresent(mac);
+        if (node != null && node.generation() == generation) {
+            return node;
+        }
+        // Read the generation before the rows: a write racing the load leaves a stale
+        // generation behind, so the node is reloaded again rather than served stale.
+        node = build(generation, loader.apply(mac));
+        nodes.put(mac, node);
+        return node;
+    }
+
+    private static Node build(long generation, List<DeviceAddressBookEntity> rows) {
+        Map<String, Contact> byAlias = new HashMap<>();
+        Map<String, Contact> byTarget = new HashMap<>();
+        for (DeviceAddressBookEntity row : rows) {
+            String target = row.getTargetMac().toLowerCase();
+            if (byTarget.containsKey(target)) {
+                continue;
+            }
+            Contact contact = new Contact(target, row.getAlias(),
+                    Boolean.TRUE.equals(row.getHasPermission()));
+            byTarget.put(target, contact);
+            // Rows come newest first, so the most recently edited contact keeps a shared alias
+            if (StringUtils.isNotEmpty(row.getAlias())) {
+                byAlias.putIfAbsent(row.getAlias(), contact);
+            }
+        }
+        return new Node(generation, Map.copyOf(byAlias), Map.copyOf(byTarget));
+    }
+}
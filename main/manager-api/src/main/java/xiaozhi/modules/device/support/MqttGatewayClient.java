@@ -0,0 +1,328 @@
+package xiaozhi.modules.device.support;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.LatencyHistogram;
+import xiaozhi.modules.sys.service.SysParamsService;
+
+/**
+ * Client for the MQTT gateway management API.
+ * <p>
+ * All calls share one pooled {@link HttpClient} and a bearer token computed once per day.
+ * Device online status is cached for a few seconds and shared across users and agents,
+ * identical concurrent status queries are coalesced into a single gateway request, and a
+ * circuit breaker fails fast while the gateway is down or timing out so console polling
+ * cannot pile up request threads. Device-to-device call setup is forwarded asynchronously
+ * and its latency until the gateway acknowledges is kept in a histogram.
+ */
+@Slf4j
+@Component
+public class MqttGatewayClient {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    /**
+     * How long a device's online status is reused before asking the gateway again.
+     */
+    private static final long STATUS_CACHE_TTL_SECONDS = 5;
+    /**
+     * Consecutive failures that open the circuit.
+     */
+    private static final int FAILURE_THRESHOLD = 5;
+    /**
+     * How long the circuit stays open before a trial request is let through.
+     */
+    private static final long OPEN_MILLIS = 30_000;
+    /**
+     * Cached marker for client IDs the gateway did not report.
+     */
+    private static final JSONObject ABSENT = new JSONObject();
+
+    private final SysParamsService sysParamsService;
+    private final HttpClient httpClient;
+    private final Cache<String, JSONObject> statusCache;
+    private final Map<String, CompletableFuture<JSONObject>> inFlightStatus = new ConcurrentHashMap<>();
+    private final Map<String, DailyToken> dailyTokens = new ConcurrentHashMap<>();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LatencyHistogram callLatency = new LatencyHistogram();
+    private volatile long circuitOpenUntil;
+
+    public MqttGatewayClient(SysParamsService sysParamsService) {
+        this.sysParamsService = sysParamsService;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        this.statusCache = CacheBuilder.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(STATUS_CACHE_TTL_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Gateway management API address (host:port), or null when not configured.
+     */
+    public String getApiAddress() {
+        String address = sysParamsService.getValue(Constant.SERVER_MQTT_MANAGER_API, true);
+        if (StringUtils.isBlank(address) || "null".equals(address)) {
+            return null;
+        }
+        return address;
+    }
+
+    /**
+     * Bearer token for the gateway: SHA-256 of the current date and the signing key.
+     * The value only changes once a day or when the key is rotated, so it is memoised.
+     *
+     * @return token, or null when no signing key is configured
+     */
+    public String getBearerToken() {
+        String secret = sysParamsService.getValue(Constant.SERVER_MQTT_SECRET, true);
+        if (StringUtils.isBlank(secret) || "null".equals(secret)) {
+            return null;
+        }
+        String date = LocalDate.now().toString();
+        DailyToken token = dailyTokens.get(secret);
+        if (token == null || !token.date().equals(date)) {
+            dailyTokens.clear();
+            token = new DailyToken(date, DigestUtil.sha256Hex(date + secret));
+            dailyTokens.put(secret, token);
+        }
+        return token.token();
+    }
+
+    /**
+     * Online status of the given MQTT client IDs, as the JSON object returned by
+     * {@code /api/devices/status}, keyed by client ID.
+     */
+    public JSONObject getDeviceStatus(Collection<String> clientIds) {
+        JSONObject result = new JSONObject();
+        TreeSet<String> missing = new TreeSet<>();
+        for (String clientId : clientIds) {
+            JSONObject cached = statusCache.getIfPresent(clientId);
+            if (cached == null) {
+                missing.add(clientId);
+            } else if (cached != ABSENT) {
+                result.set(clientId, cached);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        // Requests for the same set of devices share one in-flight gateway call.
+        String coalesceKey = String.join(",", missing);
+        CompletableFuture<JSONObject> created = new CompletableFuture<>();
+        CompletableFuture<JSONObject> pending = inFlightStatus.putIfAbsent(coalesceKey, created);
+        if (pending == null) {
+            pending = created;
+            postAsync("/api/devices/status", Map.of("clientIds", missing)).whenComplete((body, error) -> {
+                inFlightStatus.remove(coalesceKey, created);
+                if (error != null) {
+                    created.completeExceptionally(error);
+                    return;
+                }
+                try {
+                    JSONObject statuses = StringUtils.isBlank(body) ? new JSONObject() : JSONUtil.parseObj(body);
+                    for (String clientId : missing) {
+                        JSONObject status = statuses.getJSONObject(clientId);
+                        statusCache.put(clientId, status == null ? ABSENT : status);
+                    }
+                    created.complete(statuses);
+                } catch (Exception e) {
+                    created.completeExceptionally(e);
+                }
+            });
+        }
+        JSONObject fetched = await(pending);
+        for (String clientId : missing) {
+            JSONObject status = fetched.getJSONObject(clientId);
+            if (status != null) {
+                result.set(clientId, status);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * POST a JSON body to the gateway and wait for the response body.
+     */
+    public String post(String path, Object body) {
+        return await(postAsync(path, body));
+    }
+
+    /**
+     * POST a JSON body to the gateway without blocking the caller.
+     * The future fails fast with a {@link RenException} while the circuit is open.
+     */
+    public CompletableFuture<String> postAsync(String path, Object body) {
+        String address = getApiAddress();
+        if (address == null) {
+            return CompletableFuture.failedFuture(new RenException("MQTT gateway address is not configured"));
+        }
+        if (!allowRequest()) {
+            return CompletableFuture.failedFuture(new RenException("MQTT gateway is unavailable, retry later"));
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://" + address + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(JSONUtil.toJsonStr(body)));
+        String token = getBearerToken();
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        recordFailure(error);
+                        throw new CompletionException(error instanceof CompletionException ? error.getCause() : error);
+                    }
+                    if (response.statusCode() >= 500) {
+                        recordFailure(null);
+                    } else {
+                        consecutiveFailures.set(0);
+                        circuitOpenUntil = 0;
+                    }
+                    return response.body();
+                });
+    }
+
+    /**
+     * Ask the gateway to ring the target device on behalf of the caller.
+     * The future completes once the gateway has acknowledged the request, with null when the
+     * gateway answered with an empty body.
+     *
+     * @param callerNickname how the target names the caller, may be null
+     */
+    public CompletableFuture<CallForwardResult> forwardCallAsync(String callerMac, String targetMac,
+            String callerNickname) {
+        if (getBearerToken() == null) {
+            return CompletableFuture.failedFuture(new RenException("MQTT signature key is not configured"));
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("caller_mac", callerMac);
+        body.put("target_mac", targetMac);
+        body.put("caller_nickname", callerNickname);
+        long start = System.nanoTime();
+        return postAsync("/api/call/request", body).handle((response, error) -> {
+            callLatency.recordSince(start, error != null);
+            if (error != null) {
+                throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+            }
+            if (StringUtils.isBlank(response)) {
+                return null;
+            }
+            JSONObject json = JSONUtil.parseObj(response);
+            return new CallForwardResult(json.getStr("status"), json.getStr("message"));
+        });
+    }
+
+    /**
+     * Call-setup latency since startup, from sending the request until the gateway acknowledged it.
+     */
+    public LatencyHistogram.Snapshot getCallLatency() {
+        return callLatency.snapshot();
+    }
+
+    /**
+     * Whether the circuit breaker currently rejects calls.
+     */
+    public boolean isCircuitOpen() {
+        return System.currentTimeMillis() < circuitOpenUntil;
+    }
+
+    /**
+     * Drop cached online status, e.g. after a device is unbound.
+     */
+    public void evictDeviceStatus(List<String> clientIds) {
+        statusCache.invalidateAll(clientIds);
+    }
+
+    private boolean allowRequest() {
+        long openUntil = circuitOpenUntil;
+        if (openUntil == 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now < openUntil) {
+            return false;
+        }
+        // Half-open: let exactly one caller through to probe the gateway.
+        synchronized (this) {
+            if (circuitOpenUntil != openUntil) {
+                return false;
+            }
+            circuitOpenUntil = now + REQUEST_TIMEOUT.toMillis();
+            return true;
+        }
+    }
+
+    private void recordFailure(Throwable error) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= FAILURE_THRESHOLD) {
+            circuitOpenUntil = System.currentTimeMillis() + OPEN_MILLIS;
+            log.warn("MQTT gateway circuit opened after {} consecutive failures: {}", failures,
+                    error == null ? "server error" : error.toString());
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(REQUEST_TIMEOUT.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenException("Interrupted while waiting for the MQTT gateway", e);
+        } catch (TimeoutException e) {
+            throw new RenException("MQTT gateway request timed out", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RenException renException) {
+                throw renException;
+            }
+            if (cause instanceof HttpTimeoutException) {
+                throw new RenException("MQTT gateway request timed out", cause);
+            }
+            throw new RenException("MQTT gateway request failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private record DailyToken(String date, String token) {
+    }
+
+    /**
+     * Gateway acknowledgement of a forwarded call.
+     */
+    public record CallForwardResult(String status, String message) {
+    }
+}
@@ -0,0 +1,60 @@
+package xiaozhi.modules.device.vo;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "Bulk device import result")
+public class DeviceBatchImportResultVO {
+
+    public static final String STATUS_CREATED = "created";
+    public static final String STATUS_DUPLICATE = "duplicate";
+    public static final String STATUS_INVALID = "invalid";
+    public static final String STATUS_FAILED = "failed";
+
+    @Schema(description = "Number of rows received")
+    private int total;
+
+    @Schema(description = "Number of devices created")
+    private int created;
+
+    @Schema(description = "Number of rows skipped because the MAC address already exists")
+    private int duplicates;
+
+    @Schema(description = "Number of rows rejected or failed")
+    private int failed;
+
+    @Schema(description = "Elapsed time in milliseconds")
+    private long elapsedMillis;
+
+    @Schema(description = "Per-row results, in input order")
+    private List<Row> rows;
+
+    @Data
+    @Schema(description = "Result of a single imported row")
+    public static class Row {
+        @Schema(description = "1-based row number in the input")
+        private int row;
+
+        @Schema(description = "MAC address")
+        private String macAddress;
+
+        @Schema(description = "Row status: created/duplicate/invalid/failed")
+        private String status;
+
+        @Schema(description = "Reason when the row was not created")
+        private String message;
+
+        public Row(int row, String macAddress) {
+            this.row = row;
+            this.macAddress = macAddress;
+        }
+
+        public void mark(String status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+    }
+}
@@ -8,7 +8,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.beans.BeanUtils;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
@@ -16,7 +15,7 @@ import xiaozhi.common.page.PageData;
 import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.BaseServiceImpl;
-import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.common.utils.BeanMapper;
 import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.modules.knowledge.dao.KnowledgeBaseDao;
 import xiaozhi.modules.knowledge.dao.DocumentDao;
@@ -47,6 +46,15 @@ import java.util.Map;
 public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao, KnowledgeBaseEntity>
         implements KnowledgeBaseService {
 
+    private static final BeanMapper<KnowledgeBaseEntity, KnowledgeBaseDTO> DTO_MAPPER = BeanMapper
+            .of(KnowledgeBaseEntity.class, KnowledgeBaseDTO.class);
+    private static final BeanMapper<KnowledgeBaseDTO, KnowledgeBaseEntity> ENTITY_MAPPER = BeanMapper
+            .of(KnowledgeBaseDTO.class, KnowledgeBaseEntity.class);
+    private static final BeanMapper<KnowledgeBaseDTO, DatasetDTO.CreateReq> CREATE_REQ_MAPPER = BeanMapper
+            .of(KnowledgeBaseDTO.class, DatasetDTO.CreateReq.class);
+    private static final BeanMapper<KnowledgeBaseDTO, DatasetDTO.UpdateReq> UPDATE_REQ_MAPPER = BeanMapper
+            .of(KnowledgeBaseDTO.class, DatasetDTO.UpdateReq.class);
+
     private final KnowledgeBaseDao knowledgeBaseDao;
     private final DocumentDao documentDao;
     private final ModelConfigService modelConfigService;
@@ -66,7 +74,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
         queryWrapper.orderByDesc("created_at");
 
         IPage<KnowledgeBaseEntity> iPage = knowledgeBaseDao.selectPage(pageInfo, queryWrapper);
-        PageData<KnowledgeBaseDTO> pageData = getPageData(iPage, KnowledgeBaseDTO.class);
+        PageData<KnowledgeBaseDTO> pageData = new PageData<>(DTO_MAPPER.mapList(iPage.getRecords()), iPage.getTotal());
 
         // Enrich with Document Count from RAG (Optional / Lazy)
         if (pageData != null && pageData.getList() != null) {
@@ -178,7 +186,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
         if (entity == null) {
             throw new RenException(ErrorCode.Knowledge_Base_RECORD_NOT_EXISTS);
         }
-        return ConvertUtils.sourceToTarget(entity, KnowledgeBaseDTO.class);
+        return DTO_MAPPER.map(entity);
     }
 
     @Override
@@ -195,7 +203,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
         if (entity == null) {
             throw new RenException(ErrorCode.Knowledge_Base_RECORD_NOT_EXISTS);
         }
-        return ConvertUtils.sourceToTarget(entity, KnowledgeBaseDTO.class);
+        return DTO_MAPPER.map(entity);
     }
 
     @Override
@@ -222,7 +230,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
             adapter = KnowledgeBaseAdapterFactory.getAdapter((String) ragConfig.get("type"),
                     ragConfig);
 
-            DatasetDTO.CreateReq createReq = ConvertUtils.sourceToTarget(dto, DatasetDTO.CreateReq.class);
+            DatasetDTO.CreateReq createReq = CREATE_REQ_MAPPER.map(dto);
             createReq.setName(SecurityUser.getUser().getUsername() + "_" + dto.getName());
 
             DatasetDTO.InfoVO ragResponse = adapter.createDataset(createReq);
@@ -232,7 +240,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
             datasetId = ragResponse.getId();
 
             // 3. Local Save (Shadow)
-            KnowledgeBaseEntity entity = ConvertUtils.sourceToTarget(dto, KnowledgeBaseEntity.class);
+            KnowledgeBaseEntity entity = ENTITY_MAPPER.map(dto);
 
             // [Production Fix] 统一本地 ID 与 RAGFlow ID，防止前端调用 /delete 或 /update 时因 ID 混淆（本地
             // UUID vs RAG UUID）导致 10163 错误
@@ -262,12 +270,12 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
             entity.setTokenNum(ragResponse.getTokenNum() != null ? ragResponse.getTokenNum() : 0L);
 
             // 清空 creator/updater，让 FieldMetaObjectHandler 从 SecurityUser 自动填充
-            // ConvertUtils 会把 DTO 中的 creator=0 拷贝过来，导致 strictInsertFill 跳过填充
+            // BeanMapper 会把 DTO 中的 creator=0 拷贝过来，导致 strictInsertFill 跳过填充
             entity.setCreator(null);
             entity.setUpdater(null);
 
             knowledgeBaseDao.insert(entity);
-            return ConvertUtils.sourceToTarget(entity, KnowledgeBaseDTO.class);
+            return DTO_MAPPER.map(entity);
         } catch (Exception e) {
             log.error("RAG创建或本地保存失败", e);
             // 如果datasetId已生成但在保存本地时失败，尝试回滚RAG (Best Effort)
@@ -330,7 +338,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
 
                 KnowledgeBaseAdapter adapter = getAdapterByModelId(dto.getRagModelId());
                 if (adapter != null) {
-                    DatasetDTO.UpdateReq updateReq = ConvertUtils.sourceToTarget(dto, DatasetDTO.UpdateReq.class);
+                    DatasetDTO.UpdateReq updateReq = UPDATE_REQ_MAPPER.map(dto);
 
                     // 1. 必填/核心字段前缀处理
                     if (StringUtils.isNotBlank(dto.getName())) {
@@ -361,13 +369,13 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
             }
         }
 
-        BeanUtils.copyProperties(dto, entity);
+        ENTITY_MAPPER.copy(dto, entity);
         knowledgeBaseDao.updateById(entity);
 
         // Clean cache
         redisUtils.delete(RedisKeys.getKnowledgeBaseCacheKey(entity.getId()));
 
-        return ConvertUtils.sourceToTarget(entity, KnowledgeBaseDTO.class);
+        return DTO_MAPPER.map(entity);
     }
 
     @Override
@@ -433,7 +441,7 @@ public class KnowledgeBaseServiceImpl extends BaseServiceImpl<KnowledgeBaseDao,
         QueryWrapper<KnowledgeBaseEntity> queryWrapper = new QueryWrapper<>();
         queryWrapper.in("dataset_id", datasetIdList).or().in("id", datasetIdList);
         List<KnowledgeBaseEntity> list = knowledgeBaseDao.selectList(queryWrapper);
-        return ConvertUtils.sourceToTarget(list, KnowledgeBaseDTO.class);
+        return DTO_MAPPER.mapList(list);
     }
 
     @Override
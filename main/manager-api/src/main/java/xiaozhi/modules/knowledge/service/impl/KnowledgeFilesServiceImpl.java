@@ -8,7 +8,6 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
@@ -26,6 +25,7 @@ import lombok.extern.slf4j.Slf4j;
 import xiaozhi.common.exception.ErrorCode;
 import org.springframework.util.CollectionUtils;
 import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.BeanMapper;
 import xiaozhi.modules.knowledge.dto.KnowledgeFilesDTO;
 import xiaozhi.modules.knowledge.dto.document.ChunkDTO;
 import xiaozhi.modules.knowledge.dto.document.RetrievalDTO;
@@ -46,6 +46,9 @@ import xiaozhi.modules.knowledge.service.KnowledgeFilesService;
 public class KnowledgeFilesServiceImpl extends BaseServiceImpl<DocumentDao, DocumentEntity>
         implements KnowledgeFilesService {
 
+    private static final BeanMapper<DocumentEntity, KnowledgeFilesDTO> DTO_MAPPER = BeanMapper
+            .of(DocumentEntity.class, KnowledgeFilesDTO.class);
+
     private final KnowledgeBaseService knowledgeBaseService;
     private final DocumentDao documentDao;
     private final ObjectMapper objectMapper;
@@ -171,9 +174,8 @@ public class KnowledgeFilesServiceImpl extends BaseServiceImpl<DocumentDao, Docu
         if (entity == null) {
             return null;
         }
-        KnowledgeFilesDTO dto = new KnowledgeFilesDTO();
         // 1. 基础字段拷贝
-        BeanUtils.copyProperties(entity, dto);
+        KnowledgeFilesDTO dto = DTO_MAPPER.map(entity);
 
         // Issue 2: 修正 ID 语义。前端习惯使用 id 作为操作主键。
         // 在该模块中，应始终将远程 documentId 映射为 DTO 的 id，确保前端在详情/删除等操作时 ID 一致。
@@ -0,0 +1,8 @@
+package xiaozhi.modules.llm.client;
+
+/**
+ * Result of a chat completion call. Token counts are 0 when the provider did not report usage.
+ */
+public record ChatCompletion(String content, String finishReason, long promptTokens, long completionTokens,
+        long totalTokens) {
+}
@@ -0,0 +1,46 @@
+package xiaozhi.modules.llm.client;
+
+import org.apache.commons.lang3.StringUtils;
+
+import cn.hutool.json.JSONObject;
+
+/**
+ * Connection settings of an OpenAI-compatible chat completions endpoint.
+ *
+ * @param baseUrl     base URL from the model config (with or without /chat/completions)
+ * @param apiKey      bearer token
+ * @param model       model name sent in the request
+ * @param temperature configured temperature, may be null
+ * @param maxTokens   configured max tokens, may be null
+ */
+public record LlmEndpoint(String baseUrl, String apiKey, String model, Double temperature, Integer maxTokens) {
+
+    private static final String DEFAULT_MODEL = "gpt-3.5-turbo";
+
+    /**
+     * Read the endpoint from an LLM model config, or null when base_url or api_key is missing.
+     */
+    public static LlmEndpoint fromConfig(JSONObject configJson) {
+        if (configJson == null) {
+            return null;
+        }
+        String baseUrl = configJson.getStr("base_url");
+        String apiKey = configJson.getStr("api_key");
+        if (StringUtils.isBlank(baseUrl) || StringUtils.isBlank(apiKey)) {
+            return null;
+        }
+        String model = StringUtils.defaultIfBlank(configJson.getStr("model_name"), DEFAULT_MODEL);
+        return new LlmEndpoint(baseUrl.trim(), apiKey, model, configJson.getDouble("temperature"),
+                configJson.getInt("max_tokens"));
+    }
+
+    /**
+     * Full chat completions URL.
+     */
+    public String chatCompletionsUrl() {
+        if (baseUrl.endsWith("/chat/completions")) {
+            return baseUrl;
+        }
+        return baseUrl.endsWith("/") ? baseUrl + "chat/completions" : baseUrl + "/chat/completions";
+    }
+}
@@ -0,0 +1,362 @@
+package xiaozhi.modules.llm.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.exception.RenException;
+
+/**
+ * HTTP client for OpenAI-compatible chat completions.
+ * <p>
+ * One {@link HttpClient} (and so one keep-alive connection pool) is kept per base URL
+ * origin, with a connect timeout and a per-call response timeout. Response bodies are
+ * read line by line on a separate virtual thread, and the caller gives up when the
+ * deadline passes or no line arrives within the idle timeout, so a provider that stops
+ * sending after the headers cannot hold the caller. Token usage reported by the provider is accumulated
+ * per model.
+ */
+@Slf4j
+@Component
+public class LlmHttpClient {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final String SSE_DATA = "data:";
+    private static final String SSE_DONE = "[DONE]";
+    private static final Duration READ_IDLE_TIMEOUT = Duration.ofSeconds(30);
+    private static final Object END_OF_BODY = new Object();
+
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, UsageCounter> usage = new ConcurrentHashMap<>();
+    private final ExecutorService bodyReaders = Executors
+            .newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-body-", 0).factory());
+
+    /**
+     * Send a non-streaming chat completion request.
+     *
+     * @param timeout time allowed until the whole response has arrived
+     */
+    public ChatCompletion complete(LlmEndpoint endpoint, Map<String, Object> body, Duration timeout) {
+        Map<String, Object> request = new HashMap<>(body);
+        request.put("model", endpoint.model());
+        request.remove("stream");
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        try {
+            HttpResponse<Stream<String>> response = send(endpoint, request, timeout,
+                    HttpResponse.BodyHandlers.ofLines());
+            String text;
+            try (BodyLines lines = new BodyLines(response.body(), deadline)) {
+                text = String.join("\n", take(lines, Integer.MAX_VALUE));
+            }
+            if (response.statusCode() / 100 != 2) {
+                throw new RenException("LLM API returned HTTP " + response.statusCode() + ": " + abbreviate(text));
+            }
+            ChatCompletion completion = parseCompletion(JSONUtil.parseObj(text));
+            record(endpoint, completion, start);
+            return completion;
+        } catch (RuntimeException e) {
+            recordFailure(endpoint, start);
+            throw e;
+        }
+    }
+
+    /**
+     * Send a streaming chat completion request, passing each content delta to onDelta as it
+     * arrives. Providers that ignore {@code stream} and answer with plain JSON are handled too.
+     *
+     * @param timeout time allowed for the whole stream
+     * @return the assembled completion
+     */
+    public ChatCompletion stream(LlmEndpoint endpoint, Map<String, Object> body, Consumer<String> onDelta,
+            Duration timeout) {
+        Map<String, Object> request = new HashMap<>(body);
+        request.put("model", endpoint.model());
+        request.put("stream", true);
+        request.put("stream_options", Map.of("include_usage", true));
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        try {
+            HttpResponse<Stream<String>> response = send(endpoint, request, timeout,
+                    HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() == 400) {
+                // Some providers reject stream_options; retry once without it
+                response.body().close();
+                request.remove("stream_options");
+                response = send(endpoint, request, remaining(deadline), HttpResponse.BodyHandlers.ofLines());
+            }
+            // The reader task owns the body from here on; closing the lines stops it early
+            try (BodyLines lines = new BodyLines(response.body(), deadline)) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new RenException("LLM API returned HTTP " + response.statusCode() + ": "
+                            + abbreviate(String.join("\n", take(lines, 20))));
+                }
+                boolean eventStream = response.headers().firstValue("Content-Type")
+                        .map(type -> type.contains("text/event-stream")).orElse(false);
+                ChatCompletion completion = eventStream
+                        ? readEvents(lines, onDelta)
+                        : parseCompletion(JSONUtil.parseObj(String.join("\n", take(lines, Integer.MAX_VALUE))));
+                if (!eventStream && completion.content() != null) {
+                    onDelta.accept(completion.content());
+                }
+                record(endpoint, completion, start);
+                return completion;
+            }
+        } catch (RuntimeException e) {
+            recordFailure(endpoint, start);
+            throw e;
+        }
+    }
+
+    /**
+     * Usage per model name since startup.
+     */
+    public Map<String, LlmUsage> getUsage() {
+        Map<String, LlmUsage> result = new TreeMap<>();
+        usage.forEach((model, counter) -> result.put(model, counter.snapshot()));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bodyReaders.shutdownNow();
+    }
+
+    private static List<String> take(Iterator<String> lines, int limit) {
+        List<String> taken = new ArrayList<>();
+        while (taken.size() < limit && lines.hasNext()) {
+            taken.add(lines.next());
+        }
+        return taken;
+    }
+
+    private ChatCompletion readEvents(Iterator<String> lines, Consumer<String> onDelta) {
+        StringBuilder content = new StringBuilder();
+        String finishReason = null;
+        JSONObject usageJson = null;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (!line.startsWith(SSE_DATA)) {
+                continue;
+            }
+            String data = line.substring(SSE_DATA.length()).trim();
+            if (SSE_DONE.equals(data)) {
+                break;
+            }
+            if (data.isEmpty()) {
+                continue;
+            }
+            JSONObject chunk = JSONUtil.parseObj(data);
+            if (chunk.containsKey("usage") && chunk.getJSONObject("usage") != null) {
+                usageJson = chunk.getJSONObject("usage");
+            }
+            JSONArray choices = chunk.getJSONArray("choices");
+            if (choices == null || choices.isEmpty()) {
+                continue;
+            }
+            JSONObject choice = choices.getJSONObject(0);
+            JSONObject delta = choice.getJSONObject("delta");
+            String piece = delta == null ? null : delta.getStr("content");
+            if (piece != null && !piece.isEmpty()) {
+                content.append(piece);
+                onDelta.accept(piece);
+            }
+            if (choice.getStr("finish_reason") != null) {
+                finishReason = choice.getStr("finish_reason");
+            }
+        }
+        return withUsage(content.toString(), finishReason, usageJson);
+    }
+
+    private static ChatCompletion parseCompletion(JSONObject json) {
+        JSONArray choices = json.getJSONArray("choices");
+        String content = null;
+        String finishReason = null;
+        if (choices != null && !choices.isEmpty()) {
+            JSONObject choice = choices.getJSONObject(0);
+            JSONObject message = choice.getJSONObject("message");
+            content = message == null ? null : message.getStr("content");
+            finishReason = choice.getStr("finish_reason");
+        }
+        return withUsage(content, finishReason, json.getJSONObject("usage"));
+    }
+
+    private static ChatCompletion withUsage(String content, String finishReason, JSONObject usageJson) {
+        if (usageJson == null) {
+            return new ChatCompletion(content, finishReason, 0, 0, 0);
+        }
+        long prompt = usageJson.getLong("prompt_tokens", 0L);
+        long completion = usageJson.getLong("completion_tokens", 0L);
+        return new ChatCompletion(content, finishReason, prompt, completion,
+                usageJson.getLong("total_tokens", prompt + completion));
+    }
+
+    private <T> HttpResponse<T> send(LlmEndpoint endpoint, Map<String, Object> body, Duration timeout,
+            HttpResponse.BodyHandler<T> handler) {
+        URI uri = URI.create(endpoint.chatCompletionsUrl());
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + endpoint.apiKey())
+                .POST(HttpRequest.BodyPublishers.ofString(JSONUtil.toJsonStr(body), StandardCharsets.UTF_8))
+                .build();
+        try {
+            return clientFor(uri).send(request, handler);
+        } catch (IOException e) {
+            throw new RenException("LLM API request failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenException("Interrupted while calling the LLM API", e);
+        }
+    }
+
+    private HttpClient clientFor(URI uri) {
+        String origin = uri.getScheme() + "://" + uri.getAuthority();
+        return clients.computeIfAbsent(origin, key -> HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                // Plain-http endpoints (local models) rarely speak h2c; skip the upgrade attempt
+                .version("http".equals(uri.getScheme()) ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.HTTP_2)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build());
+    }
+
+    private void record(LlmEndpoint endpoint, ChatCompletion completion, long start) {
+        UsageCounter counter = usage.computeIfAbsent(endpoint.model(), k -> new UsageCounter());
+        counter.requests.increment();
+        counter.promptTokens.add(completion.promptTokens());
+        counter.completionTokens.add(completion.completionTokens());
+        counter.totalTokens.add(completion.totalTokens());
+        counter.totalMillis.add((System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void recordFailure(LlmEndpoint endpoint, long start) {
+        UsageCounter counter = usage.computeIfAbsent(endpoint.model(), k -> new UsageCounter());
+        counter.requests.increment();
+        counter.failures.increment();
+        counter.totalMillis.add((System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static Duration remaining(long deadline) {
+        long nanos = deadline - System.nanoTime();
+        if (nanos <= 0) {
+            throw new RenException("LLM response timed out");
+        }
+        return Duration.ofNanos(nanos);
+    }
+
+    private static String abbreviate(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() > 500 ? text.substring(0, 500) + "..." : text;
+    }
+
+    /**
+     * Lines of a response body, read by a task on {@code bodyReaders}. The request timeout
+     * only covers the response headers, so the caller waits here instead, for at most the
+     * idle timeout per line and never past the deadline. Giving up, or closing before the
+     * end, interrupts the reader, which closes the body and with it the connection.
+     */
+    private class BodyLines implements Iterator<String>, AutoCloseable {
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final Future<?> reader;
+        private final long deadline;
+        private Object next;
+
+        BodyLines(Stream<String> body, long deadline) {
+            this.deadline = deadline;
+            this.reader = bodyReaders.submit(() -> {
+                try (body) {
+                    body.forEach(queue::add);
+                    queue.add(END_OF_BODY);
+                } catch (RuntimeException e) {
+                    queue.add(e);
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = poll();
+            }
+            return next != END_OF_BODY;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = (String) next;
+            next = null;
+            return line;
+        }
+
+        @Override
+        public void close() {
+            reader.cancel(true);
+        }
+
+        private Object poll() {
+            long wait = Math.min(READ_IDLE_TIMEOUT.toNanos(), deadline - System.nanoTime());
+            Object item;
+            try {
+                item = queue.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RenException("Interrupted while reading the LLM response", e);
+            }
+            if (item == null) {
+                throw new RenException("LLM response timed out");
+            }
+            if (item instanceof RuntimeException e) {
+                throw new RenException("LLM API request failed: " + e.getMessage(), e);
+            }
+            return item;
+        }
+    }
+
+    private static class UsageCounter {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder totalTokens = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+
+        LlmUsage snapshot() {
+            long count = requests.sum();
+            return new LlmUsage(count, failures.sum(), promptTokens.sum(), completionTokens.sum(),
+                    totalTokens.sum(), count == 0 ? 0 : totalMillis.sum() / count);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package xiaozhi.modules.llm.client;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.model.entity.ModelConfigEntity;
+import xiaozhi.modules.model.event.ModelConfigChangedEvent;
+import xiaozhi.modules.model.service.ModelConfigService;
+
+/**
+ * Resolves which LLM endpoint a call should use, caching the result locally.
+ * <p>
+ * Looking up the default LLM means listing every enabled LLM config from the database, so
+ * the resolved endpoint is kept until a model config changes (see
+ * {@link ModelConfigChangedEvent}) or the entry ages out, which also covers edits made
+ * through another instance.
+ */
+@Slf4j
+@Component
+public class LlmModelResolver {
+
+    private static final String DEFAULT_KEY = "";
+    private static final long CACHE_TTL_SECONDS = 300;
+
+    private final ModelConfigService modelConfigService;
+    private final Cache<String, Optional<LlmEndpoint>> endpoints = CacheBuilder.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterWrite(CACHE_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    public LlmModelResolver(ModelConfigService modelConfigService) {
+        this.modelConfigService = modelConfigService;
+    }
+
+    /**
+     * Endpoint of the given LLM model, or of the default LLM when modelId is blank.
+     *
+     * @return endpoint, or null when the model is missing or lacks base_url / api_key
+     */
+    public LlmEndpoint resolve(String modelId) {
+        String key = StringUtils.isBlank(modelId) ? DEFAULT_KEY : modelId.trim();
+        try {
+            return endpoints.get(key, () -> Optional.ofNullable(load(key))).orElse(null);
+        } catch (ExecutionException e) {
+            log.error("Failed to resolve LLM model {}: {}", modelId, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Drop every cached endpoint.
+     */
+    public void invalidateAll() {
+        endpoints.invalidateAll();
+    }
+
+    /**
+     * Runs after the change commits, so a reload cannot read the old row back.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onModelConfigChanged(ModelConfigChangedEvent event) {
+        if (event.modelType() == null || "LLM".equalsIgnoreCase(event.modelType())) {
+            // A change to any LLM may move the default, so drop everything
+            invalidateAll();
+        }
+    }
+
+    private LlmEndpoint load(String key) {
+        ModelConfigEntity config = DEFAULT_KEY.equals(key) ? loadDefault() : modelConfigService.getModelByIdFromCache(key);
+        return config == null ? null : LlmEndpoint.fromConfig(config.getConfigJson());
+    }
+
+    private ModelConfigEntity loadDefault() {
+        List<ModelConfigEntity> llmConfigs = modelConfigService.getEnabledModelsByType("LLM");
+        if (llmConfigs == null || llmConfigs.isEmpty()) {
+            return null;
+        }
+        // Prefer the default config, otherwise the first enabled one
+        for (ModelConfigEntity config : llmConfigs) {
+            if (config.getIsDefault() != null && config.getIsDefault() == 1) {
+                return config;
+            }
+        }
+        return llmConfigs.get(0);
+    }
+}
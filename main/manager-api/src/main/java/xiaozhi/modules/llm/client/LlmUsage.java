@@ -0,0 +1,8 @@
+package xiaozhi.modules.llm.client;
+
+/**
+ * Token usage accumulated for one model since startup.
+ */
+public record LlmUsage(long requests, long failures, long promptTokens, long completionTokens, long totalTokens,
+        long averageMillis) {
+}
@@ -1,27 +1,21 @@
 package xiaozhi.modules.llm.service.impl;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import cn.hutool.json.JSONArray;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import xiaozhi.modules.llm.client.ChatCompletion;
+import xiaozhi.modules.llm.client.LlmEndpoint;
+import xiaozhi.modules.llm.client.LlmHttpClient;
+import xiaozhi.modules.llm.client.LlmModelResolver;
 import xiaozhi.modules.llm.service.LLMService;
-import xiaozhi.modules.model.entity.ModelConfigEntity;
-import xiaozhi.modules.model.service.ModelConfigService;
 
 /**
  * OpenAI风格API的LLM服务实现
@@ -29,6 +23,7 @@ import xiaozhi.modules.model.service.ModelConfigService;
  */
 @Slf4j
 @Service
+@AllArgsConstructor
 public class OpenAIStyleLLMServiceImpl implements LLMService {
 
     // 需要禁用思考模式的平台域名及其对应参数
@@ -41,10 +36,12 @@ public class OpenAIStyleLLMServiceImpl implements LLMService {
         THINKING_DISABLED_DOMAINS.put("volces.com", thinkingDisabled);
     }
 
-    @Autowired
-    private ModelConfigService modelConfigService;
+    // 总结允许较长的生成时间，标题应很快返回
+    private static final Duration SUMMARY_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration TITLE_TIMEOUT = Duration.ofSeconds(30);
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final LlmHttpClient llmHttpClient;
+    private final LlmModelResolver llmModelResolver;
 
     /**
      * 根据域名自动禁用思考模式
@@ -75,89 +72,21 @@ public class OpenAIStyleLLMServiceImpl implements LLMService {
 
     @Override
     public String generateSummary(String conversation, String promptTemplate, String modelId) {
-        if (!isAvailable()) {
-            log.warn("LLM服务不可用，无法生成总结");
-            return "LLM服务不可用，无法生成总结";
+        LlmEndpoint endpoint = llmModelResolver.resolve(modelId);
+        if (endpoint == null) {
+            log.error("未找到可用的LLM模型配置，modelId: {}", modelId);
+            return "未找到可用的LLM模型配置";
         }
 
+        // 构建提示词
+        String prompt = (promptTemplate != null ? promptTemplate : DEFAULT_SUMMARY_PROMPT).replace("{conversation}",
+                conversation);
+        double temperature = endpoint.temperature() != null ? endpoint.temperature() : 0.7;
+        int maxTokens = endpoint.maxTokens() != null ? endpoint.maxTokens() : 2000;
         try {
-            // 从智控台获取LLM模型配置
-            ModelConfigEntity llmConfig;
-            if (modelId != null && !modelId.trim().isEmpty()) {
-                // 通过具体模型ID获取配置
-                llmConfig = modelConfigService.getModelByIdFromCache(modelId);
-            } else {
-                // 保持向后兼容，使用默认配置
-                llmConfig = getDefaultLLMConfig();
-            }
-
-            if (llmConfig == null || llmConfig.getConfigJson() == null) {
-                log.error("未找到可用的LLM模型配置，modelId: {}", modelId);
-                return "未找到可用的LLM模型配置";
-            }
-
-            JSONObject configJson = llmConfig.getConfigJson();
-            String baseUrl = configJson.getStr("base_url");
-            String model = configJson.getStr("model_name");
-            String apiKey = configJson.getStr("api_key");
-            Double temperature = configJson.getDouble("temperature");
-            Integer maxTokens = configJson.getInt("max_tokens");
-
-            if (StringUtils.isBlank(baseUrl) || StringUtils.isBlank(apiKey)) {
-                log.error("LLM配置不完整，baseUrl或apiKey为空");
-                return "LLM配置不完整，无法生成总结";
-            }
-
-            // 构建提示词
-            String prompt = (promptTemplate != null ? promptTemplate : DEFAULT_SUMMARY_PROMPT).replace("{conversation}",
-                    conversation);
-
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model != null ? model : "gpt-3.5-turbo");
-
-            Map<String, Object>[] messages = new Map[1];
-            Map<String, Object> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages[0] = message;
-
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", temperature != null ? temperature : 0.7);
-            requestBody.put("max_tokens", maxTokens != null ? maxTokens : 2000);
-
-            // 禁用思考模式
-            applyThinkingDisabled(baseUrl, requestBody);
-
-            // 发送HTTP请求
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            // 构建完整的API URL
-            String apiUrl = baseUrl;
-            if (!apiUrl.endsWith("/chat/completions")) {
-                if (!apiUrl.endsWith("/")) {
-                    apiUrl += "/";
-                }
-                apiUrl += "chat/completions";
-            }
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    apiUrl, HttpMethod.POST, entity, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                JSONObject responseJson = JSONUtil.parseObj(response.getBody());
-                JSONArray choices = responseJson.getJSONArray("choices");
-                if (choices != null && choices.size() > 0) {
-                    JSONObject choice = choices.getJSONObject(0);
-                    JSONObject messageObj = choice.getJSONObject("message");
-                    return messageObj.getStr("content");
-                }
-            } else {
-                log.error("LLM API调用失败，状态码：{}，响应：{}", response.getStatusCode(), response.getBody());
+            String content = complete(endpoint, prompt, temperature, maxTokens, SUMMARY_TIMEOUT);
+            if (content != null) {
+                return content;
             }
         } catch (Exception e) {
             log.error("调用LLM服务生成总结时发生异常，modelId: {}", modelId, e);
@@ -174,86 +103,23 @@ public class OpenAIStyleLLMServiceImpl implements LLMService {
     @Override
     public String generateSummaryWithHistory(String conversation, String historyMemory, String promptTemplate,
             String modelId) {
-        if (!isAvailable()) {
-            log.warn("LLM服务不可用，无法生成总结");
-            return "LLM服务不可用，无法生成总结";
+        LlmEndpoint endpoint = llmModelResolver.resolve(modelId);
+        if (endpoint == null) {
+            log.error("未找到可用的LLM模型配置，modelId: {}", modelId);
+            return "未找到可用的LLM模型配置";
         }
 
+        // 构建提示词，包含历史记忆
+        String prompt = (promptTemplate != null ? promptTemplate : DEFAULT_SUMMARY_PROMPT)
+                .replace("{history_memory}", historyMemory != null ? historyMemory : "无历史记忆")
+                .replace("{conversation}", conversation);
         try {
-            // 从智控台获取LLM模型配置
-            ModelConfigEntity llmConfig;
-            if (modelId != null && !modelId.trim().isEmpty()) {
-                llmConfig = modelConfigService.getModelByIdFromCache(modelId);
-            } else {
-                llmConfig = getDefaultLLMConfig();
-            }
-
-            if (llmConfig == null || llmConfig.getConfigJson() == null) {
-                log.error("未找到可用的LLM模型配置，modelId: {}", modelId);
-                return "未找到可用的LLM模型配置";
-            }
-
-            JSONObject configJson = llmConfig.getConfigJson();
-            String baseUrl = configJson.getStr("base_url");
-            String model = configJson.getStr("model_name");
-            String apiKey = configJson.getStr("api_key");
-
-            if (StringUtils.isBlank(baseUrl) || StringUtils.isBlank(apiKey)) {
-                log.error("LLM配置不完整，baseUrl或apiKey为空");
-                return "LLM配置不完整，无法生成总结";
-            }
-
-            // 构建提示词，包含历史记忆
-            String prompt = (promptTemplate != null ? promptTemplate : DEFAULT_SUMMARY_PROMPT)
-                    .replace("{history_memory}", historyMemory != null ? historyMemory : "无历史记忆")
-                    .replace("{conversation}", conversation);
-
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model != null ? model : "gpt-3.5-turbo");
-
-            Map<String, Object>[] messages = new Map[1];
-            Map<String, Object> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages[0] = message;
-
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", 0.2);
-            requestBody.put("max_tokens", 2000);
-
-            // 禁用思考模式
-            applyThinkingDisabled(baseUrl, requestBody);
-
-            // 发送HTTP请求
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            // 构建完整的API URL
-            String apiUrl = baseUrl;
-            if (!apiUrl.endsWith("/chat/completions")) {
-                if (!apiUrl.endsWith("/")) {
-                    apiUrl += "/";
-                }
-                apiUrl += "chat/completions";
-            }
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    apiUrl, HttpMethod.POST, entity, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                JSONObject responseJson = JSONUtil.parseObj(response.getBody());
-                JSONArray choices = responseJson.getJSONArray("choices");
-                if (choices != null && choices.size() > 0) {
-                    JSONObject choice = choices.getJSONObject(0);
-                    JSONObject messageObj = choice.getJSONObject("message");
-                    return messageObj.getStr("content");
-                }
-            } else {
-                log.error("LLM API调用失败，状态码：{}，响应：{}", response.getStatusCode(), response.getBody());
+            // 带历史记忆的总结输出较长，使用流式响应，避免长时间无数据导致的读超时
+            ChatCompletion completion = llmHttpClient.stream(endpoint, requestBody(endpoint, prompt, 0.2, 2000),
+                    delta -> {
+                    }, SUMMARY_TIMEOUT);
+            if (StringUtils.isNotEmpty(completion.content())) {
+                return completion.content();
             }
         } catch (Exception e) {
             log.error("调用LLM服务生成总结时发生异常，modelId: {}", modelId, e);
@@ -264,157 +130,31 @@ public class OpenAIStyleLLMServiceImpl implements LLMService {
 
     @Override
     public boolean isAvailable() {
-        try {
-            ModelConfigEntity defaultLLMConfig = getDefaultLLMConfig();
-            if (defaultLLMConfig == null || defaultLLMConfig.getConfigJson() == null) {
-                return false;
-            }
-
-            JSONObject configJson = defaultLLMConfig.getConfigJson();
-            String baseUrl = configJson.getStr("base_url");
-            String apiKey = configJson.getStr("api_key");
-
-            return baseUrl != null && !baseUrl.trim().isEmpty() &&
-                    apiKey != null && !apiKey.trim().isEmpty();
-        } catch (Exception e) {
-            log.error("检查LLM服务可用性时发生异常：", e);
-            return false;
-        }
+        return llmModelResolver.resolve(null) != null;
     }
 
     @Override
     public boolean isAvailable(String modelId) {
-        try {
-            if (modelId == null || modelId.trim().isEmpty()) {
-                return isAvailable();
-            }
-
-            // 通过具体模型ID获取配置
-            ModelConfigEntity modelConfig = modelConfigService.getModelByIdFromCache(modelId);
-            if (modelConfig == null || modelConfig.getConfigJson() == null) {
-                log.warn("未找到指定的LLM模型配置，modelId: {}", modelId);
-                return false;
-            }
-
-            JSONObject configJson = modelConfig.getConfigJson();
-            String baseUrl = configJson.getStr("base_url");
-            String apiKey = configJson.getStr("api_key");
-
-            return baseUrl != null && !baseUrl.trim().isEmpty() &&
-                    apiKey != null && !apiKey.trim().isEmpty();
-        } catch (Exception e) {
-            log.error("检查LLM服务可用性时发生异常，modelId: {}", modelId, e);
-            return false;
-        }
-    }
-
-    /**
-     * 从智控台获取默认的LLM模型配置
-     */
-    private ModelConfigEntity getDefaultLLMConfig() {
-        try {
-            // 获取所有启用的LLM模型配置
-            List<ModelConfigEntity> llmConfigs = modelConfigService.getEnabledModelsByType("LLM");
-            if (llmConfigs == null || llmConfigs.isEmpty()) {
-                return null;
-            }
-
-            // 优先返回默认配置，如果没有默认配置则返回第一个启用的配置
-            for (ModelConfigEntity config : llmConfigs) {
-                if (config.getIsDefault() != null && config.getIsDefault() == 1) {
-                    return config;
-                }
-            }
-
-            return llmConfigs.get(0);
-        } catch (Exception e) {
-            log.error("获取LLM模型配置时发生异常：", e);
-            return null;
-        }
+        return llmModelResolver.resolve(modelId) != null;
     }
 
     @Override
     public String generateTitle(String conversation, String modelId) {
-        if (!isAvailable()) {
-            log.warn("LLM服务不可用，无法生成标题");
+        LlmEndpoint endpoint = llmModelResolver.resolve(modelId);
+        if (endpoint == null) {
+            log.warn("LLM服务不可用，无法生成标题，modelId: {}", modelId);
             return null;
         }
 
+        String prompt = DEFAULT_TITLE_PROMPT.replace("{conversation}", conversation);
         try {
-            ModelConfigEntity llmConfig;
-            if (modelId != null && !modelId.trim().isEmpty()) {
-                llmConfig = modelConfigService.getModelByIdFromCache(modelId);
-            } else {
-                llmConfig = getDefaultLLMConfig();
-            }
-
-            if (llmConfig == null || llmConfig.getConfigJson() == null) {
-                log.error("未找到可用的LLM模型配置，modelId: {}", modelId);
-                return null;
-            }
-
-            JSONObject configJson = llmConfig.getConfigJson();
-            String baseUrl = configJson.getStr("base_url");
-            String model = configJson.getStr("model_name");
-            String apiKey = configJson.getStr("api_key");
-
-            if (StringUtils.isBlank(baseUrl) || StringUtils.isBlank(apiKey)) {
-                log.error("LLM配置不完整，baseUrl或apiKey为空");
-                return null;
-            }
-
-            String prompt = DEFAULT_TITLE_PROMPT.replace("{conversation}", conversation);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model != null ? model : "gpt-3.5-turbo");
-
-            Map<String, Object>[] messages = new Map[1];
-            Map<String, Object> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages[0] = message;
-
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", 0.3);
-            requestBody.put("max_tokens", 50);
-
-            // 禁用思考模式
-            applyThinkingDisabled(baseUrl, requestBody);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            String apiUrl = baseUrl;
-            if (!apiUrl.endsWith("/chat/completions")) {
-                if (!apiUrl.endsWith("/")) {
-                    apiUrl += "/";
-                }
-                apiUrl += "chat/completions";
-            }
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    apiUrl, HttpMethod.POST, entity, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                JSONObject responseJson = JSONUtil.parseObj(response.getBody());
-                JSONArray choices = responseJson.getJSONArray("choices");
-                if (choices != null && choices.size() > 0) {
-                    JSONObject choice = choices.getJSONObject(0);
-                    JSONObject messageObj = choice.getJSONObject("message");
-                    String title = messageObj.getStr("content");
-                    if (StringUtils.isNotBlank(title)) {
-                        title = title.trim().replaceAll("[，。！？、：；''\"\"【】（）]", "");
-                        if (title.length() > 15) {
-                            title = title.substring(0, 15);
-                        }
-                        return title;
-                    }
+            String title = complete(endpoint, prompt, 0.3, 50, TITLE_TIMEOUT);
+            if (StringUtils.isNotBlank(title)) {
+                title = title.trim().replaceAll("[，。！？、：；''\"\"【】（）]", "");
+                if (title.length() > 15) {
+                    title = title.substring(0, 15);
                 }
-            } else {
-                log.error("LLM API调用失败，状态码：{}，响应：{}", response.getStatusCode(), response.getBody());
+                return title;
             }
         } catch (Exception e) {
             log.error("调用LLM服务生成标题时发生异常，modelId: {}", modelId, e);
@@ -422,4 +162,23 @@ public class OpenAIStyleLLMServiceImpl implements LLMService {
 
         return null;
     }
-}
\ No newline at end of file
+
+    private String complete(LlmEndpoint endpoint, String prompt, double temperature, int maxTokens,
+            Duration timeout) {
+        return llmHttpClient.complete(endpoint, requestBody(endpoint, prompt, temperature, maxTokens), timeout)
+                .content();
+    }
+
+    /**
+     * 构建单轮对话的请求体，模型名由客户端填充
+     */
+    private Map<String, Object> requestBody(LlmEndpoint endpoint, String prompt, double temperature, int maxTokens) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("messages", List.of(Map.of("role", "user", "content", prompt)));
+        requestBody.put("temperature", temperature);
+        requestBody.put("max_tokens", maxTokens);
+        // 禁用思考模式
+        applyThinkingDisabled(endpoint.baseUrl(), requestBody);
+        return requestBody;
+    }
+}
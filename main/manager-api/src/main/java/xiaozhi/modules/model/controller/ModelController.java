@@ -1,6 +1,7 @@
 package xiaozhi.modules.model.controller;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -21,6 +22,8 @@ import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.Result;
 import xiaozhi.modules.agent.service.AgentTemplateService;
 import xiaozhi.modules.config.service.ConfigService;
+import xiaozhi.modules.llm.client.LlmHttpClient;
+import xiaozhi.modules.llm.client.LlmUsage;
 import xiaozhi.modules.model.dto.LlmModelBasicInfoDTO;
 import xiaozhi.modules.model.dto.ModelBasicInfoDTO;
 import xiaozhi.modules.model.dto.ModelConfigBodyDTO;
@@ -43,6 +46,7 @@ public class ModelController {
     private final ModelConfigService modelConfigService;
     private final ConfigService configService;
     private final AgentTemplateService agentTemplateService;
+    private final LlmHttpClient llmHttpClient;
 
     @GetMapping("/names")
     @Operation(summary = "Get all model names")
@@ -61,6 +65,13 @@ public class ModelController {
         return new Result<List<LlmModelBasicInfoDTO>>().ok(llmModelCodeList);
     }
 
+    @GetMapping("/llm/usage")
+    @Operation(summary = "Get LLM request and token usage per model since startup")
+    @RequiresPermissions("sys:role:superAdmin")
+    public Result<Map<String, LlmUsage>> getLlmUsage() {
+        return new Result<Map<String, LlmUsage>>().ok(llmHttpClient.getUsage());
+    }
+
     @GetMapping("/{modelType}/provideTypes")
     @Operation(summary = "Get model provider list")
     @RequiresPermissions("sys:role:superAdmin")
@@ -0,0 +1,11 @@
+package xiaozhi.modules.model.event;
+
+/**
+ * Published after a model configuration is added, edited, deleted, enabled/disabled or
+ * made default, so local caches of resolved models can be dropped.
+ *
+ * @param modelType model type, e.g. LLM; null when unknown
+ * @param modelId   model ID; null when every model of the type may have changed
+ */
+public record ModelConfigChangedEvent(String modelType, String modelId) {
+}
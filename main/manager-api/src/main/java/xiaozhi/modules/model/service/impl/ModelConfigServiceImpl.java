@@ -6,7 +6,9 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
@@ -32,6 +34,7 @@ import xiaozhi.modules.model.dto.ModelConfigBodyDTO;
 import xiaozhi.modules.model.dto.ModelConfigDTO;
 import xiaozhi.modules.model.dto.ModelProviderDTO;
 import xiaozhi.modules.model.entity.ModelConfigEntity;
+import xiaozhi.modules.model.event.ModelConfigChangedEvent;
 import xiaozhi.modules.model.service.ModelConfigService;
 import xiaozhi.modules.model.service.ModelProviderService;
 import lombok.extern.slf4j.Slf4j;
@@ -47,6 +50,7 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
     private final ModelProviderService modelProviderService;
     private final RedisUtils redisUtils;
     private final AgentDao agentDao;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<ModelBasicInfoDTO> getModelCodeList(String modelType, String modelName) {
@@ -139,6 +143,7 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
 
         // 7. Clear cache entries.
         clearModelCache(id);
+        eventPublisher.publishEvent(new ModelConfigChangedEvent(modelType, id));
 
         // 8. Return the masked response DTO.
         return buildResponseDTO(modelConfigEntity);
@@ -153,6 +158,7 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
         ModelConfigEntity modelConfigEntity = prepareAddEntity(modelConfigBodyDTO, modelType);
 
         modelConfigDao.insert(modelConfigEntity);
+        eventPublisher.publishEvent(new ModelConfigChangedEvent(modelType, modelConfigEntity.getId()));
 
         return buildResponseDTO(modelConfigEntity);
     }
@@ -174,6 +180,8 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
         modelConfigDao.deleteById(id);
 
         clearModelCache(id);
+        eventPublisher.publishEvent(new ModelConfigChangedEvent(
+                modelConfig == null ? null : modelConfig.getModelType(), id));
     }
 
     @Override
@@ -292,6 +300,19 @@ public class ModelConfigServiceImpl extends BaseServiceImpl<ModelConfigDao, Mode
 
         // Clear related caches.
         clearModelCacheByType(modelType);
+        eventPublisher.publishEvent(new ModelConfigChangedEvent(modelType, null));
+    }
+
+    /**
+     * Update a model config, clearing its caches (used for enable/disable and default switches).
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean updateById(ModelConfigEntity entity) {
+        boolean updated = super.updateById(entity);
+        clearModelCache(entity.getId());
+        eventPublisher.publishEvent(new ModelConfigChangedEvent(entity.getModelType(), entity.getId()));
+        return updated;
     }
 
     /**
@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +25,7 @@ import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
 import xiaozhi.common.page.TokenDTO;
 import xiaozhi.common.user.UserDetail;
+import xiaozhi.common.utils.HttpContextUtils;
 import xiaozhi.common.utils.JsonUtils;
 import xiaozhi.common.utils.Result;
 import xiaozhi.common.utils.Sm2DecryptUtil;
@@ -31,6 +33,8 @@ import xiaozhi.common.validator.AssertUtils;
 import xiaozhi.common.validator.ValidatorUtils;
 import xiaozhi.modules.security.dto.LoginDTO;
 import xiaozhi.modules.security.dto.SmsVerificationDTO;
+import xiaozhi.modules.security.guard.CryptoExecutor;
+import xiaozhi.modules.security.guard.LoginRateLimiter;
 import xiaozhi.modules.security.password.PasswordUtils;
 import xiaozhi.modules.security.service.CaptchaService;
 import xiaozhi.modules.security.service.SysUserTokenService;
@@ -57,6 +61,8 @@ public class LoginController {
     private final CaptchaService captchaService;
     private final SysParamsService sysParamsService;
     private final SysDictDataService sysDictDataService;
+    private final CryptoExecutor cryptoExecutor;
+    private final LoginRateLimiter loginRateLimiter;
 
     @GetMapping("/captcha")
     @Operation(summary = "Captcha")
@@ -89,11 +95,12 @@ public class LoginController {
     @PostMapping("/login")
     @Operation(summary = "Login")
     public Result<TokenDTO> login(@RequestBody LoginDTO login) {
+        loginRateLimiter.acquire(clientIp(), login.getUsername());
         String password = login.getPassword();
 
         // Decrypt the password and validate the captcha.
         String actualPassword = Sm2DecryptUtil.decryptAndValidateCaptcha(
-                password, login.getCaptchaId(), captchaService, sysParamsService);
+                password, login.getCaptchaId(), captchaService, sysParamsService, cryptoExecutor);
 
         login.setPassword(actualPassword);
 
@@ -101,10 +108,13 @@ public class LoginController {
         SysUserDTO userDTO = sysUserService.getByUsername(login.getUsername());
         // Ensure the user exists.
         if (userDTO == null) {
+            loginRateLimiter.recordFailure(login.getUsername());
             throw new RenException(ErrorCode.ACCOUNT_PASSWORD_ERROR);
         }
-        // Ensure the password matches.
-        if (!PasswordUtils.matches(login.getPassword(), userDTO.getPassword())) {
+        // Ensure the password matches; BCrypt runs on the bounded crypto pool.
+        String passwordHash = userDTO.getPassword();
+        if (!cryptoExecutor.call(() -> PasswordUtils.matches(actualPassword, passwordHash))) {
+            loginRateLimiter.recordFailure(login.getUsername());
             throw new RenException(ErrorCode.ACCOUNT_PASSWORD_ERROR);
         }
         return sysUserTokenService.createToken(userDTO.getId());
@@ -116,12 +126,13 @@ public class LoginController {
         if (!sysUserService.getAllowUserRegister()) {
             throw new RenException(ErrorCode.USER_REGISTER_DISABLED);
         }
+        loginRateLimiter.acquire(clientIp(), login.getUsername());
 
         String password = login.getPassword();
 
         // Decrypt the password and validate the captcha.
         String actualPassword = Sm2DecryptUtil.decryptAndValidateCaptcha(
-                password, login.getCaptchaId(), captchaService, sysParamsService);
+                password, login.getCaptchaId(), captchaService, sysParamsService, cryptoExecutor);
 
         login.setPassword(actualPassword);
 
@@ -138,6 +149,7 @@ public class LoginController {
             // Validate the SMS verification code.
             validate = captchaService.validateSMSValidateCode(login.getUsername(), login.getMobileCaptcha(), false);
             if (!validate) {
+                loginRateLimiter.recordFailure(login.getUsername());
                 throw new RenException(ErrorCode.SMS_CODE_ERROR);
             }
         }
@@ -182,6 +194,7 @@ public class LoginController {
         if (!isMobileRegister) {
             throw new RenException(ErrorCode.RETRIEVE_PASSWORD_DISABLED);
         }
+        loginRateLimiter.acquire(clientIp(), dto.getPhone());
         // Validate required fields.
         ValidatorUtils.validateEntity(dto);
         // Validate that the phone number format is supported.
@@ -199,6 +212,7 @@ public class LoginController {
         boolean validate = captchaService.validateSMSValidateCode(dto.getPhone(), dto.getCode(), false);
         // Stop if validation fails.
         if (!validate) {
+            loginRateLimiter.recordFailure(dto.getPhone());
             throw new RenException(ErrorCode.SMS_CODE_ERROR);
         }
 
@@ -206,7 +220,7 @@ public class LoginController {
 
         // Decrypt the password and validate the captcha.
         String actualPassword = Sm2DecryptUtil.decryptAndValidateCaptcha(
-                password, dto.getCaptchaId(), captchaService, sysParamsService);
+                password, dto.getCaptchaId(), captchaService, sysParamsService, cryptoExecutor);
 
         dto.setPassword(actualPassword);
 
@@ -244,4 +258,9 @@ public class LoginController {
 
         return new Result<Map<String, Object>>().ok(config);
     }
+
+    private String clientIp() {
+        HttpServletRequest request = HttpContextUtils.getHttpServletRequest();
+        return request == null ? null : loginRateLimiter.clientIp(request);
+    }
 }
@@ -0,0 +1,102 @@
+package xiaozhi.modules.security.guard;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+
+/**
+ * Bounded pool for the CPU-heavy steps of login, registration and password reset
+ * (SM2 decryption and BCrypt).
+ * <p>
+ * At most one task per core runs at a time and only a short queue may wait behind them.
+ * Anything beyond that is rejected immediately with {@link ErrorCode#CRYPTO_BUSY}, so a
+ * credential-stuffing burst costs a bounded amount of CPU and cannot tie up the request
+ * threads that serve everything else.
+ */
+@Slf4j
+@Component
+public class CryptoExecutor {
+
+    /**
+     * Queued tasks allowed per worker thread.
+     */
+    private static final int QUEUE_PER_THREAD = 16;
+    /**
+     * How long a caller waits for its task, queueing included.
+     */
+    private static final long WAIT_MILLIS = 10_000;
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    public CryptoExecutor() {
+        this(Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * QUEUE_PER_THREAD);
+    }
+
+    public CryptoExecutor(int threads, int queueCapacity) {
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "crypto-" + sequence.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Run a task on the pool and wait for its result. Exceptions thrown by the task are
+     * rethrown as they are; a full pool or a task that does not finish in time yields
+     * {@link ErrorCode#CRYPTO_BUSY}.
+     */
+    public <T> T call(Supplier<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task::get);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RenException(ErrorCode.CRYPTO_BUSY);
+        }
+        try {
+            return future.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RenException(ErrorCode.CRYPTO_BUSY);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RenException(ErrorCode.CRYPTO_BUSY);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Tasks turned away because the pool was full, since startup.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
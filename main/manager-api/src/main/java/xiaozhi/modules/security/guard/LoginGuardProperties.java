@@ -0,0 +1,22 @@
+package xiaozhi.modules.security.guard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Login guard settings
+ */
+@Data
+@ConfigurationProperties(prefix = "login")
+public class LoginGuardProperties {
+    /**
+     * Addresses of reverse proxies in front of this service. X-Forwarded-For is only
+     * read on requests that come from one of them; otherwise the peer address is the
+     * client address.
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+}
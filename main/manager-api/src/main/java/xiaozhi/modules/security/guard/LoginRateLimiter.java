@@ -0,0 +1,140 @@
+package xiaozhi.modules.security.guard;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+
+/**
+ * Per-IP and per-username attempt accounting for the login endpoints.
+ * <p>
+ * Attempts are counted in fixed one-minute windows held in memory, so an over-limit
+ * request is turned away before any captcha lookup, decryption or password hashing.
+ * Every attempt counts against its IP, but only failed ones count against the
+ * username, so nobody can lock an account out by sending requests in its name.
+ * Counters are per instance; behind a load balancer each instance enforces the limits
+ * on its own share of the traffic.
+ * <p>
+ * The client IP is the peer address unless the peer is a configured trusted proxy, so a
+ * client cannot pick its own bucket through a forwarding header.
+ */
+@Component
+@EnableConfigurationProperties(LoginGuardProperties.class)
+public class LoginRateLimiter {
+
+    private static final long WINDOW_MILLIS = 60_000;
+    /**
+     * Attempts per IP per window; generous enough for users sharing a NAT.
+     */
+    private static final int DEFAULT_IP_LIMIT = 60;
+    /**
+     * Failed attempts per username per window.
+     */
+    private static final int DEFAULT_USERNAME_LIMIT = 10;
+
+    private final int ipLimit;
+    private final int usernameLimit;
+    private final LongSupplier clock;
+    private final Set<String> trustedProxies;
+    private final Cache<String, AtomicInteger> counters = CacheBuilder.newBuilder()
+            .maximumSize(200_000)
+            .expireAfterWrite(Duration.ofMillis(WINDOW_MILLIS * 2))
+            .build();
+
+    @Autowired
+    public LoginRateLimiter(LoginGuardProperties properties) {
+        this(DEFAULT_IP_LIMIT, DEFAULT_USERNAME_LIMIT, System::currentTimeMillis, properties.getTrustedProxies());
+    }
+
+    public LoginRateLimiter(int ipLimit, int usernameLimit, LongSupplier clock) {
+        this(ipLimit, usernameLimit, clock, List.of());
+    }
+
+    public LoginRateLimiter(int ipLimit, int usernameLimit, LongSupplier clock, Collection<String> trustedProxies) {
+        this.ipLimit = ipLimit;
+        this.usernameLimit = usernameLimit;
+        this.clock = clock;
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    /**
+     * Count one attempt against the IP, and reject it when the IP is over its limit or
+     * the username has used up its failed attempts for this window.
+     *
+     * @param ip       client IP, skipped when blank
+     * @param username account name, skipped when blank
+     */
+    public void acquire(String ip, String username) {
+        long window = clock.getAsLong() / WINDOW_MILLIS;
+        boolean ipOver = StringUtils.isNotBlank(ip) && count("ip:" + ip + ":" + window) > ipLimit;
+        boolean usernameOver = StringUtils.isNotBlank(username)
+                && current(usernameKey(username, window)) >= usernameLimit;
+        if (ipOver || usernameOver) {
+            throw new RenException(ErrorCode.LOGIN_TOO_FREQUENT);
+        }
+    }
+
+    /**
+     * Count a failed attempt, such as a wrong password or SMS code, against the username.
+     *
+     * @param username account name, skipped when blank
+     */
+    public void recordFailure(String username) {
+        if (StringUtils.isNotBlank(username)) {
+            count(usernameKey(username, clock.getAsLong() / WINDOW_MILLIS));
+        }
+    }
+
+    /**
+     * Client address of a request: the peer address, or when the peer is a trusted proxy,
+     * the nearest X-Forwarded-For entry that is not itself a trusted proxy.
+     */
+    public String clientIp(HttpServletRequest request) {
+        String ip = request.getRemoteAddr();
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (!trustedProxies.contains(ip) || StringUtils.isBlank(forwarded)) {
+            return ip;
+        }
+        // Entries are appended by each hop, so the rightmost ones were added by our proxies
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return ip;
+    }
+
+    private static String usernameKey(String username, long window) {
+        return "user:" + username.toLowerCase() + ":" + window;
+    }
+
+    private int current(String key) {
+        AtomicInteger counter = counters.getIfPresent(key);
+        return counter == null ? 0 : counter.get();
+    }
+
+    private int count(String key) {
+        try {
+            return counters.get(key, AtomicInteger::new).incrementAndGet();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package xiaozhi.modules.sys.controller;
 
-import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
@@ -10,29 +11,20 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.socket.WebSocketHttpHeaders;
-
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import xiaozhi.common.annotation.LogOperation;
-import xiaozhi.common.constant.Constant;
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
 import xiaozhi.common.utils.Result;
+import xiaozhi.modules.sys.dto.BroadcastServerActionDTO;
 import xiaozhi.modules.sys.dto.EmitSeverActionDTO;
-import xiaozhi.modules.sys.dto.ServerActionPayloadDTO;
-import xiaozhi.modules.sys.dto.ServerActionResponseDTO;
-import xiaozhi.modules.sys.enums.ServerActionEnum;
-import xiaozhi.modules.sys.service.SysParamsService;
-import xiaozhi.modules.sys.utils.WebSocketClientManager;
-import xiaozhi.modules.device.service.DeviceService;
-import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.sys.service.ServerActionService;
+import xiaozhi.modules.sys.vo.ServerActionResultVO;
 
 /**
  * Server side management controller
@@ -42,98 +34,59 @@ import xiaozhi.common.redis.RedisUtils;
 @Tag(name = "Server Management")
 @AllArgsConstructor
 public class ServerSideManageController {
-    private final SysParamsService sysParamsService;
-    private final DeviceService deviceService;
-    private final RedisUtils redisUtils;
-    private static final ObjectMapper objectMapper;
-    static {
-        objectMapper = new ObjectMapper();
-        // Ignore cases where fields exist in JSON string but not in POJO
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    }
+    private final ServerActionService serverActionService;
 
     @Operation(summary = "Get WS server list")
     @GetMapping("/server-list")
     @RequiresPermissions("sys:role:superAdmin")
     public Result<List<String>> getWsServerList() {
-        String wsText = sysParamsService.getValue(Constant.SERVER_WEBSOCKET, true);
-        if (StringUtils.isBlank(wsText)) {
-            return new Result<List<String>>().ok(Collections.emptyList());
-        }
-        return new Result<List<String>>().ok(Arrays.asList(wsText.split(";")));
+        return new Result<List<String>>().ok(serverActionService.getServerList());
     }
 
     @Operation(summary = "Notify Python server to update configuration")
     @PostMapping("/emit-action")
     @LogOperation("Notify Python server to update configuration")
     @RequiresPermissions("sys:role:superAdmin")
-    public Result<Boolean> emitServerAction(@RequestBody @Valid EmitSeverActionDTO emitSeverActionDTO) {
+    public CompletableFuture<Result<Boolean>> emitServerAction(
+            @RequestBody @Valid EmitSeverActionDTO emitSeverActionDTO) {
         if (emitSeverActionDTO.getAction() == null) {
             throw new RenException(ErrorCode.INVALID_SERVER_ACTION);
         }
-        String wsText = sysParamsService.getValue(Constant.SERVER_WEBSOCKET, true);
-        if (StringUtils.isBlank(wsText)) {
+        List<String> wsList = serverActionService.getServerList();
+        if (wsList.isEmpty()) {
             throw new RenException(ErrorCode.SERVER_WEBSOCKET_NOT_CONFIGURED);
         }
         String targetWs = emitSeverActionDTO.getTargetWs();
-        String[] wsList = wsText.split(";");
         // Find what needs to be initiated
-        if (StringUtils.isBlank(targetWs) || !Arrays.asList(wsList).contains(targetWs)) {
+        if (StringUtils.isBlank(targetWs) || !wsList.contains(targetWs)) {
             throw new RenException(ErrorCode.TARGET_WEBSOCKET_NOT_EXIST);
         }
-        return new Result<Boolean>().ok(emitServerActionByWs(targetWs, emitSeverActionDTO.getAction()));
+        // The request thread is released while waiting for the server confirmation
+        return serverActionService.emitAsync(targetWs, emitSeverActionDTO.getAction())
+                .thenApply(success -> new Result<Boolean>().ok(success));
     }
 
-    private Boolean emitServerActionByWs(String targetWsUri, ServerActionEnum actionEnum) {
-        if (StringUtils.isBlank(targetWsUri) || actionEnum == null) {
-            return false;
-        }
-        String serverSK = sysParamsService.getValue(Constant.SERVER_SECRET, true);
-
-        String deviceId = UUID.randomUUID().toString();
-        String clientId = UUID.randomUUID().toString();
-
-        String redisKey = xiaozhi.common.redis.RedisKeys.getTmpRegisterMacKey(deviceId);
-        redisUtils.set(redisKey, "true", 300); // Valid for 5 minutes.
-
-        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
-        headers.add("device-id", deviceId);
-        headers.add("client-id", clientId);
-        try {
-            String token = deviceService.generateWebSocketToken(clientId, deviceId);
-            headers.add("authorization", "Bearer " + token);
-        } catch (Exception e) {
-            throw new RenException(ErrorCode.WEB_SOCKET_CONNECT_FAILED);
-        }
-
-        try (WebSocketClientManager client = new WebSocketClientManager.Builder()
-                .connectTimeout(3, TimeUnit.SECONDS)
-                .maxSessionDuration(120, TimeUnit.SECONDS)
-                .uri(targetWsUri)
-                .headers(headers)
-                .build()) {
-            // If connection successful, send a JSON data packet and wait for server response
-            client.sendJson(
-                    ServerActionPayloadDTO.build(
-                            actionEnum,
-                            Map.of("secret", serverSK)));
-            // Wait for server response and continue listening for messages
-            client.listener((jsonText) -> {
-                if (StringUtils.isBlank(jsonText)) {
-                    return false;
-                }
-                try {
-                    ServerActionResponseDTO response = objectMapper.readValue(jsonText, ServerActionResponseDTO.class);
-                    Boolean isSuccess = ServerActionResponseDTO.isSuccess(response);
-                    return isSuccess;
-                } catch (JsonProcessingException e) {
-                    return false;
-                }
-            });
-        } catch (Exception e) {
-            // Catch all errors, return by global exception handler
-            throw new RenException(ErrorCode.WEB_SOCKET_CONNECT_FAILED);
+    @Operation(summary = "Notify all Python servers (parallel, batched rollout with retries)")
+    @PostMapping("/emit-action/all")
+    @LogOperation("Notify all Python servers")
+    @RequiresPermissions("sys:role:superAdmin")
+    public DeferredResult<Result<List<ServerActionResultVO>>> emitServerActionToAll(
+            @RequestBody @Valid BroadcastServerActionDTO dto) {
+        if (dto.getAction() == null) {
+            throw new RenException(ErrorCode.INVALID_SERVER_ACTION);
         }
-        return true;
+        // A staged rollout can outlast the default async timeout, so size it from the options
+        DeferredResult<Result<List<ServerActionResultVO>>> response = new DeferredResult<>(
+                serverActionService.getBroadcastTimeoutMillis(dto));
+        serverActionService.broadcast(dto).whenComplete((results, error) -> {
+            if (error != null) {
+                response.setErrorResult(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+            } else {
+                response.setResult(new Result<List<ServerActionResultVO>>().ok(results));
+            }
+        });
+        return response;
     }
 }
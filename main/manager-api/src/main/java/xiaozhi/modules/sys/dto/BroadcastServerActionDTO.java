@@ -0,0 +1,37 @@
+package xiaozhi.modules.sys.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import xiaozhi.modules.sys.enums.ServerActionEnum;
+
+/**
+ * Send action to all Python servers DTO
+ */
+@Data
+public class BroadcastServerActionDTO {
+    @Schema(description = "Specify operation")
+    @NotNull(message = "Operation cannot be empty")
+    private ServerActionEnum action;
+
+    @Schema(description = "Per-node timeout waiting for confirmation (seconds)", example = "30")
+    @Min(value = 1, message = "Timeout must be at least 1 second")
+    @Max(value = 120, message = "Timeout cannot exceed 120 seconds")
+    private int timeoutSeconds = 30;
+
+    @Schema(description = "Retries per node after a failed attempt", example = "1")
+    @Min(value = 0, message = "Retries cannot be negative")
+    @Max(value = 5, message = "Retries cannot exceed 5")
+    private int retries = 1;
+
+    @Schema(description = "Nodes per rollout batch, 0 means all nodes at once", example = "0")
+    @Min(value = 0, message = "Batch size cannot be negative")
+    private int batchSize = 0;
+
+    @Schema(description = "Delay between rollout batches (seconds)", example = "0")
+    @Min(value = 0, message = "Batch delay cannot be negative")
+    @Max(value = 600, message = "Batch delay cannot exceed 600 seconds")
+    private int batchDelaySeconds = 0;
+}
@@ -0,0 +1,46 @@
+package xiaozhi.modules.sys.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import xiaozhi.modules.sys.dto.BroadcastServerActionDTO;
+import xiaozhi.modules.sys.enums.ServerActionEnum;
+import xiaozhi.modules.sys.vo.ServerActionResultVO;
+
+/**
+ * Send actions to Python (WS) servers
+ */
+public interface ServerActionService {
+    /**
+     * Configured WS server list (server.websocket, separated by ;)
+     */
+    List<String> getServerList();
+
+    /**
+     * Send action to one WS server without blocking the caller
+     *
+     * @param targetWs WS server address
+     * @param action   action
+     * @return true once the server confirms the action
+     */
+    CompletableFuture<Boolean> emitAsync(String targetWs, ServerActionEnum action);
+
+    /**
+     * Send action to one WS server, waiting at most timeoutSeconds for the confirmation
+     */
+    CompletableFuture<Boolean> emitAsync(String targetWs, ServerActionEnum action, long timeoutSeconds);
+
+    /**
+     * Send action to all configured WS servers: nodes of a batch in parallel, batches one
+     * after another with the configured delay, each node retried on failure
+     *
+     * @param dto action and rollout options
+     * @return result per WS server, in configuration order
+     */
+    CompletableFuture<List<ServerActionResultVO>> broadcast(BroadcastServerActionDTO dto);
+
+    /**
+     * Upper bound of a broadcast's duration with the given options, for request timeouts
+     */
+    long getBroadcastTimeoutMillis(BroadcastServerActionDTO dto);
+}
@@ -1,6 +1,8 @@
 package xiaozhi.modules.sys.service;
 
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -16,4 +18,11 @@ public interface SysUserUtilService {
      * @param setter Setter method
      */
     void assignUsername( Long userId, Consumer<String> setter);
+
+    /**
+     * Usernames for a page of user ids, loaded with one query
+     * @param userIds User ids
+     * @return username by user id; unknown ids are absent
+     */
+    Map<Long, String> getUsernames(Collection<Long> userIds);
 }
@@ -0,0 +1,263 @@
+package xiaozhi.modules.sys.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.sys.dto.BroadcastServerActionDTO;
+import xiaozhi.modules.sys.dto.ServerActionPayloadDTO;
+import xiaozhi.modules.sys.dto.ServerActionResponseDTO;
+import xiaozhi.modules.sys.enums.ServerActionEnum;
+import xiaozhi.modules.sys.service.ServerActionService;
+import xiaozhi.modules.sys.service.SysParamsService;
+import xiaozhi.modules.sys.utils.WebSocketClientManager;
+import xiaozhi.modules.sys.vo.ServerActionResultVO;
+
+/**
+ * Sends server actions over WebSocket without holding request threads: the connect,
+ * send and wait for the confirmation are chained on the shared WebSocket client. A
+ * broadcast contacts every node of a rollout batch at once and retries failed nodes.
+ */
+@Slf4j
+@Service
+public class ServerActionServiceImpl implements ServerActionService {
+    private static final long CONNECT_TIMEOUT_SECONDS = 3;
+    private static final long RESPONSE_TIMEOUT_SECONDS = 120;
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+    private static final ObjectMapper objectMapper;
+    static {
+        objectMapper = new ObjectMapper();
+        // Ignore cases where fields exist in JSON string but not in POJO
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    private final SysParamsService sysParamsService;
+    private final DeviceService deviceService;
+    private final RedisUtils redisUtils;
+    /** Source of the batch and retry delays. */
+    private final BiFunction<Long, TimeUnit, Executor> delayedExecutor;
+
+    @Autowired
+    public ServerActionServiceImpl(SysParamsService sysParamsService, DeviceService deviceService,
+            RedisUtils redisUtils) {
+        this(sysParamsService, deviceService, redisUtils, CompletableFuture::delayedExecutor);
+    }
+
+    /**
+     * With a custom delay source, e.g. one that records the delays and runs straight away.
+     */
+    ServerActionServiceImpl(SysParamsService sysParamsService, DeviceService deviceService, RedisUtils redisUtils,
+            BiFunction<Long, TimeUnit, Executor> delayedExecutor) {
+        this.sysParamsService = sysParamsService;
+        this.deviceService = deviceService;
+        this.redisUtils = redisUtils;
+        this.delayedExecutor = delayedExecutor;
+    }
+
+    @Override
+    public List<String> getServerList() {
+        String wsText = sysParamsService.getValue(Constant.SERVER_WEBSOCKET, true);
+        if (StringUtils.isBlank(wsText)) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(wsText.split(";"));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> emitAsync(String targetWsUri, ServerActionEnum actionEnum) {
+        return emitAsync(targetWsUri, actionEnum, RESPONSE_TIMEOUT_SECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> emitAsync(String targetWsUri, ServerActionEnum actionEnum,
+            long timeoutSeconds) {
+        if (StringUtils.isBlank(targetWsUri) || actionEnum == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        String serverSK = sysParamsService.getValue(Constant.SERVER_SECRET, true);
+
+        String deviceId = UUID.randomUUID().toString();
+        String clientId = UUID.randomUUID().toString();
+
+        String redisKey = RedisKeys.getTmpRegisterMacKey(deviceId);
+        redisUtils.set(redisKey, "true", 300); // Valid for 5 minutes.
+
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("device-id", deviceId);
+        headers.add("client-id", clientId);
+        try {
+            String token = deviceService.generateWebSocketToken(clientId, deviceId);
+            headers.add("authorization", "Bearer " + token);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new RenException(ErrorCode.WEB_SOCKET_CONNECT_FAILED));
+        }
+
+        // Resolved here so the message uses the request locale, not the I/O thread's
+        RenException connectFailed = new RenException(ErrorCode.WEB_SOCKET_CONNECT_FAILED);
+        WebSocketClientManager.Builder builder = new WebSocketClientManager.Builder()
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .maxSessionDuration(timeoutSeconds, TimeUnit.SECONDS)
+                .uri(targetWsUri)
+                .headers(headers);
+        return WebSocketClientManager.buildAsync(builder)
+                .thenCompose(client -> {
+                    // Listen before sending so a fast reply cannot be missed
+                    CompletableFuture<List<String>> reply = client.listenerAsync(ServerActionServiceImpl::isSuccess);
+                    try {
+                        client.sendJson(ServerActionPayloadDTO.build(actionEnum, Map.of("secret", serverSK)));
+                    } catch (Exception e) {
+                        client.close();
+                        throw new CompletionException(e);
+                    }
+                    return reply;
+                })
+                .handle((messages, error) -> {
+                    if (error != null) {
+                        log.warn("Failed to emit {} to {}: {}", actionEnum, targetWsUri, error.toString());
+                        // Catch all errors, return by global exception handler
+                        connectFailed.initCause(unwrap(error));
+                        throw new CompletionException(connectFailed);
+                    }
+                    return true;
+                });
+    }
+
+    @Override
+    public CompletableFuture<List<ServerActionResultVO>> broadcast(BroadcastServerActionDTO dto) {
+        List<String> servers = getServerList();
+        if (servers.isEmpty()) {
+            return CompletableFuture.failedFuture(new RenException(ErrorCode.SERVER_WEBSOCKET_NOT_CONFIGURED));
+        }
+        List<List<String>> batches = Lists.partition(servers, batchSize(dto, servers.size()));
+        CompletableFuture<List<ServerActionResultVO>> rollout = CompletableFuture.completedFuture(new ArrayList<>());
+        for (int i = 0; i < batches.size(); i++) {
+            int batchIndex = i;
+            List<String> batch = batches.get(i);
+            rollout = rollout.thenCompose(results -> {
+                // Later batches wait so a bad config does not reach the whole fleet at once
+                Executor gate = batchIndex == 0 ? Runnable::run
+                        : delayedExecutor.apply((long) dto.getBatchDelaySeconds(), TimeUnit.SECONDS);
+                return CompletableFuture.supplyAsync(() -> batch.stream()
+                        .map(server -> emitWithRetry(server, dto, batchIndex))
+                        .toList(), gate)
+                        .thenCompose(pending -> CompletableFuture
+                                .allOf(pending.toArray(CompletableFuture[]::new))
+                                .thenApply(ignored -> {
+                                    pending.forEach(result -> results.add(result.join()));
+                                    return results;
+                                }));
+            });
+        }
+        return rollout.thenApply(results -> {
+            long failed = results.stream().filter(result -> !result.isSuccess()).count();
+            log.info("Broadcast {} to {} servers in {} batches, {} failed", dto.getAction(), results.size(),
+                    batches.size(), failed);
+            return results;
+        });
+    }
+
+    @Override
+    public long getBroadcastTimeoutMillis(BroadcastServerActionDTO dto) {
+        int servers = Math.max(1, getServerList().size());
+        int batches = (servers + batchSize(dto, servers) - 1) / batchSize(dto, servers);
+        int attempts = dto.getRetries() + 1;
+        long perNode = attempts * TimeUnit.SECONDS.toMillis(CONNECT_TIMEOUT_SECONDS + dto.getTimeoutSeconds())
+                + RETRY_BACKOFF_MILLIS * attempts * (attempts - 1) / 2;
+        return batches * perNode + (batches - 1) * TimeUnit.SECONDS.toMillis(dto.getBatchDelaySeconds())
+                + TimeUnit.SECONDS.toMillis(10);
+    }
+
+    private CompletableFuture<ServerActionResultVO> emitWithRetry(String server, BroadcastServerActionDTO dto,
+            int batch) {
+        ServerActionResultVO result = new ServerActionResultVO();
+        result.setTargetWs(server);
+        result.setBatch(batch);
+        CompletableFuture<ServerActionResultVO> done = new CompletableFuture<>();
+        attempt(dto, result, System.nanoTime(), done);
+        return done;
+    }
+
+    private void attempt(BroadcastServerActionDTO dto, ServerActionResultVO result, long start,
+            CompletableFuture<ServerActionResultVO> done) {
+        int attempts = result.getAttempts() + 1;
+        result.setAttempts(attempts);
+        CompletableFuture<Boolean> sent;
+        try {
+            sent = emitAsync(result.getTargetWs(), dto.getAction(), dto.getTimeoutSeconds());
+        } catch (Exception e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((success, error) -> {
+            if (error == null && Boolean.TRUE.equals(success)) {
+                result.setSuccess(true);
+                result.setError(null);
+            } else {
+                Throwable cause = unwrap(error);
+                result.setError(cause == null ? "not confirmed" : String.valueOf(cause.getMessage()));
+                if (attempts <= dto.getRetries()) {
+                    // Linear backoff before the next attempt on this node
+                    CompletableFuture.runAsync(() -> attempt(dto, result, start, done),
+                            delayedExecutor.apply(RETRY_BACKOFF_MILLIS * attempts, TimeUnit.MILLISECONDS));
+                    return;
+                }
+            }
+            result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+            done.complete(result);
+        });
+    }
+
+    private static int batchSize(BroadcastServerActionDTO dto, int servers) {
+        return dto.getBatchSize() <= 0 ? servers : dto.getBatchSize();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RenException && cause.getCause() != null) {
+            cause = cause.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+        }
+        return cause;
+    }
+
+    private static boolean isSuccess(String jsonText) {
+        if (StringUtils.isBlank(jsonText)) {
+            return false;
+        }
+        try {
+            ServerActionResponseDTO response = objectMapper.readValue(jsonText, ServerActionResponseDTO.class);
+            return ServerActionResponseDTO.isSuccess(response);
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+}
@@ -165,12 +165,15 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
                 getPage(params, "id", true),
                 new QueryWrapper<SysUserEntity>().like(StringUtils.isNotBlank(dto.getMobile()), "username",
                         dto.getMobile()));
+        // Device counts for the whole page in one grouped query
+        Map<Long, Long> deviceCounts = deviceService.selectCountByUserIds(
+                page.getRecords().stream().map(SysUserEntity::getId).toList());
         // Loop through page data and return required fields
         List<AdminPageUserVO> list = page.getRecords().stream().map(user -> {
             AdminPageUserVO adminPageUserVO = new AdminPageUserVO();
             adminPageUserVO.setUserid(user.getId().toString());
             adminPageUserVO.setMobile(user.getUsername());
-            String deviceCount = deviceService.selectCountByUserId(user.getId()).toString();
+            String deviceCount = deviceCounts.getOrDefault(user.getId(), 0L).toString();
             adminPageUserVO.setDeviceCount(deviceCount);
             adminPageUserVO.setStatus(user.getStatus());
             adminPageUserVO.setCreateDate(user.getCreateDate());
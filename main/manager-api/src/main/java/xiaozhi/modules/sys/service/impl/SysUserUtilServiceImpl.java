@@ -9,6 +9,9 @@ import xiaozhi.modules.sys.dao.SysUserDao;
 import xiaozhi.modules.sys.entity.SysUserEntity;
 import xiaozhi.modules.sys.service.SysUserUtilService;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 @Service
@@ -34,4 +37,12 @@ public class SysUserUtilServiceImpl extends BaseServiceImpl<SysUserDao, SysUserE
             }
         }
     }
+
+    @Override
+    public Map<Long, String> getUsernames(Collection<Long> userIds) {
+        Map<Long, String> usernames = new HashMap<>();
+        selectGroupedBy("id", userIds, SysUserEntity::getId, "id", "username")
+                .forEach((id, user) -> usernames.put(id, user.getUsername()));
+        return usernames;
+    }
 }
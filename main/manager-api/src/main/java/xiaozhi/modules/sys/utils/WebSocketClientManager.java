@@ -9,14 +9,13 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -36,22 +35,21 @@ import xiaozhi.common.utils.DateUtils;
 
 /**
  * WebSocketClientResource: Supports try-with-resources pattern
+ * <p>
+ * All instances connect through one shared {@link StandardWebSocketClient}. Besides the
+ * blocking {@code listener} methods, {@link #buildAsync(Builder)} and {@link #listenerAsync(Predicate)}
+ * let callers wait for a reply without parking a request thread.
  */
 @Slf4j
 public class WebSocketClientManager implements Closeable {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-    // Global callback thread pool
-    private static final ExecutorService CALLBACK_EXECUTOR = Executors
-            .newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
-                private final AtomicInteger cnt = new AtomicInteger();
+    // Shared client: the underlying WebSocket container is thread-safe and costly to create
+    private static final StandardWebSocketClient SHARED_CLIENT = new StandardWebSocketClient();
 
-                public Thread newThread(Runnable r) {
-                    Thread t = new Thread(r, "ws-callback-" + cnt.getAndIncrement());
-                    t.setDaemon(true);
-                    return t;
-                }
-            });
+    // Global callback executor, one virtual thread per callback so slow callbacks cannot starve others
+    private static final ExecutorService CALLBACK_EXECUTOR = Executors
+            .newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-callback-", 0).factory());
 
     private volatile WebSocketSession session;
     private final BlockingQueue<String> textMessageQueue;
@@ -66,6 +64,10 @@ public class WebSocketClientManager implements Closeable {
 
     private final int queueCapacity;
 
+    // Pending async listener, guarded by textWaiterLock
+    private final Object textWaiterLock = new Object();
+    private TextWaiter textWaiter;
+
     // Private constructor, only called by Builder
     private WebSocketClientManager(Builder b) {
         this.maxSessionDuration = b.maxSessionDuration;
@@ -78,21 +80,52 @@ public class WebSocketClientManager implements Closeable {
 
     public static WebSocketClientManager build(Builder b)
             throws InterruptedException, ExecutionException, TimeoutException, IOException {
-        WebSocketClientManager ws = new WebSocketClientManager(b);
-        StandardWebSocketClient client = new StandardWebSocketClient();
-        CompletableFuture<WebSocketSession> future = client.execute(ws.new InternalHandler(b.uri), b.headers,
-                URI.create(b.uri));
-        WebSocketSession sess = future.get(b.connectTimeout, b.connectUnit);
-        if (sess == null || !sess.isOpen()) {
-            throw new IOException("Handshake failed or session not open");
+        try {
+            return buildAsync(b).get(b.connectTimeout, b.connectUnit);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
         }
-        // Set buffer
-        sess.setTextMessageSizeLimit(b.bufferSize);
-        sess.setBinaryMessageSizeLimit(b.bufferSize);
-        ws.session = sess;
-        return ws;
     }
 
+    /**
+     * Connect without blocking the caller; the future fails if the handshake does not
+     * finish within the connect timeout
+     */
+    public static CompletableFuture<WebSocketClientManager> buildAsync(Builder b) {
+        WebSocketClientManager ws = new WebSocketClientManager(b);
+        CompletableFuture<WebSocketSession> connecting = SHARED_CLIENT.execute(ws.new InternalHandler(b.uri),
+                b.headers, URI.create(b.uri));
+        CompletableFuture<WebSocketClientManager> result = connecting.copy()
+                .orTimeout(b.connectTimeout, b.connectUnit)
+                .thenApply(sess -> {
+                    if (sess == null || !sess.isOpen()) {
+                        throw new CompletionException(new IOException("Handshake failed or session not open"));
+                    }
+                    // Set buffer
+                    sess.setTextMessageSizeLimit(b.bufferSize);
+                    sess.setBinaryMessageSizeLimit(b.bufferSize);
+                    ws.session = sess;
+                    return ws;
+                });
+        // A handshake that completes after the timeout must not leak an open session
+        result.whenComplete((manager, error) -> {
+            if (error != null) {
+                connecting.thenRun(ws::close);
+            }
+        });
+        return result;
+    }
+
+
+    /**
+     * Shared client for other long-lived WebSocket users (e.g. the MCP session pool)
+     */
+    public static StandardWebSocketClient sharedClient() {
+        return SHARED_CLIENT;
+    }
 
     /**
      * Send Text
@@ -193,6 +226,41 @@ public class WebSocketClientManager implements Closeable {
         return listenerCustomWithoutClose(textMessageQueue, predicate);
     }
 
+    /**
+     * Asynchronously collect text messages until predicate is true, then close the connection;
+     * the future fails on timeout (max session duration), transport error or remote close.
+     * The predicate runs on the WebSocket I/O thread and must be cheap
+     *
+     * @return Future of all messages received during listening period
+     */
+    public CompletableFuture<List<String>> listenerAsync(Predicate<String> predicate) {
+        return listenerAsyncWithoutClose(predicate).whenComplete((messages, error) -> close());
+    }
+
+    /**
+     * Same as {@link #listenerAsync(Predicate)} but keeps the connection open
+     */
+    public CompletableFuture<List<String>> listenerAsyncWithoutClose(Predicate<String> predicate) {
+        TextWaiter waiter = new TextWaiter(predicate);
+        synchronized (textWaiterLock) {
+            if (textWaiter != null && !textWaiter.future.isDone()) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Another listener is pending"));
+            }
+            // Messages that arrived before the listener was registered are consumed first
+            String queued;
+            while (!waiter.future.isDone() && (queued = textMessageQueue.poll()) != null) {
+                waiter.offer(queued);
+            }
+            textWaiter = waiter;
+        }
+        errorFuture.whenComplete((ignored, error) -> {
+            if (error != null) {
+                waiter.future.completeExceptionally(error);
+            }
+        });
+        return waiter.future.orTimeout(maxSessionDuration, maxSessionDurationUnit);
+    }
+
     public List<byte[]> listenerBinary(Predicate<byte[]> predicate)
             throws InterruptedException, TimeoutException, ExecutionException {
         return listenerCustom(binaryMessageQueue, predicate);
@@ -265,8 +333,15 @@ public class WebSocketClientManager implements Closeable {
         @Override
         protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
             String payload = message.getPayload();
-            // Enqueue
-            textMessageQueue.offer(payload);
+            synchronized (textWaiterLock) {
+                if (textWaiter != null && !textWaiter.future.isDone()) {
+                    // Hand over to the async listener
+                    textWaiter.offer(payload);
+                } else {
+                    // Enqueue
+                    textMessageQueue.offer(payload);
+                }
+            }
             // Callback user registered onText
             if (onText != null) {
                 CALLBACK_EXECUTOR.submit(() -> onText.accept(payload));
@@ -309,6 +384,11 @@ public class WebSocketClientManager implements Closeable {
         @Override
         public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
             super.afterConnectionClosed(session, status);
+            synchronized (textWaiterLock) {
+                if (textWaiter != null) {
+                    textWaiter.future.completeExceptionally(new IOException("WebSocket closed: " + status));
+                }
+            }
             if (stopWatch.isRunning()) {
                 stopWatch.stop();
             }
@@ -319,6 +399,30 @@ public class WebSocketClientManager implements Closeable {
 
     }
 
+    /**
+     * Async listener state: collected messages and the stop predicate
+     */
+    private static class TextWaiter {
+        private final Predicate<String> predicate;
+        private final List<String> collected = new ArrayList<>();
+        private final CompletableFuture<List<String>> future = new CompletableFuture<>();
+
+        TextWaiter(Predicate<String> predicate) {
+            this.predicate = predicate;
+        }
+
+        void offer(String message) {
+            collected.add(message);
+            try {
+                if (predicate.test(message)) {
+                    future.complete(List.copyOf(collected));
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
     public static class Builder {
         private String uri; // Target WS URI
         private long connectTimeout = 3; // Request connection wait time
@@ -0,0 +1,29 @@
+package xiaozhi.modules.sys.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Result of a server action on one WS node
+ */
+@Data
+public class ServerActionResultVO {
+
+    @Schema(description = "WS server address")
+    private String targetWs;
+
+    @Schema(description = "Whether the node confirmed the action")
+    private boolean success;
+
+    @Schema(description = "Attempts made, including retries")
+    private int attempts;
+
+    @Schema(description = "Rollout batch index, starting from 0")
+    private int batch;
+
+    @Schema(description = "Time from first attempt to final result (ms)")
+    private long elapsedMillis;
+
+    @Schema(description = "Last failure reason")
+    private String error;
+}
@@ -5,6 +5,8 @@ import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,9 +20,9 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import xiaozhi.common.audio.AudioPlayback;
 import xiaozhi.common.constant.Constant;
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
@@ -44,6 +46,7 @@ public class VoiceCloneController {
 
     private final VoiceCloneService voiceCloneService;
     private final RedisUtils redisUtils;
+    private final AudioPlayback audioPlayback;
 
     @GetMapping
     @Operation(summary = "List voice resources with pagination")
@@ -98,6 +101,7 @@ public class VoiceCloneController {
             checkPermission(id);
             // Delegate processing to the service layer.
             voiceCloneService.uploadVoice(id, voiceFile);
+            audioPlayback.evict(voiceSourceKey(id));
 
             return new Result<String>();
         } catch (Exception e) {
@@ -147,34 +151,12 @@ public class VoiceCloneController {
 
     @GetMapping("/play/{uuid}")
     @Operation(summary = "Play audio")
-    public void playVoice(@PathVariable("uuid") String uuid, HttpServletResponse response) {
-        try {
-            String id = (String) redisUtils.get(RedisKeys.getVoiceCloneAudioIdKey(uuid));
-            redisUtils.delete(RedisKeys.getVoiceCloneAudioIdKey(uuid));
-            if (StringUtils.isBlank(id)) {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                return;
-            }
-            // Load audio data.
-            byte[] voiceData = voiceCloneService.getVoiceData(id);
-
-            if (voiceData == null || voiceData.length == 0) {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                return;
-            }
-
-            // Set response headers.
-            response.setContentType("audio/wav");
-            response.setContentLength(voiceData.length);
-            response.setHeader("Content-Disposition", "inline; filename=voice.wav");
-
-            // Write audio data to the response stream.
-            response.getOutputStream().write(voiceData);
-            response.getOutputStream().flush();
-        } catch (Exception e) {
-            log.error("Failed to play audio", e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    public ResponseEntity<Resource> playVoice(@PathVariable("uuid") String uuid) {
+        String id = audioPlayback.claimToken(RedisKeys.getVoiceCloneAudioIdKey(uuid));
+        if (StringUtils.isBlank(id)) {
+            return ResponseEntity.notFound().build();
         }
+        return audioPlayback.play(voiceSourceKey(id), "voice", () -> voiceCloneService.getVoiceData(id));
     }
 
     @PostMapping("/cloneAudio")
@@ -197,4 +179,8 @@ public class VoiceCloneController {
             throw new RenException(ErrorCode.VOICE_RESOURCE_NO_PERMISSION);
         }
     }
+
+    private static String voiceSourceKey(String id) {
+        return "voiceClone:" + id;
+    }
 }
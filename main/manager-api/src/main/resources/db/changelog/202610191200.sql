@@ -0,0 +1,21 @@
+-- Structured agent memory: one row per remembered fact, replacing the single
+-- free-text summary that was rewritten after every session.
+CREATE TABLE IF NOT EXISTS `ai_agent_memory` (
+    `id` VARCHAR(32) NOT NULL COMMENT 'Primary key',
+    `agent_id` VARCHAR(32) NOT NULL COMMENT 'Agent ID',
+    `device_id` VARCHAR(32) DEFAULT NULL COMMENT 'Device ID, NULL for agent-wide facts',
+    `session_id` VARCHAR(255) DEFAULT NULL COMMENT 'Session the fact came from',
+    `content` VARCHAR(1000) NOT NULL COMMENT 'Fact text',
+    `importance` TINYINT NOT NULL DEFAULT 3 COMMENT 'Importance 1-5',
+    `token_count` INT NOT NULL DEFAULT 0 COMMENT 'Estimated tokens',
+    `compacted` TINYINT NOT NULL DEFAULT 0 COMMENT 'Produced by compaction',
+    `created_at` DATETIME DEFAULT NULL COMMENT 'Created at',
+    `updated_at` DATETIME DEFAULT NULL COMMENT 'Updated at',
+    PRIMARY KEY (`id`),
+    KEY `idx_agent_memory_agent_device` (`agent_id`, `device_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Agent memory facts';
+
+-- Token budget of the memory sent to devices
+INSERT INTO `sys_params` (id, param_code, param_value, value_type, param_type, remark)
+SELECT 700, 'memory.token_budget', '600', 'number', 1, 'Token budget of the memory sent to devices'
+WHERE NOT EXISTS (SELECT 1 FROM `sys_params` WHERE param_code = 'memory.token_budget');
@@ -0,0 +1,31 @@
+-- Chat history retention: per-agent policies and the progress of the chunked
+-- deletion/archiving runs, so an interrupted run resumes where it stopped.
+CREATE TABLE IF NOT EXISTS `ai_agent_retention_policy` (
+    `agent_id` VARCHAR(32) NOT NULL COMMENT 'Agent ID',
+    `max_age_days` INT DEFAULT NULL COMMENT 'Messages older than this many days are removed, NULL keeps them',
+    `max_sessions` INT DEFAULT NULL COMMENT 'Only the newest sessions are kept, NULL keeps all',
+    `audio_max_age_days` INT DEFAULT NULL COMMENT 'Audio older than this many days is removed before the text',
+    `archive` TINYINT NOT NULL DEFAULT 0 COMMENT 'Archive removed messages to NDJSON before deleting',
+    `updated_at` DATETIME DEFAULT NULL COMMENT 'Updated at',
+    PRIMARY KEY (`agent_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Chat history retention policies';
+
+CREATE TABLE IF NOT EXISTS `ai_agent_retention_progress` (
+    `agent_id` VARCHAR(32) NOT NULL COMMENT 'Agent ID',
+    `phase` VARCHAR(16) NOT NULL COMMENT 'Current phase: text, audio or done',
+    `cursor_id` BIGINT NOT NULL DEFAULT 0 COMMENT 'Last chat history ID processed in the phase',
+    `max_id` BIGINT NOT NULL DEFAULT 0 COMMENT 'Highest chat history ID the run may touch',
+    `text_cutoff` DATETIME(3) DEFAULT NULL COMMENT 'Messages created before this are removed',
+    `audio_cutoff` DATETIME(3) DEFAULT NULL COMMENT 'Audio created before this is removed',
+    `archive_file` VARCHAR(500) DEFAULT NULL COMMENT 'Archive file of the run',
+    `rows_deleted` BIGINT NOT NULL DEFAULT 0 COMMENT 'Messages removed by the run',
+    `audio_deleted` BIGINT NOT NULL DEFAULT 0 COMMENT 'Audio clips removed by the run',
+    `started_at` DATETIME DEFAULT NULL COMMENT 'Run started at',
+    `finished_at` DATETIME DEFAULT NULL COMMENT 'Run finished at, NULL while in progress',
+    PRIMARY KEY (`agent_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Chat history retention run progress';
+
+-- Retention applied to agents without their own policy
+INSERT INTO `sys_params` (id, param_code, param_value, value_type, param_type, remark)
+SELECT 701, 'chat.retention.default_max_age_days', '0', 'number', 1, 'Days chat history is kept for agents without a retention policy, 0 keeps it forever'
+WHERE NOT EXISTS (SELECT 1 FROM `sys_params` WHERE param_code = 'chat.retention.default_max_age_days');
@@ -0,0 +1,14 @@
+-- Usage rollups: message, session, audio and check-in counters per agent, device and day,
+-- so dashboards read one row per device-day instead of scanning the chat history.
+CREATE TABLE IF NOT EXISTS `ai_agent_usage_daily` (
+    `agent_id` VARCHAR(32) NOT NULL COMMENT 'Agent ID',
+    `stat_date` DATE NOT NULL COMMENT 'Day, in the server time zone',
+    `mac_address` VARCHAR(50) NOT NULL DEFAULT '' COMMENT 'Device MAC address',
+    `messages` BIGINT NOT NULL DEFAULT 0 COMMENT 'Chat messages reported',
+    `sessions` BIGINT NOT NULL DEFAULT 0 COMMENT 'Chat sessions started',
+    `audio_bytes` BIGINT NOT NULL DEFAULT 0 COMMENT 'Audio stored with the messages, in bytes',
+    `check_ins` BIGINT NOT NULL DEFAULT 0 COMMENT 'OTA check-ins of the device',
+    `updated_at` DATETIME DEFAULT NULL COMMENT 'Updated at',
+    PRIMARY KEY (`agent_id`, `stat_date`, `mac_address`),
+    KEY `idx_ai_agent_usage_daily_stat_date` (`stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Daily usage rollups per agent and device';
@@ -0,0 +1,5 @@
+-- Delete the key only while it still holds the expected value
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,272 @@
+package xiaozhi.common.audio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import xiaozhi.common.redis.RedisUtils;
+
+/**
+ * Playback cache eviction and recovery, single-flight transcoding, Range/ETag responses and
+ * play-link lifetime.
+ */
+class AudioPlaybackTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    @DisplayName("Least recently played clips are evicted by total size and the order survives a restart")
+    void evictsLeastRecentlyPlayed() throws Exception {
+        AudioPlaybackCache cache = new AudioPlaybackCache(cacheDir, 3000, new PassthroughAudioTranscoder());
+        AudioPlaybackCache.Clip a = cache.get("a", () -> wav(1000));
+        cache.get("b", () -> wav(1000));
+        Thread.sleep(20);
+        Assertions.assertEquals(a.file(), cache.get("a", () -> Assertions.fail("cached")).file());
+        cache.get("c", () -> wav(1000));
+
+        Assertions.assertEquals(3, cache.size());
+        Assertions.assertEquals(AudioFormat.WAV, a.format());
+        Assertions.assertEquals(a.length(), Files.size(a.file()));
+
+        // "b" is the least recently played
+        AudioPlaybackCache.Clip d = cache.get("d", () -> wav(500));
+        Assertions.assertEquals(3, cache.size());
+        Assertions.assertTrue(cache.totalBytes() <= 3000);
+        Assertions.assertTrue(Files.exists(a.file()));
+
+        Files.createFile(cacheDir.resolve("leftover.tmp"));
+        AudioPlaybackCache restarted = new AudioPlaybackCache(cacheDir, 3000, new PassthroughAudioTranscoder());
+        Assertions.assertEquals(cache.totalBytes(), restarted.totalBytes());
+        Assertions.assertFalse(Files.exists(cacheDir.resolve("leftover.tmp")));
+        Assertions.assertEquals(d.etag(), restarted.get("d", () -> Assertions.fail("cached")).etag());
+        AtomicInteger loads = new AtomicInteger();
+        restarted.get("b", () -> {
+            loads.incrementAndGet();
+            return wav(1000);
+        });
+        Assertions.assertEquals(1, loads.get());
+
+        restarted.evict("d");
+        Assertions.assertFalse(Files.exists(d.file()));
+        Assertions.assertNull(restarted.get("missing", () -> null));
+    }
+
+    @Test
+    @DisplayName("Concurrent misses for one clip transcode it once; transcoders do not share entries")
+    void transcodesOncePerClip() throws Exception {
+        AtomicInteger transcodes = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        AudioTranscoder slow = new PassthroughAudioTranscoder() {
+            @Override
+            public void transcode(byte[] source, OutputStream target) throws IOException {
+                transcodes.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.transcode(source, target);
+            }
+        };
+        AudioPlaybackCache cache = new AudioPlaybackCache(cacheDir, 1 << 20, slow);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] plays = new Future<?>[8];
+            for (int i = 0; i < plays.length; i++) {
+                plays[i] = pool.submit(() -> cache.get("clip", () -> wav(4000)));
+            }
+            for (Future<?> play : plays) {
+                Assertions.assertNotNull(play.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assertions.assertTrue(started.await(0, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, transcodes.get());
+
+        AudioTranscoder other = new PassthroughAudioTranscoder() {
+            @Override
+            public String id() {
+                return "other";
+            }
+        };
+        AudioPlaybackCache.Clip first = cache.get("clip", () -> wav(4000));
+        AudioPlaybackCache.Clip second = new AudioPlaybackCache(cacheDir, 1 << 20, other).get("clip", () -> wav(4000));
+        Assertions.assertNotEquals(first.etag(), second.etag());
+    }
+
+    @Test
+    @DisplayName("Playback answers Range with 206 and a matching If-None-Match with 304")
+    void servesRangesAndEtags() throws Exception {
+        AudioPlayback playback = new AudioPlayback(
+                new AudioPlaybackCache(cacheDir, 1 << 20, new PassthroughAudioTranscoder()),
+                Mockito.mock(RedisUtils.class), 600);
+        byte[] audio = wav(10_000);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new PlayController(playback, audio)).build();
+
+        MvcResult full = mvc.perform(MockMvcRequestBuilders.get("/play/a"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_TYPE, "audio/wav"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "inline; filename=\"play.wav\""))
+                .andReturn();
+        Assertions.assertArrayEquals(audio, full.getResponse().getContentAsByteArray());
+        String etag = full.getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(etag);
+
+        MvcResult range = mvc.perform(MockMvcRequestBuilders.get("/play/a").header(HttpHeaders.RANGE, "bytes=100-199"))
+                .andExpect(MockMvcResultMatchers.status().isPartialContent())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_RANGE,
+                        "bytes 100-199/" + audio.length))
+                .andReturn();
+        byte[] expected = new byte[100];
+        System.arraycopy(audio, 100, expected, 0, 100);
+        Assertions.assertArrayEquals(expected, range.getResponse().getContentAsByteArray());
+
+        mvc.perform(MockMvcRequestBuilders.get("/play/a").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+        mvc.perform(MockMvcRequestBuilders.get("/play/missing"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("A play link survives its first use for the play-link window only")
+    void playLinkWindow() {
+        RedisUtils redis = Mockito.mock(RedisUtils.class);
+        AudioPlayback playback = new AudioPlayback(Mockito.mock(AudioPlaybackCache.class), redis, 600);
+        Mockito.when(redis.get("token")).thenReturn("audio-1");
+        Mockito.when(redis.getExpire("token")).thenReturn(RedisUtils.DEFAULT_EXPIRE, 590L);
+
+        Assertions.assertEquals("audio-1", playback.claimToken("token"));
+        Assertions.assertEquals("audio-1", playback.claimToken("token"));
+        Assertions.assertNull(playback.claimToken("unknown"));
+        Mockito.verify(redis, Mockito.times(1)).expire("token", 600);
+        Mockito.verify(redis, Mockito.never()).delete(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Formats are recognised from their headers; a missing ffmpeg fails the transcode")
+    void detectsFormats() {
+        Assertions.assertEquals(AudioFormat.WAV, AudioFormat.detect(wav(10)));
+        Assertions.assertEquals(AudioFormat.OGG, AudioFormat.detect("OggS\0\2".getBytes()));
+        Assertions.assertEquals(AudioFormat.MP3, AudioFormat.detect("ID3\4\0".getBytes()));
+        Assertions.assertEquals(AudioFormat.MP3, AudioFormat.detect(new byte[] { (byte) 0xff, (byte) 0xfb, 0 }));
+        Assertions.assertEquals(AudioFormat.FLAC, AudioFormat.detect("fLaC".getBytes()));
+        Assertions.assertEquals(AudioFormat.UNKNOWN, AudioFormat.detect("RIFF".getBytes()));
+        Assertions.assertEquals(AudioFormat.OGG, AudioFormat.ofExtension("OGG"));
+
+        FfmpegAudioTranscoder missing = new FfmpegAudioTranscoder(cacheDir.resolve("no-ffmpeg").toString(), "24k",
+                1000);
+        Assertions.assertThrows(IOException.class, () -> missing.transcode(wav(100), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    @DisplayName("ffmpeg stores speech as a much smaller Opus clip (needs ffmpeg on PATH)")
+    void ffmpegShrinksSpeech() throws Exception {
+        Assumptions.assumeTrue(onPath("ffmpeg"), "ffmpeg not installed");
+        AudioPlaybackCache cache = new AudioPlaybackCache(cacheDir, 1 << 24,
+                new FfmpegAudioTranscoder("ffmpeg", "24k", 30_000));
+        byte[] wav = wav(5 * 32_000);
+
+        AudioPlaybackCache.Clip clip = cache.get("speech", () -> wav);
+        cache.get("speech", () -> Assertions.fail("cached"));
+
+        Assertions.assertEquals(AudioFormat.OGG, clip.format());
+        Assertions.assertTrue(clip.length() * 4 < wav.length);
+    }
+
+    @RestController
+    static class PlayController {
+        private final AudioPlayback playback;
+        private final byte[] audio;
+
+        PlayController(AudioPlayback playback, byte[] audio) {
+            this.playback = playback;
+            this.audio = audio;
+        }
+
+        @GetMapping("/play/{id}")
+        ResponseEntity<Resource> play(@PathVariable("id") String id) {
+            return playback.play("test:" + id, "play", () -> "a".equals(id) ? audio : null);
+        }
+    }
+
+    /**
+     * A 16 kHz mono 16-bit WAV of the given total size holding a tone with a little noise.
+     */
+    @Test
+    @DisplayName("A transcoder that never exits is killed at the timeout")
+    void hungTranscoderIsKilled() throws Exception {
+        Assumptions.assumeTrue(onPath("sh"), "sh not installed");
+        Path hung = cacheDir.resolve("hung-ffmpeg");
+        Files.writeString(hung, "#!/bin/sh\nexec sleep 30\n");
+        Assumptions.assumeTrue(hung.toFile().setExecutable(true));
+        FfmpegAudioTranscoder transcoder = new FfmpegAudioTranscoder(hung.toString(), "24k", 200);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> Assertions.assertThrows(IOException.class,
+                        () -> transcoder.transcode(wav(100), new ByteArrayOutputStream())));
+    }
+
+    private static byte[] wav(int bytes) {
+        int samples = Math.max(0, (bytes - 44) / 2);
+        ByteBuffer buffer = ByteBuffer.allocate(44 + samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes()).putInt(36 + samples * 2).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1).putInt(16000)
+                .putInt(32000).putShort((short) 2).putShort((short) 16);
+        buffer.put("data".getBytes()).putInt(samples * 2);
+        Random random = new Random(bytes);
+        for (int i = 0; i < samples; i++) {
+            double tone = Math.sin(2 * Math.PI * 220 * i / 16000.0) * 8000 + random.nextGaussian() * 200;
+            buffer.putShort((short) tone);
+        }
+        return buffer.array();
+    }
+
+    private static boolean onPath(String executable) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            if (Files.isExecutable(Path.of(dir, executable))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package xiaozhi.common.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Assumptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Shared scaffold for tests tagged {@value #TAG}, which surefire only runs under
+ * {@code mvn test -Pbenchmark}.
+ * <p>
+ * Every figure is the average over the given rounds, taken after a short warm-up of the same
+ * action on the calling thread. Results go to the log, never to the console.
+ */
+public final class Benchmarks {
+
+    public static final String TAG = "benchmark";
+
+    private static final Logger log = LoggerFactory.getLogger(Benchmarks.class);
+    private static final int WARM_UP_ROUNDS = 3;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * One run of the code under measurement.
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * Skip the calling test when the JVM cannot count the bytes each thread allocates.
+     */
+    public static void assumeAllocationCounting() {
+        Assumptions.assumeTrue(threads().isThreadAllocatedMemorySupported(),
+                "per-thread allocation counting is not supported");
+        threads().setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Bytes allocated on the calling thread per run of the action.
+     */
+    public static long allocatedBytes(int rounds, Action action) throws Exception {
+        warmUp(action);
+        ThreadMXBean threads = threads();
+        long threadId = Thread.currentThread().threadId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < rounds; i++) {
+            action.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - start) / rounds;
+    }
+
+    /**
+     * Wall-clock nanoseconds per run of the action.
+     */
+    public static long nanos(int rounds, Action action) throws Exception {
+        warmUp(action);
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            action.run();
+        }
+        return (System.nanoTime() - start) / rounds;
+    }
+
+    /**
+     * Log one line of results, formatted with {@link String#format}.
+     */
+    public static void report(String format, Object... args) {
+        log.info(String.format(format, args));
+    }
+
+    private static void warmUp(Action action) throws Exception {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            action.run();
+        }
+    }
+
+    private static ThreadMXBean threads() {
+        return (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+}
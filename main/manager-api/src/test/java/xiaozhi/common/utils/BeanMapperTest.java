@@ -0,0 +1,222 @@
+package xiaozhi.common.utils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+
+import lombok.Data;
+import xiaozhi.common.benchmark.Benchmarks;
+import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
+import xiaozhi.modules.agent.dto.AgentCreateDTO;
+import xiaozhi.modules.agent.dto.AgentVoicePrintSaveDTO;
+import xiaozhi.modules.agent.dto.AgentVoicePrintUpdateDTO;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.agent.entity.AgentTemplateEntity;
+import xiaozhi.modules.agent.entity.AgentVoicePrintEntity;
+import xiaozhi.modules.agent.vo.AgentChatHistoryUserVO;
+import xiaozhi.modules.agent.vo.AgentTemplateVO;
+import xiaozhi.modules.agent.vo.AgentVoicePrintVO;
+import xiaozhi.modules.device.dto.DeviceUpdateDTO;
+import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.vo.UserShowDeviceListVO;
+import xiaozhi.modules.knowledge.dto.KnowledgeBaseDTO;
+import xiaozhi.modules.knowledge.dto.KnowledgeFilesDTO;
+import xiaozhi.modules.knowledge.dto.dataset.DatasetDTO;
+import xiaozhi.modules.knowledge.entity.DocumentEntity;
+import xiaozhi.modules.knowledge.entity.KnowledgeBaseEntity;
+
+/**
+ * Cached bean mapping: parity with {@link BeanUtils#copyProperties(Object, Object)} for every
+ * mapped pair, and a 10k-entity benchmark against {@link ConvertUtils}.
+ */
+class BeanMapperTest {
+
+    private static final Class<?>[][] PAIRS = {
+            { AgentChatHistoryEntity.class, AgentChatHistoryDTO.class },
+            { AgentChatHistoryEntity.class, AgentChatHistoryUserVO.class },
+            { AgentCreateDTO.class, AgentEntity.class },
+            { AgentVoicePrintSaveDTO.class, AgentVoicePrintEntity.class },
+            { AgentVoicePrintUpdateDTO.class, AgentVoicePrintEntity.class },
+            { AgentVoicePrintEntity.class, AgentVoicePrintVO.class },
+            { AgentTemplateEntity.class, AgentTemplateVO.class },
+            { DeviceEntity.class, UserShowDeviceListVO.class },
+            { DeviceUpdateDTO.class, DeviceEntity.class },
+            { KnowledgeBaseEntity.class, KnowledgeBaseDTO.class },
+            { KnowledgeBaseDTO.class, KnowledgeBaseEntity.class },
+            { KnowledgeBaseDTO.class, DatasetDTO.CreateReq.class },
+            { KnowledgeBaseDTO.class, DatasetDTO.UpdateReq.class },
+            { DocumentEntity.class, KnowledgeFilesDTO.class },
+    };
+
+    @Data
+    public static class Source {
+        private int count;
+        private Long total;
+        private String name;
+        private Integer size;
+        private List<String> tags;
+    }
+
+    @Data
+    public static class Target {
+        private Integer count;
+        private long total;
+        private String name;
+        private Long size;
+        private List<Integer> tags;
+        private String extra = "kept";
+    }
+
+    @Test
+    @DisplayName("Every mapped pair copies exactly what BeanUtils.copyProperties copies")
+    void matchesBeanUtilsForMappedPairs() throws Exception {
+        for (Class<?>[] pair : PAIRS) {
+            Object source = filled(pair[0]);
+            Object expected = pair[1].getDeclaredConstructor().newInstance();
+            BeanUtils.copyProperties(source, expected);
+            @SuppressWarnings("unchecked")
+            BeanMapper<Object, Object> mapper = (BeanMapper<Object, Object>) BeanMapper.of(pair[0], pair[1]);
+
+            Assertions.assertEquals(properties(expected), properties(mapper.map(source)),
+                    pair[0].getSimpleName() + " -> " + pair[1].getSimpleName());
+        }
+    }
+
+    @Test
+    @DisplayName("Primitives and wrappers convert, mismatched types and generics are skipped")
+    void followsBeanUtilsTypeRules() {
+        Source source = new Source();
+        source.setCount(3);
+        source.setTotal(7L);
+        source.setName(null);
+        source.setSize(5);
+        source.setTags(List.of("a"));
+        Target target = new Target();
+        target.setName("overwritten");
+
+        BeanMapper.of(Source.class, Target.class).copy(source, target);
+
+        Assertions.assertEquals(3, target.getCount());
+        Assertions.assertEquals(7L, target.getTotal());
+        Assertions.assertNull(target.getName());
+        Assertions.assertNull(target.getSize());
+        Assertions.assertNull(target.getTags());
+        Assertions.assertEquals("kept", target.getExtra());
+        Assertions.assertNull(BeanMapper.of(Source.class, Target.class).map(null));
+        Assertions.assertSame(BeanMapper.of(Source.class, Target.class), BeanMapper.of(Source.class, Target.class));
+    }
+
+    @Test
+    @DisplayName("List mapping matches ConvertUtils on filled entities")
+    void mapListMatchesConvertUtils() throws Exception {
+        int size = 100;
+        List<DeviceEntity> devices = new ArrayList<>(size);
+        List<AgentChatHistoryEntity> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            devices.add((DeviceEntity) filled(DeviceEntity.class));
+            history.add((AgentChatHistoryEntity) filled(AgentChatHistoryEntity.class));
+        }
+
+        Assertions.assertEquals(ConvertUtils.sourceToTarget(devices, UserShowDeviceListVO.class),
+                BeanMapper.of(DeviceEntity.class, UserShowDeviceListVO.class).mapList(devices));
+        Assertions.assertEquals(ConvertUtils.sourceToTarget(history, AgentChatHistoryDTO.class),
+                BeanMapper.of(AgentChatHistoryEntity.class, AgentChatHistoryDTO.class).mapList(history));
+    }
+
+    @Test
+    @Tag(Benchmarks.TAG)
+    @DisplayName("Benchmark: 10k entities, ConvertUtils against cached BeanMapper")
+    void benchmark() throws Exception {
+        int size = 10_000;
+        List<DeviceEntity> devices = new ArrayList<>(size);
+        List<AgentChatHistoryEntity> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            devices.add((DeviceEntity) filled(DeviceEntity.class));
+            history.add((AgentChatHistoryEntity) filled(AgentChatHistoryEntity.class));
+        }
+        BeanMapper<DeviceEntity, UserShowDeviceListVO> deviceMapper = BeanMapper.of(DeviceEntity.class,
+                UserShowDeviceListVO.class);
+        BeanMapper<AgentChatHistoryEntity, AgentChatHistoryDTO> historyMapper = BeanMapper
+                .of(AgentChatHistoryEntity.class, AgentChatHistoryDTO.class);
+
+        long legacyNanos = Benchmarks.nanos(10, () -> {
+            ConvertUtils.sourceToTarget(devices, UserShowDeviceListVO.class);
+            ConvertUtils.sourceToTarget(history, AgentChatHistoryDTO.class);
+        });
+        long mapperNanos = Benchmarks.nanos(10, () -> {
+            deviceMapper.mapList(devices);
+            historyMapper.mapList(history);
+        });
+
+        Benchmarks.report("2 x %d entities: ConvertUtils %.2f ms (%.0f ns/object), BeanMapper %.2f ms"
+                + " (%.0f ns/object)", size, legacyNanos / 1e6, legacyNanos / (2.0 * size), mapperNanos / 1e6,
+                mapperNanos / (2.0 * size));
+        Assertions.assertTrue(mapperNanos < legacyNanos, "the cached mapper should beat ConvertUtils");
+    }
+
+    /**
+     * An instance with every writable property set to a distinct sample value.
+     */
+    private static Object filled(Class<?> type) throws Exception {
+        Object bean = type.getDeclaredConstructor().newInstance();
+        int seed = 1;
+        for (PropertyDescriptor property : BeanUtils.getPropertyDescriptors(type)) {
+            Method writeMethod = property.getWriteMethod();
+            if (writeMethod == null) {
+                continue;
+            }
+            Object value = sample(property.getPropertyType(), seed++);
+            if (value != null) {
+                writeMethod.invoke(bean, value);
+            }
+        }
+        return bean;
+    }
+
+    private static Object sample(Class<?> type, int seed) {
+        if (type == String.class) {
+            return "v" + seed;
+        } else if (type == Integer.class || type == int.class) {
+            return seed;
+        } else if (type == Long.class || type == long.class) {
+            return (long) seed * 1000;
+        } else if (type == Boolean.class || type == boolean.class) {
+            return seed % 2 == 0;
+        } else if (type == Byte.class || type == byte.class) {
+            return (byte) seed;
+        } else if (type == Double.class || type == double.class) {
+            return seed / 2.0;
+        } else if (type == BigDecimal.class) {
+            return BigDecimal.valueOf(seed, 2);
+        } else if (type == Date.class) {
+            return new Date(1_700_000_000_000L + seed);
+        } else if (type == List.class) {
+            return new ArrayList<>(List.of("item" + seed));
+        } else if (type == Map.class) {
+            return Map.of("k", seed);
+        }
+        return null;
+    }
+
+    private static Map<String, Object> properties(Object bean) throws Exception {
+        Map<String, Object> values = new TreeMap<>();
+        for (PropertyDescriptor property : BeanUtils.getPropertyDescriptors(bean.getClass())) {
+            if (property.getReadMethod() != null && property.getReadMethod().getDeclaringClass() != Object.class) {
+                values.put(property.getName(), property.getReadMethod().invoke(bean));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,151 @@
+package xiaozhi.common.xss;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.AntPathMatcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cn.hutool.core.io.IoUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import xiaozhi.common.benchmark.Benchmarks;
+
+/**
+ * Token-level XSS filtering of JSON bodies, the large-body exemption and an allocation benchmark.
+ */
+class XssJsonInputStreamTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    @DisplayName("Markup in values and names is cleaned; other tokens pass through unchanged")
+    void filtersStringTokens() throws IOException {
+        String body = "{\"name\":\"<script>alert(1)</script>Tom & Jerry\",\"<b>k</b>\":1,"
+                + "\"escaped\":\"\\u003cimg src=x onerror=alert(1)\\u003e\",\"price\":12345678901234567890.12345,"
+                + "\"list\":[true,null,\"  two  spaces \\n\",\"中文\"],\"nested\":{\"a\":\"<b>ok</b>\"}}";
+
+        String output = filter(body);
+        JsonNode filtered = MAPPER.readTree(output);
+
+        Assertions.assertEquals("Tom &amp; Jerry", filtered.get("name").asText());
+        Assertions.assertEquals(1, filtered.get("<b>k</b>").asInt());
+        Assertions.assertEquals("<img>", filtered.get("escaped").asText());
+        Assertions.assertTrue(output.contains("\"price\":12345678901234567890.12345"), output);
+        Assertions.assertEquals("  two  spaces \n", filtered.get("list").get(2).asText());
+        Assertions.assertEquals("中文", filtered.get("list").get(3).asText());
+        Assertions.assertEquals("<b>ok</b>", filtered.get("nested").get("a").asText());
+    }
+
+    @Test
+    @DisplayName("Empty bodies stay empty and a large Base64 value is copied intact")
+    void passesThroughPlainContent() throws IOException {
+        Assertions.assertEquals("", filter(""));
+        Assertions.assertEquals("", filter("  \n"));
+
+        String audio = audio(1 << 20);
+        String body = "{\"macAddress\":\"aa:bb\",\"audioBase64\":\"" + audio + "\"}";
+        Assertions.assertEquals(body, filter(body));
+    }
+
+    @Test
+    @DisplayName("Only large bodies on large-body routes skip body filtering")
+    void largeBodyRoutesAreExempted() throws Exception {
+        XssProperties properties = new XssProperties();
+        properties.setLargeBodyUrls(List.of("/agent/chat-history/report"));
+        XssFilter filter = new XssFilter(properties, new AntPathMatcher());
+        String script = "{\"a\":\"<script>x</script>\"}";
+
+        Assertions.assertEquals("{\"a\":\"\"}", read(filter, "/agent/chat-history/report", script));
+
+        String large = "{\"a\":\"<script>" + audio(300 * 1024) + "</script>\"}";
+        Assertions.assertEquals(large, read(filter, "/agent/chat-history/report", large));
+        Assertions.assertEquals("{\"a\":\"\"}", read(filter, "/agent/save", large));
+    }
+
+    @Test
+    @Tag(Benchmarks.TAG)
+    @DisplayName("Benchmark: bytes allocated per request, whole-body cleaning against streaming")
+    void allocationBenchmark() throws Exception {
+        Benchmarks.assumeAllocationCounting();
+
+        StringBuilder form = new StringBuilder("{\"agentName\":\"Helper\",\"systemPrompt\":\"");
+        for (int i = 0; i < 40; i++) {
+            form.append("You are a friendly assistant, answer briefly. ");
+        }
+        form.append("\",\"langCode\":\"en\",\"sort\":3,\"functions\":[{\"pluginId\":\"weather\",\"paramInfo\":{}}]}");
+        byte[] small = form.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] report = ("{\"macAddress\":\"aa:bb:cc:dd:ee:ff\",\"sessionId\":\"s1\",\"chatType\":1,"
+                + "\"content\":\"hello\",\"audioBase64\":\"" + audio(2 << 20) + "\"}").getBytes(StandardCharsets.UTF_8);
+
+        long[] smallBytes = measure(small, 200);
+        long[] reportBytes = measure(report, 5);
+
+        Benchmarks.report("%d B form: whole body %d B allocated, streaming %d B", small.length, smallBytes[0],
+                smallBytes[1]);
+        Benchmarks.report("%d B report: whole body %d B allocated, streaming %d B", report.length,
+                reportBytes[0], reportBytes[1]);
+        Assertions.assertTrue(smallBytes[1] < smallBytes[0]);
+        Assertions.assertTrue(reportBytes[1] < reportBytes[0]);
+    }
+
+    private static long[] measure(byte[] body, int rounds) throws Exception {
+        byte[] buffer = new byte[8192];
+        long legacy = Benchmarks.allocatedBytes(rounds,
+                () -> drain(LegacyXssBody.filter(new ByteArrayInputStream(body)), buffer));
+        long streaming = Benchmarks.allocatedBytes(rounds,
+                () -> drain(new XssJsonInputStream(new ByteArrayInputStream(body)), buffer));
+        return new long[] { legacy, streaming };
+    }
+
+    private static void drain(InputStream input, byte[] buffer) throws IOException {
+        while (input.read(buffer) >= 0) {
+            // Consume the body the way a message converter would
+        }
+    }
+
+    private static String filter(String body) throws IOException {
+        return new String(new XssJsonInputStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)))
+                .readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static String read(XssFilter filter, String path, String body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setContentType("application/json;charset=UTF-8");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        String[] seen = new String[1];
+        filter.doFilter(request, null, (req, res) -> seen[0] = new String(
+                ((HttpServletRequest) req).getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        return seen[0];
+    }
+
+    private static String audio(int bytes) {
+        byte[] raw = new byte[bytes * 3 / 4];
+        new Random(7).nextBytes(raw);
+        return Base64.getEncoder().encodeToString(raw);
+    }
+
+    /**
+     * The former body handling: read the whole body, clean it as one HTML fragment, re-encode it.
+     */
+    private static final class LegacyXssBody {
+
+        static InputStream filter(InputStream body) {
+            String json = IoUtil.readUtf8(body);
+            json = XssUtils.filter(json);
+            return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package xiaozhi.modules.agent.mcp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import xiaozhi.common.utils.JsonUtils;
+
+/**
+ * MCP client pool against an in-process stub MCP endpoint.
+ */
+class McpClientPoolTest {
+
+    private static final AtomicInteger CONNECTIONS = new AtomicInteger();
+    private static final AtomicInteger TOOLS_REQUESTS = new AtomicInteger();
+    private static final List<Session> SESSIONS = new CopyOnWriteArrayList<>();
+    private static volatile long toolsDelayMillis;
+
+    private Tomcat tomcat;
+    private McpClientPool pool;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CONNECTIONS.set(0);
+        TOOLS_REQUESTS.set(0);
+        SESSIONS.clear();
+        toolsDelayMillis = 0;
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(System.getProperty("java.io.tmpdir") + "/mcp-pool-test-" + System.nanoTime());
+        tomcat.setPort(0);
+        tomcat.getConnector();
+        Context context = tomcat.addContext("", null);
+        context.addServletContainerInitializer(new WsSci(), null);
+        context.addApplicationListener(StubEndpointRegistrar.class.getName());
+        // The upgrade filter only runs when some servlet matches the request.
+        Tomcat.addServlet(context, "default", new HttpServlet() {
+        });
+        context.addServletMappingDecoded("/", "default");
+        tomcat.start();
+        url = "ws://127.0.0.1:" + tomcat.getConnector().getLocalPort() + "/call/?token=t";
+        pool = new McpClientPool(60_000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.shutdown();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Test
+    void reusesSessionAndCachedTools() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(List.of("play", "stop"), names(pool.listTools(url)));
+        }
+        Assertions.assertEquals(1, CONNECTIONS.get());
+        Assertions.assertEquals(1, TOOLS_REQUESTS.get());
+    }
+
+    @Test
+    void refreshesToolsAfterListChanged() throws Exception {
+        pool.listTools(url);
+        StubMcpEndpoint.send(SESSIONS.get(0),
+                "{\"jsonrpc\":\"2.0\",\"method\":\"" + McpSession.TOOLS_LIST_CHANGED + "\"}");
+        waitFor(() -> {
+            try {
+                pool.listTools(url);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return TOOLS_REQUESTS.get() == 2;
+        });
+        Assertions.assertEquals(1, CONNECTIONS.get());
+    }
+
+    @Test
+    void sharesOneSessionAcrossConcurrentCallers() throws Exception {
+        toolsDelayMillis = 200;
+        List<CompletableFuture<List<Map<String, Object>>>> callers = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.listTools(url);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        for (CompletableFuture<List<Map<String, Object>>> caller : callers) {
+            Assertions.assertEquals(List.of("play", "stop"), names(caller.join()));
+        }
+        Assertions.assertEquals(1, CONNECTIONS.get());
+        Assertions.assertEquals(1, TOOLS_REQUESTS.get());
+    }
+
+    @Test
+    void reconnectsAfterServerCloseAndEvictsIdleSessions() throws Exception {
+        pool.listTools(url);
+        SESSIONS.get(0).close();
+        waitFor(() -> pool.size() == 0);
+
+        pool.listTools(url);
+        Assertions.assertEquals(2, CONNECTIONS.get());
+
+        McpClientPool idlePool = new McpClientPool(1);
+        try {
+            idlePool.listTools(url);
+            Thread.sleep(20);
+            idlePool.evictIdle();
+            Assertions.assertEquals(0, idlePool.size());
+        } finally {
+            idlePool.shutdown();
+        }
+    }
+
+    private static List<String> names(List<Map<String, Object>> tools) {
+        return tools.stream().map(tool -> (String) tool.get("name")).sorted().toList();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Registers the stub endpoint once the WebSocket container is available.
+     */
+    public static class StubEndpointRegistrar implements ServletContextListener {
+        @Override
+        public void contextInitialized(ServletContextEvent event) {
+            ServerContainer container = (ServerContainer) event.getServletContext()
+                    .getAttribute(ServerContainer.class.getName());
+            try {
+                container.addEndpoint(ServerEndpointConfig.Builder.create(StubMcpEndpoint.class, "/call/").build());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Answers initialize and tools/list the way the MCP endpoint does.
+     */
+    public static class StubMcpEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            CONNECTIONS.incrementAndGet();
+            SESSIONS.add(session);
+            session.addMessageHandler(String.class, (MessageHandler.Whole<String>) text -> {
+                Map<?, ?> request = JsonUtils.parseObject(text, Map.class);
+                Object id = request.get("id");
+                Object result;
+                if ("initialize".equals(request.get("method"))) {
+                    result = Map.of("protocolVersion", "2024-11-05", "capabilities", Map.of());
+                } else if ("tools/list".equals(request.get("method"))) {
+                    TOOLS_REQUESTS.incrementAndGet();
+                    sleep(toolsDelayMillis);
+                    result = Map.of("tools", List.of(Map.of("name", "stop"), Map.of("name", "play")));
+                } else {
+                    return;
+                }
+                send(session, JsonUtils.toJsonString(Map.of("jsonrpc", "2.0", "id", id, "result", result)));
+            });
+        }
+
+        static void send(Session session, String text) {
+            synchronized (session) {
+                try {
+                    session.getBasicRemote().sendText(text);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+package xiaozhi.modules.agent.service.biz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.Random;
+
+import org.apache.ibatis.mapping.Environment;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import xiaozhi.common.benchmark.Benchmarks;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.agent.controller.AgentChatHistoryController;
+import xiaozhi.modules.agent.dao.AiAgentChatAudioDao;
+import xiaozhi.modules.agent.dto.AgentChatHistoryReportDTO;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentEntity;
+import xiaozhi.modules.agent.service.AgentChatAudioService;
+import xiaozhi.modules.agent.service.AgentChatHistoryService;
+import xiaozhi.modules.agent.service.AgentChatRetentionService;
+import xiaozhi.modules.agent.service.AgentChatSearchService;
+import xiaozhi.modules.agent.service.AgentChatSummaryService;
+import xiaozhi.modules.agent.service.AgentService;
+import xiaozhi.modules.agent.service.biz.impl.AgentChatHistoryBizServiceImpl;
+import xiaozhi.modules.agent.service.impl.AgentChatAudioServiceImpl;
+import xiaozhi.modules.device.service.DeviceService;
+
+/**
+ * Multipart chat-history reports: routing next to the JSON endpoint, streamed storage on H2 and
+ * a bytes-allocated-per-report benchmark against the Base64 JSON path.
+ */
+class ChatHistoryBinaryReportTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String MAC = "aa:bb:cc:dd:ee:ff";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Multipart reports reach the binary handler, JSON reports keep the JSON handler")
+    void routesByContentType() throws Exception {
+        AgentChatHistoryBizService bizService = Mockito.mock(AgentChatHistoryBizService.class);
+        Mockito.when(bizService.report(Mockito.any())).thenReturn(Boolean.TRUE);
+        Mockito.when(bizService.report(Mockito.any(), Mockito.any())).thenReturn(Boolean.TRUE);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new AgentChatHistoryController(bizService,
+                Mockito.mock(AgentChatHistoryService.class), Mockito.mock(AgentChatRetentionService.class),
+                Mockito.mock(AgentChatSearchService.class), Mockito.mock(AgentService.class),
+                Mockito.mock(RedisUtils.class))).build();
+        byte[] audio = audio(4096);
+
+        mvc.perform(MockMvcRequestBuilders.multipart("/agent/chat-history/report")
+                .file(new MockMultipartFile("audio", "audio.opus", MediaType.APPLICATION_OCTET_STREAM_VALUE, audio))
+                .param("macAddress", MAC).param("sessionId", "s1").param("chatType", "2")
+                .param("content", "hello").param("reportTime", "1700000000000"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/agent/chat-history/report")
+                .contentType(MediaType.APPLICATION_JSON).content(json(audio)))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        ArgumentCaptor<AgentChatHistoryReportDTO> meta = ArgumentCaptor.forClass(AgentChatHistoryReportDTO.class);
+        ArgumentCaptor<MultipartFile> part = ArgumentCaptor.forClass(MultipartFile.class);
+        Mockito.verify(bizService).report(meta.capture(), part.capture());
+        Assertions.assertEquals(MAC, meta.getValue().getMacAddress());
+        Assertions.assertEquals((byte) 2, meta.getValue().getChatType());
+        Assertions.assertEquals(1700000000000L, meta.getValue().getReportTime());
+        Assertions.assertArrayEquals(audio, part.getValue().getBytes());
+        Mockito.verify(bizService).report(Mockito.any(AgentChatHistoryReportDTO.class));
+    }
+
+    @Test
+    @DisplayName("Streamed audio is stored byte for byte, like the Base64 report")
+    void storesStreamedAudio() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:chat_audio_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ai_agent_chat_audio (id VARCHAR(32) PRIMARY KEY, audio LONGBLOB)");
+        }
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(AiAgentChatAudioDao.class);
+        SqlSessionTemplate template = new SqlSessionTemplate(new MybatisSqlSessionFactoryBuilder().build(configuration));
+        AgentChatAudioServiceImpl audioService = new AgentChatAudioServiceImpl();
+        ReflectionTestUtils.setField(audioService, "baseMapper", template.getMapper(AiAgentChatAudioDao.class));
+
+        AgentChatHistoryService historyService = Mockito.mock(AgentChatHistoryService.class);
+        AgentChatHistoryBizService bizService = bizService(audioService, historyService);
+        byte[] audio = audio(300 * 1024);
+
+        Assertions.assertTrue(bizService.report(metadata(), filePart(audio)));
+        Assertions.assertTrue(bizService.report(MAPPER.readValue(json(audio), AgentChatHistoryReportDTO.class)));
+        Assertions.assertTrue(bizService.report(metadata(), null));
+
+        ArgumentCaptor<AgentChatHistoryEntity> saved = ArgumentCaptor.forClass(AgentChatHistoryEntity.class);
+        Mockito.verify(historyService, Mockito.times(3)).save(saved.capture());
+        String binaryId = saved.getAllValues().get(0).getAudioId();
+        String jsonId = saved.getAllValues().get(1).getAudioId();
+        Assertions.assertEquals(32, binaryId.length());
+        Assertions.assertArrayEquals(audio, audioService.getAudio(binaryId));
+        Assertions.assertArrayEquals(audio, audioService.getAudio(jsonId));
+        Assertions.assertNull(saved.getAllValues().get(2).getAudioId());
+    }
+
+    @Test
+    @Tag(Benchmarks.TAG)
+    @DisplayName("Benchmark: bytes allocated per report, Base64 JSON against multipart")
+    void allocationBenchmark() throws Exception {
+        Benchmarks.assumeAllocationCounting();
+
+        // Storage only drains the audio, so the figures cover request handling alone
+        AgentChatAudioService audioService = Mockito.mock(AgentChatAudioService.class);
+        byte[] sink = new byte[8192];
+        Mockito.when(audioService.saveAudio(Mockito.any(InputStream.class))).thenAnswer(invocation -> {
+            InputStream input = invocation.getArgument(0);
+            while (input.read(sink) >= 0) {
+                // Discard
+            }
+            return "audio";
+        });
+        Mockito.when(audioService.saveAudio(Mockito.any(byte[].class))).thenReturn("audio");
+        AgentChatHistoryBizService bizService = bizService(audioService, Mockito.mock(AgentChatHistoryService.class));
+
+        for (int size : new int[] { 64 * 1024, 1024 * 1024 }) {
+            byte[] audio = audio(size);
+            byte[] body = json(audio);
+            // Multipart parts are spooled to disk by the container before the handler runs
+            MultipartFile part = filePart(audio);
+            AgentChatHistoryReportDTO meta = metadata();
+
+            long jsonBytes = Benchmarks.allocatedBytes(10,
+                    () -> bizService.report(MAPPER.readValue(body, AgentChatHistoryReportDTO.class)));
+            long binaryBytes = Benchmarks.allocatedBytes(10, () -> bizService.report(meta, part));
+
+            Benchmarks.report("%d B audio: JSON %d B allocated per report, multipart %d B", size, jsonBytes,
+                    binaryBytes);
+            Assertions.assertTrue(jsonBytes > 2L * size);
+            // Fixed request-handling overhead only; the JDBC driver's own buffering is outside this figure
+            Assertions.assertTrue(binaryBytes < 64 * 1024);
+        }
+    }
+
+    private static AgentChatHistoryBizService bizService(AgentChatAudioService audioService,
+            AgentChatHistoryService historyService) {
+        AgentService agentService = Mockito.mock(AgentService.class);
+        AgentEntity agent = new AgentEntity();
+        agent.setId("agent-1");
+        agent.setChatHistoryConf(Constant.ChatHistoryConfEnum.RECORD_TEXT_AUDIO.getCode());
+        Mockito.when(agentService.getDefaultAgentByMacAddress(MAC)).thenReturn(agent);
+        return new AgentChatHistoryBizServiceImpl(agentService, historyService, audioService,
+                Mockito.mock(AgentChatSummaryService.class), Mockito.mock(RedisUtils.class),
+                Mockito.mock(DeviceService.class), Mockito.mock(ApplicationEventPublisher.class));
+    }
+
+    private static AgentChatHistoryReportDTO metadata() {
+        AgentChatHistoryReportDTO meta = new AgentChatHistoryReportDTO();
+        meta.setMacAddress(MAC);
+        meta.setSessionId("s1");
+        meta.setChatType((byte) 2);
+        meta.setContent("hello");
+        meta.setReportTime(1700000000000L);
+        return meta;
+    }
+
+    private static byte[] json(byte[] audio) {
+        return ("{\"macAddress\":\"" + MAC + "\",\"sessionId\":\"s1\",\"chatType\":2,\"content\":\"hello\","
+                + "\"reportTime\":1700000000000,\"audioBase64\":\"" + Base64.getEncoder().encodeToString(audio) + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] audio(int bytes) {
+        byte[] audio = new byte[bytes];
+        new Random(7).nextBytes(audio);
+        return audio;
+    }
+
+    private MultipartFile filePart(byte[] audio) throws IOException {
+        Path file = Files.createTempFile(tempDir, "part", ".opus");
+        Files.write(file, audio);
+        return new FilePart(file);
+    }
+
+    /**
+     * A part spooled to disk, read back through a stream the way the container serves it.
+     */
+    private record FilePart(Path file) implements MultipartFile {
+
+        @Override
+        public String getName() {
+            return "audio";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return "audio.opus";
+        }
+
+        @Override
+        public String getContentType() {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(file);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public void transferTo(java.io.File dest) throws IOException {
+            Files.copy(file, dest.toPath());
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.agent.dao.AgentDao;
+import xiaozhi.modules.agent.dao.AgentRetentionPolicyDao;
+import xiaozhi.modules.agent.dao.AgentRetentionProgressDao;
+import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentRetentionPolicyEntity;
+import xiaozhi.modules.agent.entity.AgentRetentionProgressEntity;
+import xiaozhi.modules.agent.support.ChatArchiveWriter;
+import xiaozhi.modules.agent.support.ChatRetentionProperties;
+import xiaozhi.modules.sys.service.SysParamsService;
+
+/**
+ * Chunked chat history retention against an in-memory H2 database.
+ */
+class AgentChatRetentionServiceImplTest {
+
+    private static final String MAPPER = "mapper/agent/AiAgentChatHistoryDao.xml";
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final String AGENT = "agent-1";
+
+    @TempDir
+    Path archiveDir;
+
+    private JdbcDataSource dataSource;
+    private AiAgentChatHistoryDao historyDao;
+    private AgentRetentionPolicyDao policyDao;
+    private AgentRetentionProgressDao progressDao;
+    private TransactionTemplate transactionTemplate;
+    private long now;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:chat_retention_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ai_agent_chat_history (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " mac_address VARCHAR(50), agent_id VARCHAR(32), session_id VARCHAR(50), chat_type TINYINT,"
+                    + " content VARCHAR(1024), audio_id VARCHAR(32), created_at DATETIME(3), updated_at DATETIME(3))");
+            statement.execute("CREATE INDEX idx_chat_agent ON ai_agent_chat_history (agent_id, created_at)");
+            statement.execute("CREATE TABLE ai_agent_chat_audio (id VARCHAR(32) PRIMARY KEY, audio LONGBLOB)");
+            statement.execute("CREATE TABLE ai_agent_retention_policy (agent_id VARCHAR(32) PRIMARY KEY,"
+                    + " max_age_days INT, max_sessions INT, audio_max_age_days INT, archive TINYINT,"
+                    + " updated_at DATETIME)");
+            statement.execute("CREATE TABLE ai_agent_retention_progress (agent_id VARCHAR(32) PRIMARY KEY,"
+                    + " phase VARCHAR(16), cursor_id BIGINT, max_id BIGINT, text_cutoff DATETIME(3),"
+                    + " audio_cutoff DATETIME(3), archive_file VARCHAR(500), rows_deleted BIGINT,"
+                    + " audio_deleted BIGINT, started_at DATETIME, finished_at DATETIME)");
+        }
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(AiAgentChatHistoryDao.class);
+        configuration.addMapper(AgentRetentionPolicyDao.class);
+        configuration.addMapper(AgentRetentionProgressDao.class);
+        try (InputStream mapper = Resources.getResourceAsStream(MAPPER)) {
+            new XMLMapperBuilder(mapper, configuration, MAPPER, configuration.getSqlFragments()).parse();
+        }
+        SqlSessionTemplate template = new SqlSessionTemplate(new MybatisSqlSessionFactoryBuilder().build(configuration));
+        historyDao = template.getMapper(AiAgentChatHistoryDao.class);
+        policyDao = template.getMapper(AgentRetentionPolicyDao.class);
+        progressDao = template.getMapper(AgentRetentionProgressDao.class);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    @DisplayName("Messages past the max age are archived to gzip NDJSON, then removed with their audio")
+    void removesAndArchivesOldMessages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            insert("s1", "old " + i, "a" + i, now - (40 + i) * DAY_MILLIS);
+        }
+        insert("s2", "recent", "a9", now - DAY_MILLIS);
+        policyDao.insert(policy(30, null, null, true));
+
+        AgentRetentionProgressEntity progress = service(2).runAgent(AGENT, policyDao.selectById(AGENT));
+
+        Assertions.assertEquals(AgentRetentionProgressEntity.PHASE_DONE, progress.getPhase());
+        Assertions.assertEquals(5L, progress.getRowsDeleted());
+        Assertions.assertEquals(5L, progress.getAudioDeleted());
+        Assertions.assertEquals(List.of("recent"), contents());
+        Assertions.assertEquals(1L, count("ai_agent_chat_audio"));
+        Assertions.assertNotNull(progressDao.selectById(AGENT).getFinishedAt());
+
+        // Three chunks of at most two rows, each its own gzip member, read back as one stream
+        List<JsonNode> archived;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                Files.newInputStream(archiveDir.resolve(progress.getArchiveFile()))), StandardCharsets.UTF_8))) {
+            ObjectMapper mapper = new ObjectMapper();
+            archived = reader.lines().map(line -> {
+                try {
+                    return mapper.readTree(line);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).toList();
+        }
+        Assertions.assertEquals(5, archived.size());
+        Assertions.assertEquals("old 0", archived.get(0).get("content").asText());
+        Assertions.assertEquals("a4", archived.get(4).get("audioId").asText());
+        Assertions.assertEquals(AGENT, archived.get(4).get("agentId").asText());
+        // Every archived audioId resolves to its clip next to the NDJSON file
+        Path audio = archiveDir.resolve(ChatArchiveWriter.audioDirectory(progress.getArchiveFile()));
+        for (JsonNode message : archived) {
+            Assertions.assertArrayEquals(new byte[] { 1, 2, 3 },
+                    Files.readAllBytes(audio.resolve(message.get("audioId").asText() + ".opus")));
+        }
+        Assertions.assertFalse(Files.exists(audio.resolve("a9.opus")));
+
+        // Nothing left to remove: no new run is recorded
+        Assertions.assertNull(service(2).runAgent(AGENT, policyDao.selectById(AGENT)));
+    }
+
+    @Test
+    @DisplayName("Only the newest sessions are kept, and a long session that is still going is not cut")
+    void keepsNewestSessions() {
+        insert("long", "long start", null, now - 10 * DAY_MILLIS);
+        insert("s1", "s1", null, now - 9 * DAY_MILLIS);
+        insert("s2", "s2", null, now - 8 * DAY_MILLIS);
+        insert("s3", "s3", null, now - 7 * DAY_MILLIS);
+        insert("long", "long end", null, now - DAY_MILLIS);
+
+        service(10).runAgent(AGENT, policy(null, 2, null, false));
+        // Kept: long and s3; long started first, so s1 and s2 stay as well
+        Assertions.assertEquals(5, contents().size());
+
+        service(10).runAgent(AGENT, policy(null, 1, null, false));
+        Assertions.assertEquals(5, contents().size());
+
+        insert("long", "long more", null, now - DAY_MILLIS / 2);
+        insert("s4", "s4", null, now);
+        insert("s5", "s5", null, now + 1);
+        service(10).runAgent(AGENT, policy(null, 2, null, false));
+        Assertions.assertEquals(List.of("s4", "s5"), contents());
+    }
+
+    @Test
+    @DisplayName("Audio past its own age is removed while the text is kept")
+    void removesAudioBeforeText() throws Exception {
+        insert("s1", "old", "a1", now - 20 * DAY_MILLIS);
+        insert("s1", "older", "a2", now - 100 * DAY_MILLIS);
+        insert("s2", "new", "a3", now - DAY_MILLIS);
+
+        AgentRetentionProgressEntity progress = service(1).runAgent(AGENT, policy(90, null, 7, false));
+
+        Assertions.assertEquals(1L, progress.getRowsDeleted());
+        Assertions.assertEquals(2L, progress.getAudioDeleted());
+        Assertions.assertEquals(List.of("old", "new"), contents());
+        List<AgentChatHistoryEntity> left = historyDao.selectList(new QueryWrapper<AgentChatHistoryEntity>()
+                .orderByAsc("id"));
+        Assertions.assertNull(left.get(0).getAudioId());
+        Assertions.assertEquals("a3", left.get(1).getAudioId());
+        Assertions.assertEquals(1L, count("ai_agent_chat_audio"));
+    }
+
+    @Test
+    @DisplayName("Audio removed on its own is archived too, although no message is")
+    void archivesAudioRemovedOnItsOwn() throws Exception {
+        insert("s1", "old", "a1", now - 20 * DAY_MILLIS);
+        insert("s2", "new", "a2", now - DAY_MILLIS);
+
+        AgentRetentionProgressEntity progress = service(1).runAgent(AGENT, policy(null, null, 7, true));
+
+        Assertions.assertEquals(1L, progress.getAudioDeleted());
+        Assertions.assertEquals(List.of("old", "new"), contents());
+        Path audio = archiveDir.resolve(ChatArchiveWriter.audioDirectory(progress.getArchiveFile()));
+        Assertions.assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(audio.resolve("a1.opus")));
+        Assertions.assertFalse(Files.exists(audio.resolve("a2.opus")));
+        Assertions.assertFalse(Files.exists(archiveDir.resolve(progress.getArchiveFile())));
+    }
+
+    @Test
+    @DisplayName("The cluster lock is released only while it still holds this run's token")
+    void releasesOnlyItsOwnLock() {
+        RedisUtils redisUtils = Mockito.mock(RedisUtils.class);
+        Mockito.when(redisUtils.setIfAbsent(Mockito.anyString(), Mockito.any(), Mockito.anyLong())).thenReturn(true);
+
+        service(historyDao, redisUtils, 10).runAll();
+
+        ArgumentCaptor<Object> token = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(redisUtils).setIfAbsent(Mockito.anyString(), token.capture(), Mockito.anyLong());
+        Mockito.verify(redisUtils).deleteIfEquals(Mockito.anyString(), Mockito.eq(token.getValue()));
+        Mockito.verify(redisUtils, Mockito.never()).delete(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("An interrupted run resumes after its last chunk and keeps its original bounds")
+    void resumesInterruptedRun() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            insert("s1", "old " + i, null, now - 40 * DAY_MILLIS);
+        }
+        AgentRetentionPolicyEntity policy = policy(30, null, null, false);
+        AtomicInteger deletes = new AtomicInteger();
+        AiAgentChatHistoryDao failing = (AiAgentChatHistoryDao) Proxy.newProxyInstance(
+                AiAgentChatHistoryDao.class.getClassLoader(), new Class<?>[] { AiAgentChatHistoryDao.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("deleteChunk") && deletes.incrementAndGet() == 2) {
+                        throw new IllegalStateException("connection lost");
+                    }
+                    try {
+                        return method.invoke(historyDao, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        Assertions.assertThrows(IllegalStateException.class, () -> service(failing, 2).runAgent(AGENT, policy));
+        AgentRetentionProgressEntity saved = progressDao.selectById(AGENT);
+        Assertions.assertNull(saved.getFinishedAt());
+        Assertions.assertEquals(2L, saved.getRowsDeleted());
+        Assertions.assertEquals(4, contents().size());
+
+        // Reported after the run started: above its max ID, so left for the next run
+        insert("s2", "late", null, now - 40 * DAY_MILLIS);
+        AgentRetentionProgressEntity resumed = service(2).runAgent(AGENT, null);
+
+        Assertions.assertEquals(saved.getStartedAt(), resumed.getStartedAt());
+        Assertions.assertEquals(6L, resumed.getRowsDeleted());
+        Assertions.assertEquals(List.of("late"), contents());
+    }
+
+    @Test
+    @DisplayName("A large backlog is deleted one chunk per statement and resumes after the cursor")
+    void largeBacklogIsDeletedInChunks() throws Exception {
+        int rows = 2_000;
+        int chunk = 100;
+        bulkInsert(rows, now - 40 * DAY_MILLIS);
+        AgentRetentionPolicyEntity policy = policy(30, null, null, false);
+
+        List<List<Long>> chunks = new ArrayList<>();
+        AtomicBoolean failFifth = new AtomicBoolean(true);
+        AiAgentChatHistoryDao recording = (AiAgentChatHistoryDao) Proxy.newProxyInstance(
+                AiAgentChatHistoryDao.class.getClassLoader(), new Class<?>[] { AiAgentChatHistoryDao.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("deleteChunk")) {
+                        if (failFifth.get() && chunks.size() == 4) {
+                            throw new IllegalStateException("connection lost");
+                        }
+                        @SuppressWarnings("unchecked")
+                        List<Long> ids = (List<Long>) args[0];
+                        chunks.add(List.copyOf(ids));
+                    }
+                    try {
+                        return method.invoke(historyDao, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> service(recording, chunk).runAgent(AGENT, policy));
+        AgentRetentionProgressEntity interrupted = progressDao.selectById(AGENT);
+        Assertions.assertEquals(4L * chunk, interrupted.getRowsDeleted());
+        Assertions.assertEquals(chunks.get(3).get(chunk - 1), interrupted.getCursorId());
+        Assertions.assertEquals(rows - 4 * chunk, count("ai_agent_chat_history"));
+
+        failFifth.set(false);
+        AgentRetentionProgressEntity finished = service(recording, chunk).runAgent(AGENT, null);
+
+        Assertions.assertEquals(rows / chunk, chunks.size());
+        Assertions.assertTrue(chunks.stream().allMatch(ids -> ids.size() == chunk));
+        Assertions.assertTrue(chunks.get(4).get(0) > interrupted.getCursorId());
+        Assertions.assertEquals(rows, chunks.stream().flatMap(List::stream).distinct().count());
+        Assertions.assertEquals((long) rows, finished.getRowsDeleted());
+        Assertions.assertEquals(AgentRetentionProgressEntity.PHASE_DONE, finished.getPhase());
+        Assertions.assertEquals(0L, count("ai_agent_chat_history"));
+    }
+
+    private AgentChatRetentionServiceImpl service(int chunkSize) {
+        return service(historyDao, chunkSize);
+    }
+
+    private AgentChatRetentionServiceImpl service(AiAgentChatHistoryDao dao, int chunkSize) {
+        return service(dao, Mockito.mock(RedisUtils.class), chunkSize);
+    }
+
+    private AgentChatRetentionServiceImpl service(AiAgentChatHistoryDao dao, RedisUtils redisUtils, int chunkSize) {
+        ChatRetentionProperties properties = new ChatRetentionProperties();
+        properties.setChunkSize(chunkSize);
+        properties.setRowsPerSecond(1e9);
+        properties.setArchiveDir(archiveDir);
+        return new AgentChatRetentionServiceImpl(dao, policyDao, progressDao, Mockito.mock(AgentDao.class),
+                Mockito.mock(SysParamsService.class), redisUtils, transactionTemplate,
+                Mockito.mock(ApplicationEventPublisher.class), properties);
+    }
+
+    private static AgentRetentionPolicyEntity policy(Integer maxAgeDays, Integer maxSessions, Integer audioMaxAgeDays,
+            boolean archive) {
+        return AgentRetentionPolicyEntity.builder().agentId(AGENT).maxAgeDays(maxAgeDays).maxSessions(maxSessions)
+                .audioMaxAgeDays(audioMaxAgeDays).archive(archive ? 1 : 0).updatedAt(new Date()).build();
+    }
+
+    private void insert(String sessionId, String content, String audioId, long createdAt) {
+        historyDao.insert(AgentChatHistoryEntity.builder()
+                .macAddress("aa:bb:cc:dd:ee:ff")
+                .agentId(AGENT)
+                .sessionId(sessionId)
+                .chatType((byte) 1)
+                .content(content)
+                .audioId(audioId)
+                .createdAt(new Date(createdAt))
+                .updatedAt(new Date(createdAt))
+                .build());
+        if (audioId != null) {
+            try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection
+                    .prepareStatement("INSERT INTO ai_agent_chat_audio (id, audio) VALUES (?, ?)")) {
+                statement.setString(1, audioId);
+                statement.setBytes(2, new byte[] { 1, 2, 3 });
+                statement.executeUpdate();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void bulkInsert(int rows, long createdAt) throws Exception {
+        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection
+                .prepareStatement("INSERT INTO ai_agent_chat_history (mac_address, agent_id, session_id, chat_type,"
+                        + " content, created_at) VALUES ('aa:bb:cc:dd:ee:ff', ?, ?, 1, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                statement.setString(1, AGENT);
+                statement.setString(2, "s" + i / 20);
+                statement.setString(3, "message " + i);
+                statement.setTimestamp(4, new Timestamp(createdAt + i));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private List<String> contents() {
+        return historyDao.selectList(new QueryWrapper<AgentChatHistoryEntity>().orderByAsc("id")).stream()
+                .map(AgentChatHistoryEntity::getContent).toList();
+    }
+
+    private long count(String table) throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
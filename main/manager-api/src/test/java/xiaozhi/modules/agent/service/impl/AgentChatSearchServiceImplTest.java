@@ -0,0 +1,124 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.event.ChatHistoryDeletedEvent;
+import xiaozhi.modules.agent.event.ChatHistoryReportedEvent;
+import xiaozhi.modules.agent.support.ChatSearchProperties;
+import xiaozhi.modules.agent.vo.AgentChatSearchHitVO;
+import xiaozhi.modules.agent.vo.ChatSearchStatsVO;
+
+/**
+ * Chat search service: the index follows report and delete events, rebuilds read the database
+ * in chunks, and searches are timed.
+ */
+class AgentChatSearchServiceImplTest {
+
+    @TempDir
+    Path indexDir;
+
+    @Test
+    @DisplayName("Reported messages become searchable and deleted ones disappear")
+    void followsEvents() {
+        AgentChatSearchServiceImpl service = service(Mockito.mock(AiAgentChatHistoryDao.class), true);
+        try {
+            service.onReported(new ChatHistoryReportedEvent(message(1, "a", "s1", "water the plants"), 0));
+            service.onReported(new ChatHistoryReportedEvent(message(2, "a", "s2", "plants need water"), 0));
+
+            List<AgentChatSearchHitVO> hits = service.search("a", "plants", null, null, null);
+            Assertions.assertEquals(2, hits.size());
+            // Equal scores, newer first
+            Assertions.assertEquals("s2", hits.get(0).getSessionId());
+            Assertions.assertEquals(1, service.search("a", "plants", null, null, 1).size());
+
+            service.onDeleted(ChatHistoryDeletedEvent.ofSession("a", "s1"));
+            Assertions.assertEquals(List.of(2L),
+                    service.search("a", "plants", null, null, null).stream().map(AgentChatSearchHitVO::getId).toList());
+
+            ChatSearchStatsVO stats = service.getStats();
+            Assertions.assertTrue(stats.isEnabled());
+            Assertions.assertEquals(1, stats.getDocuments());
+            Assertions.assertEquals(3, stats.getQueryLatency().count());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A rebuild replaces the index with the database contents, read chunk by chunk")
+    void rebuildsFromDatabase() {
+        List<AgentChatHistoryEntity> rows = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            rows.add(message(i, i % 2 == 0 ? "a" : "b", "s" + i, "message number " + i));
+        }
+        AiAgentChatHistoryDao dao = Mockito.mock(AiAgentChatHistoryDao.class);
+        Mockito.when(dao.selectChunk(Mockito.isNull(), Mockito.anyLong(), Mockito.isNull(), Mockito.isNull(),
+                Mockito.eq(false), Mockito.anyInt())).thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(1);
+                    int limit = invocation.getArgument(5);
+                    return rows.stream().filter(row -> row.getId() > afterId).limit(limit).toList();
+                });
+        AgentChatSearchServiceImpl service = service(dao, true);
+        try {
+            // Stale message, no longer in the database
+            service.onReported(new ChatHistoryReportedEvent(message(99, "a", "s99", "message number 99"), 0));
+
+            Assertions.assertTrue(service.rebuild(null));
+
+            Assertions.assertEquals(12, service.search("a", "message", null, null, 100).size());
+            Assertions.assertEquals(List.of(), service.search("a", "99", null, null, 100));
+            ChatSearchStatsVO stats = service.getStats();
+            Assertions.assertEquals(25, stats.getDocuments());
+            Assertions.assertEquals(25, stats.getRebuildIndexed());
+            Assertions.assertFalse(stats.isRebuilding());
+            Mockito.verify(dao, Mockito.times(3)).selectChunk(Mockito.isNull(), Mockito.anyLong(), Mockito.isNull(),
+                    Mockito.isNull(), Mockito.eq(false), Mockito.eq(10));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    @DisplayName("When disabled, events are ignored and searches are refused")
+    void refusesWhenDisabled() {
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        ReflectionTestUtils.setField(MessageUtils.class, "messageSource", messageSource);
+        AgentChatSearchServiceImpl service = service(Mockito.mock(AiAgentChatHistoryDao.class), false);
+
+        service.onReported(new ChatHistoryReportedEvent(message(1, "a", "s1", "hello"), 0));
+        RenException e = Assertions.assertThrows(RenException.class,
+                () -> service.search("a", "hello", null, null, null));
+        Assertions.assertEquals(ErrorCode.CHAT_SEARCH_DISABLED, e.getCode());
+        Assertions.assertFalse(service.getStats().isEnabled());
+    }
+
+    private AgentChatSearchServiceImpl service(AiAgentChatHistoryDao dao, boolean enabled) {
+        ChatSearchProperties properties = new ChatSearchProperties();
+        properties.setEnabled(enabled);
+        properties.setIndexDir(indexDir);
+        properties.setRebuildChunkSize(10);
+        return new AgentChatSearchServiceImpl(dao, properties, Runnable::run);
+    }
+
+    private static AgentChatHistoryEntity message(long id, String agentId, String sessionId, String content) {
+        return AgentChatHistoryEntity.builder().id(id).agentId(agentId).sessionId(sessionId).macAddress("m")
+                .chatType((byte) 1).content(content).createdAt(new Date(id * 1000)).build();
+    }
+}
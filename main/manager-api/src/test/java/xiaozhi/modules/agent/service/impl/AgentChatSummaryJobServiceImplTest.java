@@ -0,0 +1,242 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.modules.agent.service.AgentChatSummaryService;
+import xiaozhi.modules.agent.vo.ChatSummaryJobStatsVO;
+
+/**
+ * Chat summary job queue with a stubbed summary service.
+ */
+class AgentChatSummaryJobServiceImplTest {
+
+    private AgentChatSummaryService summaryService;
+    private AgentChatSummaryJobServiceImpl jobService;
+
+    private final Map<String, AtomicInteger> runningByAgent = new ConcurrentHashMap<>();
+    private final AtomicInteger maxPerAgent = new AtomicInteger();
+    private final AtomicInteger runningTotal = new AtomicInteger();
+    private final AtomicInteger maxTotal = new AtomicInteger();
+    private volatile long workMillis = 50;
+
+    @BeforeEach
+    void setUp() {
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        ReflectionTestUtils.setField(MessageUtils.class, "messageSource", messageSource);
+
+        summaryService = Mockito.mock(AgentChatSummaryService.class);
+        // Sessions are named "<agent>-<n>"
+        Mockito.when(summaryService.getAgentIdBySessionId(Mockito.anyString()))
+                .thenAnswer(call -> ((String) call.getArgument(0)).split("-")[0]);
+        Mockito.when(summaryService.getSummaryModelId(Mockito.anyString())).thenReturn("slm");
+        Mockito.when(summaryService.generateAndSaveChatSummary(Mockito.anyString()))
+                .thenAnswer(call -> work(call.getArgument(0)));
+        Mockito.when(summaryService.generateAndSaveChatTitle(Mockito.anyString()))
+                .thenAnswer(call -> work(call.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (jobService != null) {
+            jobService.shutdown();
+        }
+    }
+
+    @Test
+    void deduplicatesBySession() throws Exception {
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 100, 4, 10);
+        Assertions.assertTrue(jobService.submitSummary("a-1"));
+        Assertions.assertFalse(jobService.submitSummary("a-1"));
+        // Title and summary of the same session are separate jobs
+        Assertions.assertTrue(jobService.submitTitle("a-1"));
+
+        awaitIdle();
+        ChatSummaryJobStatsVO stats = jobService.getStats();
+        Assertions.assertEquals(2, stats.getSubmitted());
+        Assertions.assertEquals(1, stats.getDeduplicated());
+        Assertions.assertEquals(2, stats.getSucceeded());
+        Mockito.verify(summaryService, Mockito.times(1)).generateAndSaveChatSummary("a-1");
+    }
+
+    @Test
+    void summariesOfOneAgentRunOneAtATime() throws Exception {
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 100, 10, 10);
+        for (int i = 0; i < 5; i++) {
+            jobService.submitSummary("a-" + i);
+            jobService.submitSummary("b-" + i);
+        }
+        awaitIdle();
+
+        Assertions.assertEquals(1, maxPerAgent.get());
+        // Two agents progress in parallel
+        Assertions.assertEquals(2, maxTotal.get());
+        Assertions.assertEquals(10, jobService.getStats().getSucceeded());
+    }
+
+    @Test
+    void limitsConcurrentCallsPerModel() throws Exception {
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 100, 3, 10);
+        for (int i = 0; i < 20; i++) {
+            jobService.submitTitle("agent" + i + "-1");
+        }
+        awaitIdle();
+
+        Assertions.assertEquals(3, maxTotal.get());
+        Assertions.assertEquals(20, jobService.getStats().getSucceeded());
+    }
+
+    @Test
+    void retriesWithBackoffThenGivesUp() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Mockito.when(summaryService.generateAndSaveChatSummary("a-ok")).thenAnswer(call -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("timeout");
+            }
+            return true;
+        });
+        Mockito.when(summaryService.generateAndSaveChatSummary("a-bad")).thenThrow(new IllegalStateException("llm down"));
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 100, 4, 10);
+
+        jobService.submitSummary("a-ok");
+        jobService.submitSummary("a-bad");
+        awaitIdle();
+
+        ChatSummaryJobStatsVO stats = jobService.getStats();
+        Assertions.assertEquals(1, stats.getSucceeded());
+        Assertions.assertEquals(1, stats.getFailed());
+        // One retry for a-ok, two for a-bad
+        Assertions.assertEquals(3, stats.getRetried());
+        Mockito.verify(summaryService, Mockito.times(3)).generateAndSaveChatSummary("a-bad");
+        // Finished sessions can be submitted again
+        Assertions.assertTrue(jobService.submitSummary("a-bad"));
+    }
+
+    @Test
+    void declinedSummariesAreNotRetried() throws Exception {
+        Mockito.when(summaryService.generateAndSaveChatSummary("a-nodevice")).thenReturn(false);
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 100, 4, 10);
+
+        jobService.submitSummary("a-nodevice");
+        awaitIdle();
+
+        ChatSummaryJobStatsVO stats = jobService.getStats();
+        Assertions.assertEquals(1, stats.getSkipped());
+        Assertions.assertEquals(0, stats.getRetried());
+        Assertions.assertEquals(0, stats.getFailed());
+        Mockito.verify(summaryService, Mockito.times(1)).generateAndSaveChatSummary("a-nodevice");
+    }
+
+    @Test
+    void declinedTitlesAreNotRetried() throws Exception {
+        Mockito.when(summaryService.generateAndSaveChatTitle("a-empty")).thenReturn(false);
+        Mockito.when(summaryService.generateAndSaveChatTitle("b-down")).thenThrow(new IllegalStateException("llm down"));
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 100, 4, 10);
+
+        jobService.submitTitle("a-empty");
+        jobService.submitTitle("b-down");
+        awaitIdle();
+
+        ChatSummaryJobStatsVO stats = jobService.getStats();
+        Assertions.assertEquals(1, stats.getSkipped());
+        Assertions.assertEquals(1, stats.getFailed());
+        Assertions.assertEquals(2, stats.getRetried());
+        Mockito.verify(summaryService, Mockito.times(1)).generateAndSaveChatTitle("a-empty");
+        Mockito.verify(summaryService, Mockito.times(3)).generateAndSaveChatTitle("b-down");
+        // The model is looked up once per job, not once per attempt
+        Mockito.verify(summaryService, Mockito.times(1)).getSummaryModelId("b");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchesSessionsOfOneAgentWithinWindow() throws Exception {
+        List<List<String>> calls = new CopyOnWriteArrayList<>();
+        Mockito.when(summaryService.generateAndSaveBatchSummary(Mockito.anyString(), Mockito.anyList()))
+                .thenAnswer(call -> calls.add(List.copyOf((List<String>) call.getArgument(1))));
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 100, 4, 10, 200, 4);
+
+        for (int i = 0; i < 6; i++) {
+            jobService.submitSummary("a-" + i);
+        }
+        jobService.submitSummary("b-0");
+        awaitIdle();
+
+        // Six sessions of agent a in batches of at most four; b alone takes the single path
+        Assertions.assertEquals(List.of(4, 2), calls.stream().map(List::size).toList());
+        Assertions.assertEquals(Set.of("a-0", "a-1", "a-2", "a-3", "a-4", "a-5"),
+                calls.stream().flatMap(List::stream).collect(Collectors.toSet()));
+        Mockito.verify(summaryService).generateAndSaveChatSummary("b-0");
+        ChatSummaryJobStatsVO stats = jobService.getStats();
+        Assertions.assertEquals(2, stats.getBatches());
+        Assertions.assertEquals(6, stats.getBatchedSessions());
+        Assertions.assertEquals(7, stats.getSucceeded());
+    }
+
+    @Test
+    void rejectsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(summaryService.generateAndSaveChatTitle(Mockito.anyString())).thenAnswer(call -> {
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+        jobService = new AgentChatSummaryJobServiceImpl(summaryService, 2, 4, 10);
+
+        jobService.submitTitle("a-1");
+        jobService.submitTitle("b-1");
+        Assertions.assertThrows(RenException.class, () -> jobService.submitTitle("c-1"));
+        Assertions.assertEquals(1, jobService.getStats().getRejected());
+
+        release.countDown();
+        awaitIdle();
+        Assertions.assertTrue(jobService.submitTitle("c-1"));
+    }
+
+    private boolean work(String sessionId) throws InterruptedException {
+        String agentId = sessionId.split("-")[0];
+        AtomicInteger agentRunning = runningByAgent.computeIfAbsent(agentId, k -> new AtomicInteger());
+        maxPerAgent.accumulateAndGet(agentRunning.incrementAndGet(), Math::max);
+        maxTotal.accumulateAndGet(runningTotal.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(workMillis);
+        } finally {
+            runningTotal.decrementAndGet();
+            agentRunning.decrementAndGet();
+        }
+        return true;
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        waitFor(() -> {
+            ChatSummaryJobStatsVO stats = jobService.getStats();
+            return stats.getQueued() == 0 && stats.getRunning() == 0
+                    && stats.getSucceeded() + stats.getFailed() + stats.getSkipped() == stats.getSubmitted();
+        });
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
+import xiaozhi.modules.agent.service.AgentChatHistoryService;
+import xiaozhi.modules.agent.service.AgentChatTitleService;
+import xiaozhi.modules.agent.service.AgentMemoryService;
+import xiaozhi.modules.agent.service.AgentService;
+import xiaozhi.modules.agent.support.ChatMessageExtractor;
+import xiaozhi.modules.agent.support.MemoryFact;
+import xiaozhi.modules.agent.vo.AgentConfigVO;
+import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.llm.service.LLMService;
+import xiaozhi.modules.model.service.ModelConfigService;
+
+/**
+ * Batched chat summaries with stubbed agent, history and LLM services.
+ */
+class AgentChatSummaryServiceImplTest {
+
+    @Test
+    void batchUsesOneAgentLookupAndOneCallPerDevice() {
+        AgentChatHistoryService historyService = Mockito.mock(AgentChatHistoryService.class);
+        AgentService agentService = Mockito.mock(AgentService.class);
+        DeviceService deviceService = Mockito.mock(DeviceService.class);
+        LLMService llmService = Mockito.mock(LLMService.class);
+        AgentMemoryService memoryService = Mockito.mock(AgentMemoryService.class);
+        AgentChatSummaryServiceImpl service = new AgentChatSummaryServiceImpl(historyService, agentService,
+                Mockito.mock(AgentChatTitleService.class), deviceService, llmService,
+                Mockito.mock(ModelConfigService.class), memoryService);
+
+        AgentConfigVO agent = new AgentConfigVO();
+        agent.setId("agent-1");
+        agent.setMemModelId("Memory_mem_local_short");
+        agent.setSlmModelId("slm");
+        Mockito.when(agentService.getAgentConfigById("agent-1")).thenReturn(agent);
+        Mockito.when(deviceService.getDeviceByMacAddress("aa:01")).thenReturn(device("dev-1"));
+        Mockito.when(deviceService.getDeviceByMacAddress("aa:02")).thenReturn(device("dev-2"));
+        Mockito.when(memoryService.renderMemory(Mockito.eq("agent-1"), Mockito.eq("dev-1"), Mockito.anyInt()))
+                .thenReturn("- likes tea\n");
+        Mockito.when(historyService.getChatHistoryBySessionId("agent-1", "s1"))
+                .thenReturn(List.of(message("aa:01", 1, "I moved to Lisbon last week"), message("aa:01", 2, "Nice!")));
+        Mockito.when(historyService.getChatHistoryBySessionId("agent-1", "s2"))
+                .thenReturn(List.of(message("aa:02", 1, "I have a cat called Miso")));
+        Mockito.when(historyService.getChatHistoryBySessionId("agent-1", "s3"))
+                .thenReturn(List.of(message("aa:01", 1, "My daughter is called Ana")));
+        Mockito.when(llmService.generateSummary(Mockito.anyString(), Mockito.anyString(), Mockito.eq("slm")))
+                .thenReturn("4|Lives in Lisbon\n5|Daughter is called Ana", "3|Has a cat called Miso");
+
+        Assertions.assertTrue(service.generateAndSaveBatchSummary("agent-1", List.of("s1", "s2", "s3")));
+
+        ArgumentCaptor<String> conversation = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(llmService, Mockito.times(2)).generateSummary(conversation.capture(), prompt.capture(),
+                Mockito.eq("slm"));
+        Assertions.assertEquals(List.of("Session 1:\nMessage 1: I moved to Lisbon last week\n"
+                + "Session 2:\nMessage 1: My daughter is called Ana\n",
+                "Session 1:\nMessage 1: I have a cat called Miso\n"), conversation.getAllValues());
+        Assertions.assertTrue(prompt.getAllValues().get(0).contains("- likes tea"));
+        Assertions.assertFalse(prompt.getAllValues().get(1).contains("- likes tea"));
+        Mockito.verify(agentService, Mockito.times(1)).getAgentConfigById("agent-1");
+        Mockito.verify(deviceService, Mockito.times(1)).getDeviceByMacAddress("aa:01");
+        Mockito.verify(agentService, Mockito.never()).updateAgentById(Mockito.any(), Mockito.any());
+        Mockito.verify(memoryService).appendFacts("agent-1", "dev-1", "s3",
+                List.of(new MemoryFact(4, "Lives in Lisbon"), new MemoryFact(5, "Daughter is called Ana")));
+        Mockito.verify(memoryService).appendFacts("agent-1", "dev-2", "s2",
+                List.of(new MemoryFact(3, "Has a cat called Miso")));
+        Mockito.verify(memoryService, Mockito.never()).appendFacts(Mockito.any(), Mockito.isNull(), Mockito.any(),
+                Mockito.any());
+    }
+
+    @Test
+    void unusableReplyIsThrownSoTheJobRetries() {
+        AgentChatHistoryService historyService = Mockito.mock(AgentChatHistoryService.class);
+        AgentService agentService = Mockito.mock(AgentService.class);
+        DeviceService deviceService = Mockito.mock(DeviceService.class);
+        LLMService llmService = Mockito.mock(LLMService.class);
+        AgentMemoryService memoryService = Mockito.mock(AgentMemoryService.class);
+        AgentChatSummaryServiceImpl service = new AgentChatSummaryServiceImpl(historyService, agentService,
+                Mockito.mock(AgentChatTitleService.class), deviceService, llmService,
+                Mockito.mock(ModelConfigService.class), memoryService);
+
+        AgentConfigVO agent = new AgentConfigVO();
+        agent.setId("agent-1");
+        agent.setMemModelId("Memory_mem_local_short");
+        agent.setSlmModelId("slm");
+        Mockito.when(agentService.getAgentConfigById("agent-1")).thenReturn(agent);
+        Mockito.when(deviceService.getDeviceByMacAddress("aa:01")).thenReturn(device("dev-1"));
+        Mockito.when(historyService.getChatHistoryBySessionId("agent-1", "s1"))
+                .thenReturn(List.of(message("aa:01", 1, "I moved to Lisbon last week")));
+        Mockito.when(llmService.generateSummary(Mockito.anyString(), Mockito.anyString(), Mockito.eq("slm")))
+                .thenReturn("生成总结失败，请稍后重试");
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> service.generateAndSaveBatchSummary("agent-1", List.of("s1")));
+        Mockito.verify(memoryService, Mockito.never()).appendFacts(Mockito.any(), Mockito.any(), Mockito.any(),
+                Mockito.any());
+    }
+
+    @Test
+    void batchConversationKeepsNewestMessagesWithinBudget() {
+        List<List<String>> sessions = List.of(
+                List.of("a".repeat(40), "b".repeat(40)),
+                List.of("c".repeat(40)),
+                List.of("d".repeat(40)));
+
+        // Each message is about ten tokens, so a budget of 25 keeps the last two
+        String conversation = AgentChatSummaryServiceImpl.buildBatchConversation(sessions, 25);
+
+        Assertions.assertEquals("Session 2:\nMessage 1: " + "c".repeat(40) + "\nSession 3:\nMessage 1: "
+                + "d".repeat(40) + "\n", conversation);
+        Assertions.assertEquals(3, ChatMessageExtractor.estimateTokens("你好吗"));
+        Assertions.assertTrue(AgentChatSummaryServiceImpl.buildBatchConversation(sessions, 1)
+                .contains("d".repeat(40)));
+    }
+
+    private static AgentChatHistoryDTO message(String macAddress, int chatType, String content) {
+        AgentChatHistoryDTO dto = new AgentChatHistoryDTO();
+        dto.setMacAddress(macAddress);
+        dto.setChatType((byte) chatType);
+        dto.setContent(content);
+        return dto;
+    }
+
+    private static DeviceEntity device(String id) {
+        DeviceEntity device = new DeviceEntity();
+        device.setId(id);
+        return device;
+    }
+}
@@ -0,0 +1,97 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.modules.agent.dao.AgentDao;
+import xiaozhi.modules.agent.vo.AgentConfigVO;
+
+/**
+ * Version-keyed caching of the agent configuration projection.
+ */
+class AgentConfigCacheTest {
+
+    @Test
+    void projectionIsCachedUntilTheAgentIsEvicted() {
+        AgentDao agentDao = Mockito.mock(AgentDao.class);
+        MapRedisUtils redisUtils = new MapRedisUtils();
+        AgentServiceImpl service = new AgentServiceImpl(agentDao, null, null, null, redisUtils, null, null, null,
+                null, null, null, null, null, null);
+        Mockito.when(agentDao.selectAgentConfigById("agent-1"))
+                .thenReturn(config("slm-a"), config("slm-b"));
+
+        Assertions.assertEquals("slm-a", service.getAgentConfigById("agent-1").getSlmModelId());
+        Assertions.assertEquals("slm-a", service.getAgentConfigById("agent-1").getSlmModelId());
+        Mockito.verify(agentDao, Mockito.times(1)).selectAgentConfigById("agent-1");
+
+        service.evictAgentConfig("agent-1");
+
+        Assertions.assertEquals("slm-b", service.getAgentConfigById("agent-1").getSlmModelId());
+        Mockito.verify(agentDao, Mockito.times(2)).selectAgentConfigById("agent-1");
+    }
+
+    @Test
+    void missingAgentIsNotCached() {
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        ReflectionTestUtils.setField(MessageUtils.class, "messageSource", messageSource);
+        AgentDao agentDao = Mockito.mock(AgentDao.class);
+        MapRedisUtils redisUtils = new MapRedisUtils();
+        AgentServiceImpl service = new AgentServiceImpl(agentDao, null, null, null, redisUtils, null, null, null,
+                null, null, null, null, null, null);
+
+        Assertions.assertThrows(RenException.class, () -> service.getAgentConfigById("missing"));
+        Assertions.assertTrue(redisUtils.values.isEmpty());
+    }
+
+    @Test
+    void projectionSurvivesTheRedisJsonSerializer() {
+        RedisSerializer<Object> serializer = RedisSerializer.json();
+        AgentConfigVO config = config("slm-a");
+        config.setTtsVolume(3);
+
+        Object restored = serializer.deserialize(serializer.serialize(config));
+
+        Assertions.assertEquals(config, restored);
+    }
+
+    private static AgentConfigVO config(String slmModelId) {
+        AgentConfigVO config = new AgentConfigVO();
+        config.setId("agent-1");
+        config.setUserId(7L);
+        config.setSlmModelId(slmModelId);
+        config.setSummaryMemory("- likes tea\n");
+        return config;
+    }
+
+    private static class MapRedisUtils extends RedisUtils {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Object get(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void set(String key, Object value, long expire) {
+            values.put(key, value);
+        }
+
+        @Override
+        public Long increment(String key) {
+            Long next = values.get(key) == null ? 1L : ((Number) values.get(key)).longValue() + 1;
+            values.put(key, next);
+            return next;
+        }
+    }
+}
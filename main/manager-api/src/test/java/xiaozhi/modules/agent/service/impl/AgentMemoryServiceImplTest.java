@@ -0,0 +1,145 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import xiaozhi.modules.agent.dao.AgentMemoryDao;
+import xiaozhi.modules.agent.entity.AgentMemoryEntity;
+import xiaozhi.modules.agent.support.ChatMessageExtractor;
+import xiaozhi.modules.agent.support.MemoryFact;
+
+/**
+ * Structured agent memory against an in-memory H2 database.
+ */
+class AgentMemoryServiceImplTest {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private AgentMemoryDao memoryDao;
+    private AgentMemoryServiceImpl memoryService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:agent_memory_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ai_agent_memory (id VARCHAR(32) PRIMARY KEY, agent_id VARCHAR(32),"
+                    + " device_id VARCHAR(32), session_id VARCHAR(50), content VARCHAR(1000), importance TINYINT,"
+                    + " token_count INT, compacted TINYINT, created_at DATETIME, updated_at DATETIME)");
+        }
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(AgentMemoryDao.class);
+        SqlSessionFactory sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        memoryDao = new SqlSessionTemplate(sqlSessionFactory).getMapper(AgentMemoryDao.class);
+        memoryService = new AgentMemoryServiceImpl(memoryDao);
+    }
+
+    @Test
+    void parsesFactLinesAndRejectsFreeText() {
+        Assertions.assertEquals(List.of(new MemoryFact(4, "Lives in Lisbon"), new MemoryFact(2, "Likes tea")),
+                MemoryFact.parse("- 4 | Lives in Lisbon\n2|Likes tea\n"));
+        Assertions.assertEquals(List.of(), MemoryFact.parse(" NONE "));
+        Assertions.assertNull(MemoryFact.parse("生成总结失败，请稍后重试"));
+    }
+
+    @Test
+    void renderKeepsImportantFactsWithinBudgetInChronologicalOrder() {
+        long now = System.currentTimeMillis();
+        insert("old trivia about the weather preference", 1, null, now - 90 * DAY_MILLIS);
+        insert("Has a daughter called Ana", 5, "dev-1", now - 10 * DAY_MILLIS);
+        insert("Moved to Lisbon", 4, "dev-2", now - DAY_MILLIS);
+        memoryService.appendFacts("agent-1", "dev-1", "s1", List.of(new MemoryFact(1, " "),
+                new MemoryFact(3, "Drinks green tea")));
+
+        Assertions.assertNull(memoryService.renderMemory("agent-2", null, 600));
+        Assertions.assertEquals("- old trivia about the weather preference\n",
+                memoryService.renderMemory("agent-1", null, 600));
+        Assertions.assertEquals("- old trivia about the weather preference\n- Has a daughter called Ana\n"
+                + "- Drinks green tea\n", memoryService.renderMemory("agent-1", "dev-1", 600));
+        Assertions.assertEquals("- old trivia about the weather preference\n- Moved to Lisbon\n",
+                memoryService.renderMemory("agent-1", "dev-2", 600));
+        // About six tokens per fact plus one for the line: room for the two most important
+        Assertions.assertEquals("- Has a daughter called Ana\n- Drinks green tea\n",
+                memoryService.renderMemory("agent-1", "dev-1", 15));
+    }
+
+    @Test
+    void compactionCondensesTheLowestValueFacts() {
+        long now = System.currentTimeMillis();
+        String fact = "x".repeat(400);
+        for (int i = 0; i < 40; i++) {
+            insert(fact + i, i < 10 ? 5 : 1, "dev-1", now - i * DAY_MILLIS);
+        }
+        Assertions.assertEquals(List.of("agent-1"), memoryService.getAgentsToCompact());
+
+        List<String> condenserInput = new ArrayList<>();
+        Assertions.assertEquals(0, memoryService.compact("agent-1", text -> {
+            condenserInput.add(text);
+            return null;
+        }));
+        Assertions.assertEquals(40L, memoryDao.selectCount(null));
+
+        int merged = memoryService.compact("agent-1", text -> List.of(new MemoryFact(2, "Condensed facts")));
+
+        Assertions.assertTrue(condenserInput.get(0).startsWith("1|"));
+        List<AgentMemoryEntity> left = memoryDao.selectList(null);
+        Assertions.assertEquals(40 - merged + 1, left.size());
+        AgentMemoryEntity condensed = left.stream().filter(e -> e.getCompacted() == 1).findFirst().orElseThrow();
+        Assertions.assertEquals("Condensed facts", condensed.getContent());
+        Assertions.assertEquals("dev-1", condensed.getDeviceId());
+        Assertions.assertEquals(10, left.stream().filter(e -> e.getImportance() == 5).count());
+        Assertions.assertTrue(memoryService.getAgentsToCompact().isEmpty());
+
+        memoryService.deleteByAgentId("agent-1");
+        Assertions.assertEquals(0L, memoryDao.selectCount(new QueryWrapper<AgentMemoryEntity>()
+                .eq("agent_id", "agent-1")));
+    }
+
+    @Test
+    void compactionCountsEachDeviceOnItsOwn() {
+        long now = System.currentTimeMillis();
+        String fact = "y".repeat(400);
+        int perDevice = AgentMemoryServiceImpl.COMPACT_THRESHOLD_TOKENS / ChatMessageExtractor.estimateTokens(fact + 0);
+        for (int i = 0; i < perDevice; i++) {
+            insert(fact + i, 1, "dev-1", now - i * DAY_MILLIS);
+            insert(fact + i, 1, "dev-2", now - i * DAY_MILLIS);
+        }
+
+        Assertions.assertTrue(memoryService.getAgentsToCompact().isEmpty());
+        Assertions.assertEquals(0, memoryService.compact("agent-1", text -> List.of(new MemoryFact(2, "Merged"))));
+        Assertions.assertEquals(2L * perDevice, memoryDao.selectCount(null));
+    }
+
+    private void insert(String content, int importance, String deviceId, long createdAt) {
+        memoryDao.insert(AgentMemoryEntity.builder()
+                .agentId("agent-1")
+                .deviceId(deviceId)
+                .content(content)
+                .importance(importance)
+                .tokenCount(ChatMessageExtractor.estimateTokens(content))
+                .compacted(0)
+                .createdAt(new Date(createdAt))
+                .updatedAt(new Date())
+                .build());
+    }
+}
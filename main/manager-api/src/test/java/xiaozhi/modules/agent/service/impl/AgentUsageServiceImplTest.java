@@ -0,0 +1,257 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.modules.agent.dao.AgentUsageDailyDao;
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+import xiaozhi.modules.agent.entity.AgentUsageDailyEntity;
+import xiaozhi.modules.agent.event.ChatHistoryReportedEvent;
+import xiaozhi.modules.agent.support.UsageProperties;
+import xiaozhi.modules.agent.vo.AgentUsageDailyVO;
+import xiaozhi.modules.agent.vo.AgentUsageDeviceVO;
+import xiaozhi.modules.agent.vo.UsageBackfillStatusVO;
+import xiaozhi.modules.agent.vo.UsageSummaryVO;
+import xiaozhi.modules.device.event.DeviceCheckedInEvent;
+
+/**
+ * Usage counters flushed to daily rollups, dashboards read from them, and the backfill from
+ * chat history, against an in-memory H2 database.
+ */
+class AgentUsageServiceImplTest {
+
+    private static final String MAPPER = "mapper/agent/AgentUsageDailyDao.xml";
+
+    private JdbcDataSource dataSource;
+    private AgentUsageDailyDao usageDao;
+    private RedisUtils redisUtils;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:agent_usage_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ai_agent_usage_daily (agent_id VARCHAR(32) NOT NULL, stat_date DATE NOT NULL,"
+                    + " mac_address VARCHAR(50) NOT NULL DEFAULT '', messages BIGINT NOT NULL DEFAULT 0,"
+                    + " sessions BIGINT NOT NULL DEFAULT 0, audio_bytes BIGINT NOT NULL DEFAULT 0,"
+                    + " check_ins BIGINT NOT NULL DEFAULT 0, updated_at DATETIME,"
+                    + " PRIMARY KEY (agent_id, stat_date, mac_address))");
+            statement.execute("CREATE TABLE ai_agent_chat_history (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " mac_address VARCHAR(50), agent_id VARCHAR(32), session_id VARCHAR(50), chat_type TINYINT,"
+                    + " content VARCHAR(1024), audio_id VARCHAR(32), created_at DATETIME(3), updated_at DATETIME(3))");
+            statement.execute("CREATE TABLE ai_agent_chat_audio (id VARCHAR(32) PRIMARY KEY, audio LONGBLOB)");
+        }
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(AgentUsageDailyDao.class);
+        try (InputStream mapper = Resources.getResourceAsStream(MAPPER)) {
+            new XMLMapperBuilder(mapper, configuration, MAPPER, configuration.getSqlFragments()).parse();
+        }
+        SqlSessionTemplate template = new SqlSessionTemplate(new MybatisSqlSessionFactoryBuilder().build(configuration));
+        usageDao = template.getMapper(AgentUsageDailyDao.class);
+
+        // Redis as shared by every node: a session marker can only be set once
+        Set<String> marks = new HashSet<>();
+        redisUtils = Mockito.mock(RedisUtils.class);
+        Mockito.when(redisUtils.setIfAbsent(Mockito.anyString(), Mockito.any(), Mockito.anyLong()))
+                .thenAnswer(invocation -> marks.add(invocation.getArgument(0)));
+    }
+
+    @Test
+    @DisplayName("Reports and check-ins are counted per device and day, and each flush adds to the rollups")
+    void countsAndFlushes() {
+        AgentUsageServiceImpl node1 = service(usageDao);
+        AgentUsageServiceImpl node2 = service(usageDao);
+        LocalDate today = LocalDate.now();
+
+        node1.onReported(report("a", "m1", "s1", today, 100));
+        node1.onReported(report("a", "m1", "s1", today, 50));
+        // Same session on another node is not counted again
+        node2.onReported(report("a", "m1", "s1", today, 0));
+        node1.onReported(report("a", "m2", "s2", today, 0));
+        node1.onReported(report("b", "m3", "s3", today.minusDays(2), 10));
+        node1.onCheckedIn(new DeviceCheckedInEvent("a", "m1"));
+        node2.onCheckedIn(new DeviceCheckedInEvent("a", "m4"));
+        node1.flush();
+        node2.flush();
+        node1.onReported(report("a", "m1", "s4", today, 0));
+        node1.flush();
+
+        List<AgentUsageDailyVO> daily = node1.getDaily("a", null, today.minusDays(2), today);
+        Assertions.assertEquals(List.of(today.minusDays(2), today.minusDays(1), today),
+                daily.stream().map(AgentUsageDailyVO::getStatDate).toList());
+        Assertions.assertEquals(0, daily.get(0).getMessages());
+        AgentUsageDailyVO day = daily.get(2);
+        Assertions.assertEquals(5, day.getMessages());
+        Assertions.assertEquals(3, day.getSessions());
+        Assertions.assertEquals(150, day.getAudioBytes());
+        Assertions.assertEquals(2, day.getCheckIns());
+        Assertions.assertEquals(3, day.getActiveDevices());
+        Assertions.assertEquals(4, node1.getDaily("a", "m1", today, today).get(0).getMessages());
+
+        List<AgentUsageDeviceVO> devices = node1.getDevices("a", today.minusDays(2), today);
+        Assertions.assertEquals(List.of("m1", "m2", "m4"), devices.stream().map(AgentUsageDeviceVO::getMacAddress).toList());
+        Assertions.assertEquals(2, devices.get(0).getSessions());
+
+        List<UsageSummaryVO> summary = node1.getSummary(today.minusDays(2), today);
+        Assertions.assertEquals(1, summary.get(0).getMessages());
+        Assertions.assertEquals(1, summary.get(0).getActiveAgents());
+        Assertions.assertEquals(1, summary.get(2).getActiveAgents());
+        Assertions.assertEquals(3, summary.get(2).getSessions());
+        Assertions.assertEquals(3, summary.get(2).getActiveDevices());
+    }
+
+    @Test
+    @DisplayName("Counters that fail to write are kept and written by the next flush")
+    void keepsCountersWhenFlushFails() {
+        AgentUsageDailyDao failing = Mockito.mock(AgentUsageDailyDao.class);
+        Mockito.when(failing.upsert(Mockito.anyList(), Mockito.eq(false)))
+                .thenThrow(new QueryTimeoutException("down"))
+                .thenAnswer(invocation -> usageDao.upsert(invocation.getArgument(0), false));
+        AgentUsageServiceImpl service = service(failing);
+        LocalDate today = LocalDate.now();
+
+        service.onReported(report("a", "m1", "s1", today, 0));
+        service.flush();
+        Assertions.assertEquals(1, service.getBackfillStatus().getPendingCounters());
+        service.onReported(report("a", "m1", "s1", today, 0));
+        service.flush();
+
+        Assertions.assertEquals(0, service.getBackfillStatus().getPendingCounters());
+        Mockito.when(failing.selectDaily("a", null, today, today)).thenAnswer(
+                invocation -> usageDao.selectDaily("a", null, today, today));
+        Assertions.assertEquals(2, service.getDaily("a", null, today, today).get(0).getMessages());
+    }
+
+    @Test
+    @DisplayName("Backfill recounts past days from chat history, skipping days with rollups unless told to overwrite")
+    void backfillsFromHistory() throws Exception {
+        LocalDate day1 = LocalDate.now().minusDays(3);
+        LocalDate day2 = LocalDate.now().minusDays(2);
+        insert("a", "m1", "s1", day1, "au1", 300);
+        insert("a", "m1", "s1", day1, null, 0);
+        insert("a", "m1", "s2", day1, "au2", 200);
+        insert("a", "m2", "s3", day1, null, 0);
+        insert("b", null, "s4", day2, null, 0);
+        insert("a", "m1", "s6", day2, null, 0);
+        insert("a", "m1", "s6", day2, null, 0);
+        // Today is left to the live counters
+        insert("a", "m1", "s5", LocalDate.now(), null, 0);
+        AgentUsageServiceImpl service = service(usageDao);
+        service.onCheckedIn(new DeviceCheckedInEvent("b", "m9"));
+        service.flush();
+        usageDao.upsert(List.of(AgentUsageDailyEntity.builder().agentId("a")
+                .statDate(day2).macAddress("m1").messages(7L).sessions(1L).audioBytes(0L).checkIns(3L).build()), false);
+
+        Assertions.assertTrue(service.backfill(day1, null, false));
+
+        UsageBackfillStatusVO status = service.getBackfillStatus();
+        Assertions.assertFalse(status.isRunning());
+        Assertions.assertEquals(LocalDate.now().minusDays(1), status.getEndDate());
+        Assertions.assertEquals(2, status.getDaysFilled());
+        Assertions.assertEquals(1, status.getDaysSkipped());
+        AgentUsageDailyVO first = service.getDaily("a", null, day1, day1).get(0);
+        Assertions.assertEquals(4, first.getMessages());
+        Assertions.assertEquals(3, first.getSessions());
+        Assertions.assertEquals(500, first.getAudioBytes());
+        Assertions.assertEquals(2, first.getActiveDevices());
+        Assertions.assertEquals(7, service.getDaily("a", null, day2, day2).get(0).getMessages());
+        Assertions.assertEquals(0, service.getDaily("a", null, LocalDate.now(), LocalDate.now()).get(0).getMessages());
+
+        Assertions.assertTrue(service.backfill(day2, day2, true));
+        AgentUsageDailyVO second = service.getDaily("a", null, day2, day2).get(0);
+        // Recounted from history, check-ins kept
+        Assertions.assertEquals(2, second.getMessages());
+        Assertions.assertEquals(1, second.getSessions());
+        Assertions.assertEquals(3, second.getCheckIns());
+        Assertions.assertEquals(1, service.getDaily("b", "", day2, day2).get(0).getMessages());
+    }
+
+    @Test
+    @DisplayName("Ranges must run forward and stay within the configured length")
+    void rejectsBadRanges() {
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        ReflectionTestUtils.setField(MessageUtils.class, "messageSource", messageSource);
+        AgentUsageServiceImpl service = service(usageDao);
+        LocalDate today = LocalDate.now();
+
+        RenException e = Assertions.assertThrows(RenException.class,
+                () -> service.getDaily("a", null, today, today.minusDays(1)));
+        Assertions.assertEquals(ErrorCode.USAGE_RANGE_INVALID, e.getCode());
+        Assertions.assertThrows(RenException.class, () -> service.getSummary(today.minusDays(30), today));
+        Assertions.assertEquals(30, service.getSummary(today.minusDays(29), today).size());
+        Assertions.assertThrows(RenException.class, () -> service.backfill(today, null, false));
+    }
+
+    private AgentUsageServiceImpl service(AgentUsageDailyDao dao) {
+        UsageProperties properties = new UsageProperties();
+        properties.setMaxRangeDays(30);
+        return new AgentUsageServiceImpl(dao, redisUtils, properties, Runnable::run);
+    }
+
+    private static ChatHistoryReportedEvent report(String agentId, String macAddress, String sessionId,
+            LocalDate day, long audioBytes) {
+        AgentChatHistoryEntity message = AgentChatHistoryEntity.builder().agentId(agentId).macAddress(macAddress)
+                .sessionId(sessionId).chatType((byte) 1).content("hi")
+                .createdAt(Date.from(day.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant())).build();
+        return new ChatHistoryReportedEvent(message, audioBytes);
+    }
+
+    private void insert(String agentId, String macAddress, String sessionId, LocalDate day, String audioId,
+            int audioBytes) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO ai_agent_chat_history"
+                    + " (agent_id, mac_address, session_id, chat_type, content, audio_id, created_at)"
+                    + " VALUES (?, ?, ?, 1, 'x', ?, ?)")) {
+                statement.setString(1, agentId);
+                statement.setString(2, macAddress);
+                statement.setString(3, sessionId);
+                statement.setString(4, audioId);
+                statement.setTimestamp(5, Timestamp.valueOf(day.atTime(12, 0)));
+                statement.executeUpdate();
+            }
+            if (audioId != null) {
+                try (PreparedStatement statement = connection
+                        .prepareStatement("INSERT INTO ai_agent_chat_audio (id, audio) VALUES (?, ?)")) {
+                    statement.setString(1, audioId);
+                    statement.setBytes(2, new byte[audioBytes]);
+                    statement.executeUpdate();
+                }
+            }
+        }
+    }
+}
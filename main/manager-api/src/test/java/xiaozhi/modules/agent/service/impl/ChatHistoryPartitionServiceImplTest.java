@@ -0,0 +1,177 @@
+package xiaozhi.modules.agent.service.impl;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.BadSqlGrammarException;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+
+import xiaozhi.modules.agent.dao.AiAgentChatHistoryDao;
+import xiaozhi.modules.agent.dao.ChatHistoryPartitionDao;
+import xiaozhi.modules.agent.support.ChatHistoryPartitions;
+import xiaozhi.modules.agent.support.ChatPartitionProperties;
+
+/**
+ * Monthly chat history partition planning, and partition drops against an in-memory H2
+ * database standing in for the partitioned table.
+ */
+class ChatHistoryPartitionServiceImplTest {
+
+    private static final String MAPPER = "mapper/agent/AiAgentChatHistoryDao.xml";
+
+    private JdbcDataSource dataSource;
+    private AiAgentChatHistoryDao historyDao;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:chat_partition_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ai_agent_chat_history (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " mac_address VARCHAR(50), agent_id VARCHAR(32), session_id VARCHAR(50), chat_type TINYINT,"
+                    + " content VARCHAR(1024), audio_id VARCHAR(32), created_at DATETIME(3), updated_at DATETIME(3))");
+            statement.execute("CREATE TABLE ai_agent_chat_audio (id VARCHAR(32) PRIMARY KEY, audio LONGBLOB)");
+        }
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(AiAgentChatHistoryDao.class);
+        configuration.addMapper(ChatHistoryPartitionDao.class);
+        try (InputStream mapper = Resources.getResourceAsStream(MAPPER)) {
+            new XMLMapperBuilder(mapper, configuration, MAPPER, configuration.getSqlFragments()).parse();
+        }
+        SqlSessionTemplate template = new SqlSessionTemplate(new MybatisSqlSessionFactoryBuilder().build(configuration));
+        historyDao = template.getMapper(AiAgentChatHistoryDao.class);
+    }
+
+    @Test
+    @DisplayName("Partition names map to months; the future and archive partitions are not monthly")
+    void namesMonthlyPartitions() {
+        Assertions.assertEquals(YearMonth.of(2025, 5), ChatHistoryPartitions.month("p202505"));
+        Assertions.assertEquals("p202612", ChatHistoryPartitions.name(YearMonth.of(2026, 12)));
+        Assertions.assertNull(ChatHistoryPartitions.month(ChatHistoryPartitions.FUTURE));
+        Assertions.assertNull(ChatHistoryPartitions.month("p_archive"));
+        Assertions.assertNull(ChatHistoryPartitions.month("p2025051"));
+    }
+
+    @Test
+    @DisplayName("Upcoming months are split off p_future, including any the task missed")
+    void plansMissingMonths() {
+        List<String> partitions = List.of("p_archive", "p202608", "p202609", ChatHistoryPartitions.FUTURE);
+
+        Assertions.assertEquals(List.of(YearMonth.of(2026, 10), YearMonth.of(2026, 11), YearMonth.of(2026, 12)),
+                ChatHistoryPartitions.missing(partitions, YearMonth.of(2026, 10), 2));
+        Assertions.assertEquals(List.of(),
+                ChatHistoryPartitions.missing(partitions, YearMonth.of(2026, 8), 1));
+        Assertions.assertEquals("PARTITION p202612 VALUES LESS THAN ('2027-01-01'),"
+                + " PARTITION p_future VALUES LESS THAN (MAXVALUE)",
+                ChatHistoryPartitions.definitions(List.of(YearMonth.of(2026, 12))));
+    }
+
+    @Test
+    @DisplayName("A month expires once all of its rows are older than the limit")
+    void plansExpiredMonths() {
+        List<String> partitions = List.of("p_archive", "p202509", "p202510", "p202511", ChatHistoryPartitions.FUTURE);
+
+        Assertions.assertEquals(List.of("p202509"),
+                ChatHistoryPartitions.expired(partitions, YearMonth.of(2026, 10), 12));
+        Assertions.assertEquals(List.of("p202509", "p202510"),
+                ChatHistoryPartitions.expired(partitions, YearMonth.of(2026, 11), 12));
+    }
+
+    @Test
+    @DisplayName("Without partitions, as on H2, maintenance does nothing")
+    void skipsUnpartitionedTable() {
+        ChatHistoryPartitionDao partitionDao = Mockito.mock(ChatHistoryPartitionDao.class);
+        Mockito.when(partitionDao.selectPartitionNames())
+                .thenThrow(new BadSqlGrammarException("partitions", "SELECT", null));
+
+        ChatHistoryPartitionServiceImpl service = service(partitionDao, 1);
+        service.maintain();
+
+        Assertions.assertEquals(List.of(), service.getPartitionNames());
+        Mockito.verify(partitionDao, Mockito.never()).reorganizeFuture(Mockito.anyString());
+        Mockito.verify(partitionDao, Mockito.never()).dropPartition(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Dropping a month deletes the audio of its messages, and only its own, before the partition")
+    void dropsMonthWithItsAudio() throws Exception {
+        for (int i = 0; i < 1500; i++) {
+            insert(LocalDate.of(2025, 5, 1 + i % 31), "m" + i);
+        }
+        insert(LocalDate.of(2025, 6, 1), "june");
+        insert(LocalDate.of(2025, 4, 30), "april");
+        ChatHistoryPartitionDao partitionDao = Mockito.mock(ChatHistoryPartitionDao.class);
+        Mockito.when(partitionDao.selectPartitionNames()).thenReturn(List.of("p_archive", "p202505", "p202506",
+                ChatHistoryPartitions.FUTURE));
+
+        service(partitionDao, 1).maintain();
+
+        InOrder order = Mockito.inOrder(partitionDao);
+        order.verify(partitionDao).reorganizeFuture(Mockito.anyString());
+        order.verify(partitionDao).dropPartition("p202505");
+        order.verify(partitionDao).dropPartition("p202506");
+        order.verifyNoMoreInteractions();
+        // Both months expired, so only April, outside any monthly partition, keeps its audio
+        Assertions.assertEquals(1L, count());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service(partitionDao, 1).dropPartition(ChatHistoryPartitions.FUTURE));
+    }
+
+    private ChatHistoryPartitionServiceImpl service(ChatHistoryPartitionDao partitionDao, int dropAfterMonths) {
+        ChatPartitionProperties properties = new ChatPartitionProperties();
+        properties.setDropAfterMonths(dropAfterMonths);
+        return new ChatHistoryPartitionServiceImpl(partitionDao, historyDao, properties,
+                Mockito.mock(ApplicationEventPublisher.class));
+    }
+
+    private void insert(LocalDate day, String audioId) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO ai_agent_chat_history"
+                    + " (agent_id, session_id, chat_type, content, audio_id, created_at) VALUES ('a', 's', 1, 'x', ?, ?)")) {
+                statement.setString(1, audioId);
+                statement.setTimestamp(2, Timestamp.valueOf(day.atTime(12, 0)));
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = connection
+                    .prepareStatement("INSERT INTO ai_agent_chat_audio (id, audio) VALUES (?, ?)")) {
+                statement.setString(1, audioId);
+                statement.setBytes(2, new byte[] { 1 });
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private long count() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM ai_agent_chat_audio")) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package xiaozhi.modules.agent.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import xiaozhi.common.benchmark.Benchmarks;
+import xiaozhi.modules.agent.dto.AgentChatHistoryDTO;
+
+/**
+ * Summary preprocessing: correctness and throughput against the previous regex filters.
+ */
+@DisplayName("Chat Message Extractor Test")
+class ChatMessageExtractorTest {
+
+    @Test
+    @DisplayName("JSON payloads, noise filters and short messages")
+    void filtersMessages() {
+        Assertions.assertEquals("I adopted a cat",
+                ChatMessageExtractor.extractContent("{\"type\":\"text\",\"content\":\"I adopted a cat\"}"));
+        Assertions.assertEquals("say \"hi\"",
+                ChatMessageExtractor.extractContent("prefix {\"content\":\"say \\\"hi\\\"\"} suffix"));
+        Assertions.assertEquals("{\"type\":\"image\"}",
+                ChatMessageExtractor.extractContent("{\"type\":\"image\"}"));
+        Assertions.assertEquals("{not json}", ChatMessageExtractor.extractContent("{not json} at all"));
+        Assertions.assertEquals("plain text", ChatMessageExtractor.extractContent("plain text"));
+
+        Assertions.assertFalse(ChatMessageExtractor.isMeaningful("What is the WEATHER like"));
+        Assertions.assertFalse(ChatMessageExtractor.isMeaningful("please show Device Status"));
+        Assertions.assertFalse(ChatMessageExtractor.isMeaningful("what time is it"));
+        Assertions.assertFalse(ChatMessageExtractor.isMeaningful("hey"));
+        Assertions.assertTrue(ChatMessageExtractor.isMeaningful("My sister lives in Porto"));
+        Assertions.assertTrue(ChatMessageExtractor.isMeaningful("我喜欢喝绿茶和看书"));
+
+        List<AgentChatHistoryDTO> history = List.of(message(1, "first thing to remember"),
+                message(2, "assistant reply is ignored"), message(1, "second thing to remember"),
+                message(1, "third thing to remember"));
+        Assertions.assertEquals(List.of("second thing to remember", "third thing to remember"),
+                ChatMessageExtractor.extract(history, 12, true));
+        Assertions.assertEquals(List.of("first thing to remember", "second thing to remember"),
+                ChatMessageExtractor.extract(history, 12, false));
+    }
+
+    @Test
+    @DisplayName("Keyword automaton agrees with the regex it replaces")
+    void matchesRegexFilters() {
+        List<AgentChatHistoryDTO> session = syntheticSession(2_000, 7);
+        for (AgentChatHistoryDTO message : session) {
+            String legacy = LegacyFilter.extractContent(message.getContent());
+            Assertions.assertEquals(legacy, ChatMessageExtractor.extractContent(message.getContent()));
+            Assertions.assertEquals(LegacyFilter.isMeaningful(legacy), ChatMessageExtractor.isMeaningful(legacy),
+                    legacy);
+        }
+    }
+
+    @Test
+    @DisplayName("10k-message session with and without a token budget")
+    void largeSession() {
+        List<AgentChatHistoryDTO> session = syntheticSession(10_000, 42);
+
+        int legacyCount = LegacyFilter.extract(session).size();
+        int extractorCount = ChatMessageExtractor.extract(session, Integer.MAX_VALUE, true).size();
+        int budgeted = ChatMessageExtractor.extract(session, 4_000, true).size();
+
+        Assertions.assertEquals(legacyCount, extractorCount);
+        Assertions.assertTrue(budgeted > 0);
+        Assertions.assertTrue(budgeted < extractorCount);
+    }
+
+    @Test
+    @Tag(Benchmarks.TAG)
+    @DisplayName("Benchmark: preprocessing a 10k-message session, regex filters against the extractor")
+    void benchmark() throws Exception {
+        List<AgentChatHistoryDTO> session = syntheticSession(10_000, 42);
+
+        long legacyNanos = Benchmarks.nanos(10, () -> LegacyFilter.extract(session));
+        long extractorNanos = Benchmarks.nanos(10,
+                () -> ChatMessageExtractor.extract(session, Integer.MAX_VALUE, true));
+        long budgetNanos = Benchmarks.nanos(10, () -> ChatMessageExtractor.extract(session, 4_000, true));
+
+        Benchmarks.report("10k messages: regex %.2f ms, extractor %.2f ms, extractor with 4000-token budget %.2f ms",
+                legacyNanos / 1e6, extractorNanos / 1e6, budgetNanos / 1e6);
+        Assertions.assertTrue(extractorNanos < legacyNanos,
+                "the keyword automaton should beat the regex filters it replaces");
+    }
+
+    private static List<AgentChatHistoryDTO> syntheticSession(int size, long seed) {
+        String[] texts = { "I am training for a marathon in the spring", "What is the weather tomorrow",
+                "turn the volume up", "My son starts school in September", "set the device status to idle",
+                "what time is it now", "I really enjoy cooking Thai food", "ok", "我下个月要去北京出差",
+                "Remind me that my anniversary is on the 12th", "Tell me a joke about cats" };
+        Random random = new Random(seed);
+        List<AgentChatHistoryDTO> session = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String text = texts[random.nextInt(texts.length)];
+            String content = switch (random.nextInt(3)) {
+                case 0 -> "{\"type\":\"text\",\"content\":\"" + text + "\",\"speaker\":\"user\"}";
+                case 1 -> "[speaker] {\"content\":\"" + text + "\"}";
+                default -> text;
+            };
+            session.add(message(i % 2 == 0 ? 1 : 2, content));
+        }
+        return session;
+    }
+
+    private static AgentChatHistoryDTO message(int chatType, String content) {
+        AgentChatHistoryDTO dto = new AgentChatHistoryDTO();
+        dto.setChatType((byte) chatType);
+        dto.setContent(content);
+        return dto;
+    }
+
+    /**
+     * The regex-based preprocessing used before, kept as the baseline.
+     */
+    private static class LegacyFilter {
+        private static final Pattern JSON_PATTERN = Pattern.compile("\\{.*?\\}", Pattern.DOTALL);
+        private static final Pattern DEVICE_CONTROL_PATTERN = Pattern.compile(
+                "device control|device operation|control device|device status", Pattern.CASE_INSENSITIVE);
+        private static final Pattern WEATHER_PATTERN = Pattern.compile(
+                "weather|temperature|humidity|rain|forecast", Pattern.CASE_INSENSITIVE);
+        private static final Pattern DATE_PATTERN = Pattern.compile("date|time|day of week|month|year",
+                Pattern.CASE_INSENSITIVE);
+
+        static List<String> extract(List<AgentChatHistoryDTO> chatHistory) {
+            List<String> messages = new ArrayList<>();
+            for (AgentChatHistoryDTO message : chatHistory) {
+                if (message.getChatType() != null && message.getChatType() == 1) {
+                    String content = extractContent(message.getContent());
+                    if (isMeaningful(content)) {
+                        messages.add(content);
+                    }
+                }
+            }
+            return messages;
+        }
+
+        static String extractContent(String content) {
+            if (StringUtils.isBlank(content)) {
+                return "";
+            }
+            Matcher matcher = JSON_PATTERN.matcher(content);
+            if (matcher.find()) {
+                String json = matcher.group();
+                Matcher contentMatcher = Pattern.compile("\"content\"\\s*:\\s*\"([^\"]*)\"").matcher(json);
+                return contentMatcher.find() ? contentMatcher.group(1) : json;
+            }
+            return content;
+        }
+
+        static boolean isMeaningful(String content) {
+            if (StringUtils.isBlank(content)) {
+                return false;
+            }
+            if (DEVICE_CONTROL_PATTERN.matcher(content).find()) {
+                return false;
+            }
+            if (WEATHER_PATTERN.matcher(content).find() || DATE_PATTERN.matcher(content).find()) {
+                return false;
+            }
+            return content.length() >= 5;
+        }
+    }
+}
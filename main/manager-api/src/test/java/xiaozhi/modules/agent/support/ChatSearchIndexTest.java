@@ -0,0 +1,116 @@
+package xiaozhi.modules.agent.support;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import xiaozhi.modules.agent.entity.AgentChatHistoryEntity;
+
+/**
+ * Chat history full-text index on a temporary directory: scoping, highlighting and deletes.
+ */
+class ChatSearchIndexTest {
+
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    @TempDir
+    Path indexDir;
+
+    @Test
+    @DisplayName("Searches only the agent's messages, within the time range, best match first")
+    void scopesByAgentAndTime() throws Exception {
+        try (ChatSearchIndex index = new ChatSearchIndex(indexDir, 160)) {
+            index.add(message(1, "a", "s1", "turn on the kitchen light", 1 * DAY));
+            index.add(message(2, "a", "s1", "kitchen light", 2 * DAY));
+            index.add(message(3, "b", "s2", "kitchen light please", 2 * DAY));
+            index.add(message(4, "a", "s3", "what is the weather", 3 * DAY));
+            index.add(message(5, "c", "s4", "same words", 1 * DAY));
+            index.add(message(6, "c", "s4", "same words", 2 * DAY));
+
+            Assertions.assertEquals(List.of(2L, 1L), ids(index.search("a", "kitchen light", null, null, 10)));
+            Assertions.assertEquals(List.of(3L), ids(index.search("b", "kitchen", null, null, 10)));
+            Assertions.assertEquals(List.of(1L), ids(index.search("a", "kitchen", 0L, 2 * DAY, 10)));
+            Assertions.assertEquals(List.of(2L), ids(index.search("a", "kitchen -turn", null, null, 10)));
+            Assertions.assertEquals(List.of(4L), ids(index.search("a", "weath*", null, null, 10)));
+            // Equal scores, newer first
+            Assertions.assertEquals(List.of(6L, 5L), ids(index.search("c", "words", null, null, 10)));
+            Assertions.assertEquals(List.of(), index.search("a", "  ", null, null, 10));
+        }
+    }
+
+    @Test
+    @DisplayName("Snippets are HTML-escaped, highlight the matches and stay near the target length")
+    void highlightsEscapedSnippets() throws Exception {
+        String filler = "lorem ipsum dolor sit amet ".repeat(40);
+        try (ChatSearchIndex index = new ChatSearchIndex(indexDir, 80)) {
+            index.add(message(1, "a", "s1", "<b>remind</b> me & my sister", DAY));
+            index.add(message(2, "a", "s1", filler + "the alarm rings at seven " + filler, DAY));
+
+            ChatSearchIndex.Hit escaped = index.search("a", "remind", null, null, 10).get(0);
+            Assertions.assertEquals("&lt;b&gt;<em>remind</em>&lt;&#x2F;b&gt; me &amp; my sister", escaped.snippet());
+
+            String snippet = index.search("a", "alarm", null, null, 10).get(0).snippet();
+            Assertions.assertTrue(snippet.contains("<em>alarm</em>"), snippet);
+            Assertions.assertTrue(snippet.length() < 200, snippet);
+        }
+    }
+
+    @Test
+    @DisplayName("CJK queries match the phrase, and JSON message content is indexed by its text")
+    void matchesCjkPhrasesAndJsonContent() throws Exception {
+        try (ChatSearchIndex index = new ChatSearchIndex(indexDir, 160)) {
+            index.add(message(1, "a", "s1", "今天天气怎么样", DAY));
+            index.add(message(2, "a", "s1", "天上有气球", DAY));
+            index.add(message(3, "a", "s1", "{\"speaker\":\"x\",\"content\":\"播放音乐\"}", DAY));
+
+            Assertions.assertEquals(List.of(1L), ids(index.search("a", "天气", null, null, 10)));
+            Assertions.assertEquals(List.of(3L), ids(index.search("a", "音乐", null, null, 10)));
+            Assertions.assertEquals(List.of(), index.search("a", "speaker", null, null, 10));
+        }
+    }
+
+    @Test
+    @DisplayName("Deletes by IDs, session, agent and time range, and committed changes survive a reopen")
+    void deletesAndReopens() throws Exception {
+        try (ChatSearchIndex index = new ChatSearchIndex(indexDir, 160)) {
+            index.add(message(1, "a", "s1", "hello one", DAY));
+            index.add(message(2, "a", "s1", "hello two", DAY));
+            index.add(message(3, "a", "s2", "hello three", 2 * DAY));
+            index.add(message(4, "a", "s3", "hello four", 3 * DAY));
+            index.add(message(5, "b", "s4", "hello five", 3 * DAY));
+            index.add(message(6, "b", "s5", "hello six", 5 * DAY));
+            // Indexing again replaces the message
+            index.add(message(4, "a", "s3", "hello four again", 3 * DAY));
+
+            index.deleteIds(List.of(1L));
+            index.deleteSession("a", "s2");
+            Assertions.assertEquals(List.of(2L, 4L), ids(index.search("a", "hello", null, null, 10)));
+            index.deleteRange(3 * DAY, 4 * DAY);
+            Assertions.assertEquals(List.of(2L), ids(index.search("a", "hello", null, null, 10)));
+            Assertions.assertEquals(List.of(6L), ids(index.search("b", "hello", null, null, 10)));
+            index.deleteAgent("a");
+            index.commit();
+            Assertions.assertEquals(1, index.size());
+        }
+        try (ChatSearchIndex index = new ChatSearchIndex(indexDir, 160)) {
+            Assertions.assertEquals(List.of(6L), ids(index.search("b", "hello", null, null, 10)));
+            index.deleteAll();
+            Assertions.assertEquals(0, index.size());
+        }
+    }
+
+    private static List<Long> ids(List<ChatSearchIndex.Hit> hits) {
+        return hits.stream().map(ChatSearchIndex.Hit::id).toList();
+    }
+
+    private static AgentChatHistoryEntity message(long id, String agentId, String sessionId, String content,
+            long createdAt) {
+        return AgentChatHistoryEntity.builder().id(id).agentId(agentId).sessionId(sessionId).macAddress("m")
+                .chatType((byte) 1).content(content).createdAt(new Date(createdAt)).build();
+    }
+}
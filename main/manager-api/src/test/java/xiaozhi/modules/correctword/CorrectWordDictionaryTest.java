@@ -0,0 +1,112 @@
+package xiaozhi.modules.correctword;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.agent.dao.AgentCorrectWordMappingDao;
+import xiaozhi.modules.agent.entity.AgentCorrectWordMappingEntity;
+import xiaozhi.modules.correctword.dao.CorrectWordFileDao;
+import xiaozhi.modules.correctword.dao.CorrectWordItemDao;
+import xiaozhi.modules.correctword.entity.CorrectWordItemEntity;
+import xiaozhi.modules.correctword.service.impl.CorrectWordFileServiceImpl;
+import xiaozhi.modules.correctword.vo.CorrectWordDictionaryVO;
+
+/**
+ * Compiled correct-word dictionaries and their cache invalidation.
+ */
+class CorrectWordDictionaryTest {
+
+    private final CorrectWordItemDao itemDao = Mockito.mock(CorrectWordItemDao.class);
+    private final AgentCorrectWordMappingDao mappingDao = Mockito.mock(AgentCorrectWordMappingDao.class);
+    private final MapRedisUtils redisUtils = new MapRedisUtils();
+    private final CorrectWordFileServiceImpl service = new CorrectWordFileServiceImpl(
+            Mockito.mock(CorrectWordFileDao.class), itemDao, mappingDao, redisUtils);
+
+    @Test
+    void laterFilesOverrideEarlierOnesAndOrderDoesNotChangeTheVersion() {
+        mapFiles("f1", "f2");
+        Mockito.when(itemDao.selectWordsByFileIds(List.of("f1", "f2"))).thenReturn(List.of(
+                item("f2", "tomato", "tomahto"), item("f1", "tomato", "tomayto"), item("f1", "apple", "Apple")));
+
+        CorrectWordDictionaryVO dictionary = service.getAgentDictionary("agent-1");
+
+        Assertions.assertEquals(List.of("apple|Apple", "tomato|tomahto"), dictionary.getWords());
+        Assertions.assertEquals(CorrectWordDictionaryVO.of(List.of("apple|Apple", "tomato|tomahto")).getVersion(),
+                dictionary.getVersion());
+        Assertions.assertNotEquals(CorrectWordDictionaryVO.of(List.of()).getVersion(), dictionary.getVersion());
+    }
+
+    @Test
+    void dictionaryIsCompiledOnceUntilTheMappingChanges() {
+        mapFiles("f1");
+        Mockito.when(itemDao.selectWordsByFileIds(List.of("f1")))
+                .thenReturn(List.of(item("f1", "colour", "color")));
+
+        CorrectWordDictionaryVO first = service.getAgentDictionary("agent-1");
+        Assertions.assertSame(first, service.getAgentDictionary("agent-1"));
+        Mockito.verify(itemDao, Mockito.times(1)).selectWordsByFileIds(Mockito.any());
+
+        service.deleteMappingsByAgentId("agent-1");
+        mapFiles();
+
+        CorrectWordDictionaryVO second = service.getAgentDictionary("agent-1");
+        Assertions.assertEquals(List.of(), second.getWords());
+        Assertions.assertNotEquals(first.getVersion(), second.getVersion());
+    }
+
+    @Test
+    void dictionarySurvivesTheRedisJsonSerializer() {
+        RedisSerializer<Object> serializer = RedisSerializer.json();
+        CorrectWordDictionaryVO dictionary = CorrectWordDictionaryVO.of(List.of("a|b"));
+
+        Assertions.assertEquals(dictionary, serializer.deserialize(serializer.serialize(dictionary)));
+    }
+
+    private void mapFiles(String... fileIds) {
+        List<AgentCorrectWordMappingEntity> mappings = new ArrayList<>();
+        for (String fileId : fileIds) {
+            AgentCorrectWordMappingEntity mapping = new AgentCorrectWordMappingEntity();
+            mapping.setAgentId("agent-1");
+            mapping.setFileId(fileId);
+            mappings.add(mapping);
+        }
+        Mockito.when(mappingDao.selectByAgentId("agent-1")).thenReturn(mappings);
+    }
+
+    private static CorrectWordItemEntity item(String fileId, String source, String target) {
+        CorrectWordItemEntity item = new CorrectWordItemEntity();
+        item.setFileId(fileId);
+        item.setSourceWord(source);
+        item.setTargetWord(target);
+        return item;
+    }
+
+    private static class MapRedisUtils extends RedisUtils {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Object get(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void set(String key, Object value, long expire) {
+            values.put(key, value);
+        }
+
+        @Override
+        public Long increment(String key) {
+            Long next = values.get(key) == null ? 1L : ((Number) values.get(key)).longValue() + 1;
+            values.put(key, next);
+            return next;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package xiaozhi.modules.correctword;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+
+import xiaozhi.modules.correctword.dao.CorrectWordItemDao;
+import xiaozhi.modules.correctword.entity.CorrectWordItemEntity;
+import xiaozhi.modules.correctword.support.CorrectWordImporter;
+
+/**
+ * Diff-based correct-word imports against an in-memory H2 database.
+ */
+class CorrectWordImportTest {
+
+    private static final String MAPPER = "mapper/correctword/CorrectWordItemDao.xml";
+
+    private CorrectWordItemDao itemDao;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:correct_word_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ai_agent_correct_word_item (id VARCHAR(32) PRIMARY KEY,"
+                    + " file_id VARCHAR(32), source_word VARCHAR(128), target_word VARCHAR(128))");
+            statement.execute("CREATE INDEX idx_file_id ON ai_agent_correct_word_item (file_id)");
+        }
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(CorrectWordItemDao.class);
+        try (InputStream mapper = Resources.getResourceAsStream(MAPPER)) {
+            new XMLMapperBuilder(mapper, configuration, MAPPER, configuration.getSqlFragments()).parse();
+        }
+        SqlSessionFactory sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        itemDao = new SqlSessionTemplate(sqlSessionFactory).getMapper(CorrectWordItemDao.class);
+    }
+
+    @Test
+    void editingOneLineOfALargeFileWritesOneRow() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            lines.add("word" + i + "|Word" + i);
+        }
+        CorrectWordImporter.Summary created = new CorrectWordImporter(itemDao, "f1").importLines(lines);
+        Assertions.assertEquals(new CorrectWordImporter.Summary(2500, 0, 0, 0, 2500), created);
+
+        lines.set(1234, "word1234|WORD1234");
+        CorrectWordItemDao spy = Mockito.spy(itemDao);
+        CorrectWordImporter.Summary edited = new CorrectWordImporter(spy, "f1").importLines(lines);
+
+        Assertions.assertEquals(new CorrectWordImporter.Summary(0, 1, 0, 0, 2500), edited);
+        Mockito.verify(spy, Mockito.never()).batchInsert(Mockito.any());
+        Mockito.verify(spy, Mockito.never()).deleteBatchIds(Mockito.any());
+        Mockito.verify(spy, Mockito.times(1)).batchUpdateTargets(Mockito.argThat(items -> items.size() == 1));
+        Assertions.assertEquals("WORD1234", words("f1").get("word1234"));
+    }
+
+    @Test
+    void uploadInsertsNewWordsDeletesMissingOnesAndKeepsTheLastDuplicate() throws Exception {
+        new CorrectWordImporter(itemDao, "f1").importLines(List.of("apple|Apple", "pear|Pear", "plum|Plum"));
+        new CorrectWordImporter(itemDao, "f2").importLines(List.of("apple|APPLE"));
+
+        String upload = "\uFEFFapple|Apple\nkiwi|kiwi\n\nnot a pair\nplum|Plum\nkiwi|Kiwi\n";
+        CorrectWordImporter.Summary summary = new CorrectWordImporter(itemDao, "f1")
+                .importFrom(new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertEquals(new CorrectWordImporter.Summary(1, 0, 1, 1, 3), summary);
+        Assertions.assertEquals(Map.of("apple", "Apple", "kiwi", "Kiwi", "plum", "Plum"), words("f1"));
+        Assertions.assertEquals(Map.of("apple", "APPLE"), words("f2"));
+    }
+
+    @Test
+    void itemsAreReadBackInKeysetPages() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < CorrectWordImporter.BATCH_SIZE + 1; i++) {
+            lines.add("w" + i + "|t" + i);
+        }
+        new CorrectWordImporter(itemDao, "f1").importLines(lines);
+
+        List<CorrectWordItemEntity> first = itemDao.selectItemsPage("f1", null, CorrectWordImporter.BATCH_SIZE);
+        List<CorrectWordItemEntity> second = itemDao.selectItemsPage("f1",
+                first.get(first.size() - 1).getId(), CorrectWordImporter.BATCH_SIZE);
+
+        Assertions.assertEquals(CorrectWordImporter.BATCH_SIZE, first.size());
+        Assertions.assertEquals(1, second.size());
+        Assertions.assertTrue(second.get(0).getId().compareTo(first.get(first.size() - 1).getId()) > 0);
+    }
+
+    private Map<String, String> words(String fileId) {
+        Map<String, String> words = new TreeMap<>();
+        for (CorrectWordItemEntity item : itemDao.selectWordsByFileIds(List.of(fileId))) {
+            words.put(item.getSourceWord(), item.getTargetWord());
+        }
+        return words;
+    }
+}
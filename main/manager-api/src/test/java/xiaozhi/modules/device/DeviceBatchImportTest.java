@@ -0,0 +1,223 @@
+package xiaozhi.modules.device;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.modules.agent.service.AgentService;
+import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.dto.DeviceBatchImportDTO;
+import xiaozhi.modules.device.dto.DeviceManualAddDTO;
+import xiaozhi.modules.device.service.impl.DeviceServiceImpl;
+import xiaozhi.modules.device.vo.DeviceBatchImportResultVO;
+
+/**
+ * Bulk device import against an in-memory H2 database.
+ */
+@DisplayName("Device Batch Import Test")
+public class DeviceBatchImportTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String FOREIGN_AGENT = "agent-of-another-user";
+
+    private JdbcDataSource dataSource;
+    private RecordingRedisUtils redisUtils;
+    private DeviceServiceImpl deviceService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:device_import_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ai_device (id VARCHAR(32) PRIMARY KEY, user_id BIGINT,"
+                    + " mac_address VARCHAR(50), last_connected_at DATETIME, auto_update TINYINT, board VARCHAR(50),"
+                    + " alias VARCHAR(64), agent_id VARCHAR(32), app_version VARCHAR(20), sort INT,"
+                    + " creator BIGINT, create_date DATETIME, updater BIGINT, update_date DATETIME)");
+            statement.execute("CREATE INDEX idx_ai_device_mac_address ON ai_device (mac_address)");
+        }
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(DeviceDao.class);
+        SqlSessionFactory sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        DeviceDao deviceDao = new SqlSessionTemplate(sqlSessionFactory).getMapper(DeviceDao.class);
+
+        redisUtils = new RecordingRedisUtils();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        deviceService = new DeviceServiceImpl(deviceDao, null, null, redisUtils, null, transactionTemplate,
+                null, null);
+        ReflectionTestUtils.setField(deviceService, "baseDao", deviceDao);
+        AgentService agentService = Mockito.mock(AgentService.class);
+        Mockito.when(agentService.checkAgentPermission(Mockito.anyString(), Mockito.eq(USER_ID)))
+                .thenAnswer(invocation -> !FOREIGN_AGENT.equals(invocation.getArgument(0)));
+        ReflectionTestUtils.setField(deviceService, "agentService", agentService);
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        ReflectionTestUtils.setField(MessageUtils.class, "messageSource", messageSource);
+    }
+
+    @Test
+    @DisplayName("Rows are deduplicated against the table and within the request")
+    public void testImportReportsPerRowResults() throws Exception {
+        deviceService.batchImportDevices(USER_ID, request("agent-a", device("aa:00:00:00:00:01", null)));
+
+        DeviceBatchImportResultVO result = deviceService.batchImportDevices(USER_ID, request("agent-a",
+                device("aa:00:00:00:00:01", null),
+                device("aa:00:00:00:00:02", null),
+                device("aa:00:00:00:00:02", null),
+                device(" ", null),
+                device("aa:00:00:00:00:03", "agent-b")));
+
+        Assertions.assertEquals(5, result.getTotal());
+        Assertions.assertEquals(2, result.getCreated());
+        Assertions.assertEquals(2, result.getDuplicates());
+        Assertions.assertEquals(1, result.getFailed());
+        Assertions.assertEquals(DeviceBatchImportResultVO.STATUS_DUPLICATE, result.getRows().get(0).getStatus());
+        Assertions.assertEquals(DeviceBatchImportResultVO.STATUS_CREATED, result.getRows().get(1).getStatus());
+        Assertions.assertEquals(DeviceBatchImportResultVO.STATUS_DUPLICATE, result.getRows().get(2).getStatus());
+        Assertions.assertEquals(DeviceBatchImportResultVO.STATUS_INVALID, result.getRows().get(3).getStatus());
+        Assertions.assertEquals(DeviceBatchImportResultVO.STATUS_CREATED, result.getRows().get(4).getStatus());
+        Assertions.assertEquals(3, countDevices());
+        Assertions.assertEquals("agent-b", agentOf("aa:00:00:00:00:03"));
+        Assertions.assertTrue(redisUtils.deletedKeys.contains("agent:device:count:agent-b"));
+    }
+
+    @Test
+    @DisplayName("CSV import accepts snake_case and camelCase headers")
+    public void testImportFromCsv() {
+        String csv = "mac_address,board,agentId,app_version\n"
+                + "bb:00:00:00:00:01,esp32-s3,,1.0.0\n"
+                + "bb:00:00:00:00:02,esp32-s3,agent-c,1.0.1\n";
+        DeviceBatchImportResultVO result = deviceService.batchImportDevicesFromCsv(USER_ID, "agent-a",
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertEquals(2, result.getCreated());
+        Assertions.assertEquals("agent-a", agentOf("bb:00:00:00:00:01"));
+        Assertions.assertEquals("agent-c", agentOf("bb:00:00:00:00:02"));
+    }
+
+    @Test
+    @DisplayName("Bulk import throughput against H2")
+    public void testImportThroughput() throws Exception {
+        int total = 10000;
+        List<DeviceManualAddDTO> devices = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            devices.add(device(String.format("cc:00:00:%02x:%02x:%02x", i >> 16 & 0xff, i >> 8 & 0xff, i & 0xff),
+                    "agent-" + (i % 10)));
+        }
+        DeviceBatchImportDTO dto = new DeviceBatchImportDTO();
+        dto.setDevices(devices);
+
+        DeviceBatchImportResultVO result = deviceService.batchImportDevices(USER_ID, dto);
+
+        Assertions.assertEquals(total, result.getCreated());
+        Assertions.assertEquals(total, countDevices());
+        // One invalidation per agent, issued together at the end.
+        Assertions.assertEquals(10, redisUtils.deletedKeys.size());
+    }
+
+    @Test
+    @DisplayName("A row the database rejects fails alone, without database details in the result")
+    public void testFailedRowHidesDatabaseError() throws Exception {
+        String tooLong = "dd:" + "0".repeat(60);
+
+        DeviceBatchImportResultVO result = deviceService.batchImportDevices(USER_ID, request("agent-a",
+                device("dd:00:00:00:00:01", null), device(tooLong, null)));
+
+        Assertions.assertEquals(1, result.getCreated());
+        Assertions.assertEquals(1, result.getFailed());
+        DeviceBatchImportResultVO.Row failed = result.getRows().get(1);
+        Assertions.assertEquals(DeviceBatchImportResultVO.STATUS_FAILED, failed.getStatus());
+        Assertions.assertEquals(MessageUtils.getMessage(ErrorCode.DEVICE_IMPORT_FAILED), failed.getMessage());
+        Assertions.assertEquals(1, countDevices());
+    }
+
+    @Test
+    @DisplayName("An import naming an agent the caller does not own is rejected before any row is written")
+    public void testImportRejectsForeignAgent() throws Exception {
+        RenException e = Assertions.assertThrows(RenException.class,
+                () -> deviceService.batchImportDevices(USER_ID, request("agent-a",
+                        device("ee:00:00:00:00:01", null), device("ee:00:00:00:00:02", FOREIGN_AGENT))));
+
+        Assertions.assertEquals(ErrorCode.NO_PERMISSION, e.getCode());
+        Assertions.assertEquals(0, countDevices());
+        Assertions.assertThrows(RenException.class, () -> deviceService.batchImportDevices(USER_ID,
+                request(FOREIGN_AGENT, device("ee:00:00:00:00:03", null))));
+        Assertions.assertEquals(0, countDevices());
+    }
+
+    private int countDevices() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM ai_device")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private String agentOf(String macAddress) {
+        return deviceService.getDeviceByMacAddress(macAddress).getAgentId();
+    }
+
+    private static DeviceBatchImportDTO request(String agentId, DeviceManualAddDTO... devices) {
+        DeviceBatchImportDTO dto = new DeviceBatchImportDTO();
+        dto.setAgentId(agentId);
+        dto.setDevices(List.of(devices));
+        return dto;
+    }
+
+    private static DeviceManualAddDTO device(String macAddress, String agentId) {
+        DeviceManualAddDTO dto = new DeviceManualAddDTO();
+        dto.setMacAddress(macAddress);
+        dto.setAgentId(agentId);
+        dto.setBoard("esp32-s3");
+        dto.setAppVersion("1.0.0");
+        return dto;
+    }
+
+    /**
+     * Records cache invalidations instead of talking to Redis.
+     */
+    private static class RecordingRedisUtils extends RedisUtils {
+        private final List<String> deletedKeys = new ArrayList<>();
+
+        @Override
+        public void delete(String key) {
+            deletedKeys.add(key);
+        }
+
+        @Override
+        public void delete(Collection<String> keys) {
+            deletedKeys.addAll(keys);
+        }
+    }
+}
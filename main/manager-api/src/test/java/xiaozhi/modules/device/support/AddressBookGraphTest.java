@@ -0,0 +1,231 @@
+package xiaozhi.modules.device.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import xiaozhi.common.benchmark.Benchmarks;
+import xiaozhi.modules.device.entity.DeviceAddressBookEntity;
+
+/**
+ * Contact graph lookups and incremental edits. The 1M-edge benchmark is tagged
+ * {@code benchmark} and only runs with {@code mvn test -Pbenchmark}.
+ */
+class AddressBookGraphTest {
+
+    private static final String A = "aa:00:00:00:00:01";
+    private static final String B = "aa:00:00:00:00:02";
+    private static final String C = "aa:00:00:00:00:03";
+
+    private final Map<String, List<DeviceAddressBookEntity>> rows = new HashMap<>();
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private final AddressBookGraph graph = new AddressBookGraph(mac -> {
+        loads.computeIfAbsent(mac, k -> new AtomicInteger()).incrementAndGet();
+        return rows.getOrDefault(mac, List.of());
+    }, mac -> generations.getOrDefault(mac, 0L), 1000);
+
+    @Test
+    @DisplayName("A nickname resolves to the callee and how the callee names the caller")
+    void lookupFollowsTheReverseEdge() {
+        add(A, B, "Bob", true);
+        add(B, A, "Alice", true);
+        add(A, C, "Carol", null);
+
+        Assertions.assertEquals(new AddressBookGraph.Match(B, "Alice", true),
+                graph.lookup(A.toUpperCase(), "Bob"));
+        Assertions.assertEquals(new AddressBookGraph.Match(C, null, false), graph.lookup(A, "Carol"));
+        Assertions.assertNull(graph.lookup(A, "Nobody"));
+        Assertions.assertNull(graph.lookup("ff:ff:ff:ff:ff:ff", "Bob"));
+    }
+
+    @Test
+    @DisplayName("Edits on this instance update the cached node without reloading it")
+    void localEditsAreAppliedIncrementally() {
+        add(A, B, "Bob", true);
+        graph.lookup(A, "Bob");
+
+        rows.get(A).get(0).setAlias("Bobby");
+        generations.put(A, 1L);
+        graph.apply(A, 1L, B, "Bobby", false);
+
+        Assertions.assertNull(graph.lookup(A, "Bob"));
+        Assertions.assertEquals(new AddressBookGraph.Match(B, null, false), graph.lookup(A, "Bobby"));
+        Assertions.assertEquals(1, loads.get(A).get());
+    }
+
+    @Test
+    @DisplayName("A generation bumped elsewhere reloads only that device")
+    void remoteEditsReloadOneDevice() {
+        add(A, B, "Bob", true);
+        add(B, A, "Alice", true);
+        graph.lookup(A, "Bob");
+
+        rows.get(B).get(0).setAlias("Al");
+        generations.put(B, 1L);
+        // A missed write: the node is two generations behind, so it is dropped, not patched
+        graph.apply(A, 2L, B, "Bob", true);
+        generations.put(A, 2L);
+
+        Assertions.assertEquals(new AddressBookGraph.Match(B, "Al", true), graph.lookup(A, "Bob"));
+        Assertions.assertEquals(2, loads.get(A).get());
+        Assertions.assertEquals(2, loads.get(B).get());
+    }
+
+    @Test
+    @DisplayName("A ring of devices: every neighbour resolves, edits keep the node cached")
+    void ringOfDevices() {
+        int devices = 200;
+        String[] macs = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            macs[i] = String.format("aa:bb:00:%02x:%02x", i >> 8, i & 0xff);
+        }
+        for (int i = 0; i < devices; i++) {
+            for (int offset : new int[] { -1, 1 }) {
+                int j = Math.floorMod(i + offset, devices);
+                add(macs[i], macs[j], "device-" + j, true);
+            }
+        }
+
+        for (int i = 0; i < devices; i++) {
+            int j = Math.floorMod(i + 1, devices);
+            Assertions.assertEquals(new AddressBookGraph.Match(macs[j], "device-" + i, true),
+                    graph.lookup(macs[i], "device-" + j));
+        }
+        Assertions.assertEquals(devices, graph.size());
+
+        generations.put(macs[0], 1L);
+        graph.apply(macs[0], 1L, macs[1], "renamed", true);
+        Assertions.assertEquals(macs[1], graph.lookup(macs[0], "renamed").targetMac());
+        Assertions.assertEquals(1, loads.get(macs[0]).get());
+    }
+
+    @Test
+    @Tag(Benchmarks.TAG)
+    @DisplayName("1M contact edges: lookups and edits against a full rebuild")
+    void benchmark() {
+        int devices = 100_000;
+        int degree = 10;
+        String[] macs = new String[devices];
+        String[] names = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            macs[i] = String.format("aa:bb:%02x:%02x:%02x", i >> 16, (i >> 8) & 0xff, i & 0xff);
+            names[i] = "device-" + i;
+        }
+        // Each device names its ten nearest neighbours, so every edge has a reverse edge
+        int[] offsets = { -5, -4, -3, -2, -1, 1, 2, 3, 4, 5 };
+
+        long legacyNanos;
+        {
+            List<DeviceAddressBookEntity> all = new ArrayList<>(devices * degree);
+            for (int i = 0; i < devices; i++) {
+                for (int offset : offsets) {
+                    int j = Math.floorMod(i + offset, devices);
+                    all.add(row(macs[i], macs[j], names[j], true));
+                }
+            }
+            long start = System.nanoTime();
+            Map<String, Map<String, String>> legacy = LegacyAddressBook.build(all);
+            legacyNanos = System.nanoTime() - start;
+            Assertions.assertEquals(macs[1] + "|1", legacy.get(macs[0]).get(names[1]));
+        }
+
+        AddressBookGraph big = new AddressBookGraph(mac -> {
+            int i = Integer.parseInt(mac.substring(6).replace(":", ""), 16);
+            List<DeviceAddressBookEntity> book = new ArrayList<>(degree);
+            for (int offset : offsets) {
+                int j = Math.floorMod(i + offset, devices);
+                book.add(row(macs[i], macs[j], names[j], true));
+            }
+            return book;
+        }, mac -> 0L, devices * 2L);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < devices; i++) {
+            Assertions.assertNotNull(big.lookup(macs[i], names[Math.floorMod(i + 1, devices)]));
+        }
+        long loadNanos = System.nanoTime() - start;
+        Assertions.assertEquals(devices, big.size());
+
+        Random random = new Random(42);
+        int lookups = 1_000_000;
+        int found = 0;
+        start = System.nanoTime();
+        for (int n = 0; n < lookups; n++) {
+            int i = random.nextInt(devices);
+            AddressBookGraph.Match match = big.lookup(macs[i], names[Math.floorMod(i + offsets[n % degree], devices)]);
+            if (match != null && names[i].equals(match.callerNickname())) {
+                found++;
+            }
+        }
+        long lookupNanos = System.nanoTime() - start;
+
+        int edits = 10_000;
+        start = System.nanoTime();
+        for (int n = 0; n < edits; n++) {
+            int i = random.nextInt(devices);
+            big.apply(macs[i], 1, macs[Math.floorMod(i + 1, devices)], "renamed", true);
+        }
+        long editNanos = System.nanoTime() - start;
+
+        Benchmarks.report("%d edges: full rebuild %.1f ms per edit; graph load %.1f ms, lookup %.0f ns,"
+                + " incremental edit %.0f ns", devices * degree, legacyNanos / 1e6, loadNanos / 1e6,
+                (double) lookupNanos / lookups, (double) editNanos / edits);
+        Assertions.assertEquals(lookups, found);
+    }
+
+    private void add(String owner, String target, String alias, Boolean hasPermission) {
+        rows.computeIfAbsent(owner, k -> new ArrayList<>()).add(row(owner, target, alias, hasPermission));
+    }
+
+    private static DeviceAddressBookEntity row(String owner, String target, String alias, Boolean hasPermission) {
+        DeviceAddressBookEntity entity = new DeviceAddressBookEntity();
+        entity.setMacAddress(owner);
+        entity.setTargetMac(target);
+        entity.setAlias(alias);
+        entity.setHasPermission(hasPermission);
+        return entity;
+    }
+
+    /**
+     * The former refreshCache: one map over every row, rebuilt on each edit.
+     */
+    private static final class LegacyAddressBook {
+
+        static Map<String, Map<String, String>> build(List<DeviceAddressBookEntity> allRecords) {
+            Map<String, Map<String, String>> result = new HashMap<>();
+            Map<String, String> reverseMap = new HashMap<>();
+            for (DeviceAddressBookEntity entity : allRecords) {
+                String macA = entity.getMacAddress().toLowerCase();
+                String macB = entity.getTargetMac().toLowerCase();
+                if (entity.getAlias() != null && !entity.getAlias().isEmpty()) {
+                    reverseMap.put(macB + ":" + macA, entity.getAlias());
+                }
+            }
+            for (DeviceAddressBookEntity entity : allRecords) {
+                String macA = entity.getMacAddress().toLowerCase();
+                String macB = entity.getTargetMac().toLowerCase();
+                result.computeIfAbsent(macA, k -> new HashMap<>());
+                result.computeIfAbsent(macB, k -> new HashMap<>());
+                if (entity.getAlias() != null && !entity.getAlias().isEmpty()) {
+                    String permStr = Boolean.TRUE.equals(entity.getHasPermission()) ? "1" : "0";
+                    result.get(macA).put(entity.getAlias(), macB + "|" + permStr);
+                }
+                String aliasBtoA = reverseMap.get(macA + ":" + macB);
+                if (aliasBtoA != null && !aliasBtoA.isEmpty()) {
+                    result.get(macB).put(macA, aliasBtoA);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package xiaozhi.modules.device.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.LatencyHistogram;
+import xiaozhi.modules.sys.service.SysParamsService;
+
+/**
+ * MQTT gateway client against a local stub gateway.
+ */
+class MqttGatewayClientTest {
+
+    private static final String SECRET = "gateway-secret";
+
+    private HttpServer gateway;
+    private final AtomicInteger statusRequests = new AtomicInteger();
+    private final AtomicInteger callRequests = new AtomicInteger();
+    private volatile String lastCallBody;
+    private volatile String callResponse = "{\"status\":\"success\",\"message\":\"ringing\"}";
+    private volatile int responseStatus = 200;
+    private volatile long responseDelayMillis;
+    private volatile String lastAuthorization;
+    private MqttGatewayClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        gateway = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        gateway.createContext("/api/devices/status", this::handleStatus);
+        gateway.createContext("/api/call/request", this::handleCall);
+        gateway.start();
+
+        SysParamsService sysParamsService = Mockito.mock(SysParamsService.class);
+        Mockito.when(sysParamsService.getValue(Constant.SERVER_MQTT_MANAGER_API, true))
+                .thenReturn("127.0.0.1:" + gateway.getAddress().getPort());
+        Mockito.when(sysParamsService.getValue(Constant.SERVER_MQTT_SECRET, true)).thenReturn(SECRET);
+        client = new MqttGatewayClient(sysParamsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.stop(0);
+    }
+
+    @Test
+    void cachesStatusAcrossCallers() {
+        JSONObject first = client.getDeviceStatus(Set.of("GID@@@a@@@a", "GID@@@b@@@b"));
+        JSONObject second = client.getDeviceStatus(Set.of("GID@@@a@@@a"));
+
+        Assertions.assertEquals(1, statusRequests.get());
+        Assertions.assertTrue(first.getJSONObject("GID@@@a@@@a").getBool("isAlive"));
+        Assertions.assertEquals(first.getJSONObject("GID@@@a@@@a"), second.getJSONObject("GID@@@a@@@a"));
+        Assertions.assertEquals("Bearer " + DigestUtil.sha256Hex(LocalDate.now() + SECRET), lastAuthorization);
+    }
+
+    @Test
+    void coalescesIdenticalConcurrentQueries() {
+        responseDelayMillis = 300;
+        List<CompletableFuture<JSONObject>> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> client.getDeviceStatus(Set.of("GID@@@c@@@c"))));
+        }
+        callers.forEach(caller -> Assertions.assertNotNull(caller.join().getJSONObject("GID@@@c@@@c")));
+
+        Assertions.assertEquals(1, statusRequests.get());
+    }
+
+    @Test
+    void opensCircuitAfterRepeatedFailures() {
+        responseStatus = 500;
+        for (int i = 0; i < 5; i++) {
+            client.post("/api/devices/status", new JSONObject().set("clientIds", List.of()));
+        }
+        Assertions.assertTrue(client.isCircuitOpen());
+
+        int before = statusRequests.get();
+        Assertions.assertThrows(RenException.class, () -> client.getDeviceStatus(Set.of("GID@@@d@@@d")));
+        Assertions.assertEquals(before, statusRequests.get());
+    }
+
+    @Test
+    void forwardsCallsAsynchronouslyAndRecordsSetupLatency() {
+        responseDelayMillis = 30;
+        List<CompletableFuture<MqttGatewayClient.CallForwardResult>> calls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            calls.add(client.forwardCallAsync("aa:00:00:00:00:01", "aa:00:00:00:00:0" + (i % 10), "Alice"));
+        }
+        calls.forEach(call -> Assertions.assertEquals(
+                new MqttGatewayClient.CallForwardResult("success", "ringing"), call.join()));
+
+        Assertions.assertEquals(20, callRequests.get());
+        Assertions.assertEquals("Bearer " + DigestUtil.sha256Hex(LocalDate.now() + SECRET), lastAuthorization);
+        JSONObject lastCall = new JSONObject(lastCallBody);
+        Assertions.assertEquals("aa:00:00:00:00:01", lastCall.getStr("caller_mac"));
+        Assertions.assertEquals("Alice", lastCall.getStr("caller_nickname"));
+
+        LatencyHistogram.Snapshot latency = client.getCallLatency();
+        Assertions.assertEquals(20, latency.count());
+        Assertions.assertEquals(0, latency.failures());
+        Assertions.assertTrue(latency.p50Millis() >= 25, "p50 " + latency.p50Millis());
+        Assertions.assertEquals(20, latency.buckets().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void failedCallForwardingIsCountedInTheHistogram() {
+        gateway.stop(0);
+
+        CompletableFuture<MqttGatewayClient.CallForwardResult> call = client.forwardCallAsync("aa:00:00:00:00:01",
+                "aa:00:00:00:00:02", null);
+        Assertions.assertThrows(CompletionException.class, call::join);
+        Assertions.assertEquals(1, client.getCallLatency().failures());
+    }
+
+    @Test
+    void emptyCallAcknowledgementCompletesWithNull() {
+        callResponse = "";
+
+        Assertions.assertNull(client.forwardCallAsync("aa:00:00:00:00:01", "aa:00:00:00:00:02", null).join());
+    }
+
+    private void handleCall(HttpExchange exchange) throws IOException {
+        callRequests.incrementAndGet();
+        lastAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+        lastCallBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            Thread.sleep(responseDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = callResponse.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        statusRequests.incrementAndGet();
+        lastAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        JSONObject response = new JSONObject();
+        for (String clientId : new JSONObject(request).getJSONArray("clientIds").toList(String.class)) {
+            response.set(clientId, new JSONObject().set("isAlive", true).set("exists", true));
+        }
+        try {
+            Thread.sleep(responseDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(responseStatus, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
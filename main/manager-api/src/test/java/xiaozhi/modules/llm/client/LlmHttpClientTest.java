@@ -0,0 +1,187 @@
+package xiaozhi.modules.llm.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import cn.hutool.json.JSONObject;
+import xiaozhi.common.exception.RenException;
+
+/**
+ * LLM HTTP client against a local stub OpenAI-compatible server.
+ */
+class LlmHttpClientTest {
+
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final List<JSONObject> requests = new ArrayList<>();
+    private volatile String mode = "json";
+    private volatile long delayMillis;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private LlmHttpClient client;
+    private LlmEndpoint endpoint;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+        client = new LlmHttpClient();
+        endpoint = new LlmEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/v1", "sk-test",
+                "stub-model", null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void completesAndCountsUsage() {
+        ChatCompletion first = client.complete(endpoint, body(), Duration.ofSeconds(5));
+        client.complete(endpoint, body(), Duration.ofSeconds(5));
+
+        Assertions.assertEquals("hello world", first.content());
+        Assertions.assertEquals(15, first.totalTokens());
+        Assertions.assertEquals("stub-model", requests.get(0).getStr("model"));
+        // Both calls went over the same pooled connection
+        Assertions.assertEquals(1, clientPorts.size());
+        LlmUsage usage = client.getUsage().get("stub-model");
+        Assertions.assertEquals(2, usage.requests());
+        Assertions.assertEquals(20, usage.promptTokens());
+        Assertions.assertEquals(30, usage.totalTokens());
+    }
+
+    @Test
+    void streamsDeltas() {
+        mode = "sse";
+        List<String> deltas = new ArrayList<>();
+        ChatCompletion completion = client.stream(endpoint, body(), deltas::add, Duration.ofSeconds(5));
+
+        Assertions.assertEquals(List.of("hel", "lo ", "world"), deltas);
+        Assertions.assertEquals("hello world", completion.content());
+        Assertions.assertEquals("stop", completion.finishReason());
+        Assertions.assertEquals(7, completion.totalTokens());
+        Assertions.assertTrue(requests.get(0).getBool("stream"));
+    }
+
+    @Test
+    void streamFallsBackToPlainJson() {
+        List<String> deltas = new ArrayList<>();
+        ChatCompletion completion = client.stream(endpoint, body(), deltas::add, Duration.ofSeconds(5));
+
+        Assertions.assertEquals("hello world", completion.content());
+        Assertions.assertEquals(List.of("hello world"), deltas);
+    }
+
+    @Test
+    void failsWhenResponseIsTooSlow() {
+        delayMillis = 2_000;
+        Assertions.assertThrows(RenException.class,
+                () -> client.complete(endpoint, body(), Duration.ofMillis(300)));
+        Assertions.assertEquals(1, client.getUsage().get("stub-model").failures());
+    }
+
+    @Test
+    void streamGivesUpWhenBodyGoesSilent() {
+        mode = "silent";
+        List<String> deltas = new ArrayList<>();
+        // The headers and a first event arrive, then nothing: only the read deadline ends the call
+        RenException error = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> Assertions.assertThrows(RenException.class,
+                        () -> client.stream(endpoint, body(), deltas::add, Duration.ofMillis(500))));
+
+        Assertions.assertEquals("LLM response timed out", error.getMsg());
+        Assertions.assertEquals(List.of("hel"), deltas);
+        Assertions.assertEquals(1, client.getUsage().get("stub-model").failures());
+    }
+
+    @Test
+    void completeGivesUpWhenBodyStalls() {
+        mode = "stalled";
+        // The headers and part of the JSON arrive, then nothing: the response timeout has already passed
+        RenException error = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> Assertions.assertThrows(RenException.class,
+                        () -> client.complete(endpoint, body(), Duration.ofMillis(500))));
+
+        Assertions.assertEquals("LLM response timed out", error.getMsg());
+        Assertions.assertEquals(1, client.getUsage().get("stub-model").failures());
+    }
+
+    private static Map<String, Object> body() {
+        return Map.of("messages", List.of(Map.of("role", "user", "content", "hi")));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        synchronized (requests) {
+            requests.add(new JSONObject(new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8)));
+        }
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String body;
+        if ("silent".equals(mode) || "stalled".equals(mode)) {
+            boolean events = "silent".equals(mode);
+            exchange.getResponseHeaders().set("Content-Type", events ? "text/event-stream" : "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            String first = events ? event("{\"choices\":[{\"delta\":{\"content\":\"hel\"}}]}")
+                    : "{\"choices\":[\n";
+            out.write(first.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+            return;
+        }
+        if ("sse".equals(mode)) {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            body = event("{\"choices\":[{\"delta\":{\"content\":\"hel\"}}]}")
+                    + event("{\"choices\":[{\"delta\":{\"content\":\"lo \"}}]}")
+                    + event("{\"choices\":[{\"delta\":{\"content\":\"world\"},\"finish_reason\":\"stop\"}]}")
+                    + event("{\"choices\":[],\"usage\":{\"prompt_tokens\":4,\"completion_tokens\":3,"
+                            + "\"total_tokens\":7}}")
+                    + event("[DONE]");
+        } else {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            body = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"hello world\"},"
+                    + "\"finish_reason\":\"stop\"}],"
+                    + "\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":5,\"total_tokens\":15}}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String event(String data) {
+        return "data: " + data + "\n\n";
+    }
+}
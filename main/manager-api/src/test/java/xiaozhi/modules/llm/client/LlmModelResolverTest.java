@@ -0,0 +1,65 @@
+package xiaozhi.modules.llm.client;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import cn.hutool.json.JSONObject;
+import xiaozhi.modules.model.entity.ModelConfigEntity;
+import xiaozhi.modules.model.event.ModelConfigChangedEvent;
+import xiaozhi.modules.model.service.ModelConfigService;
+
+/**
+ * Cached resolution of LLM endpoints.
+ */
+class LlmModelResolverTest {
+
+    @Test
+    void cachesDefaultUntilModelChanges() {
+        ModelConfigService modelConfigService = Mockito.mock(ModelConfigService.class);
+        Mockito.when(modelConfigService.getEnabledModelsByType("LLM"))
+                .thenReturn(List.of(model("a", 0, "model-a"), model("b", 1, "model-b")));
+        LlmModelResolver resolver = new LlmModelResolver(modelConfigService);
+
+        Assertions.assertEquals("model-b", resolver.resolve(null).model());
+        Assertions.assertEquals("model-b", resolver.resolve(" ").model());
+        Mockito.verify(modelConfigService, Mockito.times(1)).getEnabledModelsByType("LLM");
+
+        // Changes to other model types keep the cache
+        resolver.onModelConfigChanged(new ModelConfigChangedEvent("TTS", "t"));
+        resolver.resolve(null);
+        Mockito.verify(modelConfigService, Mockito.times(1)).getEnabledModelsByType("LLM");
+
+        Mockito.when(modelConfigService.getEnabledModelsByType("LLM"))
+                .thenReturn(List.of(model("a", 1, "model-a")));
+        resolver.onModelConfigChanged(new ModelConfigChangedEvent("LLM", "a"));
+        Assertions.assertEquals("model-a", resolver.resolve(null).model());
+        Mockito.verify(modelConfigService, Mockito.times(2)).getEnabledModelsByType("LLM");
+    }
+
+    @Test
+    void cachesIncompleteConfigAsUnavailable() {
+        ModelConfigService modelConfigService = Mockito.mock(ModelConfigService.class);
+        ModelConfigEntity incomplete = model("c", 0, "model-c");
+        incomplete.getConfigJson().remove("api_key");
+        Mockito.when(modelConfigService.getModelByIdFromCache("c")).thenReturn(incomplete);
+        LlmModelResolver resolver = new LlmModelResolver(modelConfigService);
+
+        Assertions.assertNull(resolver.resolve("c"));
+        Assertions.assertNull(resolver.resolve("c"));
+        Mockito.verify(modelConfigService, Mockito.times(1)).getModelByIdFromCache("c");
+    }
+
+    private static ModelConfigEntity model(String id, int isDefault, String modelName) {
+        ModelConfigEntity entity = new ModelConfigEntity();
+        entity.setId(id);
+        entity.setIsDefault(isDefault);
+        entity.setConfigJson(new JSONObject()
+                .set("base_url", "http://127.0.0.1:1/v1")
+                .set("api_key", "sk-" + id)
+                .set("model_name", modelName));
+        return entity;
+    }
+}
@@ -0,0 +1,183 @@
+package xiaozhi.modules.security.guard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.common.utils.SM2Utils;
+import xiaozhi.common.utils.Sm2DecryptUtil;
+import xiaozhi.modules.security.password.PasswordUtils;
+import xiaozhi.modules.security.service.CaptchaService;
+import xiaozhi.modules.sys.service.SysParamsService;
+
+/**
+ * Login-path guards: cached SM2 key, key rotation, rate accounting and a login flood
+ * against the bounded crypto pool.
+ */
+class LoginFloodTest {
+
+    private final CryptoExecutor executor = new CryptoExecutor(2, 4);
+
+    @BeforeAll
+    static void messages() {
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        ReflectionTestUtils.setField(MessageUtils.class, "messageSource", messageSource);
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("The cached key decrypts like the per-request path and follows a key rotation")
+    void cachedKeyFollowsRotation() {
+        Map<String, String> first = SM2Utils.createKey();
+        Map<String, String> second = SM2Utils.createKey();
+        SysParamsService params = Mockito.mock(SysParamsService.class);
+        Mockito.when(params.getValue(Constant.SM2_PRIVATE_KEY, true)).thenReturn(first.get(SM2Utils.KEY_PRIVATE_KEY));
+        CaptchaService captcha = Mockito.mock(CaptchaService.class);
+        Mockito.when(captcha.validate("id", "abcde", true)).thenReturn(true);
+
+        String cipher = SM2Utils.encrypt(first.get(SM2Utils.KEY_PUBLIC_KEY), "abcdesecret");
+        Assertions.assertEquals(SM2Utils.decrypt(first.get(SM2Utils.KEY_PRIVATE_KEY), cipher).substring(5),
+                Sm2DecryptUtil.decryptAndValidateCaptcha(cipher, "id", captcha, params, executor));
+
+        Mockito.when(params.getValue(Constant.SM2_PRIVATE_KEY, true)).thenReturn(second.get(SM2Utils.KEY_PRIVATE_KEY));
+        String rotated = SM2Utils.encrypt(second.get(SM2Utils.KEY_PUBLIC_KEY), "abcdeother");
+        Assertions.assertEquals("other", Sm2DecryptUtil.decryptAndValidateCaptcha(rotated, "id", captcha, params, executor));
+
+        RenException stale = Assertions.assertThrows(RenException.class,
+                () -> Sm2DecryptUtil.decryptAndValidateCaptcha(cipher, "id", captcha, params, executor));
+        Assertions.assertEquals(ErrorCode.SM2_DECRYPT_ERROR, stale.getCode());
+    }
+
+    @Test
+    @DisplayName("Attempts over the IP limit or after too many failures are refused until the window rolls over")
+    void rateLimiterWindows() {
+        AtomicLong now = new AtomicLong(0);
+        LoginRateLimiter limiter = new LoginRateLimiter(5, 2, now::get);
+
+        // Successful attempts never lock the account
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("10.0.0." + (10 + i), "alice");
+        }
+        limiter.recordFailure("alice");
+        limiter.acquire("10.0.0.1", "Alice");
+        limiter.recordFailure("Alice");
+        RenException user = Assertions.assertThrows(RenException.class, () -> limiter.acquire("10.0.0.2", "ALICE"));
+        Assertions.assertEquals(ErrorCode.LOGIN_TOO_FREQUENT, user.getCode());
+
+        limiter.acquire("10.0.0.1", "bob");
+        limiter.acquire("10.0.0.1", "bob");
+        limiter.acquire("10.0.0.1", null);
+        limiter.acquire("10.0.0.1", "carol");
+        Assertions.assertThrows(RenException.class, () -> limiter.acquire("10.0.0.1", "carol"));
+
+        now.set(60_000);
+        limiter.acquire("10.0.0.1", "alice");
+        limiter.acquire(null, null);
+    }
+
+    @Test
+    @DisplayName("Forwarding headers are only honoured from a trusted proxy")
+    void clientIpTrustsOnlyConfiguredProxies() {
+        LoginRateLimiter limiter = new LoginRateLimiter(5, 2, () -> 0, List.of("10.0.0.1"));
+
+        Assertions.assertEquals("203.0.113.9",
+                limiter.clientIp(request("203.0.113.9", "198.51.100.1")));
+        Assertions.assertEquals("198.51.100.7",
+                limiter.clientIp(request("10.0.0.1", "1.2.3.4, 198.51.100.7")));
+        Assertions.assertEquals("198.51.100.7",
+                limiter.clientIp(request("10.0.0.1", "198.51.100.7, 10.0.0.1")));
+        Assertions.assertEquals("10.0.0.1", limiter.clientIp(request("10.0.0.1", null)));
+    }
+
+    @Test
+    @DisplayName("Login flood: crypto work stays bounded and other requests stay responsive")
+    void floodIsShedFast() throws Exception {
+        Map<String, String> key = SM2Utils.createKey();
+        String privateKey = key.get(SM2Utils.KEY_PRIVATE_KEY);
+        String cipher = SM2Utils.encrypt(key.get(SM2Utils.KEY_PUBLIC_KEY), "abcdesecret");
+        String hash = PasswordUtils.encode("secret");
+
+        int attempts = 200;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger busy = new AtomicInteger();
+        ExecutorService requests = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(attempts);
+        for (int i = 0; i < attempts; i++) {
+            futures.add(requests.submit(() -> {
+                start.await();
+                try {
+                    boolean matches = executor.call(() -> {
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            String plain = SM2Utils.decrypt(privateKey, cipher).substring(5);
+                            return PasswordUtils.matches(plain, hash);
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    });
+                    Assertions.assertTrue(matches);
+                    accepted.incrementAndGet();
+                } catch (RenException e) {
+                    Assertions.assertEquals(ErrorCode.CRYPTO_BUSY, e.getCode());
+                    busy.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+
+        // An unrelated request served while the flood is in progress
+        Future<Integer> probe = requests.submit(() -> 1 + 1);
+        Assertions.assertEquals(2, probe.get(1, TimeUnit.SECONDS));
+
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        requests.shutdown();
+
+        // Every attempt was either served or shed, and never more than two ran at once
+        Assertions.assertEquals(attempts, accepted.get() + busy.get());
+        Assertions.assertTrue(accepted.get() > 0);
+        Assertions.assertTrue(busy.get() > 0);
+        Assertions.assertTrue(peak.get() <= 2);
+        Assertions.assertEquals(busy.get(), executor.getRejectedCount());
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
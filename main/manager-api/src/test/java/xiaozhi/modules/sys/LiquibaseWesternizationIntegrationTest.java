@@ -526,7 +526,7 @@ WHERE r.sort = 0;
 
     private void assertLatestChangeSetApplied(Connection connection) throws SQLException {
         String latestId = scalar(connection, "SELECT MAX(ID) FROM DATABASECHANGELOG");
-        Assertions.assertEquals("202606131500", latestId, "latest downstream cleanup migration should be applied");
+        Assertions.assertEquals("202610221200", latestId, "latest downstream cleanup migration should be applied");
     }
 
     private void assertRequiredSeedCoverage(Connection connection) throws SQLException {
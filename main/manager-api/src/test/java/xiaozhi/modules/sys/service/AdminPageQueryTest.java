@@ -0,0 +1,219 @@
+package xiaozhi.modules.sys.service;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+
+import xiaozhi.common.page.PageData;
+import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.dto.DevicePageUserDTO;
+import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.service.impl.DeviceServiceImpl;
+import xiaozhi.modules.device.vo.UserShowDeviceListVO;
+import xiaozhi.modules.sys.dao.SysUserDao;
+import xiaozhi.modules.sys.dto.AdminPageUserDTO;
+import xiaozhi.modules.sys.entity.SysUserEntity;
+import xiaozhi.modules.sys.service.impl.SysUserServiceImpl;
+import xiaozhi.modules.sys.service.impl.SysUserUtilServiceImpl;
+import xiaozhi.modules.sys.vo.AdminPageUserVO;
+
+/**
+ * Admin user and device pages against an in-memory H2 database: the number of queries per
+ * page must not grow with the page size.
+ */
+class AdminPageQueryTest {
+
+    private static final String USER_MAPPER = "mapper/sys/SysUserDao.xml";
+    private static final int USERS = 500;
+    private static final int DEVICES_PER_USER = 3;
+
+    /**
+     * Static because MyBatis-Plus caches the pagination COUNT statement across configurations,
+     * so its statements run through the counter of whichever test built it first.
+     */
+    private static final AtomicInteger queries = new AtomicInteger();
+    private SysUserDao sysUserDao;
+    private DeviceDao deviceDao;
+    private SysUserServiceImpl userService;
+    private DeviceServiceImpl deviceService;
+
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class,
+            Integer.class }))
+    private static final class QueryCounter implements Interceptor {
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            queries.incrementAndGet();
+            return invocation.proceed();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:admin_page_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE sys_user (id BIGINT PRIMARY KEY, username VARCHAR(50),"
+                        + " password VARCHAR(100), super_admin TINYINT, status TINYINT, creator BIGINT,"
+                        + " create_date DATETIME, updater BIGINT, update_date DATETIME)");
+                statement.execute("CREATE TABLE ai_device (id VARCHAR(32) PRIMARY KEY, user_id BIGINT,"
+                        + " mac_address VARCHAR(50), last_connected_at DATETIME, auto_update TINYINT,"
+                        + " board VARCHAR(50), alias VARCHAR(64), agent_id VARCHAR(32), app_version VARCHAR(20),"
+                        + " sort INT, updater BIGINT, update_date DATETIME, creator BIGINT, create_date DATETIME)");
+                statement.execute("CREATE INDEX idx_ai_device_user_id ON ai_device (user_id)");
+            }
+            try (PreparedStatement user = connection.prepareStatement(
+                    "INSERT INTO sys_user (id, username, status) VALUES (?, ?, 1)");
+                    PreparedStatement device = connection.prepareStatement(
+                            "INSERT INTO ai_device (id, user_id, mac_address, board) VALUES (?, ?, ?, 'esp32')")) {
+                for (long id = 1; id <= USERS; id++) {
+                    user.setLong(1, id);
+                    user.setString(2, "138" + String.format("%08d", id));
+                    user.addBatch();
+                    // Every fifth user has no devices
+                    for (int d = 0; id % 5 != 0 && d < DEVICES_PER_USER; d++) {
+                        device.setString(1, "d" + id + "_" + d);
+                        device.setLong(2, id);
+                        device.setString(3, String.format("aa:bb:cc:%02x:%02x:%02x", id >> 8, id & 0xff, d));
+                        device.addBatch();
+                    }
+                }
+                user.executeBatch();
+                device.executeBatch();
+            }
+        }
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        MybatisPlusInterceptor pagination = new MybatisPlusInterceptor();
+        pagination.addInnerInterceptor(new PaginationInnerInterceptor());
+        configuration.addInterceptor(pagination);
+        configuration.addInterceptor(new QueryCounter());
+        configuration.addMapper(SysUserDao.class);
+        configuration.addMapper(DeviceDao.class);
+        try (InputStream mapper = Resources.getResourceAsStream(USER_MAPPER)) {
+            new XMLMapperBuilder(mapper, configuration, USER_MAPPER, configuration.getSqlFragments()).parse();
+        }
+        SqlSessionFactory sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        SqlSessionTemplate template = new SqlSessionTemplate(sqlSessionFactory);
+        sysUserDao = template.getMapper(SysUserDao.class);
+        deviceDao = template.getMapper(DeviceDao.class);
+
+        SysUserUtilServiceImpl userUtilService = new SysUserUtilServiceImpl(null);
+        ReflectionTestUtils.setField(userUtilService, "baseDao", sysUserDao);
+        deviceService = new DeviceServiceImpl(deviceDao, userUtilService, null, null, null, null, null, null);
+        ReflectionTestUtils.setField(deviceService, "baseDao", deviceDao);
+        userService = new SysUserServiceImpl(sysUserDao, deviceService, null, null);
+        ReflectionTestUtils.setField(userService, "baseDao", sysUserDao);
+    }
+
+    @Test
+    @DisplayName("User page: device counts match a COUNT per user")
+    void userPageCountsDevices() {
+        PageData<AdminPageUserVO> page = userService.page(userPage(20));
+
+        Assertions.assertEquals(USERS, page.getTotal());
+        Assertions.assertEquals(20, page.getList().size());
+        for (AdminPageUserVO user : page.getList()) {
+            Long id = Long.valueOf(user.getUserid());
+            Assertions.assertEquals(String.valueOf(id % 5 == 0 ? 0 : DEVICES_PER_USER), user.getDeviceCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Device page: every device carries its owner's username")
+    void devicePageResolvesUsernames() {
+        PageData<UserShowDeviceListVO> page = deviceService.page(devicePage(30));
+
+        Assertions.assertEquals(30, page.getList().size());
+        for (UserShowDeviceListVO device : page.getList()) {
+            Assertions.assertTrue(device.getBindUserName().startsWith("138"), device.getBindUserName());
+        }
+    }
+
+    @Test
+    @DisplayName("Queries per admin page stay constant as the page grows")
+    void queryCountIsConstant() {
+        int[] sizes = { 10, 50, 200 };
+        for (int size : sizes) {
+            userService.page(userPage(size));
+            queries.set(0);
+            userService.page(userPage(size));
+            int userQueries = queries.get();
+
+            queries.set(0);
+            deviceService.page(devicePage(size));
+            int deviceQueries = queries.get();
+
+            queries.set(0);
+            LegacyUserPage.page(sysUserDao, deviceDao, size);
+            int legacyQueries = queries.get();
+
+            // COUNT for the total, the page itself and one grouped lookup
+            Assertions.assertEquals(3, userQueries);
+            Assertions.assertEquals(3, deviceQueries);
+            Assertions.assertEquals(2 + size, legacyQueries);
+        }
+    }
+
+    private static AdminPageUserDTO userPage(int size) {
+        AdminPageUserDTO dto = new AdminPageUserDTO();
+        dto.setPage("1");
+        dto.setLimit(String.valueOf(size));
+        return dto;
+    }
+
+    private static DevicePageUserDTO devicePage(int size) {
+        DevicePageUserDTO dto = new DevicePageUserDTO();
+        dto.setPage("1");
+        dto.setLimit(String.valueOf(size));
+        return dto;
+    }
+
+    /**
+     * The former user page: one COUNT per user row.
+     */
+    private static final class LegacyUserPage {
+
+        static List<Long> page(SysUserDao users, DeviceDao devices, int size) {
+            List<Long> counts = new ArrayList<>(size);
+            Page<SysUserEntity> page = new Page<>(1, size);
+            for (SysUserEntity user : users.selectPage(page, new QueryWrapper<SysUserEntity>().orderByAsc("id"))
+                    .getRecords()) {
+                counts.add(devices.selectCount(new QueryWrapper<DeviceEntity>().eq("user_id", user.getId())));
+            }
+            return counts;
+        }
+    }
+}
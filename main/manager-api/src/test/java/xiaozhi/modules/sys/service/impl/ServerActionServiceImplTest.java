@@ -0,0 +1,263 @@
+package xiaozhi.modules.sys.service.impl;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import xiaozhi.common.constant.Constant;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.MessageUtils;
+import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.sys.dto.BroadcastServerActionDTO;
+import xiaozhi.modules.sys.enums.ServerActionEnum;
+import xiaozhi.modules.sys.service.ServerActionService;
+import xiaozhi.modules.sys.service.SysParamsService;
+import xiaozhi.modules.sys.vo.ServerActionResultVO;
+
+/**
+ * Server actions against in-process stub WS servers.
+ */
+class ServerActionServiceImplTest {
+
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static final AtomicInteger MAX_IN_FLIGHT = new AtomicInteger();
+    private static volatile CountDownLatch arrivals = new CountDownLatch(0);
+    private static volatile CountDownLatch replyGate = new CountDownLatch(0);
+
+    private final List<Tomcat> servers = new ArrayList<>();
+    private final List<String> delays = new ArrayList<>();
+    private SysParamsService sysParamsService;
+    private ServerActionService serverActionService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        IN_FLIGHT.set(0);
+        MAX_IN_FLIGHT.set(0);
+        arrivals = new CountDownLatch(0);
+        replyGate = new CountDownLatch(0);
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        ReflectionTestUtils.setField(MessageUtils.class, "messageSource", messageSource);
+        sysParamsService = Mockito.mock(SysParamsService.class);
+        Mockito.when(sysParamsService.getValue(Constant.SERVER_SECRET, true)).thenReturn("secret");
+        DeviceService deviceService = Mockito.mock(DeviceService.class);
+        Mockito.when(deviceService.generateWebSocketToken(Mockito.anyString(), Mockito.anyString()))
+                .thenReturn("token");
+        // Record the batch and retry delays and run straight away instead of sleeping
+        BiFunction<Long, TimeUnit, Executor> recordingDelay = (delay, unit) -> {
+            synchronized (delays) {
+                delays.add(delay + " " + unit);
+            }
+            return Runnable::run;
+        };
+        serverActionService = new ServerActionServiceImpl(sysParamsService, deviceService,
+                Mockito.mock(RedisUtils.class), recordingDelay);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Tomcat tomcat : servers) {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    @Test
+    void emitDoesNotBlockCaller() throws Exception {
+        String server = startServer();
+        replyGate = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> result = serverActionService.emitAsync(server, ServerActionEnum.UPDATE_CONFIG);
+
+        // The stub holds its reply until released, so a blocking call could only return completed
+        Assertions.assertFalse(result.isDone());
+        replyGate.countDown();
+        Assertions.assertTrue(result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void broadcastsInParallelAndAggregatesResults() throws Exception {
+        String first = startServer();
+        String second = startServer();
+        String third = startServer();
+        String unreachable = "ws://127.0.0.1:" + freePort() + "/xiaozhi/v1/";
+        configureServers(first, unreachable, second, third);
+        // Each node only replies once all three have the message, which a sequential send never reaches
+        arrivals = replyGate = new CountDownLatch(3);
+
+        List<ServerActionResultVO> results = serverActionService.broadcast(broadcast(0, 0, 0))
+                .get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(List.of(first, unreachable, second, third),
+                results.stream().map(ServerActionResultVO::getTargetWs).toList());
+        Assertions.assertEquals(List.of(true, false, true, true),
+                results.stream().map(ServerActionResultVO::isSuccess).toList());
+        Assertions.assertNotNull(results.get(1).getError());
+        Assertions.assertEquals(3, MAX_IN_FLIGHT.get());
+        Assertions.assertEquals(List.of(), delays);
+    }
+
+    @Test
+    void retriesFailedNodes() throws Exception {
+        String flaky = startServer().replace("/xiaozhi/v1/", "/flaky/");
+        configureServers(flaky);
+
+        List<ServerActionResultVO> results = serverActionService.broadcast(broadcast(1, 0, 0))
+                .get(10, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(results.get(0).isSuccess());
+        Assertions.assertEquals(2, results.get(0).getAttempts());
+        Assertions.assertNull(results.get(0).getError());
+        Assertions.assertEquals(List.of("1000 MILLISECONDS"), delays);
+    }
+
+    @Test
+    void rollsOutInDelayedBatches() throws Exception {
+        configureServers(startServer(), startServer(), startServer());
+        // The first batch replies only once both of its nodes have the message
+        arrivals = replyGate = new CountDownLatch(2);
+
+        List<ServerActionResultVO> results = serverActionService.broadcast(broadcast(0, 2, 1))
+                .get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(List.of(0, 0, 1), results.stream().map(ServerActionResultVO::getBatch).toList());
+        Assertions.assertTrue(results.stream().allMatch(ServerActionResultVO::isSuccess));
+        Assertions.assertEquals(2, MAX_IN_FLIGHT.get());
+        Assertions.assertEquals(List.of("1 SECONDS"), delays);
+    }
+
+    @Test
+    void failedEmitSurfacesRenException() throws Exception {
+        String unreachable = "ws://127.0.0.1:" + freePort() + "/xiaozhi/v1/";
+        ExecutionException error = Assertions.assertThrows(ExecutionException.class,
+                () -> serverActionService.emitAsync(unreachable, ServerActionEnum.RESTART).get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(RenException.class, error.getCause());
+    }
+
+    private String startServer() throws Exception {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(System.getProperty("java.io.tmpdir") + "/server-action-test-" + System.nanoTime());
+        tomcat.setPort(0);
+        tomcat.getConnector();
+        Context context = tomcat.addContext("", null);
+        context.addServletContainerInitializer(new WsSci(), null);
+        context.addApplicationListener(StubEndpointRegistrar.class.getName());
+        // The upgrade filter only runs when some servlet matches the request.
+        Tomcat.addServlet(context, "default", new HttpServlet() {
+        });
+        context.addServletMappingDecoded("/", "default");
+        tomcat.start();
+        servers.add(tomcat);
+        return "ws://127.0.0.1:" + tomcat.getConnector().getLocalPort() + "/xiaozhi/v1/";
+    }
+
+    private void configureServers(String... servers) {
+        Mockito.when(sysParamsService.getValue(Constant.SERVER_WEBSOCKET, true)).thenReturn(String.join(";", servers));
+    }
+
+    private static BroadcastServerActionDTO broadcast(int retries, int batchSize, int batchDelaySeconds) {
+        BroadcastServerActionDTO dto = new BroadcastServerActionDTO();
+        dto.setAction(ServerActionEnum.UPDATE_CONFIG);
+        dto.setTimeoutSeconds(5);
+        dto.setRetries(retries);
+        dto.setBatchSize(batchSize);
+        dto.setBatchDelaySeconds(batchDelaySeconds);
+        return dto;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Registers the stub endpoint once the WebSocket container is available.
+     */
+    public static class StubEndpointRegistrar implements ServletContextListener {
+        @Override
+        public void contextInitialized(ServletContextEvent event) {
+            ServerContainer container = (ServerContainer) event.getServletContext()
+                    .getAttribute(ServerContainer.class.getName());
+            try {
+                container.addEndpoint(ServerEndpointConfig.Builder.create(StubServerEndpoint.class, "/xiaozhi/v1/")
+                        .build());
+                container.addEndpoint(ServerEndpointConfig.Builder.create(FlakyServerEndpoint.class, "/flaky/")
+                        .build());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Confirms every server action like the Python server does, once the reply gate is open.
+     * Tracks how many actions are waiting for a reply at the same time.
+     */
+    public static class StubServerEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, (MessageHandler.Whole<String>) text -> {
+                try {
+                    MAX_IN_FLIGHT.accumulateAndGet(IN_FLIGHT.incrementAndGet(), Math::max);
+                    arrivals.countDown();
+                    replyGate.await(5, TimeUnit.SECONDS);
+                    IN_FLIGHT.decrementAndGet();
+                    session.getBasicRemote().sendText("{\"type\":\"server\",\"status\":\"success\","
+                            + "\"message\":\"ok\",\"content\":{\"action\":\"update_config\"}}");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the first connection it sees, then behaves like a healthy node.
+     */
+    public static class FlakyServerEndpoint extends StubServerEndpoint {
+        private static final AtomicInteger CONNECTIONS = new AtomicInteger();
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            if (CONNECTIONS.getAndIncrement() == 0) {
+                try {
+                    session.close();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return;
+            }
+            super.onOpen(session, config);
+        }
+    }
+}
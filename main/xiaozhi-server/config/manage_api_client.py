@@ -1,5 +1,4 @@
 import os
-import base64
 from typing import Optional, Dict
 
 import httpx
@@ -225,20 +224,24 @@ async def report(
     """Async chat history report."""
     if not content or not ManageApiClient._instance:
         return None
+    metadata = {
+        "macAddress": mac_address,
+        "sessionId": session_id,
+        "chatType": chat_type,
+        "content": content,
+        "reportTime": report_time,
+    }
     try:
+        if not audio:
+            return await ManageApiClient._instance._execute_async_request(
+                "POST", f"/agent/chat-history/report", json=metadata
+            )
+        # Send audio as a raw multipart part so the server can stream it without Base64
         return await ManageApiClient._instance._execute_async_request(
             "POST",
             f"/agent/chat-history/report",
-            json={
-                "macAddress": mac_address,
-                "sessionId": session_id,
-                "chatType": chat_type,
-                "content": content,
-                "reportTime": report_time,
-                "audioBase64": (
-                    base64.b64encode(audio).decode("utf-8") if audio else None
-                ),
-            },
+            data={k: str(v) for k, v in metadata.items() if v is not None},
+            files={"audio": ("audio.opus", bytes(audio), "application/octet-stream")},
         )
     except Exception as e:
         print(f"TTS report failed: {e}")